@@ -404,6 +404,10 @@ public final class TweetNaclFast {
 
         private byte[] key;
 
+        // workspace of the in-place variants, allocated on first use
+        private byte[] subkey, counter, block, tag;
+        private poly1305 mac;
+
         public SecretBox(byte[] key) {
             this(key, 68);
         }
@@ -571,6 +575,103 @@ public final class TweetNaclFast {
             return ret;
         }
 
+        /*
+         * @description
+         *   Encrypts and authenticates message into out, without allocating.
+         *   The box is written to outoff: the authenticator of overheadLength bytes, followed by the cipher text.
+         *   The message may be located at outoff + overheadLength of the same array, which encrypts it in place.
+         *   Any other overlap of message and box is not supported.
+         *
+         *   Unlike the allocating variants, this reuses a workspace of this SecretBox and must not be called concurrently.
+         *
+         *   Returns the length of the box, or -1 if the arguments are invalid.
+         * */
+        public int box(byte[] message, final int moff, final int mlen, byte[] theNonce, byte[] out, final int outoff) {
+            if (!(message != null && mlen >= 0 && message.length >= (moff + mlen) &&
+                    theNonce != null && theNonce.length == nonceLength &&
+                    out != null && out.length >= (outoff + overheadLength + mlen)))
+                return -1;
+
+            int coff = outoff + overheadLength;
+            initStream(theNonce);
+            stream_xor(message, moff, out, coff, mlen);
+            mac.update(out, coff, mlen);
+            mac.finish(out, outoff);
+            return mlen + overheadLength;
+        }
+
+        /*
+         * @description
+         *   Authenticates and decrypts the given secret box into out, without allocating.
+         *   The message may be written to the same array at or before boxoff + overheadLength, which decrypts it in place.
+         *
+         *   Unlike the allocating variants, this reuses a workspace of this SecretBox and must not be called concurrently.
+         *
+         *   Returns the length of the message, or -1 if the arguments are invalid or authentication fails.
+         * */
+        public int open(byte[] box, final int boxoff, final int boxlen, byte[] theNonce, byte[] out, final int outoff) {
+            if (!(box != null && boxlen >= overheadLength && box.length >= (boxoff + boxlen) &&
+                    theNonce != null && theNonce.length == nonceLength &&
+                    out != null && out.length >= (outoff + boxlen - overheadLength)))
+                return -1;
+
+            int coff = boxoff + overheadLength;
+            int mlen = boxlen - overheadLength;
+            // the authenticator has to be verified before anything is decrypted, since this might run in place
+            initStream(theNonce);
+            mac.update(box, coff, mlen);
+            mac.finish(tag, 0);
+            if (crypto_verify_16(box, boxoff, tag, 0) != 0)
+                return -1;
+
+            stream_xor(box, coff, out, outoff, mlen);
+            return mlen;
+        }
+
+        /*
+         * @description
+         *   Derives the subkey, the first stream block and the authenticator key of a nonce.
+         * */
+        private void initStream(byte[] theNonce) {
+            if (mac == null) {
+                subkey = new byte[32];
+                counter = new byte[16];
+                block = new byte[64];
+                tag = new byte[overheadLength];
+                mac = new poly1305(subkey);
+            }
+
+            core_hsalsa20(subkey, theNonce, key, sigma);
+            for (int i = 0; i < 8; i++) counter[i] = theNonce[i + 16];
+            for (int i = 8; i < 16; i++) counter[i] = 0;
+            core_salsa20(block, counter, subkey, sigma);
+            // the first 32 bytes of the stream are the one-time key of the authenticator
+            mac.reset(block);
+        }
+
+        /*
+         * @description
+         *   Same as crypto_stream_xor with zerobytesLength leading zeros, without writing them.
+         *   Continues the stream of the last initStream, source and destination may be the same position of the same array.
+         * */
+        private void stream_xor(byte[] m, int mpos, byte[] c, int cpos, int len) {
+            int n = Math.min(len, 64 - zerobytesLength);
+            for (int i = 0; i < n; i++)
+                c[cpos + i] = (byte) (m[mpos + i] ^ block[zerobytesLength + i]);
+            for (int pos = n; pos < len; pos += 64) {
+                int u = 1;
+                for (int i = 8; i < 16; i++) {
+                    u = u + (counter[i] & 0xff);
+                    counter[i] = (byte) (u & 0xff);
+                    u >>>= 8;
+                }
+                core_salsa20(block, counter, subkey, sigma);
+                n = Math.min(len - pos, 64);
+                for (int i = 0; i < n; i++)
+                    c[cpos + pos + i] = (byte) (m[mpos + pos + i] ^ block[i]);
+            }
+        }
+
         /*
          * @description
          *   Length of key in bytes.
@@ -1477,6 +1578,7 @@ public final class TweetNaclFast {
         private int[] r;
         private int[] h;
         private int[] pad;
+        private int[] g;
         private int leftover;
         private int fin;
 
@@ -1485,6 +1587,16 @@ public final class TweetNaclFast {
             this.r = new int[10];
             this.h = new int[10];
             this.pad = new int[8];
+            this.g = new int[10];
+            reset(key);
+        }
+
+        /*
+         * @description
+         *   Starts a new authenticator with another key, reusing the state of this instance.
+         * */
+        public poly1305 reset(byte[] key) {
+            for (int i = 0; i < 10; i++) this.h[i] = 0;
             this.leftover = 0;
             this.fin = 0;
 
@@ -1517,6 +1629,8 @@ public final class TweetNaclFast {
             this.pad[5] = key[26] & 0xff | (key[27] & 0xff) << 8;
             this.pad[6] = key[28] & 0xff | (key[29] & 0xff) << 8;
             this.pad[7] = key[30] & 0xff | (key[31] & 0xff) << 8;
+
+            return this;
         }
 
         public poly1305 blocks(byte[] m, int mpos, int bytes) {
@@ -1763,7 +1877,7 @@ public final class TweetNaclFast {
         }
 
         public poly1305 finish(byte[] mac, int macpos) {
-            int[] g = new int[10];
+            int[] g = this.g;
             int c, mask, f, i;
 
             if (this.leftover != 0) {
@@ -20,20 +20,24 @@ import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.entities.channel.IGuildChannelContainer;
 import net.dv8tion.jda.api.entities.emoji.RichCustomEmoji;
 import net.dv8tion.jda.api.entities.sticker.*;
+import net.dv8tion.jda.api.hooks.EventQueueMetrics;
 import net.dv8tion.jda.api.hooks.IEventManager;
 import net.dv8tion.jda.api.interactions.commands.Command;
 import net.dv8tion.jda.api.interactions.commands.build.CommandData;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.components.ComponentRouter;
 import net.dv8tion.jda.api.managers.AudioManager;
 import net.dv8tion.jda.api.managers.DirectAudioController;
 import net.dv8tion.jda.api.managers.Presence;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.requests.GatewaySendMetrics;
 import net.dv8tion.jda.api.requests.RestAction;
 import net.dv8tion.jda.api.requests.restaction.*;
 import net.dv8tion.jda.api.sharding.ShardManager;
 import net.dv8tion.jda.api.utils.MiscUtil;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
 import net.dv8tion.jda.api.utils.cache.CacheView;
+import net.dv8tion.jda.api.utils.cache.EventCacheMetrics;
 import net.dv8tion.jda.api.utils.cache.SnowflakeCacheView;
 import net.dv8tion.jda.internal.interactions.CommandDataImpl;
 import net.dv8tion.jda.internal.requests.CompletedRestAction;
@@ -1153,10 +1157,9 @@ public interface JDA extends IGuildChannelContainer
     /**
      * Unified {@link net.dv8tion.jda.api.utils.cache.SnowflakeCacheView SnowflakeCacheView} of
      * all cached {@link net.dv8tion.jda.api.entities.Role Roles} visible to this JDA session.
+     * <br>This view is an index of the role caches of all guilds, looking up a role by id does not check every guild.
      *
      * @return Unified {@link net.dv8tion.jda.api.utils.cache.SnowflakeCacheView SnowflakeCacheView}
-     *
-     * @see    net.dv8tion.jda.api.utils.cache.CacheView#allSnowflakes(java.util.function.Supplier) CacheView.allSnowflakes(...)
      */
     @NotNull
     SnowflakeCacheView<Role> getRoleCache();
@@ -1369,10 +1372,9 @@ public interface JDA extends IGuildChannelContainer
     /**
      * Unified {@link net.dv8tion.jda.api.utils.cache.SnowflakeCacheView SnowflakeCacheView} of
      * all cached {@link RichCustomEmoji Custom Emojis} visible to this JDA session.
+     * <br>This view is an index of the emoji caches of all guilds, looking up an emoji by id does not check every guild.
      *
      * @return Unified {@link net.dv8tion.jda.api.utils.cache.SnowflakeCacheView SnowflakeCacheView}
-     *
-     * @see    net.dv8tion.jda.api.utils.cache.CacheView#allSnowflakes(java.util.function.Supplier) CacheView.allSnowflakes(...)
      */
     @NotNull
     SnowflakeCacheView<RichCustomEmoji> getEmojiCache();
@@ -1505,6 +1507,46 @@ public interface JDA extends IGuildChannelContainer
     @NotNull
     IEventManager getEventManager();
 
+    /**
+     * The metrics of the bounded event queue used to hand events to the event pool.
+     * <br>This is only available if both an event pool and an {@link net.dv8tion.jda.api.hooks.EventQueuePolicy EventQueuePolicy} have been configured.
+     *
+     * @return The {@link net.dv8tion.jda.api.hooks.EventQueueMetrics EventQueueMetrics}, or null if no bounded queue is used
+     *
+     * @see    net.dv8tion.jda.api.JDABuilder#setEventQueuePolicy(net.dv8tion.jda.api.hooks.EventQueuePolicy)
+     */
+    @Nullable
+    EventQueueMetrics getEventQueueMetrics();
+
+    /**
+     * The metrics of the messages sent to the gateway, such as presence updates and member chunk requests.
+     * <br>This can be used to monitor how long updates wait for the gateway rate limit.
+     *
+     * @return The {@link net.dv8tion.jda.api.requests.GatewaySendMetrics GatewaySendMetrics}
+     */
+    @NotNull
+    GatewaySendMetrics getGatewaySendMetrics();
+
+    /**
+     * The metrics of the cache which holds gateway events for entities that are not cached yet.
+     * <br>A growing amount of expired or evicted events indicates that JDA receives events it cannot apply to its cache.
+     *
+     * @return The {@link net.dv8tion.jda.api.utils.cache.EventCacheMetrics EventCacheMetrics}
+     *
+     * @see    net.dv8tion.jda.api.JDABuilder#setEventCacheLimit(int)
+     */
+    @NotNull
+    EventCacheMetrics getEventCacheMetrics();
+
+    /**
+     * The {@link net.dv8tion.jda.api.interactions.components.ComponentRouter ComponentRouter} of this session.
+     * <br>This can be used to handle component interactions by custom id, without registering an event listener.
+     *
+     * @return The {@link net.dv8tion.jda.api.interactions.components.ComponentRouter ComponentRouter}
+     */
+    @NotNull
+    ComponentRouter getComponentRouter();
+
     /**
      * Returns the currently logged in account represented by {@link net.dv8tion.jda.api.entities.SelfUser SelfUser}.
      * <br>Account settings <b>cannot</b> be modified using this object. If you wish to modify account settings please
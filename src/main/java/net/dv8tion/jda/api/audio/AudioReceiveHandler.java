@@ -42,6 +42,19 @@ public interface AudioReceiveHandler
         return false;
     }
 
+    /**
+     * If this method returns true, JDA reuses the {@link net.dv8tion.jda.api.audio.CombinedAudio CombinedAudio}
+     * provided to {@link #handleCombinedAudio(CombinedAudio)} and its audio data for the next 20 milliseconds.
+     * <br>The combined audio must then not be used after {@link #handleCombinedAudio(CombinedAudio)} returns,
+     * but no buffers are allocated to mix the audio.
+     *
+     * @return True, if the combined audio can be reused
+     */
+    default boolean canReuseCombinedAudio()
+    {
+        return false;
+    }
+
     /**
      * If this method returns true, then JDA will provide audio data to the {@link #handleUserAudio(UserAudio)} method.
      *
@@ -127,6 +140,48 @@ public interface AudioReceiveHandler
      */
     default void handleUserAudio(@NotNull UserAudio userAudio) {}
 
+    /**
+     * If this method returns true, then JDA will provide audio data to the {@link #handleBufferedUserAudio(UserAudio)} method.
+     * <br>Unlike {@link #handleUserAudio(UserAudio)}, the audio of every user passes through a jitter buffer first.
+     *
+     * @return True, if {@link #handleBufferedUserAudio(UserAudio)} should receive user specific audio data.
+     */
+    default boolean canReceiveBufferedUser()
+    {
+        return false;
+    }
+
+    /**
+     * The maximum latency of the jitter buffers used for {@link #handleBufferedUserAudio(UserAudio)}.
+     * <br>Every talk spurt is delayed according to the jitter of the packets, up to this latency.
+     * A higher latency can restore the order of packets which arrive later, but delays the audio more on unstable connections.
+     *
+     * <p>This is read when the jitter buffer of a user is created. Default: 100 milliseconds
+     *
+     * @return The maximum latency in milliseconds
+     */
+    default long getBufferedUserLatency()
+    {
+        return 100;
+    }
+
+    /**
+     * If {@link #canReceiveBufferedUser()} returns true, JDA will provide a {@link net.dv8tion.jda.api.audio.UserAudio UserAudio}
+     * object to this method <b>every 20 milliseconds</b> while the user speaks.
+     * <p>
+     * The packets of every user are reordered by their RTP sequence in a jitter buffer, which delays the audio by at most
+     * {@link #getBufferedUserLatency()}. Frames of lost packets are recovered with the forward error correction
+     * of the following packet when possible, otherwise they are concealed by the decoder. This keeps the audio free of gaps
+     * while the user speaks, which makes this method the best choice for recording specific users.
+     * <p>
+     * Output audio format: 48KHz 16bit stereo signed BigEndian PCM
+     * <br>and is defined by: {@link net.dv8tion.jda.api.audio.AudioReceiveHandler#OUTPUT_FORMAT AudioRecieveHandler.OUTPUT_FORMAT}
+     *
+     * @param  userAudio
+     *         The user audio data
+     */
+    default void handleBufferedUserAudio(@NotNull UserAudio userAudio) {}
+
     /**
      * This method is a filter predicate used by JDA to determine whether or not to include a
      * {@link net.dv8tion.jda.api.entities.User User}'s audio when creating a CombinedAudio packet.
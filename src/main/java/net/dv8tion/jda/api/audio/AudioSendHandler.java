@@ -70,6 +70,8 @@ public interface AudioSendHandler
      *
      * @return If true, JDA will not attempt to encode the provided audio data as Opus.
      *         <br>Default - False.
+     *
+     * @see    OpusClipSendHandler
      */
     default boolean isOpus()
     {
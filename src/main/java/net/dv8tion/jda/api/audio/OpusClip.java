@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.audio;
+
+import com.sun.jna.ptr.PointerByReference;
+import net.dv8tion.jda.internal.utils.Checks;
+import org.jetbrains.annotations.NotNull;
+import tomp2p.opuswrapper.Opus;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An audio clip encoded as a sequence of 20 millisecond Opus frames.
+ * <br>A clip is immutable and can be played by any amount of connections at the same time with an {@link OpusClipSendHandler},
+ * without encoding the audio again. Use an {@link OpusClipCache} to encode every clip only once.
+ *
+ * <p>All frames are stored in one array, so a clip only takes the size of its encoded audio plus 4 bytes per frame.
+ *
+ * @see OpusClipCache
+ * @see OpusClipSendHandler
+ */
+public class OpusClip
+{
+    /** The amount of PCM bytes in one frame of {@link AudioSendHandler#INPUT_FORMAT} */
+    public static final int PCM_FRAME_SIZE = OpusPacket.OPUS_FRAME_SIZE * OpusPacket.OPUS_CHANNEL_COUNT * 2;
+    // The maximum packet size recommended by opus
+    private static final int MAX_FRAME_SIZE = 4000;
+
+    final byte[] data;
+    final int[] offsets;
+
+    private OpusClip(byte[] data, int[] offsets)
+    {
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Creates a clip from frames which are already encoded.
+     *
+     * @param  frames
+     *         The Opus frames of 20 milliseconds each
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided or any frame is empty
+     *
+     * @return The clip
+     */
+    @NotNull
+    public static OpusClip fromFrames(@NotNull List<byte[]> frames)
+    {
+        Checks.noneNull(frames, "Frames");
+        int[] offsets = new int[frames.size() + 1];
+        for (int i = 0; i < frames.size(); i++)
+        {
+            Checks.check(frames.get(i).length > 0, "Frames must not be empty");
+            offsets[i + 1] = offsets[i] + frames.get(i).length;
+        }
+        byte[] data = new byte[offsets[frames.size()]];
+        for (int i = 0; i < frames.size(); i++)
+            System.arraycopy(frames.get(i), 0, data, offsets[i], frames.get(i).length);
+        return new OpusClip(data, offsets);
+    }
+
+    /**
+     * Encodes PCM audio in the {@link AudioSendHandler#INPUT_FORMAT}.
+     * <br>The last frame is padded with silence, if the audio does not end on a frame.
+     *
+     * @param  pcm
+     *         The PCM audio
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided
+     * @throws IllegalStateException
+     *         If the opus library could not be loaded or the audio could not be encoded
+     *
+     * @return The encoded clip
+     *
+     * @see    AudioNatives#ensureOpus()
+     */
+    @NotNull
+    public static OpusClip encode(@NotNull byte[] pcm)
+    {
+        Checks.notNull(pcm, "PCM");
+        if (!AudioNatives.ensureOpus())
+            throw new IllegalStateException("Unable to encode audio without opus binaries!");
+
+        IntBuffer error = IntBuffer.allocate(1);
+        PointerByReference encoder = Opus.INSTANCE.opus_encoder_create(OpusPacket.OPUS_SAMPLE_RATE, OpusPacket.OPUS_CHANNEL_COUNT, Opus.OPUS_APPLICATION_AUDIO, error);
+        if (error.get() != Opus.OPUS_OK && encoder == null)
+            throw new IllegalStateException("Received error status from opus_encoder_create(...): " + error.get());
+        try
+        {
+            int frameCount = (pcm.length + PCM_FRAME_SIZE - 1) / PCM_FRAME_SIZE;
+            int[] offsets = new int[frameCount + 1];
+            // Grows if the frames are larger than expected
+            byte[] data = new byte[frameCount * 160];
+            ShortBuffer input = ShortBuffer.allocate(PCM_FRAME_SIZE / 2);
+            ByteBuffer output = ByteBuffer.allocate(MAX_FRAME_SIZE);
+            for (int frame = 0; frame < frameCount; frame++)
+            {
+                ((Buffer) input).clear();
+                int start = frame * PCM_FRAME_SIZE;
+                int end = Math.min(pcm.length, start + PCM_FRAME_SIZE) & ~1;
+                for (int i = start; i < end; i += 2)
+                    input.put((short) ((pcm[i] << 8) | (pcm[i + 1] & 0xFF)));
+                while (input.hasRemaining())
+                    input.put((short) 0);
+                ((Buffer) input).flip();
+
+                ((Buffer) output).clear();
+                int result = Opus.INSTANCE.opus_encode(encoder, input, OpusPacket.OPUS_FRAME_SIZE, output, output.capacity());
+                if (result <= 0)
+                    throw new IllegalStateException("Received error code from opus_encode(...): " + result);
+                if (data.length < offsets[frame] + result)
+                    data = Arrays.copyOf(data, Math.max(data.length * 2, offsets[frame] + result));
+                output.get(data, offsets[frame], result);
+                offsets[frame + 1] = offsets[frame] + result;
+            }
+            return new OpusClip(Arrays.copyOf(data, offsets[frameCount]), offsets);
+        }
+        finally
+        {
+            Opus.INSTANCE.opus_encoder_destroy(encoder);
+        }
+    }
+
+    /**
+     * The amount of 20 millisecond frames in this clip.
+     *
+     * @return The frame count
+     */
+    public int getFrameCount()
+    {
+        return offsets.length - 1;
+    }
+
+    /**
+     * The duration of this clip in milliseconds.
+     *
+     * @return The duration
+     */
+    public long getDuration()
+    {
+        return getFrameCount() * 20L;
+    }
+
+    /**
+     * The amount of bytes this clip takes in memory, used to bound the size of an {@link OpusClipCache}.
+     *
+     * @return The size in bytes
+     */
+    public long getSize()
+    {
+        return data.length + offsets.length * 4L;
+    }
+
+    /**
+     * Copies an encoded frame of this clip.
+     *
+     * @param  frame
+     *         The index of the frame
+     *
+     * @throws IllegalArgumentException
+     *         If the index is not within {@code [0, getFrameCount())}
+     *
+     * @return The Opus frame
+     */
+    @NotNull
+    public byte[] getFrame(int frame)
+    {
+        Checks.check(frame >= 0 && frame < getFrameCount(), "Frame index out of bounds: " + frame);
+        return Arrays.copyOfRange(data, offsets[frame], offsets[frame + 1]);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "OpusClip(frames=" + getFrameCount() + ", size=" + getSize() + ")";
+    }
+}
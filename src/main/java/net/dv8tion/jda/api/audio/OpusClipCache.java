@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.audio;
+
+import net.dv8tion.jda.internal.utils.Checks;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache of {@link OpusClip OpusClips}, bounded by the total {@link OpusClip#getSize() size} of the clips.
+ * <br>Share one instance between all connections, so every clip is encoded only once per process and every
+ * connection plays it with an {@link OpusClipSendHandler} instead of encoding the same PCM again.
+ *
+ * <p>Once the cache is full, the least recently used clips are removed.
+ * A clip which is larger than the whole cache is returned, but not cached.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * OpusClip clip = cache.getOrEncode("airhorn", () -> loadPcm("airhorn.pcm"));
+ * guild.getAudioManager().setSendingHandler(new OpusClipSendHandler(clip));
+ * }</pre>
+ */
+public class OpusClipCache
+{
+    public static final Logger LOG = JDALogger.getLog(OpusClipCache.class);
+
+    private final long maxSize;
+    private final LinkedHashMap<Object, OpusClip> clips = new LinkedHashMap<>(16, 0.75f, true);
+    // Clips which are currently encoded, so concurrent calls wait for the same encoding
+    private final ConcurrentMap<Object, CompletableFuture<OpusClip>> loading = new ConcurrentHashMap<>();
+    private long size;
+    private long hits, misses, evictions;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param  maxSize
+     *         The maximum total size of the cached clips in bytes
+     *
+     * @throws IllegalArgumentException
+     *         If the size is not positive
+     */
+    public OpusClipCache(long maxSize)
+    {
+        Checks.check(maxSize > 0, "Max size must be positive");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The cached clip for the provided key.
+     *
+     * @param  key
+     *         The identity of the clip
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided
+     *
+     * @return The clip, or null if it is not cached
+     */
+    @Nullable
+    public synchronized OpusClip get(@NotNull Object key)
+    {
+        Checks.notNull(key, "Key");
+        OpusClip clip = clips.get(key);
+        if (clip == null)
+            misses++;
+        else
+            hits++;
+        return clip;
+    }
+
+    /**
+     * Caches a clip, replacing the previous clip of the key.
+     *
+     * @param  key
+     *         The identity of the clip
+     * @param  clip
+     *         The clip
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided
+     */
+    public synchronized void put(@NotNull Object key, @NotNull OpusClip clip)
+    {
+        Checks.notNull(key, "Key");
+        Checks.notNull(clip, "Clip");
+        OpusClip previous = clips.remove(key);
+        if (previous != null)
+            size -= previous.getSize();
+        if (clip.getSize() > maxSize)
+        {
+            LOG.debug("Not caching clip {} with {} bytes, the cache is limited to {} bytes", key, clip.getSize(), maxSize);
+            return;
+        }
+        clips.put(key, clip);
+        size += clip.getSize();
+
+        Iterator<OpusClip> eldest = clips.values().iterator();
+        while (size > maxSize)
+        {
+            size -= eldest.next().getSize();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * The cached clip for the provided key, or the clip encoded from the PCM audio of the supplier.
+     * <br>Concurrent calls for the same key encode the audio only once, the other threads wait for the encoded clip.
+     *
+     * @param  key
+     *         The identity of the clip
+     * @param  pcm
+     *         Supplies the PCM audio in the {@link AudioSendHandler#INPUT_FORMAT}, only called if the clip is not cached
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided
+     * @throws IllegalStateException
+     *         If the audio could not be encoded, see {@link OpusClip#encode(byte[])}
+     *
+     * @return The clip
+     */
+    @NotNull
+    public OpusClip getOrEncode(@NotNull Object key, @NotNull Supplier<byte[]> pcm)
+    {
+        Checks.notNull(pcm, "PCM Supplier");
+        OpusClip clip = get(key);
+        if (clip != null)
+            return clip;
+
+        CompletableFuture<OpusClip> future = new CompletableFuture<>();
+        CompletableFuture<OpusClip> pending = loading.putIfAbsent(key, future);
+        if (pending != null)
+        {
+            try
+            {
+                return pending.join();
+            }
+            catch (CompletionException e)
+            {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw e;
+            }
+        }
+
+        try
+        {
+            // Another thread might have finished encoding it just now
+            synchronized (this)
+            {
+                clip = clips.get(key);
+            }
+            if (clip == null)
+            {
+                clip = OpusClip.encode(pcm.get());
+                put(key, clip);
+            }
+            future.complete(clip);
+            return clip;
+        }
+        catch (Throwable e)
+        {
+            // Errors have to complete the future as well, otherwise the waiting threads never return
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * Removes the clip of the provided key.
+     *
+     * @param  key
+     *         The identity of the clip
+     *
+     * @return The removed clip, or null if it was not cached
+     */
+    @Nullable
+    public synchronized OpusClip remove(@NotNull Object key)
+    {
+        OpusClip clip = clips.remove(key);
+        if (clip != null)
+            size -= clip.getSize();
+        return clip;
+    }
+
+    public synchronized void clear()
+    {
+        clips.clear();
+        size = 0;
+    }
+
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    public synchronized int getClipCount()
+    {
+        return clips.size();
+    }
+
+    public synchronized long getHitCount()
+    {
+        return hits;
+    }
+
+    public synchronized long getMissCount()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount()
+    {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "OpusClipCache(clips=" + clips.size() + ", size=" + size + ", maxSize=" + maxSize + ")";
+    }
+}
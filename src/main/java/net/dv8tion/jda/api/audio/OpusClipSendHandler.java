@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.audio;
+
+import net.dv8tion.jda.internal.utils.Checks;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Sends the frames of an {@link OpusClip} without encoding them.
+ * <br>Every handler keeps its own position in the clip, so one clip can be played by many connections at the same time.
+ * Providing a frame does not copy or allocate anything.
+ *
+ * <p>A new clip can be started with {@link #play(OpusClip)} at any time, which replaces the current clip.
+ *
+ * @see OpusClipCache
+ */
+public class OpusClipSendHandler implements AudioSendHandler
+{
+    private OpusClip clip;
+    private ByteBuffer view;
+    private int frame;
+    private boolean loop;
+
+    public OpusClipSendHandler() {}
+
+    /**
+     * Creates a handler which starts playing the clip immediately.
+     *
+     * @param  clip
+     *         The clip to play
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided
+     */
+    public OpusClipSendHandler(@NotNull OpusClip clip)
+    {
+        play(clip);
+    }
+
+    /**
+     * Plays the provided clip from its start, replacing the current clip.
+     *
+     * @param  clip
+     *         The clip to play
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided
+     */
+    public synchronized void play(@NotNull OpusClip clip)
+    {
+        Checks.notNull(clip, "Clip");
+        if (this.clip == null || this.clip.data != clip.data)
+            this.view = ByteBuffer.wrap(clip.data);
+        this.clip = clip;
+        this.frame = 0;
+    }
+
+    /**
+     * Stops the current clip.
+     */
+    public synchronized void stop()
+    {
+        this.clip = null;
+        this.view = null;
+    }
+
+    /**
+     * Whether the clip starts again once it ended.
+     *
+     * @param  loop
+     *         True, to loop the clip
+     */
+    public synchronized void setLoop(boolean loop)
+    {
+        this.loop = loop;
+    }
+
+    /**
+     * The clip which is currently played.
+     *
+     * @return The clip, or null if the clip ended or was stopped
+     */
+    @Nullable
+    public synchronized OpusClip getClip()
+    {
+        return clip != null && frame < clip.getFrameCount() ? clip : null;
+    }
+
+    /**
+     * The index of the next frame of the current clip.
+     *
+     * @return The index of the next frame
+     */
+    public synchronized int getPosition()
+    {
+        return frame;
+    }
+
+    @Override
+    public synchronized boolean canProvide()
+    {
+        if (clip != null && loop && frame >= clip.getFrameCount())
+            frame = 0;
+        return clip != null && frame < clip.getFrameCount();
+    }
+
+    @Nullable
+    @Override
+    public synchronized ByteBuffer provide20MsAudio()
+    {
+        if (!canProvide())
+            return null;
+        // The connection is done with the previous frame, so the view can be moved to the next one
+        ((Buffer) view).limit(clip.offsets[frame + 1]).position(clip.offsets[frame]);
+        frame++;
+        return view;
+    }
+
+    @Override
+    public boolean isOpus()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.audio.crypto;
+
+/**
+ * The XSalsa20-Poly1305 secret box used by every encryption mode of audio connections.
+ * <br>The modes only differ in the nonce, so a cipher is used for all of them.
+ *
+ * <p>A box is the 16 byte authenticator followed by the cipher text, the same layout as {@code crypto_secretbox_easy}.
+ * Both operations write into a provided array, so they can work in place without allocating.
+ *
+ * <p>A cipher is created for one key and is used by one thread at a time,
+ * implementations may reuse a workspace between calls.
+ *
+ * @see AudioCipherProvider
+ */
+public interface AudioCipher
+{
+    /** The length of the key in bytes */
+    int KEY_LENGTH = 32;
+    /** The length of the nonce in bytes */
+    int NONCE_LENGTH = 24;
+    /** The amount of bytes a box is longer than its message */
+    int OVERHEAD_LENGTH = 16;
+
+    /**
+     * Encrypts and authenticates a message.
+     * <br>The message may be located at {@code outoff + OVERHEAD_LENGTH} of the same array, which encrypts it in place.
+     *
+     * @param  message
+     *         The array containing the message
+     * @param  moff
+     *         The offset of the message
+     * @param  mlen
+     *         The length of the message
+     * @param  nonce
+     *         The nonce of {@link #NONCE_LENGTH} bytes
+     * @param  out
+     *         The array to write the box to
+     * @param  outoff
+     *         The offset of the box
+     *
+     * @return The length of the box, or -1 if the arguments are invalid
+     */
+    int seal(byte[] message, int moff, int mlen, byte[] nonce, byte[] out, int outoff);
+
+    /**
+     * Authenticates and decrypts a box.
+     * <br>The message may be written to the same array at or before {@code boxoff + OVERHEAD_LENGTH}, which decrypts it in place.
+     * Nothing is written if the authentication fails.
+     *
+     * @param  box
+     *         The array containing the box
+     * @param  boxoff
+     *         The offset of the box
+     * @param  boxlen
+     *         The length of the box, including the authenticator
+     * @param  nonce
+     *         The nonce of {@link #NONCE_LENGTH} bytes
+     * @param  out
+     *         The array to write the message to
+     * @param  outoff
+     *         The offset of the message
+     *
+     * @return The length of the message, or -1 if the arguments are invalid or the authentication failed
+     */
+    int open(byte[] box, int boxoff, int boxlen, byte[] nonce, byte[] out, int outoff);
+}
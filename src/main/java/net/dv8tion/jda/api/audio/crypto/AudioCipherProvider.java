@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.audio.crypto;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Creates the {@link AudioCipher AudioCiphers} of audio connections.
+ * <br>The provider used by new connections is configured with {@link AudioCiphers#setProvider(AudioCipherProvider)}.
+ *
+ * @see AudioCiphers#JAVA
+ * @see AudioCiphers#SODIUM
+ */
+public interface AudioCipherProvider
+{
+    /**
+     * The name of this implementation, used for logging.
+     *
+     * @return The name
+     */
+    @NotNull
+    String getName();
+
+    /**
+     * Whether this implementation can be used on this system.
+     *
+     * @return True, if {@link #createCipher(byte[])} can be called
+     */
+    boolean isAvailable();
+
+    /**
+     * Creates a cipher for the secret key of a connection.
+     *
+     * @param  key
+     *         The secret key of {@link AudioCipher#KEY_LENGTH} bytes
+     *
+     * @throws IllegalArgumentException
+     *         If the key is null or does not have {@link AudioCipher#KEY_LENGTH} bytes
+     * @throws IllegalStateException
+     *         If this implementation is not {@link #isAvailable() available}
+     *
+     * @return The cipher
+     */
+    @NotNull
+    AudioCipher createCipher(@NotNull byte[] key);
+}
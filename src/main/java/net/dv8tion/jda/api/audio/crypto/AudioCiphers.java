@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.audio.crypto;
+
+import net.dv8tion.jda.internal.audio.crypto.JavaCipherProvider;
+import net.dv8tion.jda.internal.audio.crypto.SodiumCipherProvider;
+import net.dv8tion.jda.internal.utils.Checks;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+/**
+ * The {@link AudioCipherProvider AudioCipherProviders} shipped with JDA.
+ *
+ * <p>By default, connections use {@link #SODIUM} if libsodium is installed on the system and {@link #JAVA} otherwise.
+ * The provider is only resolved once, a provider set with {@link #setProvider(AudioCipherProvider)} is used by
+ * connections which are established afterwards.
+ */
+public final class AudioCiphers
+{
+    private static final Logger LOG = JDALogger.getLog(AudioCiphers.class);
+
+    /**
+     * Pure Java implementation, which is always available.
+     */
+    public static final AudioCipherProvider JAVA = new JavaCipherProvider();
+
+    /**
+     * Implementation using the native libsodium library of the system.
+     * <br>This is only {@link AudioCipherProvider#isAvailable() available}, if libsodium could be loaded through JNA.
+     */
+    public static final AudioCipherProvider SODIUM = new SodiumCipherProvider();
+
+    private static AudioCipherProvider provider;
+
+    private AudioCiphers() {}
+
+    /**
+     * The provider used by new connections.
+     *
+     * @return The provider
+     */
+    @NotNull
+    public static synchronized AudioCipherProvider getProvider()
+    {
+        if (provider == null)
+        {
+            provider = SODIUM.isAvailable() ? SODIUM : JAVA;
+            LOG.debug("Using {} for audio encryption", provider.getName());
+        }
+        return provider;
+    }
+
+    /**
+     * Sets the provider used by new connections.
+     *
+     * @param  provider
+     *         The provider
+     *
+     * @throws IllegalArgumentException
+     *         If the provider is null or not {@link AudioCipherProvider#isAvailable() available}
+     */
+    public static synchronized void setProvider(@NotNull AudioCipherProvider provider)
+    {
+        Checks.notNull(provider, "Provider");
+        Checks.check(provider.isAvailable(), "The provider %s is not available", provider.getName());
+        AudioCiphers.provider = provider;
+    }
+}
@@ -25,6 +25,7 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.NoRouteToHostException;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentMap;
 
 import static net.dv8tion.jda.api.audio.OpusPacket.OPUS_FRAME_TIME_AMOUNT;
@@ -61,16 +62,35 @@ public class DefaultSendSystem implements IAudioSendSystem
                 MDC.setContextMap(contextMap);
             long lastFrameSent = System.currentTimeMillis();
             boolean sentPacket = true;
+            // The provider reuses its buffer for every packet, so the datagram can be reused as well
+            DatagramPacket packet = new DatagramPacket(new byte[0], 0);
+            byte[] copy = new byte[0];
             while (!udpSocket.isClosed() && !sendThread.isInterrupted())
             {
                 try
                 {
                     boolean changeTalking = !sentPacket || (System.currentTimeMillis() - lastFrameSent) > OPUS_FRAME_TIME_AMOUNT;
-                    DatagramPacket packet = packetProvider.getNextPacket(changeTalking);
+                    ByteBuffer buffer = packetProvider.getNextPacketRaw(changeTalking);
 
-                    sentPacket = packet != null;
+                    sentPacket = buffer != null;
                     if (sentPacket)
+                    {
+                        if (buffer.hasArray())
+                        {
+                            packet.setData(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                        }
+                        else
+                        {
+                            // Direct or read-only buffers of custom providers have no accessible array, so the packet is copied
+                            int length = buffer.remaining();
+                            if (copy.length < length)
+                                copy = new byte[length];
+                            buffer.duplicate().get(copy, 0, length);
+                            packet.setData(copy, 0, length);
+                        }
+                        packet.setSocketAddress(packetProvider.getSocketAddress());
                         udpSocket.send(packet);
+                    }
                 }
                 catch (NoRouteToHostException e)
                 {
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.audio.factory;
+
+import net.dv8tion.jda.internal.utils.Checks;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link IAudioSendFactory} which drives the audio sending of all connections from a fixed amount of threads.
+ * <br>The {@link DefaultSendFactory} starts one thread for every connection, which paces its frames with {@link Thread#sleep(long)}.
+ * This factory schedules every connection on one of its threads instead, using {@link System#nanoTime()} deadlines.
+ * All frames which are due at the same time are sent in one batch, through a non-blocking {@link DatagramChannel} of the thread.
+ *
+ * <p>Packets are sent to {@link IPacketProvider#getSocketAddress()} from the channel of the thread,
+ * the {@link IPacketProvider#getUdpSocket() UDP socket} of the connection is still used to receive audio.
+ * Each thread handles the {@link net.dv8tion.jda.api.audio.AudioSendHandler AudioSendHandlers} of its connections,
+ * so handlers which encode PCM audio need more threads than handlers which provide opus.
+ *
+ * <p>The timing of every connection is recorded, see {@link #getSendSystems()}.
+ * The threads are daemon threads, use {@link #shutdown()} once the factory is no longer used.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * SharedSendFactory factory = new SharedSendFactory(2);
+ * JDABuilder.createDefault(token)
+ *     .setAudioSendFactory(factory)
+ *     .build();
+ * }</pre>
+ */
+public class SharedSendFactory implements IAudioSendFactory
+{
+    public static final Logger LOG = JDALogger.getLog(SharedSendFactory.class);
+
+    private final Scheduler[] schedulers;
+    private final Set<SharedSendSystem> systems = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a factory with one thread for every four cores.
+     */
+    public SharedSendFactory()
+    {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+    }
+
+    /**
+     * Creates a factory with the provided amount of threads.
+     *
+     * @param  threads
+     *         The amount of threads
+     *
+     * @throws IllegalArgumentException
+     *         If the amount of threads is not positive
+     */
+    public SharedSendFactory(int threads)
+    {
+        Checks.positive(threads, "Threads");
+        this.schedulers = new Scheduler[threads];
+        try
+        {
+            for (int i = 0; i < threads; i++)
+                schedulers[i] = new Scheduler("SharedSendFactory " + (i + 1) + "/" + threads);
+        }
+        catch (IOException e)
+        {
+            shutdown();
+            throw new UncheckedIOException("Failed to open datagram channel", e);
+        }
+    }
+
+    @NotNull
+    @Override
+    public IAudioSendSystem createSendSystem(@NotNull IPacketProvider packetProvider)
+    {
+        return new SharedSendSystem(this, packetProvider);
+    }
+
+    /**
+     * The send systems which are currently running.
+     *
+     * @return Immutable list of the running systems
+     */
+    @NotNull
+    public List<SharedSendSystem> getSendSystems()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(systems));
+    }
+
+    /**
+     * The amount of threads used by this factory.
+     *
+     * @return The amount of threads
+     */
+    public int getThreadCount()
+    {
+        return schedulers.length;
+    }
+
+    /**
+     * Stops all threads of this factory.
+     * <br>Audio connections using this factory stop sending.
+     */
+    public void shutdown()
+    {
+        for (Scheduler scheduler : schedulers)
+        {
+            if (scheduler != null)
+                scheduler.shutdown();
+        }
+    }
+
+    void schedule(SharedSendSystem system)
+    {
+        Scheduler scheduler = schedulers[0];
+        for (Scheduler candidate : schedulers)
+        {
+            if (candidate.count.get() < scheduler.count.get())
+                scheduler = candidate;
+        }
+        systems.add(system);
+        scheduler.add(system);
+    }
+
+    private class Scheduler implements Runnable
+    {
+        // Frames due within this window are sent with the current batch
+        private final long batchWindow = TimeUnit.MICROSECONDS.toNanos(500);
+        private final Thread thread;
+        private final DatagramChannel channel;
+        private final AtomicInteger count = new AtomicInteger();
+        private final Queue<SharedSendSystem> added = new ConcurrentLinkedQueue<>();
+        private final List<SharedSendSystem> running = new ArrayList<>();
+        private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(2048);
+        private volatile boolean shutdown;
+
+        private Scheduler(String name) throws IOException
+        {
+            this.channel = DatagramChannel.open();
+            this.channel.configureBlocking(false);
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+            this.thread.setPriority((Thread.NORM_PRIORITY + Thread.MAX_PRIORITY) / 2);
+            this.thread.start();
+        }
+
+        private void add(SharedSendSystem system)
+        {
+            count.incrementAndGet();
+            added.add(system);
+            LockSupport.unpark(thread);
+        }
+
+        private void shutdown()
+        {
+            shutdown = true;
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run()
+        {
+            while (!shutdown)
+            {
+                try
+                {
+                    SharedSendSystem system;
+                    while ((system = added.poll()) != null)
+                    {
+                        system.deadline = System.nanoTime();
+                        running.add(system);
+                    }
+                    if (running.isEmpty())
+                    {
+                        LockSupport.park(this);
+                        continue;
+                    }
+
+                    long now = System.nanoTime();
+                    long next = now + SharedSendSystem.FRAME_NANOS;
+                    Iterator<SharedSendSystem> iterator = running.iterator();
+                    while (iterator.hasNext())
+                    {
+                        system = iterator.next();
+                        if (!system.isActive())
+                        {
+                            iterator.remove();
+                            systems.remove(system);
+                            count.decrementAndGet();
+                            continue;
+                        }
+                        if (system.deadline - now <= batchWindow)
+                            system.sendFrame(channel, sendBuffer);
+                        if (system.deadline - next < 0)
+                            next = system.deadline;
+                    }
+
+                    long wait = next - System.nanoTime();
+                    if (wait > 0)
+                        LockSupport.parkNanos(this, wait);
+                }
+                catch (Throwable e)
+                {
+                    LOG.error("Uncaught exception in audio send thread {}", thread.getName(), e);
+                    if (e instanceof Error)
+                        break;
+                }
+            }
+
+            for (SharedSendSystem system : running)
+                systems.remove(system);
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                LOG.debug("Failed to close datagram channel", e);
+            }
+        }
+    }
+}
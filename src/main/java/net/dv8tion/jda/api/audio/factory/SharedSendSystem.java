@@ -0,0 +1,272 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.audio.factory;
+
+import net.dv8tion.jda.internal.audio.AudioConnection;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.MDC;
+
+import javax.annotation.CheckForNull;
+import java.net.NoRouteToHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static net.dv8tion.jda.api.audio.OpusPacket.OPUS_FRAME_TIME_AMOUNT;
+
+/**
+ * The {@link IAudioSendSystem} of a {@link SharedSendFactory}.
+ * <br>This system does not own a thread, it is driven by one of the threads of its factory.
+ *
+ * <p>Besides sending, this records the timing of every frame. The deadline of a frame is 20 milliseconds after
+ * the deadline of the previous frame, a frame which is sent more than {@link #LATE_THRESHOLD} nanoseconds after its deadline is late.
+ * The jitter is the variation of the time between two sent frames, as defined for RTP by RFC 3550.
+ */
+public class SharedSendSystem implements IAudioSendSystem
+{
+    /** Lateness in nanoseconds after which a frame is counted as late */
+    public static final long LATE_THRESHOLD = TimeUnit.MILLISECONDS.toNanos(2);
+    static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(OPUS_FRAME_TIME_AMOUNT);
+
+    private final IPacketProvider packetProvider;
+    private final SharedSendFactory factory;
+    private volatile ConcurrentMap<String, String> contextMap;
+    private volatile boolean started, shutdown;
+
+    // Only used by the thread of the factory which drives this system
+    long deadline;
+    private long lastSend;
+    private boolean sentPacket = true;
+
+    // Statistics, only written by that thread
+    private volatile long frames, sentPackets, droppedPackets, lateFrames, skippedFrames;
+    private volatile long jitterNanos, maxLatenessNanos;
+
+    SharedSendSystem(SharedSendFactory factory, IPacketProvider packetProvider)
+    {
+        this.factory = factory;
+        this.packetProvider = packetProvider;
+    }
+
+    @Override
+    public void setContextMap(@CheckForNull ConcurrentMap<String, String> contextMap)
+    {
+        this.contextMap = contextMap;
+    }
+
+    @Override
+    public void start()
+    {
+        if (started || shutdown)
+            return;
+        started = true;
+        factory.schedule(this);
+    }
+
+    @Override
+    public void shutdown()
+    {
+        shutdown = true;
+    }
+
+    /**
+     * The identifier of the audio connection of this system.
+     *
+     * @return The identifier
+     *
+     * @see    IPacketProvider#getIdentifier()
+     */
+    @NotNull
+    public String getIdentifier()
+    {
+        return packetProvider.getIdentifier();
+    }
+
+    /**
+     * Whether this system is still sending frames.
+     *
+     * @return False, if this system was shut down or the connection was closed
+     */
+    public boolean isActive()
+    {
+        return started && !shutdown && !packetProvider.getUdpSocket().isClosed();
+    }
+
+    /**
+     * The amount of frames handled by this system, including frames without audio.
+     *
+     * @return The amount of frames
+     */
+    public long getFrameCount()
+    {
+        return frames;
+    }
+
+    /**
+     * The amount of packets which have been sent.
+     *
+     * @return The amount of sent packets
+     */
+    public long getSentPacketCount()
+    {
+        return sentPackets;
+    }
+
+    /**
+     * The amount of packets which were dropped, because the send buffer of the socket was full.
+     *
+     * @return The amount of dropped packets
+     */
+    public long getDroppedPacketCount()
+    {
+        return droppedPackets;
+    }
+
+    /**
+     * The amount of frames which were sent more than {@link #LATE_THRESHOLD} after their deadline.
+     *
+     * @return The amount of late frames
+     */
+    public long getLateFrameCount()
+    {
+        return lateFrames;
+    }
+
+    /**
+     * The amount of frames which were skipped, because sending fell behind by more than 3 frames.
+     *
+     * @return The amount of skipped frames
+     */
+    public long getSkippedFrameCount()
+    {
+        return skippedFrames;
+    }
+
+    /**
+     * The smoothed variation of the time between two frames.
+     *
+     * @return The jitter in nanoseconds
+     */
+    public long getJitterNanos()
+    {
+        return jitterNanos;
+    }
+
+    /**
+     * The highest time a frame was sent after its deadline.
+     *
+     * @return The maximum lateness in nanoseconds
+     */
+    public long getMaxLatenessNanos()
+    {
+        return maxLatenessNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SharedSendSystem(" + getIdentifier() + ", frames=" + frames + ", late=" + lateFrames +
+            ", skipped=" + skippedFrames + ", jitter=" + TimeUnit.NANOSECONDS.toMicros(jitterNanos) + "us)";
+    }
+
+    void sendFrame(DatagramChannel channel, ByteBuffer sendBuffer)
+    {
+        long now = System.nanoTime();
+        long lateness = now - deadline;
+        recordTiming(now, lateness);
+        try
+        {
+            boolean changeTalking = !sentPacket || lateness > FRAME_NANOS;
+            ByteBuffer packet = packetProvider.getNextPacketRaw(changeTalking);
+            sentPacket = packet != null;
+            if (sentPacket)
+            {
+                // Heap buffers would be copied into a temporary direct buffer by the channel
+                ByteBuffer data = packet;
+                if (packet.remaining() <= sendBuffer.capacity())
+                {
+                    sendBuffer.clear();
+                    sendBuffer.put(packet);
+                    sendBuffer.flip();
+                    data = sendBuffer;
+                }
+                if (channel.send(data, packetProvider.getSocketAddress()) == 0)
+                    droppedPackets++;
+                else
+                    sentPackets++;
+            }
+        }
+        catch (NoRouteToHostException e)
+        {
+            packetProvider.onConnectionLost();
+        }
+        catch (Exception e)
+        {
+            logError(e);
+        }
+        finally
+        {
+            if (now - deadline < 3 * FRAME_NANOS)
+            {
+                deadline += FRAME_NANOS;
+            }
+            else
+            {
+                // Sending fell behind by more than 3 frames, continue from now instead of catching up
+                skippedFrames += (now - deadline) / FRAME_NANOS;
+                deadline = now + FRAME_NANOS;
+            }
+        }
+    }
+
+    private void recordTiming(long now, long lateness)
+    {
+        frames++;
+        if (lateness > LATE_THRESHOLD)
+            lateFrames++;
+        if (lateness > maxLatenessNanos)
+            maxLatenessNanos = lateness;
+        if (lastSend != 0)
+        {
+            long variation = Math.abs(now - lastSend - FRAME_NANOS);
+            jitterNanos += (variation - jitterNanos) / 16;
+        }
+        lastSend = now;
+    }
+
+    private void logError(Exception e)
+    {
+        // The thread is shared, so the context is only set while logging
+        Map<String, String> previous = MDC.getCopyOfContextMap();
+        ConcurrentMap<String, String> context = contextMap;
+        if (context != null)
+            MDC.setContextMap(context);
+        try
+        {
+            AudioConnection.LOG.error("Error while sending udp audio data", e);
+        }
+        finally
+        {
+            if (previous != null)
+                MDC.setContextMap(previous);
+            else
+                MDC.clear();
+        }
+    }
+}
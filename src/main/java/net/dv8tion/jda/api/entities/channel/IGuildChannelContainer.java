@@ -159,7 +159,6 @@ public interface IGuildChannelContainer
     @Nullable
     default GuildChannel getGuildChannelById(long id)
     {
-        //TODO-v5-unified-channel-cache
         GuildChannel channel = getTextChannelById(id);
         if (channel == null)
             channel = getNewsChannelById(id);
@@ -159,6 +159,16 @@ public interface Sticker extends StickerSnowflake
             this.extension = extension;
         }
 
+        /**
+         * The Discord defined id key for this format.
+         *
+         * @return the id key
+         */
+        public int getId()
+        {
+            return id;
+        }
+
         /**
          * The file extension used for the sticker asset.
          *
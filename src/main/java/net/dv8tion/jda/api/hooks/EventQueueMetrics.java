@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.api.hooks;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Statistics of the bounded event queue configured by an {@link EventQueuePolicy}.
+ * <br>All counters are cumulative since the creation of the JDA instance.
+ *
+ * @see net.dv8tion.jda.api.JDA#getEventQueueMetrics()
+ */
+public interface EventQueueMetrics
+{
+    /**
+     * The policy used by this queue.
+     *
+     * @return The {@link EventQueuePolicy}
+     */
+    @NotNull
+    EventQueuePolicy getPolicy();
+
+    /**
+     * The amount of events which are currently waiting for the event pool.
+     *
+     * @return The current queue size
+     */
+    int getSize();
+
+    /**
+     * The highest queue size observed so far.
+     *
+     * @return The peak queue size
+     */
+    int getPeakSize();
+
+    /**
+     * The amount of events which have been accepted into the queue.
+     *
+     * @return The amount of enqueued events
+     */
+    long getEnqueuedCount();
+
+    /**
+     * The amount of events which have been handed to the event manager.
+     *
+     * @return The amount of dispatched events
+     */
+    long getDispatchedCount();
+
+    /**
+     * The amount of events which were dropped due to {@link EventQueuePolicy.Overflow#DROP}.
+     *
+     * @return The amount of dropped events
+     */
+    long getDroppedCount();
+
+    /**
+     * The amount of events which replaced a pending event due to {@link EventQueuePolicy.Overflow#COALESCE}.
+     *
+     * @return The amount of coalesced events
+     */
+    long getCoalescedCount();
+
+    /**
+     * The amount of times a thread had to wait for space in the queue.
+     *
+     * @return The amount of blocked submissions
+     */
+    long getBlockedCount();
+
+    /**
+     * The total time in nanoseconds threads spent waiting for space in the queue.
+     *
+     * @return The total blocking time in nanoseconds
+     */
+    long getBlockedNanos();
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.api.hooks;
+
+import net.dv8tion.jda.api.events.*;
+import net.dv8tion.jda.api.events.guild.*;
+import net.dv8tion.jda.api.events.http.HttpRequestEvent;
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
+import net.dv8tion.jda.api.events.user.UserTypingEvent;
+import net.dv8tion.jda.api.events.user.update.GenericUserPresenceEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateActivitiesEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateActivityOrderEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateOnlineStatusEvent;
+import net.dv8tion.jda.internal.utils.Checks;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Configuration for the bounded event queue which sits between the gateway reading thread and the event pool.
+ * <br>This is only used when an event pool has been configured, without a pool events are handled directly on the calling thread.
+ *
+ * <p>Without a policy every event is submitted to the event pool immediately. A slow listener can then cause the
+ * pool queue to grow indefinitely, for instance during a raid. With a policy, at most {@link #getCapacity() capacity} events
+ * are pending at the same time and the {@link Overflow Overflow} strategy decides what happens to additional events.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * JDABuilder.createDefault(token)
+ *     .setEventPool(Executors.newFixedThreadPool(4))
+ *     .setEventQueuePolicy(EventQueuePolicy.coalesce(10000))
+ *     .build();
+ * }</pre>
+ *
+ * @see net.dv8tion.jda.api.JDABuilder#setEventQueuePolicy(EventQueuePolicy)
+ * @see net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder#setEventQueuePolicy(EventQueuePolicy)
+ * @see net.dv8tion.jda.api.JDA#getEventQueueMetrics()
+ */
+public final class EventQueuePolicy
+{
+    /** Priority of events which are dropped first, such as presence and typing updates */
+    public static final int PRIORITY_LOW = 0;
+    /** Priority of most events */
+    public static final int PRIORITY_NORMAL = 50;
+    /** Priority of events which should be handled quickly, such as interactions */
+    public static final int PRIORITY_HIGH = 100;
+    /** Priority of events which are never dropped. Reaching this priority will block instead. */
+    public static final int PRIORITY_CRITICAL = Integer.MAX_VALUE;
+
+    /**
+     * The default priority function used by {@link #drop(int)}.
+     * <ul>
+     *     <li>{@link #PRIORITY_CRITICAL} for lifecycle events such as {@link StatusChangeEvent} and {@link GuildReadyEvent}</li>
+     *     <li>{@link #PRIORITY_HIGH} for interactions</li>
+     *     <li>{@link #PRIORITY_LOW} for presence, typing, ping and raw events</li>
+     *     <li>{@link #PRIORITY_NORMAL} for everything else</li>
+     * </ul>
+     */
+    public static final ToIntFunction<GenericEvent> DEFAULT_PRIORITY = (event) ->
+    {
+        if (event instanceof StatusChangeEvent || event instanceof ReadyEvent || event instanceof ShutdownEvent
+                || event instanceof ResumedEvent || event instanceof ReconnectedEvent || event instanceof DisconnectEvent
+                || event instanceof ExceptionEvent)
+            return PRIORITY_CRITICAL;
+        if (event instanceof GuildReadyEvent || event instanceof GuildJoinEvent || event instanceof GuildLeaveEvent
+                || event instanceof GuildAvailableEvent || event instanceof GuildUnavailableEvent)
+            return PRIORITY_CRITICAL;
+        if (event instanceof GenericInteractionCreateEvent)
+            return PRIORITY_HIGH;
+        if (event instanceof GenericUserPresenceEvent || event instanceof UserTypingEvent || event instanceof GatewayPingEvent
+                || event instanceof RawGatewayEvent || event instanceof HttpRequestEvent)
+            return PRIORITY_LOW;
+        return PRIORITY_NORMAL;
+    };
+
+    /**
+     * The default coalescing key function used by {@link #coalesce(int)}.
+     * <br>This keeps only the latest online status and activity updates per member, the latest typing event per user and channel
+     * and the latest gateway ping. Activity start and end events are never coalesced.
+     */
+    public static final Function<GenericEvent, Object> DEFAULT_COALESCING = (event) ->
+    {
+        if (event instanceof UserUpdateOnlineStatusEvent || event instanceof UserUpdateActivitiesEvent || event instanceof UserUpdateActivityOrderEvent)
+        {
+            GenericUserPresenceEvent presence = (GenericUserPresenceEvent) event;
+            return Arrays.asList(event.getClass(), presence.getGuild().getIdLong(), presence.getMember().getIdLong());
+        }
+        if (event instanceof UserTypingEvent)
+        {
+            UserTypingEvent typing = (UserTypingEvent) event;
+            return Arrays.asList(UserTypingEvent.class, typing.getChannel().getIdLong(), typing.getUser().getIdLong());
+        }
+        if (event instanceof GatewayPingEvent)
+            return GatewayPingEvent.class;
+        return null;
+    };
+
+    private final int capacity;
+    private final Overflow overflow;
+    private final ToIntFunction<? super GenericEvent> priority;
+    private final Function<? super GenericEvent, ?> coalescing;
+
+    private EventQueuePolicy(int capacity, Overflow overflow, ToIntFunction<? super GenericEvent> priority, Function<? super GenericEvent, ?> coalescing)
+    {
+        Checks.positive(capacity, "Capacity");
+        this.capacity = capacity;
+        this.overflow = overflow;
+        this.priority = priority;
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Policy which blocks the calling thread until there is space in the queue.
+     * <br>Since events are produced by the gateway reading thread, this stops reading from the socket
+     * and applies TCP backpressure to the gateway.
+     *
+     * <p>Events which are fired from within the event pool itself are always accepted, to prevent deadlocks.
+     *
+     * @param  capacity
+     *         The maximum amount of pending events
+     *
+     * @throws IllegalArgumentException
+     *         If the capacity is not positive
+     *
+     * @return The policy
+     */
+    @NotNull
+    public static EventQueuePolicy block(int capacity)
+    {
+        return new EventQueuePolicy(capacity, Overflow.BLOCK, null, null);
+    }
+
+    /**
+     * Policy which drops events of lower priority when the queue is full.
+     * <br>This uses the {@link #DEFAULT_PRIORITY default priorities}.
+     *
+     * @param  capacity
+     *         The maximum amount of pending events
+     *
+     * @throws IllegalArgumentException
+     *         If the capacity is not positive
+     *
+     * @return The policy
+     *
+     * @see    #drop(int, ToIntFunction)
+     */
+    @NotNull
+    public static EventQueuePolicy drop(int capacity)
+    {
+        return drop(capacity, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Policy which drops events of lower priority when the queue is full.
+     * <br>When a new event arrives on a full queue, the oldest pending event with the lowest priority is dropped if its priority is
+     * lower than the one of the new event. Otherwise the new event is dropped instead.
+     * Events with {@link #PRIORITY_CRITICAL} are never dropped, the calling thread is blocked until they fit into the queue.
+     *
+     * @param  capacity
+     *         The maximum amount of pending events
+     * @param  priority
+     *         The function which decides the priority of an event, higher values are more important
+     *
+     * @throws IllegalArgumentException
+     *         If the capacity is not positive or the priority function is null
+     *
+     * @return The policy
+     */
+    @NotNull
+    public static EventQueuePolicy drop(int capacity, @NotNull ToIntFunction<? super GenericEvent> priority)
+    {
+        Checks.notNull(priority, "Priority");
+        return new EventQueuePolicy(capacity, Overflow.DROP, priority, null);
+    }
+
+    /**
+     * Policy which merges redundant pending events and blocks when the queue is full.
+     * <br>This uses the {@link #DEFAULT_COALESCING default coalescing keys}.
+     *
+     * @param  capacity
+     *         The maximum amount of pending events
+     *
+     * @throws IllegalArgumentException
+     *         If the capacity is not positive
+     *
+     * @return The policy
+     *
+     * @see    #coalesce(int, Function)
+     */
+    @NotNull
+    public static EventQueuePolicy coalesce(int capacity)
+    {
+        return coalesce(capacity, DEFAULT_COALESCING);
+    }
+
+    /**
+     * Policy which merges redundant pending events and blocks when the queue is full.
+     * <br>The key function returns an identity for events which supersede each other, or {@code null} if the event cannot be coalesced.
+     * When an event arrives while another event with an equal key is still pending, the pending event is replaced by the new one
+     * and keeps its position in the queue.
+     *
+     * <p>Note that the old values of a coalesced update event are the ones of the new event,
+     * since only the latest event is delivered.
+     *
+     * @param  capacity
+     *         The maximum amount of pending events
+     * @param  keyFunction
+     *         The function which provides the coalescing key of an event
+     *
+     * @throws IllegalArgumentException
+     *         If the capacity is not positive or the key function is null
+     *
+     * @return The policy
+     */
+    @NotNull
+    public static EventQueuePolicy coalesce(int capacity, @NotNull Function<? super GenericEvent, ?> keyFunction)
+    {
+        Checks.notNull(keyFunction, "Key Function");
+        return new EventQueuePolicy(capacity, Overflow.COALESCE, null, keyFunction);
+    }
+
+    /**
+     * The maximum amount of pending events.
+     *
+     * @return The capacity
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * The strategy used when the queue is full.
+     *
+     * @return The {@link Overflow}
+     */
+    @NotNull
+    public Overflow getOverflow()
+    {
+        return overflow;
+    }
+
+    /**
+     * The priority of the provided event, used by {@link Overflow#DROP}.
+     *
+     * @param  event
+     *         The event
+     *
+     * @return The priority, or {@link #PRIORITY_CRITICAL} if this policy does not drop events
+     */
+    public int getPriority(@NotNull GenericEvent event)
+    {
+        return priority == null ? PRIORITY_CRITICAL : priority.applyAsInt(event);
+    }
+
+    /**
+     * The coalescing key of the provided event, used by {@link Overflow#COALESCE}.
+     *
+     * @param  event
+     *         The event
+     *
+     * @return The key, or null if the event cannot be coalesced
+     */
+    public Object getCoalescingKey(@NotNull GenericEvent event)
+    {
+        return coalescing == null ? null : coalescing.apply(event);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "EventQueuePolicy(" + overflow + ", " + capacity + ")";
+    }
+
+    /**
+     * Strategies for a full event queue.
+     */
+    public enum Overflow
+    {
+        /** Block the calling thread until there is space */
+        BLOCK,
+        /** Drop the event with the lowest priority */
+        DROP,
+        /** Replace pending events with newer events of the same key, block when there is no space */
+        COALESCE
+    }
+}
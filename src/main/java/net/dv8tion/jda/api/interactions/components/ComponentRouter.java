@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.interactions.components;
+
+import net.dv8tion.jda.api.events.interaction.component.GenericComponentInteractionCreateEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Routes component interactions to handlers by their custom id.
+ * <br>Handlers registered here are looked up directly from the custom id of the interaction,
+ * instead of being tested against every event like a regular {@link net.dv8tion.jda.api.hooks.EventListener EventListener}.
+ * This is intended for a large amount of short-lived handlers, such as paginators or confirmation buttons.
+ *
+ * <p>A route is registered for a prefix, which matches custom ids that are either equal to the prefix
+ * or continue with a {@code ':'} after it. For instance, the prefix {@code "abc"} matches {@code "abc"} and {@code "abc:next"},
+ * but not {@code "abcd"}.
+ *
+ * <p>Routes are invoked on the {@link net.dv8tion.jda.api.JDA#getCallbackPool() callback pool}, so a slow handler does not
+ * block the gateway thread. The event is still fired to all event listeners, which may happen concurrently to the routes.
+ *
+ * <p>Routes are not event listeners, they are not part of {@link net.dv8tion.jda.api.JDA#getRegisteredListeners()}.
+ * However, {@link net.dv8tion.jda.api.JDA#removeEventListener(Object...)} also {@link #unregister(Object) unregisters}
+ * all routes of the provided objects. A {@link RoutedListener} passed to {@link net.dv8tion.jda.api.JDA#addEventListener(Object...)}
+ * is registered as a route, which allows the {@link net.dv8tion.jda.api.sharding.ShardManager ShardManager} to route on every shard.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * String nonce = UUID.randomUUID().toString();
+ * jda.getComponentRouter().register(nonce, 10, TimeUnit.MINUTES, (event) -> {
+ *     if (event.getComponentId().endsWith(":confirm"))
+ *         event.reply("Confirmed!").queue();
+ * });
+ * channel.sendMessage("Are you sure?")
+ *     .setActionRow(Button.danger(nonce + ":confirm", "Confirm"))
+ *     .queue();
+ * }</pre>
+ *
+ * @see net.dv8tion.jda.api.JDA#getComponentRouter()
+ */
+public interface ComponentRouter
+{
+    /**
+     * Registers a handler for the provided custom id prefix.
+     * <br>The route expires once it has not been {@link Route#refresh() refreshed} for the provided time to live.
+     * Expired routes are removed lazily, the expiration may be delayed by up to one second.
+     *
+     * @param  prefix
+     *         The custom id prefix
+     * @param  ttl
+     *         The time to live, or {@code 0} for a route which never expires
+     * @param  unit
+     *         The time unit of the ttl
+     * @param  handler
+     *         The handler, called for every matching interaction
+     *
+     * @throws IllegalArgumentException
+     *         If any of the arguments is null, the prefix is empty or the ttl is negative
+     *
+     * @return The {@link Route}, which can be used to cancel or refresh it
+     */
+    @NotNull
+    Route register(@NotNull String prefix, long ttl, @NotNull TimeUnit unit, @NotNull Consumer<? super GenericComponentInteractionCreateEvent> handler);
+
+    /**
+     * Cancels all routes which were registered with the provided handler.
+     *
+     * @param  handler
+     *         The handler used for {@link #register(String, long, TimeUnit, Consumer)}
+     *
+     * @throws IllegalArgumentException
+     *         If the handler is null
+     *
+     * @return True, if at least one route was cancelled
+     */
+    boolean unregister(@NotNull Object handler);
+
+    /**
+     * The amount of active routes.
+     *
+     * @return The amount of routes
+     */
+    int size();
+
+    /**
+     * A handler which is registered as a route when it is added as an event listener.
+     * <br>{@link net.dv8tion.jda.api.JDA#addEventListener(Object...)} registers it for its {@link #getRoutePrefix() prefix}
+     * on the router of that session, without expiration, instead of adding it to the event manager.
+     * {@link net.dv8tion.jda.api.JDA#removeEventListener(Object...)} cancels the route again.
+     *
+     * <p>Since the {@link net.dv8tion.jda.api.sharding.ShardManager ShardManager} adds its listeners to every shard,
+     * including shards which are started or restarted later, this routes the interactions of all shards.
+     */
+    interface RoutedListener extends Consumer<GenericComponentInteractionCreateEvent>
+    {
+        /**
+         * The custom id prefix of the route.
+         *
+         * @return The prefix
+         */
+        @NotNull
+        String getRoutePrefix();
+    }
+
+    /**
+     * A handler registered on a {@link ComponentRouter}.
+     */
+    interface Route
+    {
+        /**
+         * The custom id prefix of this route.
+         *
+         * @return The prefix
+         */
+        @NotNull
+        String getPrefix();
+
+        /**
+         * Whether this route is still registered.
+         *
+         * @return False, if this route has been cancelled or expired
+         */
+        boolean isActive();
+
+        /**
+         * Resets the time to live of this route, for instance after the user interacted with it.
+         */
+        void refresh();
+
+        /**
+         * Removes this route from the router.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.api.requests;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Statistics of the messages JDA sends to the gateway.
+ * <br>The gateway allows 120 messages per 60 seconds. JDA only uses 110 of them to leave a margin for latency,
+ * a few of which are reserved for heartbeats and session messages.
+ * All counters are cumulative since the creation of the JDA instance.
+ *
+ * @see net.dv8tion.jda.api.JDA#getGatewaySendMetrics()
+ */
+public interface GatewaySendMetrics
+{
+    /**
+     * The amount of queued messages which can currently be sent without hitting the rate limit.
+     *
+     * @return The available permits
+     */
+    int getAvailablePermits();
+
+    /**
+     * The amount of messages of the provided category which have been sent.
+     *
+     * @param  category
+     *         The {@link Category}
+     *
+     * @throws IllegalArgumentException
+     *         If the category is null
+     *
+     * @return The amount of sent messages
+     */
+    long getSentCount(@NotNull Category category);
+
+    /**
+     * The total time in nanoseconds messages of the provided category spent waiting to be sent.
+     * <br>Divide this by {@link #getSentCount(Category)} to get the average send latency.
+     *
+     * @param  category
+     *         The {@link Category}
+     *
+     * @throws IllegalArgumentException
+     *         If the category is null
+     *
+     * @return The total send latency in nanoseconds
+     */
+    long getTotalLatencyNanos(@NotNull Category category);
+
+    /**
+     * The highest time in nanoseconds a message of the provided category spent waiting to be sent.
+     *
+     * @param  category
+     *         The {@link Category}
+     *
+     * @throws IllegalArgumentException
+     *         If the category is null
+     *
+     * @return The maximum send latency in nanoseconds
+     */
+    long getMaxLatencyNanos(@NotNull Category category);
+
+    /**
+     * The amount of presence updates which replaced a pending presence update before it was sent.
+     *
+     * @return The amount of coalesced presence updates
+     */
+    long getCoalescedCount();
+
+    /**
+     * The amount of times a message had to wait for the rate limit.
+     *
+     * @return The amount of rate limited sends
+     */
+    long getRateLimitedCount();
+
+    /**
+     * The kinds of messages sent to the gateway.
+     * <br>Queued messages are sent in the order {@link #VOICE_STATE}, {@link #MEMBER_CHUNK_REQUEST}, {@link #OTHER} and {@link #PRESENCE},
+     * heartbeats and session messages are never queued.
+     */
+    enum Category
+    {
+        /** Heartbeats, these use the reserved permits */
+        HEARTBEAT,
+        /** Identify and resume, these use the reserved permits */
+        SESSION,
+        /** Voice state updates used to connect to or disconnect from audio channels */
+        VOICE_STATE,
+        /** Requests for member chunks */
+        MEMBER_CHUNK_REQUEST,
+        /** Presence updates, only the latest pending update is sent */
+        PRESENCE,
+        /** Any other message */
+        OTHER
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.requests;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+/**
+ * Transport used for the main gateway connection of a shard.
+ * <br>By default, JDA uses nv-websocket-client, which starts a reading and a writing thread for every shard.
+ * A transport can instead serve the connections of many shards with a few threads, see {@link NioGatewayTransport}.
+ *
+ * <p>The same transport can be used by multiple shards, it is not shut down by JDA.
+ * Voice connections are not affected by this transport.
+ *
+ * @see net.dv8tion.jda.api.JDABuilder#setGatewayTransport(GatewayTransport)
+ * @see net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder#setGatewayTransport(GatewayTransport)
+ */
+public interface GatewayTransport
+{
+    /**
+     * Opens a new WebSocket connection and blocks until the opening handshake has completed.
+     * <br>{@link Listener#onOpen(Connection)} is called before this method returns.
+     * If the handshake fails, this throws instead and the listener is not called.
+     *
+     * @param  uri
+     *         The gateway uri, using either the {@code ws} or the {@code wss} scheme
+     * @param  listener
+     *         The {@link Listener} which receives the messages of this connection
+     *
+     * @throws IOException
+     *         If the connection could not be established
+     *
+     * @return The open {@link Connection}
+     */
+    @NotNull
+    Connection connect(@NotNull URI uri, @NotNull Listener listener) throws IOException;
+
+    /**
+     * An open WebSocket connection.
+     * <br>All methods are thread-safe.
+     */
+    interface Connection
+    {
+        /**
+         * Queues a text message.
+         *
+         * @param  text
+         *         The message
+         *
+         * @return False, if the connection is already closing
+         */
+        boolean sendText(@NotNull String text);
+
+        /**
+         * Queues a binary message.
+         *
+         * @param  data
+         *         The message
+         *
+         * @return False, if the connection is already closing
+         */
+        boolean sendBinary(@NotNull byte[] data);
+
+        /**
+         * Closes the connection, if no message is received within the provided time.
+         * <br>This replaces the previous timeout, every received message restarts it.
+         *
+         * @param millis
+         *        The timeout in milliseconds, or {@code 0} to disable it
+         */
+        void setReadTimeout(int millis);
+
+        /**
+         * Starts the closing handshake.
+         * <br>The connection is dropped if the server does not respond within 10 seconds.
+         *
+         * @param code
+         *        The close code
+         * @param reason
+         *        The close reason, or null
+         */
+        void close(int code, @Nullable String reason);
+    }
+
+    /**
+     * A complete message received by a {@link Connection}.
+     * <br>The data is a view into a buffer of the transport, which is not copied for the listener.
+     */
+    interface Message
+    {
+        /**
+         * The content of the message, from its position to its limit.
+         * <br>The buffer must not be used after {@link #release()}.
+         *
+         * @return The content
+         */
+        @NotNull
+        ByteBuffer getData();
+
+        /**
+         * Whether this is a binary message.
+         *
+         * @return False, if this is UTF-8 text
+         */
+        boolean isBinary();
+
+        /**
+         * Returns the buffer of this message to the transport.
+         * <br>This can be called from any thread, calls after the first one are ignored.
+         */
+        void release();
+    }
+
+    /**
+     * Receives the messages of a {@link Connection}.
+     * <br>Calls for the same connection are never concurrent, but they might happen on a thread which serves other connections as well.
+     * Implementations should hand long blocking work off to another thread.
+     */
+    interface Listener
+    {
+        /**
+         * Called once the opening handshake has completed, before any message is received.
+         *
+         * @param connection
+         *        The connection
+         */
+        void onOpen(@NotNull Connection connection);
+
+        /**
+         * Called for every complete message.
+         * <br>The listener owns the message and has to {@link Message#release() release} it once it is done with the data,
+         * which can happen on another thread after this method returns. The transport does not reuse the buffer before that.
+         *
+         * @param message
+         *        The message
+         */
+        void onMessage(@NotNull Message message);
+
+        /**
+         * Called for errors of the connection, such as I/O errors or timeouts.
+         * <br>If the error closes the connection, this is followed by {@link #onClose(int, String, boolean)}.
+         *
+         * @param error
+         *        The error
+         */
+        void onError(@NotNull Throwable error);
+
+        /**
+         * Called once the connection is closed. No other method is called afterwards.
+         *
+         * @param code
+         *        The close code sent by the side which started the closing handshake,
+         *        or {@code 1006} if the connection was dropped without sending a close frame
+         * @param reason
+         *        The close reason, or null
+         * @param remote
+         *        Whether the server started the closing handshake
+         */
+        void onClose(int code, @Nullable String reason, boolean remote);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.requests;
+
+import net.dv8tion.jda.internal.requests.nio.NioEventLoop;
+import net.dv8tion.jda.internal.requests.nio.NioWebSocket;
+import net.dv8tion.jda.internal.utils.Checks;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * {@link GatewayTransport} which serves all of its connections with a fixed amount of selector threads.
+ * <br>Each thread handles the reads, TLS and frame parsing of its connections, and passes their messages on.
+ * Incoming frames are read into buffers which are shared by the connections of a thread, and are passed on without copying them.
+ * A buffer is reused once the listener has released the messages which use it.
+ *
+ * <p>JDA handles the events on a pool which is created once the first connection is opened.
+ * Each JDA instance has its own pool, the shards of a {@link net.dv8tion.jda.api.sharding.ShardManager ShardManager} share one,
+ * and it is shut down together with the JDA instance or the shard manager.
+ * Each shard still handles its own events in order. Proxies are not supported.
+ *
+ * <p>The threads are daemon threads, use {@link #shutdown()} once all shards using this transport are shut down.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * NioGatewayTransport transport = new NioGatewayTransport(4);
+ * ShardManager manager = DefaultShardManagerBuilder.createDefault(token)
+ *     .setShardsTotal(256)
+ *     .setGatewayTransport(transport)
+ *     .build();
+ * }</pre>
+ */
+public class NioGatewayTransport implements GatewayTransport
+{
+    private final NioEventLoop[] loops;
+    private final SSLContext sslContext;
+    private int connectTimeout = 10000;
+
+    /**
+     * Creates a transport with one thread for every two cores.
+     */
+    public NioGatewayTransport()
+    {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Creates a transport with the provided amount of threads.
+     *
+     * @param  threads
+     *         The amount of selector threads
+     *
+     * @throws IllegalArgumentException
+     *         If the amount of threads is not positive
+     */
+    public NioGatewayTransport(int threads)
+    {
+        this(threads, null);
+    }
+
+    /**
+     * Creates a transport with the provided amount of threads.
+     *
+     * @param  threads
+     *         The amount of selector threads
+     * @param  sslContext
+     *         The {@link SSLContext} used for {@code wss} connections, or null to use the default context
+     *
+     * @throws IllegalArgumentException
+     *         If the amount of threads is not positive
+     */
+    public NioGatewayTransport(int threads, @Nullable SSLContext sslContext)
+    {
+        Checks.positive(threads, "Threads");
+        try
+        {
+            this.sslContext = sslContext == null ? SSLContext.getDefault() : sslContext;
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("No default SSLContext available", e);
+        }
+
+        this.loops = new NioEventLoop[threads];
+        try
+        {
+            for (int i = 0; i < threads; i++)
+                loops[i] = new NioEventLoop("NioGatewayTransport " + (i + 1) + "/" + threads);
+        }
+        catch (IOException e)
+        {
+            shutdown();
+            throw new UncheckedIOException("Failed to open selector", e);
+        }
+    }
+
+    /**
+     * The timeout for the TCP connection, the TLS handshake and the opening handshake of a new connection.
+     *
+     * <p>Default: {@code 10000}
+     *
+     * @param  millis
+     *         The timeout in milliseconds
+     *
+     * @throws IllegalArgumentException
+     *         If the timeout is not positive
+     *
+     * @return The current NioGatewayTransport for chaining convenience
+     */
+    @NotNull
+    public NioGatewayTransport setConnectTimeout(int millis)
+    {
+        Checks.positive(millis, "Timeout");
+        this.connectTimeout = millis;
+        return this;
+    }
+
+    /**
+     * The amount of selector threads used by this transport.
+     *
+     * @return The amount of threads
+     */
+    public int getThreadCount()
+    {
+        return loops.length;
+    }
+
+    /**
+     * The amount of open connections of this transport.
+     *
+     * @return The amount of connections
+     */
+    public int getConnectionCount()
+    {
+        int count = 0;
+        for (NioEventLoop loop : loops)
+            count += loop.getConnectionCount();
+        return count;
+    }
+
+    /**
+     * Stops all threads of this transport.
+     * <br>Open connections are dropped, without a closing handshake.
+     */
+    public void shutdown()
+    {
+        for (NioEventLoop loop : loops)
+        {
+            if (loop != null)
+                loop.shutdown();
+        }
+    }
+
+    @NotNull
+    @Override
+    public Connection connect(@NotNull URI uri, @NotNull Listener listener) throws IOException
+    {
+        Checks.notNull(uri, "URI");
+        Checks.notNull(listener, "Listener");
+        NioEventLoop loop = loops[0];
+        for (NioEventLoop candidate : loops)
+        {
+            if (candidate.getConnectionCount() < loop.getConnectionCount())
+                loop = candidate;
+        }
+        if (loop.isShutdown())
+            throw new IllegalStateException("Transport is shut down");
+        return new NioWebSocket(loop, uri, sslContext, listener).connect(connectTimeout);
+    }
+}
@@ -23,6 +23,7 @@ import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.SelfUser;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.CoordinatedSessionController;
 import net.dv8tion.jda.api.utils.MiscUtil;
 import net.dv8tion.jda.api.utils.SessionController;
 import net.dv8tion.jda.api.utils.cache.ShardCacheView;
@@ -76,6 +77,11 @@ public class DefaultShardManager implements ShardManager
      */
     protected final ScheduledExecutorService executor;
 
+    /**
+     * Handles the callbacks of the gateway connections of all shards, only created if a {@link net.dv8tion.jda.api.requests.GatewayTransport GatewayTransport} is used.
+     */
+    protected ExecutorService transportPool;
+
     /**
      * The queue of shards waiting for creation.
      */
@@ -355,6 +361,15 @@ public class DefaultShardManager implements ShardManager
                     });
                     queue.clear();
                 }
+                // The coordinator connection is only used by these shards, the controller can't be used again after this
+                SessionController controller = this.sessionConfig.getSessionController();
+                if (controller instanceof CoordinatedSessionController)
+                    ((CoordinatedSessionController) controller).shutdown();
+                synchronized (this)
+                {
+                    if (this.transportPool != null)
+                        this.transportPool.shutdown();
+                }
                 this.executor.shutdown();
             });
         }
@@ -499,18 +514,26 @@ public class DefaultShardManager implements ShardManager
         ExecutorService eventPool = eventPair.executor;
         boolean shutdownEventPool = eventPair.automaticShutdown;
 
+        ExecutorPair<ExecutorService> guildSetupPair = resolveExecutor(threadingConfig.getGuildSetupPoolProvider(), shardId);
+        ExecutorService guildSetupPool = guildSetupPair.executor;
+        boolean shutdownGuildSetupPool = guildSetupPair.automaticShutdown;
+
         ExecutorPair<ScheduledExecutorService> audioPair = resolveExecutor(threadingConfig.getAudioPoolProvider(), shardId);
         ScheduledExecutorService audioPool = audioPair.executor;
         boolean shutdownAudioPool = audioPair.automaticShutdown;
 
         AuthorizationConfig authConfig = new AuthorizationConfig(token);
-        SessionConfig sessionConfig = this.sessionConfig.toSessionConfig(httpClient);
+        SessionConfig sessionConfig = this.sessionConfig.toSessionConfig(httpClient, shardId);
         ThreadingConfig threadingConfig = new ThreadingConfig();
         threadingConfig.setRateLimitPool(rateLimitPool, shutdownRateLimitPool);
         threadingConfig.setGatewayPool(gatewayPool, shutdownGatewayPool);
         threadingConfig.setCallbackPool(callbackPool, shutdownCallbackPool);
         threadingConfig.setEventPool(eventPool, shutdownEventPool);
+        threadingConfig.setEventQueuePolicy(this.threadingConfig.getEventQueuePolicy());
+        threadingConfig.setGuildSetupPool(guildSetupPool, shutdownGuildSetupPool);
         threadingConfig.setAudioPool(audioPool, shutdownAudioPool);
+        if (this.sessionConfig.getGatewayTransport() != null)
+            threadingConfig.setTransportPool(getTransportPool(), false);
         MetaConfig metaConfig = new MetaConfig(this.metaConfig.getMaxBufferSize(), this.metaConfig.getContextMap(shardId), this.metaConfig.getCacheFlags(), this.sessionConfig.getFlags());
         final JDAImpl jda = new JDAImpl(authConfig, sessionConfig, threadingConfig, metaConfig);
         jda.setMemberCachePolicy(shardingConfig.getMemberCachePolicy());
@@ -649,6 +672,19 @@ public class DefaultShardManager implements ShardManager
         return Executors.newSingleThreadScheduledExecutor(factory);
     }
 
+    /**
+     * The pool which handles the callbacks of the gateway connections of all shards.
+     * <br>It is created once the first shard is built and shut down with this shard manager.
+     *
+     * @return The transport pool
+     */
+    protected synchronized ExecutorService getTransportPool()
+    {
+        if (transportPool == null)
+            transportPool = ThreadingConfig.newTransportPool(() -> "JDA ShardManager");
+        return transportPool;
+    }
+
     protected static <E extends ExecutorService> ExecutorPair<E> resolveExecutor(ThreadPoolProvider<? extends E> provider, int shardId)
     {
         E executor = null;
@@ -21,9 +21,11 @@ import net.dv8tion.jda.api.OnlineStatus;
 import net.dv8tion.jda.api.audio.factory.IAudioSendFactory;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.events.Event;
+import net.dv8tion.jda.api.hooks.EventQueuePolicy;
 import net.dv8tion.jda.api.hooks.IEventManager;
 import net.dv8tion.jda.api.hooks.VoiceDispatchInterceptor;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.requests.GatewayTransport;
 import net.dv8tion.jda.api.requests.RestAction;
 import net.dv8tion.jda.api.utils.ChunkingFilter;
 import net.dv8tion.jda.api.utils.Compression;
@@ -31,6 +33,7 @@ import net.dv8tion.jda.api.utils.MemberCachePolicy;
 import net.dv8tion.jda.api.utils.SessionController;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
 import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.handle.EventCache;
 import net.dv8tion.jda.internal.utils.Checks;
 import net.dv8tion.jda.internal.utils.config.flags.ConfigFlag;
 import net.dv8tion.jda.internal.utils.config.flags.ShardingConfigFlag;
@@ -43,6 +46,7 @@ import javax.annotation.CheckReturnValue;
 import org.jetbrains.annotations.Nullable;
 
 import javax.security.auth.login.LoginException;
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.IntFunction;
@@ -72,6 +76,11 @@ public class  DefaultShardManagerBuilder
     protected GatewayEncoding encoding = GatewayEncoding.JSON;
     protected int shardsTotal = -1;
     protected int maxReconnectDelay = 900;
+    protected long presenceCoalescingWindow = 0; // nanoseconds
+    protected int eventCacheLimit = EventCache.DEFAULT_LIMIT;
+    protected long guildHydrationIdleTime = 0;
+    protected File sessionSnapshotDirectory = null;
+    protected File gatewayRecordingDirectory = null;
     protected int largeThreshold = 250;
     protected int maxBufferSize = 2048;
     protected int intents = -1;
@@ -85,11 +94,14 @@ public class  DefaultShardManagerBuilder
     protected ThreadPoolProvider<? extends ScheduledExecutorService> gatewayPoolProvider = null;
     protected ThreadPoolProvider<? extends ExecutorService> callbackPoolProvider = null;
     protected ThreadPoolProvider<? extends ExecutorService> eventPoolProvider = null;
+    protected EventQueuePolicy eventQueuePolicy = null;
+    protected ThreadPoolProvider<? extends ExecutorService> guildSetupPoolProvider = null;
     protected ThreadPoolProvider<? extends ScheduledExecutorService> audioPoolProvider = null;
     protected Collection<Integer> shards = null;
     protected OkHttpClient.Builder httpClientBuilder = null;
     protected OkHttpClient httpClient = null;
     protected WebSocketFactory wsFactory = null;
+    protected GatewayTransport gatewayTransport = null;
     protected IAudioSendFactory audioSendFactory = null;
     protected ThreadFactory threadFactory = null;
     protected ChunkingFilter chunkingFilter = ChunkingFilter.ALL;
@@ -987,6 +999,8 @@ public class  DefaultShardManagerBuilder
      * Changes the factory used to create {@link net.dv8tion.jda.api.audio.factory.IAudioSendSystem IAudioSendSystem}
      * objects which handle the sending loop for audio packets.
      * <br>By default, JDA uses {@link net.dv8tion.jda.api.audio.factory.DefaultSendFactory DefaultSendFactory}.
+     * For many concurrent connections, a {@link net.dv8tion.jda.api.audio.factory.SharedSendFactory SharedSendFactory}
+     * sends the audio of all connections from a few threads.
      *
      * @param  factory
      *         The new {@link net.dv8tion.jda.api.audio.factory.IAudioSendFactory IAudioSendFactory} to be used
@@ -1005,6 +1019,11 @@ public class  DefaultShardManagerBuilder
      * Sets whether or not JDA should try to reconnect if a connection-error is encountered.
      * <br>This will use an incremental reconnect (timeouts are increased each time an attempt fails).
      *
+     * <p>Voice connections are restored after a reconnect. Sessions which are sending audio are restored first.
+     * If the gateway session was invalidated, Discord has already removed us from the channel and each voice connection
+     * only needs one voice state update. Otherwise a voice reconnect still needs two, a disconnect and a connect.
+     * All of them share the gateway send limit, so restoring many voice connections still takes a while.
+     *
      * Default: <b>true (enabled)</b>
      *
      * @param  autoReconnect
@@ -1555,6 +1574,94 @@ public class  DefaultShardManagerBuilder
         return this;
     }
 
+    /**
+     * Sets the {@link EventQueuePolicy} used to bound the amount of events waiting for the event pool of each shard.
+     * <br>This has no effect unless an event pool is configured with {@link #setEventPool(ExecutorService)} or {@link #setEventPoolProvider(ThreadPoolProvider)}.
+     *
+     * <p>Without a policy, events are submitted to the event pool without any limit.
+     * A slow listener can then cause the queue of the pool to grow until the JVM runs out of memory.
+     *
+     * <p>Default: {@code null}
+     *
+     * @param  policy
+     *         The policy to use, or null to disable the bound
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @see    EventQueuePolicy#block(int)
+     * @see    EventQueuePolicy#drop(int)
+     * @see    EventQueuePolicy#coalesce(int)
+     */
+    @NotNull
+    public DefaultShardManagerBuilder setEventQueuePolicy(@Nullable EventQueuePolicy policy)
+    {
+        this.eventQueuePolicy = policy;
+        return this;
+    }
+
+    /**
+     * Sets the {@link ExecutorService ExecutorService} used to build guilds received during startup in parallel.
+     * By default all guilds are built on the gateway thread of their shard, one after another.
+     *
+     * <p>With a pool, the roles, members and presences of each guild are built in the background
+     * while the gateway thread continues reading. Guilds are still added to the cache in the order their setup completed,
+     * and events for guilds which are not cached yet are buffered until the guild is available.
+     * <br>A single {@link ForkJoinPool} can be shared by all shards.
+     * Member chunks are converted to members on this pool as well, otherwise they are converted on the gateway thread.
+     *
+     * <p>The executor will not be shutdown automatically when the shard is shutdown.
+     * To shut it down automatically use {@link #setGuildSetupPool(ExecutorService, boolean)}.
+     *
+     * <p>Default: {@code null}
+     *
+     * @param  executor
+     *         The executor used to build guilds, or null to build them on the gateway thread
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     */
+    @NotNull
+    public DefaultShardManagerBuilder setGuildSetupPool(@Nullable ExecutorService executor)
+    {
+        return setGuildSetupPool(executor, executor == null);
+    }
+
+    /**
+     * Sets the {@link ExecutorService ExecutorService} used to build guilds received during startup in parallel.
+     * By default all guilds are built on the gateway thread of their shard, one after another.
+     *
+     * @param  executor
+     *         The executor used to build guilds, or null to build them on the gateway thread
+     * @param  automaticShutdown
+     *         True, if the executor should be shutdown when JDA shuts down
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @see    #setGuildSetupPool(ExecutorService)
+     */
+    @NotNull
+    public DefaultShardManagerBuilder setGuildSetupPool(@Nullable ExecutorService executor, boolean automaticShutdown)
+    {
+        return setGuildSetupPoolProvider(executor == null ? null : new ThreadPoolProviderImpl<>(executor, automaticShutdown));
+    }
+
+    /**
+     * Sets the provider of the {@link ExecutorService ExecutorService} used to build guilds received during startup in parallel.
+     * By default all guilds are built on the gateway thread of their shard, one after another.
+     *
+     * @param  provider
+     *         The thread-pool provider to use for guild setup, or null to build guilds on the gateway thread
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @see    #setGuildSetupPool(ExecutorService)
+     */
+    @NotNull
+    public DefaultShardManagerBuilder setGuildSetupPoolProvider(@Nullable ThreadPoolProvider<? extends ExecutorService> provider)
+    {
+        this.guildSetupPoolProvider = provider;
+        return this;
+    }
+
     /**
      * Sets the {@link ScheduledExecutorService ScheduledExecutorService} used by
      * the audio WebSocket connection. Used for sending keepalives and closing the connection.
@@ -1641,6 +1748,149 @@ public class  DefaultShardManagerBuilder
         return this;
     }
 
+    /**
+     * Enables coalescing of redundant presence updates.
+     * <br>Discord frequently sends several {@code PRESENCE_UPDATE} payloads for the same member within milliseconds.
+     * With coalescing enabled, updates are buffered for the provided window and only the latest update per guild and member
+     * is handled. Events such as {@link net.dv8tion.jda.api.events.user.UserActivityStartEvent UserActivityStartEvent}
+     * are then fired for the final state only and may be delayed by up to one window.
+     * A buffered update is handled before any other event of the same member, such as a message or a member update.
+     * Events of other members in the same guild may still be fired before it.
+     *
+     * <p>This only has an effect if {@link net.dv8tion.jda.api.requests.GatewayIntent#GUILD_PRESENCES GUILD_PRESENCES}
+     * is enabled and presences are cached.
+     *
+     * <p>Default: {@code 0} (disabled)
+     *
+     * @param  window
+     *         The coalescing window, or {@code 0} to disable coalescing
+     * @param  unit
+     *         The time unit of the window
+     *
+     * @throws IllegalArgumentException
+     *         If the window is negative or the unit is null
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     */
+    @NotNull
+    public DefaultShardManagerBuilder setPresenceCoalescingWindow(long window, @NotNull TimeUnit unit)
+    {
+        Checks.notNegative(window, "Window");
+        Checks.notNull(unit, "Unit");
+        this.presenceCoalescingWindow = unit.toNanos(window);
+        return this;
+    }
+
+    /**
+     * Sets the maximum amount of gateway events which are held for entities that are not cached yet.
+     * <br>Such events are replayed once the entity is created, or discarded after the gateway sent about 100 further events.
+     * If the limit is reached, the oldest events are discarded early.
+     * A limit protects against unbounded memory use if JDA receives many events it cannot apply to its cache,
+     * but events discarded early are lost even if their entity is created later.
+     *
+     * <p>Default: No limit
+     *
+     * @param  limit
+     *         The maximum amount of cached events
+     *
+     * @throws IllegalArgumentException
+     *         If the limit is not positive
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     *
+     * @see    net.dv8tion.jda.api.JDA#getEventCacheMetrics()
+     */
+    @NotNull
+    public DefaultShardManagerBuilder setEventCacheLimit(int limit)
+    {
+        Checks.positive(limit, "Limit");
+        this.eventCacheLimit = limit;
+        return this;
+    }
+
+    /**
+     * Enables lazy hydration of guilds.
+     * <br>The emojis and stickers of a guild are only built once they are accessed or the guild receives an event
+     * which changes them. Until then, the guild keeps a compact copy of them.
+     * A guild which has not been accessed for the provided idle time, and did not receive such an event since it was built,
+     * is compacted again. Roles, members and channels are always built, use a {@link net.dv8tion.jda.api.utils.MemberCachePolicy MemberCachePolicy} to limit members.
+     *
+     * <p>This reduces the memory used by bots in many guilds, most of which are dormant.
+     * Emojis of a compact guild are still found by {@link net.dv8tion.jda.api.JDA#getEmojiById(long)}, which builds the emojis of their guild.
+     * Emoji instances obtained before a guild was compacted are no longer updated.
+     *
+     * <p>Default: {@code 0} (disabled)
+     *
+     * @param  idleTime
+     *         The time after which an unused guild is compacted again, or {@code 0} to disable lazy hydration
+     * @param  unit
+     *         The time unit of the idle time
+     *
+     * @throws IllegalArgumentException
+     *         If the idle time is negative or the unit is null
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     */
+    @NotNull
+    public DefaultShardManagerBuilder setLazyGuildHydration(long idleTime, @NotNull TimeUnit unit)
+    {
+        Checks.notNegative(idleTime, "Idle time");
+        Checks.notNull(unit, "Unit");
+        this.guildHydrationIdleTime = unit.toMillis(idleTime);
+        return this;
+    }
+
+    /**
+     * Enables session snapshots for warm restarts.
+     * <br>When the shards are shut down with {@link ShardManager#shutdown()}, the gateway session and the entity cache of each shard
+     * are written to a file in the provided directory and the connection is closed in a way that keeps the session resumable.
+     * The next start of a shard with the same directory restores the cache from the snapshot and tries to RESUME the session,
+     * instead of waiting in the identify queue and receiving every guild again.
+     *
+     * <p>Snapshots are validated with a checksum and only used once, the file is deleted when it is read.
+     * If the snapshot is missing, corrupted, was taken with different shard totals or intents, or Discord rejects the RESUME,
+     * JDA falls back to a regular IDENTIFY.
+     * <br>Voice states, presences and active threads are restored as they were at shutdown, the RESUME replays every update since.
+     * Sessions expire shortly after the disconnect,
+     * so this is only useful for quick restarts such as deployments.
+     *
+     * <p>Default: {@code null} (disabled)
+     *
+     * @param  sessionSnapshotDirectory
+     *         The snapshot directory, or null to disable snapshots
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     */
+    @NotNull
+    public DefaultShardManagerBuilder setSessionSnapshotDirectory(@Nullable File sessionSnapshotDirectory)
+    {
+        this.sessionSnapshotDirectory = sessionSnapshotDirectory;
+        return this;
+    }
+
+    /**
+     * Records every frame received from the gateway to a file per shard in the provided directory.
+     * <br>The recordings can be replayed without a connection with {@code net.dv8tion.jda.internal.requests.GatewayReplay},
+     * which is useful to reproduce cache issues and to benchmark event handling.
+     * Existing files are replaced when a shard starts.
+     *
+     * <p>Recordings contain everything your bot receives, including message content and member data,
+     * and grow quickly on larger bots. This should only be enabled for debugging.
+     *
+     * <p>Default: {@code null} (disabled)
+     *
+     * @param  gatewayRecordingDirectory
+     *         The recording directory, or null to disable recording
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     */
+    @NotNull
+    public DefaultShardManagerBuilder setGatewayRecordingDirectory(@Nullable File gatewayRecordingDirectory)
+    {
+        this.gatewayRecordingDirectory = gatewayRecordingDirectory;
+        return this;
+    }
+
     /**
      * Whether the Requester should retry when
      * a {@link java.net.SocketTimeoutException SocketTimeoutException} occurs.
@@ -1833,6 +2083,28 @@ public class  DefaultShardManagerBuilder
         return this;
     }
 
+    /**
+     * Sets the {@link net.dv8tion.jda.api.requests.GatewayTransport GatewayTransport} used for the gateway connection.
+     * <br>By default, the connection uses the {@link com.neovisionaries.ws.client.WebSocketFactory WebSocketFactory},
+     * which starts a reading and a writing thread for every shard.
+     * A {@link net.dv8tion.jda.api.requests.NioGatewayTransport NioGatewayTransport} serves the connections of many shards with a few threads instead.
+     *
+     * <p>The transport is not shut down by JDA, it can be shared with other instances.
+     *
+     * <p>Default: {@code null} (uses the WebSocketFactory)
+     *
+     * @param  transport
+     *         The transport, or null to use the WebSocketFactory
+     *
+     * @return The DefaultShardManagerBuilder instance. Useful for chaining.
+     */
+    @NotNull
+    public DefaultShardManagerBuilder setGatewayTransport(@Nullable GatewayTransport transport)
+    {
+        this.gatewayTransport = transport;
+        return this;
+    }
+
     /**
      * The {@link ChunkingFilter} to filter which guilds should use member chunking.
      *
@@ -2195,8 +2467,15 @@ public class  DefaultShardManagerBuilder
         presenceConfig.setActivityProvider(activityProvider);
         presenceConfig.setStatusProvider(statusProvider);
         presenceConfig.setIdleProvider(idleProvider);
-        final ThreadingProviderConfig threadingConfig = new ThreadingProviderConfig(rateLimitPoolProvider, gatewayPoolProvider, callbackPoolProvider, eventPoolProvider, audioPoolProvider, threadFactory);
+        final ThreadingProviderConfig threadingConfig = new ThreadingProviderConfig(rateLimitPoolProvider, gatewayPoolProvider, callbackPoolProvider, eventPoolProvider, audioPoolProvider, threadFactory, eventQueuePolicy);
+        threadingConfig.setGuildSetupPoolProvider(guildSetupPoolProvider);
         final ShardingSessionConfig sessionConfig = new ShardingSessionConfig(sessionController, voiceDispatchInterceptor, httpClient, httpClientBuilder, wsFactory, audioSendFactory, flags, shardingFlags, maxReconnectDelay, largeThreshold);
+        sessionConfig.setPresenceCoalescingWindow(presenceCoalescingWindow);
+        sessionConfig.setEventCacheLimit(eventCacheLimit);
+        sessionConfig.setGuildHydrationIdleTime(guildHydrationIdleTime);
+        sessionConfig.setSessionSnapshotDirectory(sessionSnapshotDirectory);
+        sessionConfig.setGatewayRecordingDirectory(gatewayRecordingDirectory);
+        sessionConfig.setGatewayTransport(gatewayTransport);
         final ShardingMetaConfig metaConfig = new ShardingMetaConfig(maxBufferSize, contextProvider, cacheFlags, flags, compression, encoding);
         final DefaultShardManager manager = new DefaultShardManager(this.token, this.shards, shardingConfig, eventConfig, presenceConfig, threadingConfig, sessionConfig, metaConfig, chunkingFilter);
 
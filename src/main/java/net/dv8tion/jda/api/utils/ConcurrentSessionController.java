@@ -38,7 +38,8 @@ import java.util.concurrent.TimeUnit;
  * This limit is different depending on the scale of the bot and is determined by discord. Bots who participate in
  * a larger set of guilds are eligible to login more shards at once than smaller bots. A bot in 250 guilds will only
  * be able to login 1 shard but a bot in 250K guilds can login 16 or 64 shards at once. Each bucket has a 5 second delay
- * between logins.
+ * between logins, which starts when the IDENTIFY is sent. A shard that takes a while to receive its READY therefore does not
+ * delay the next login of its bucket any further than necessary.
  *
  * <p>This implementation is rather naive. It will use one thread per bucket and use sleeps to backoff.
  * If desired, this could be done a lot more efficiently by using a scheduler.
@@ -47,19 +48,42 @@ import java.util.concurrent.TimeUnit;
  */
 public class ConcurrentSessionController extends SessionControllerAdapter implements SessionController
 {
+    private final long identifyDelay;
     private Worker[] workers = new Worker[1];
+    private int pendingConcurrency; // 0 if the current buckets are up-to-date
+
+    public ConcurrentSessionController()
+    {
+        this(SessionController.IDENTIFY_DELAY, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a controller with a custom delay between the logins of a bucket.
+     * <br>Discord requires at least {@link #IDENTIFY_DELAY} seconds, shorter delays are only useful for testing.
+     *
+     * @param  identifyDelay
+     *         The delay between two logins of the same bucket
+     * @param  unit
+     *         The time unit of the delay
+     */
+    public ConcurrentSessionController(long identifyDelay, @NotNull TimeUnit unit)
+    {
+        this.identifyDelay = unit.toNanos(identifyDelay);
+    }
 
     @Override
-    public void setConcurrency(int level)
+    public synchronized void setConcurrency(int level)
     {
         // assertions are ignored at runtime by default, this is a sanity check
         assert level > 0 && level < Integer.MAX_VALUE;
-        workers = new Worker[level];
+        pendingConcurrency = level;
+        applyConcurrency();
     }
 
     @Override
-    public void appendSession(@NotNull SessionConnectNode node)
+    public synchronized void appendSession(@NotNull SessionConnectNode node)
     {
+        // Enqueued while holding the lock, so the node can't end up in a bucket that is replaced concurrently
         getWorker(node).enqueue(node);
     }
 
@@ -69,6 +93,68 @@ public class ConcurrentSessionController extends SessionControllerAdapter implem
         getWorker(node).dequeue(node);
     }
 
+    /**
+     * Called by the worker of a bucket right before a node is started.
+     * <br>Implementations can block here to coordinate logins with other processes, the worker still respects the
+     * {@link #IDENTIFY_DELAY} of its bucket after this returns.
+     *
+     * @param  bucket
+     *         The bucket of the node, {@code shard_id % concurrency}
+     *
+     * @throws InterruptedException
+     *         If the worker was interrupted, the node is added back to the queue
+     */
+    protected void acquireIdentify(int bucket) throws InterruptedException {}
+
+    /**
+     * Called by the worker of a bucket after a node that passed {@link #acquireIdentify(int)} was run.
+     * <br>Implementations can use this to start the {@link #IDENTIFY_DELAY} of the bucket in other processes.
+     *
+     * @param  bucket
+     *         The bucket of the node, {@code shard_id % concurrency}
+     * @param  identifyStart
+     *         The {@link System#nanoTime()} at which the node sent its IDENTIFY, or the current time if it is unknown
+     */
+    protected void releaseIdentify(int bucket, long identifyStart) {}
+
+    /**
+     * Replaces the buckets once every worker is idle.
+     * <br>A running worker might still be waiting for the IDENTIFY of its current node or for the delay afterwards.
+     * Moving its bucket to another worker could start a second IDENTIFY in that bucket within the delay.
+     * An idle worker has waited for the full delay after its last IDENTIFY, so none of the new buckets can be limited.
+     */
+    private synchronized void applyConcurrency()
+    {
+        int level = pendingConcurrency;
+        if (level == 0)
+            return;
+        if (level == workers.length)
+        {
+            pendingConcurrency = 0;
+            return;
+        }
+        for (Worker worker : workers)
+        {
+            if (worker != null && worker.isRunning())
+            {
+                log.debug("Changing concurrency to {} once the running workers are idle", level);
+                return;
+            }
+        }
+        pendingConcurrency = 0;
+        Worker[] previous = workers;
+        workers = new Worker[level];
+        // Idle workers might still have nodes that were added right before they stopped
+        for (Worker worker : previous)
+        {
+            if (worker == null)
+                continue;
+            SessionConnectNode node;
+            while ((node = worker.queue.poll()) != null)
+                getWorker(node).enqueue(node);
+        }
+    }
+
     private synchronized Worker getWorker(SessionConnectNode node)
     {
         // get or create worker (synchronously since this should be thread-safe)
@@ -82,11 +168,12 @@ public class ConcurrentSessionController extends SessionControllerAdapter implem
         return worker;
     }
 
-    private static class Worker implements Runnable
+    private class Worker implements Runnable
     {
         private final Queue<SessionConnectNode> queue = new ConcurrentLinkedQueue<>();
         private final int id;
         private Thread thread;
+        private long identifyStart;
 
         public Worker(int id)
         {
@@ -110,6 +197,11 @@ public class ConcurrentSessionController extends SessionControllerAdapter implem
                 start();
         }
 
+        public synchronized boolean isRunning()
+        {
+            return thread != null;
+        }
+
         public void enqueue(SessionConnectNode node)
         {
             log.trace("Appending node to queue {}", node.getShardInfo());
@@ -130,9 +222,14 @@ public class ConcurrentSessionController extends SessionControllerAdapter implem
             {
                 while (!queue.isEmpty())
                 {
-                    processQueue();
+                    if (!processQueue())
+                        continue;
                     // We always sleep here because its possible that we get a new session request before the rate limit expires
-                    TimeUnit.SECONDS.sleep(SessionController.IDENTIFY_DELAY);
+                    // The rate limit window starts with the IDENTIFY, so the time spent waiting for READY is subtracted
+                    long elapsed = System.nanoTime() - identifyStart;
+                    long delay = identifyDelay - elapsed;
+                    if (delay > 0)
+                        TimeUnit.NANOSECONDS.sleep(delay);
                 }
             }
             catch (InterruptedException ex)
@@ -142,19 +239,35 @@ public class ConcurrentSessionController extends SessionControllerAdapter implem
             finally
             {
                 stop();
+                // Not holding the lock of this worker, the controller is always locked first
+                applyConcurrency();
             }
         }
 
-        private void processQueue() throws InterruptedException
+        private boolean processQueue() throws InterruptedException
         {
             SessionConnectNode node = null;
             try
             {
                 node = queue.remove();
+                acquireIdentify(id);
                 log.debug("Running connect node for shard {}", node.getShardInfo());
-                node.run(false); // we don't use isLast anymore because it can be a problem with many reconnecting shards
+                long start = System.nanoTime();
+                try
+                {
+                    node.run(false); // we don't use isLast anymore because it can be a problem with many reconnecting shards
+                }
+                finally
+                {
+                    identifyStart = getIdentifyStart(node, start);
+                    releaseIdentify(id, identifyStart);
+                }
+            }
+            catch (NoSuchElementException ignored)
+            {
+                // This means the node was removed before we started it
+                return false;
             }
-            catch (NoSuchElementException ignored) {/* This means the node was removed before we started it */}
             catch (InterruptedException e)
             {
                 queue.add(node);
@@ -174,6 +287,26 @@ public class ConcurrentSessionController extends SessionControllerAdapter implem
                 if (node != null)
                     queue.add(node);
             }
+            return true;
         }
     }
+
+    /**
+     * The start of the {@link #IDENTIFY_DELAY} window after running the provided node.
+     * <br>If the node did not report an IDENTIFY sent during this run, the full delay is waited from now.
+     *
+     * @param  node
+     *         The node that was run
+     * @param  start
+     *         The {@link System#nanoTime()} before the node was run
+     *
+     * @return The nano time at which the window starts
+     */
+    static long getIdentifyStart(SessionConnectNode node, long start)
+    {
+        long identify = node.getIdentifyNanos();
+        if (identify != Long.MIN_VALUE && identify - start >= 0)
+            return identify;
+        return System.nanoTime();
+    }
 }
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.utils;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.utils.Checks;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of {@link SessionController} which coordinates shards across multiple processes through a {@link SessionCoordinator}.
+ * <br>Every process of the cluster uses an instance of this controller connected to the same coordinator.
+ *
+ * <p>Before a shard is started, the bucket worker requests an identify ticket for its bucket from the coordinator,
+ * which ensures that only one shard of a bucket logs in every {@link #IDENTIFY_DELAY} seconds in the entire cluster.
+ * Once the shard sent its IDENTIFY, the ticket is released to the coordinator, which starts the delay of the bucket from that IDENTIFY.
+ * The status of every shard is reported periodically.
+ *
+ * <p>Global REST ratelimits are only broadcast. When a process hits the global ratelimit, the other processes
+ * stop their requests until it ends, but they do not coordinate their requests to avoid hitting it in the first place.
+ *
+ * <p>If the coordinator is unavailable, this falls back to the behavior of {@link ConcurrentSessionController}
+ * and tries to reconnect on the next request.
+ *
+ * <p>A {@link net.dv8tion.jda.api.sharding.DefaultShardManager DefaultShardManager} calls {@link #shutdown()}
+ * once it is shut down. When the controller is used with {@link net.dv8tion.jda.api.JDABuilder JDABuilder} instead,
+ * you have to call {@link #shutdown()} yourself after shutting down all sessions that use it.
+ *
+ * <p><b>Example</b><br>
+ * <pre>{@code
+ * DefaultShardManagerBuilder.createDefault(token)
+ *     .setShardsTotal(120)
+ *     .setShards(0, 9) // this process runs shards 0 to 9
+ *     .setSessionController(new CoordinatedSessionController(SessionCoordinator.DEFAULT_PORT))
+ *     .build();
+ * }</pre>
+ */
+public class CoordinatedSessionController extends ConcurrentSessionController
+{
+    /** The interval (in seconds) in which shard health is reported to the coordinator */
+    public static final int HEALTH_INTERVAL = 10;
+    /** The default time (in seconds) to wait for an identify ticket before starting a shard without coordination */
+    public static final int DEFAULT_TICKET_TIMEOUT = 300;
+
+    private final InetSocketAddress address;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Integer, JDA> shards = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Void>> tickets = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> leases = new ConcurrentHashMap<>();
+    private final AtomicLong nonce = new AtomicLong();
+    private Socket socket;
+    private Writer writer;
+    private volatile long ticketTimeout = TimeUnit.SECONDS.toNanos(DEFAULT_TICKET_TIMEOUT);
+    private boolean shutdown;
+
+    /**
+     * Creates a controller which connects to a coordinator on the loopback interface.
+     *
+     * @param port
+     *        The port of the coordinator
+     */
+    public CoordinatedSessionController(int port)
+    {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Creates a controller which connects to a coordinator on the provided address.
+     *
+     * @param  address
+     *         The address of the coordinator
+     *
+     * @throws IllegalArgumentException
+     *         If the address is null
+     */
+    public CoordinatedSessionController(@NotNull InetSocketAddress address)
+    {
+        Checks.notNull(address, "Address");
+        this.address = address;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor((r) ->
+        {
+            Thread thread = new Thread(r, "CoordinatedSessionController-Health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::reportHealth, HEALTH_INTERVAL, HEALTH_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void appendSession(@NotNull SessionConnectNode node)
+    {
+        shards.put(node.getShardInfo().getShardId(), node.getJDA());
+        super.appendSession(node);
+    }
+
+    @Override
+    public void setGlobalRatelimit(long ratelimit)
+    {
+        super.setGlobalRatelimit(ratelimit);
+        send(DataObject.empty().put("op", "global").put("until", ratelimit));
+    }
+
+    /**
+     * Sets how long a bucket worker waits for its identify ticket.
+     * <br>If the coordinator does not grant the ticket in time, the shard is started without coordination.
+     * Default: {@value #DEFAULT_TICKET_TIMEOUT} seconds
+     *
+     * @param  timeout
+     *         The ticket timeout
+     * @param  unit
+     *         The time unit of the timeout
+     *
+     * @throws IllegalArgumentException
+     *         If the unit is null or the timeout is not positive
+     */
+    public void setTicketTimeout(long timeout, @NotNull TimeUnit unit)
+    {
+        Checks.positive(timeout, "Ticket Timeout");
+        Checks.notNull(unit, "Unit");
+        this.ticketTimeout = unit.toNanos(timeout);
+    }
+
+    /**
+     * Disconnects from the coordinator and stops reporting shard health.
+     * <br>Shards started after this are no longer coordinated.
+     *
+     * <p>This is called automatically by {@link net.dv8tion.jda.api.sharding.DefaultShardManager#shutdown() DefaultShardManager.shutdown()}.
+     * When using {@link net.dv8tion.jda.api.JDABuilder JDABuilder}, call this after shutting down the sessions,
+     * otherwise the connection to the coordinator is kept open.
+     */
+    public synchronized void shutdown()
+    {
+        shutdown = true;
+        scheduler.shutdownNow();
+        disconnect();
+    }
+
+    @Override
+    protected void acquireIdentify(int bucket) throws InterruptedException
+    {
+        long id = nonce.incrementAndGet();
+        CompletableFuture<Void> ticket = new CompletableFuture<>();
+        tickets.put(id, ticket);
+        try
+        {
+            if (!send(DataObject.empty().put("op", "identify").put("bucket", bucket).put("nonce", id)))
+            {
+                log.warn("Session coordinator at {} is unavailable, starting shard without coordination", address);
+                return;
+            }
+            log.debug("Waiting for identify ticket of bucket {}", bucket);
+            ticket.get(ticketTimeout, TimeUnit.NANOSECONDS);
+            leases.put(bucket, id);
+        }
+        catch (ExecutionException e)
+        {
+            log.warn("Lost connection to session coordinator while waiting for identify ticket, starting shard without coordination");
+        }
+        catch (TimeoutException e)
+        {
+            log.warn("Timed out waiting for identify ticket of bucket {}, starting shard without coordination", bucket);
+            release(bucket, id, -1);
+        }
+        catch (InterruptedException e)
+        {
+            release(bucket, id, -1);
+            throw e;
+        }
+        finally
+        {
+            tickets.remove(id);
+        }
+    }
+
+    @Override
+    protected void releaseIdentify(int bucket, long identifyStart)
+    {
+        Long id = leases.remove(bucket);
+        if (id != null)
+            release(bucket, id, Math.max(0, System.nanoTime() - identifyStart));
+    }
+
+    private void release(int bucket, long id, long age)
+    {
+        send(DataObject.empty().put("op", "release").put("bucket", bucket).put("nonce", id).put("age", age));
+    }
+
+    private synchronized boolean send(DataObject message)
+    {
+        if (shutdown)
+            return false;
+        try
+        {
+            if (socket == null)
+                connect();
+            writer.write(message.toString());
+            writer.write('\n');
+            writer.flush();
+            return true;
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to send message to session coordinator", e);
+            disconnect();
+            return false;
+        }
+    }
+
+    private void connect() throws IOException
+    {
+        Socket socket = new Socket();
+        socket.connect(address, 1000);
+        this.socket = socket;
+        this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        Thread thread = new Thread(() -> read(socket), "CoordinatedSessionController-Reader");
+        thread.setDaemon(true);
+        thread.start();
+        log.debug("Connected to session coordinator at {}", address);
+    }
+
+    private synchronized void disconnect()
+    {
+        if (socket != null)
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException ignored) {}
+            socket = null;
+            writer = null;
+        }
+        IOException error = new IOException("Lost connection to session coordinator");
+        tickets.values().forEach(ticket -> ticket.completeExceptionally(error));
+    }
+
+    private void read(Socket socket)
+    {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                DataObject message = DataObject.fromJson(line);
+                switch (message.getString("op"))
+                {
+                    case "identify":
+                        CompletableFuture<Void> ticket = tickets.get(message.getLong("nonce"));
+                        if (ticket != null)
+                            ticket.complete(null);
+                        break;
+                    case "global":
+                        globalRatelimit.accumulateAndGet(message.getLong("until"), Math::max);
+                        break;
+                    default:
+                        log.debug("Ignoring unknown message from session coordinator {}", message);
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            log.debug("Lost connection to session coordinator", e);
+        }
+        synchronized (this)
+        {
+            if (this.socket == socket)
+                disconnect();
+        }
+    }
+
+    private void reportHealth()
+    {
+        if (shards.isEmpty())
+            return;
+        DataArray reports = DataArray.empty();
+        shards.forEach((shardId, api) ->
+        {
+            JDA.Status status = api.getStatus();
+            reports.add(DataObject.empty()
+                .put("shard_id", shardId)
+                .put("status", status.name())
+                .put("ping", api.getGatewayPing()));
+            if (status == JDA.Status.SHUTDOWN)
+                shards.remove(shardId);
+        });
+        send(DataObject.empty().put("op", "health").put("shards", reports));
+    }
+}
@@ -273,5 +273,17 @@ public interface SessionController
          *         If the calling thread is interrupted
          */
         void run(boolean isLast) throws InterruptedException;
+
+        /**
+         * The {@link System#nanoTime()} at which this session last sent an IDENTIFY.
+         * <br>Session controllers use this to start the {@link #IDENTIFY_DELAY} of a bucket with the actual login.
+         * Nodes which don't track this return {@link Long#MIN_VALUE}.
+         *
+         * @return The nano time of the last IDENTIFY, or {@link Long#MIN_VALUE} if unknown
+         */
+        default long getIdentifyNanos()
+        {
+            return Long.MIN_VALUE;
+        }
     }
 }
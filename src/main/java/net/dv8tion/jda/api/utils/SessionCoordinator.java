@@ -0,0 +1,556 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.utils;
+
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.utils.Checks;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Lightweight coordinator for shards which are split across multiple processes on the same host.
+ * <br>Each process uses a {@link CoordinatedSessionController} which connects to this coordinator over a local TCP socket.
+ *
+ * <p>The coordinator provides:
+ * <ul>
+ *     <li>Identify leases per concurrency bucket, only one shard of a bucket is started every {@link SessionController#IDENTIFY_DELAY} seconds across all processes</li>
+ *     <li>A global REST ratelimit lease, which is shared with every process once any of them hits the global ratelimit</li>
+ *     <li>Health reports of all shards, see {@link #getShardHealth()}</li>
+ * </ul>
+ *
+ * <p>The coordinator can be embedded in one of the processes or started as a separate process with {@link #main(String[])}:
+ * <pre>{@code java -cp JDA.jar net.dv8tion.jda.api.utils.SessionCoordinator 4500}</pre>
+ *
+ * <p>The protocol uses one JSON object per line. Clients send {@code identify}, {@code release}, {@code global} and {@code health} messages,
+ * the coordinator responds to {@code identify} with the same nonce once the lease is granted and broadcasts {@code global} updates.
+ *
+ * <p>A granted lease holds its bucket until the client sends {@code release} with the time that has passed since the IDENTIFY,
+ * the next lease of the bucket is granted {@link SessionController#IDENTIFY_DELAY} seconds after that IDENTIFY.
+ * Leases which are not released within the {@link #setLeaseTimeout(long, TimeUnit) lease timeout}, or whose client disconnects,
+ * expire and the next lease is granted a full delay later.
+ */
+public class SessionCoordinator implements Closeable
+{
+    public static final Logger LOG = JDALogger.getLog(SessionCoordinator.class);
+    /** The default port used by the coordinator and {@link CoordinatedSessionController} */
+    public static final int DEFAULT_PORT = 4500;
+    /** The default time (in seconds) after which an identify lease that was not released expires */
+    public static final int DEFAULT_LEASE_TIMEOUT = 30;
+
+    private final ServerSocket server;
+    private final long identifyDelay;
+    private final ScheduledExecutorService scheduler;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, ShardHealth> health = new ConcurrentHashMap<>();
+    private final Map<Integer, Bucket> buckets = new HashMap<>();
+    private volatile long leaseTimeout = TimeUnit.SECONDS.toNanos(DEFAULT_LEASE_TIMEOUT);
+    private long globalRatelimit = Long.MIN_VALUE;
+    private Thread acceptThread;
+
+    /**
+     * Creates a coordinator which listens on the loopback interface.
+     *
+     * @param  port
+     *         The port, or 0 to pick a free port
+     *
+     * @throws IOException
+     *         If the port could not be bound
+     */
+    public SessionCoordinator(int port) throws IOException
+    {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), SessionController.IDENTIFY_DELAY, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a coordinator which listens on the provided address.
+     *
+     * @param  address
+     *         The address to bind
+     * @param  identifyDelay
+     *         The delay between two identifies of the same bucket
+     * @param  unit
+     *         The time unit of the delay
+     *
+     * @throws IllegalArgumentException
+     *         If null is provided or the delay is negative
+     * @throws IOException
+     *         If the address could not be bound
+     */
+    public SessionCoordinator(@NotNull InetSocketAddress address, long identifyDelay, @NotNull TimeUnit unit) throws IOException
+    {
+        Checks.notNull(address, "Address");
+        Checks.notNegative(identifyDelay, "Identify Delay");
+        Checks.notNull(unit, "Unit");
+        this.identifyDelay = unit.toNanos(identifyDelay);
+        this.server = new ServerSocket();
+        this.server.bind(address);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor((r) ->
+        {
+            Thread thread = new Thread(r, "SessionCoordinator-Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the coordinator in this process.
+     *
+     * @param  args
+     *         The port to listen on, defaults to {@value #DEFAULT_PORT}
+     *
+     * @throws IOException
+     *         If the port could not be bound
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        SessionCoordinator coordinator = new SessionCoordinator(port);
+        coordinator.start();
+        LOG.info("Session coordinator listening on port {}", coordinator.getPort());
+    }
+
+    /**
+     * Starts accepting clients.
+     *
+     * @return This coordinator
+     */
+    @NotNull
+    public synchronized SessionCoordinator start()
+    {
+        if (acceptThread == null)
+        {
+            acceptThread = new Thread(this::acceptClients, "SessionCoordinator-Acceptor");
+            acceptThread.start();
+        }
+        return this;
+    }
+
+    /**
+     * Sets the time after which an identify lease expires if the client did not release it.
+     * <br>Default: {@value #DEFAULT_LEASE_TIMEOUT} seconds
+     *
+     * @param  timeout
+     *         The lease timeout
+     * @param  unit
+     *         The time unit of the timeout
+     *
+     * @throws IllegalArgumentException
+     *         If the unit is null or the timeout is not positive
+     *
+     * @return This coordinator
+     */
+    @NotNull
+    public SessionCoordinator setLeaseTimeout(long timeout, @NotNull TimeUnit unit)
+    {
+        Checks.positive(timeout, "Lease Timeout");
+        Checks.notNull(unit, "Unit");
+        this.leaseTimeout = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * The local port of this coordinator.
+     *
+     * @return The port
+     */
+    public int getPort()
+    {
+        return server.getLocalPort();
+    }
+
+    /**
+     * The latest health report of every shard of the connected processes.
+     * <br>Shards of disconnected processes are removed.
+     *
+     * @return Immutable map from shard id to {@link ShardHealth}
+     */
+    @NotNull
+    public Map<Integer, ShardHealth> getShardHealth()
+    {
+        return Collections.unmodifiableMap(new TreeMap<>(health));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        server.close();
+        scheduler.shutdownNow();
+        for (Connection connection : connections)
+            connection.close();
+    }
+
+    private void acceptClients()
+    {
+        while (!server.isClosed())
+        {
+            try
+            {
+                Socket socket = server.accept();
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                connection.start();
+            }
+            catch (IOException e)
+            {
+                if (!server.isClosed())
+                    LOG.error("Failed to accept client", e);
+            }
+        }
+    }
+
+    private void handle(Connection connection, DataObject message)
+    {
+        switch (message.getString("op"))
+        {
+            case "identify":
+                requestIdentify(connection, message.getInt("bucket"), message.getLong("nonce"));
+                break;
+            case "release":
+                releaseIdentify(connection, message.getInt("bucket"), message.getLong("nonce"), message.getLong("age", -1));
+                break;
+            case "global":
+                updateGlobalRatelimit(message.getLong("until"));
+                break;
+            case "health":
+                DataArray shards = message.getArray("shards");
+                for (int i = 0; i < shards.length(); i++)
+                {
+                    DataObject shard = shards.getObject(i);
+                    int shardId = shard.getInt("shard_id");
+                    connection.shards.add(shardId);
+                    health.put(shardId, new ShardHealth(shardId, shard.getString("status"), shard.getLong("ping"), System.currentTimeMillis()));
+                }
+                break;
+            default:
+                LOG.debug("Ignoring unknown message {}", message);
+        }
+    }
+
+    private void requestIdentify(Connection connection, int bucket, long nonce)
+    {
+        synchronized (buckets)
+        {
+            Bucket handle = buckets.computeIfAbsent(bucket, Bucket::new);
+            handle.queue.add(new Lease(connection, nonce));
+            handle.update();
+        }
+    }
+
+    private void releaseIdentify(Connection connection, int bucket, long nonce, long age)
+    {
+        synchronized (buckets)
+        {
+            Bucket handle = buckets.get(bucket);
+            if (handle == null)
+                return;
+            if (handle.lease != null && handle.lease.is(connection, nonce))
+            {
+                // The window starts with the IDENTIFY of the shard, or now if the client does not know when it was sent
+                long now = System.nanoTime();
+                handle.release(age >= 0 ? now - age + identifyDelay : now + identifyDelay);
+            }
+            else
+            {
+                // The client gave up on a lease that was not granted yet
+                handle.queue.removeIf(lease -> lease.is(connection, nonce));
+            }
+        }
+    }
+
+    private void releaseIdentifies(Connection connection)
+    {
+        synchronized (buckets)
+        {
+            for (Bucket handle : buckets.values())
+            {
+                handle.queue.removeIf(lease -> lease.connection == connection);
+                if (handle.lease != null && handle.lease.connection == connection)
+                    handle.release(System.nanoTime() + identifyDelay);
+            }
+        }
+    }
+
+    private void updateGlobalRatelimit(long until)
+    {
+        synchronized (this)
+        {
+            if (until <= globalRatelimit)
+                return;
+            globalRatelimit = until;
+        }
+        DataObject update = DataObject.empty().put("op", "global").put("until", until);
+        for (Connection connection : connections)
+            connection.send(update);
+    }
+
+    private synchronized long getGlobalRatelimit()
+    {
+        return globalRatelimit;
+    }
+
+    private class Connection implements Runnable
+    {
+        private final Socket socket;
+        private final Writer writer;
+        private final Set<Integer> shards = ConcurrentHashMap.newKeySet();
+
+        private Connection(Socket socket) throws IOException
+        {
+            this.socket = socket;
+            this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        private void start()
+        {
+            Thread thread = new Thread(this, "SessionCoordinator-Client " + socket.getRemoteSocketAddress());
+            thread.setDaemon(true);
+            thread.start();
+            send(DataObject.empty().put("op", "global").put("until", getGlobalRatelimit()));
+        }
+
+        private synchronized void send(DataObject message)
+        {
+            try
+            {
+                writer.write(message.toString());
+                writer.write('\n');
+                writer.flush();
+            }
+            catch (IOException e)
+            {
+                LOG.debug("Failed to send message to client {}", socket.getRemoteSocketAddress(), e);
+                close();
+            }
+        }
+
+        private void close()
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException ignored) {}
+        }
+
+        @Override
+        public void run()
+        {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    try
+                    {
+                        handle(this, DataObject.fromJson(line));
+                    }
+                    catch (Exception e)
+                    {
+                        LOG.error("Failed to handle message from client {}", socket.getRemoteSocketAddress(), e);
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                LOG.debug("Lost connection to client {}", socket.getRemoteSocketAddress(), e);
+            }
+            finally
+            {
+                connections.remove(this);
+                close();
+                releaseIdentifies(this);
+                if (!shards.isEmpty())
+                    LOG.warn("Client {} with shards {} disconnected", socket.getRemoteSocketAddress(), new TreeSet<>(shards));
+                shards.forEach(health::remove);
+            }
+        }
+    }
+
+    private static class Lease
+    {
+        private final Connection connection;
+        private final long nonce;
+
+        private Lease(Connection connection, long nonce)
+        {
+            this.connection = connection;
+            this.nonce = nonce;
+        }
+
+        private boolean is(Connection connection, long nonce)
+        {
+            return this.connection == connection && this.nonce == nonce;
+        }
+    }
+
+    // Guarded by the buckets map
+    private class Bucket
+    {
+        private final int id;
+        private final Queue<Lease> queue = new ArrayDeque<>();
+        private long next = System.nanoTime();
+        private Lease lease;
+        private ScheduledFuture<?> task;
+
+        private Bucket(int id)
+        {
+            this.id = id;
+        }
+
+        private void update()
+        {
+            if (lease != null || task != null || queue.isEmpty())
+                return;
+            long delay = next - System.nanoTime();
+            if (delay > 0)
+            {
+                LOG.debug("Granting identify for bucket {} in {} ms", id, TimeUnit.NANOSECONDS.toMillis(delay));
+                task = schedule(() ->
+                {
+                    task = null;
+                    update();
+                }, delay);
+                return;
+            }
+
+            Lease granted = lease = queue.remove();
+            LOG.debug("Granting identify for bucket {}", id);
+            task = schedule(() -> expire(granted), leaseTimeout);
+            DataObject ticket = DataObject.empty().put("op", "identify").put("nonce", granted.nonce);
+            try
+            {
+                scheduler.execute(() -> granted.connection.send(ticket));
+            }
+            catch (RejectedExecutionException ignored) {}
+        }
+
+        private void expire(Lease expired)
+        {
+            if (lease != expired)
+                return;
+            LOG.warn("Identify lease of bucket {} for client {} expired", id, expired.connection.socket.getRemoteSocketAddress());
+            task = null;
+            release(System.nanoTime() + identifyDelay);
+        }
+
+        private void release(long next)
+        {
+            if (task != null)
+                task.cancel(false);
+            task = null;
+            lease = null;
+            this.next = next;
+            update();
+        }
+
+        private ScheduledFuture<?> schedule(Runnable runnable, long delay)
+        {
+            try
+            {
+                return scheduler.schedule(() ->
+                {
+                    synchronized (buckets)
+                    {
+                        runnable.run();
+                    }
+                }, delay, TimeUnit.NANOSECONDS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // The coordinator was closed
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Latest health report of a shard.
+     */
+    public static class ShardHealth
+    {
+        private final int shardId;
+        private final String status;
+        private final long gatewayPing;
+        private final long timeReported;
+
+        public ShardHealth(int shardId, @NotNull String status, long gatewayPing, long timeReported)
+        {
+            this.shardId = shardId;
+            this.status = status;
+            this.gatewayPing = gatewayPing;
+            this.timeReported = timeReported;
+        }
+
+        /**
+         * The shard id.
+         *
+         * @return The shard id
+         */
+        public int getShardId()
+        {
+            return shardId;
+        }
+
+        /**
+         * The name of the {@link net.dv8tion.jda.api.JDA.Status JDA.Status} of the shard.
+         *
+         * @return The status
+         */
+        @NotNull
+        public String getStatus()
+        {
+            return status;
+        }
+
+        /**
+         * The gateway ping of the shard in milliseconds, or {@code -1} if not yet known.
+         *
+         * @return The gateway ping
+         */
+        public long getGatewayPing()
+        {
+            return gatewayPing;
+        }
+
+        /**
+         * The epoch milliseconds of this report.
+         *
+         * @return The time of the report
+         */
+        public long getTimeReported()
+        {
+            return timeReported;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "ShardHealth(" + shardId + ", " + status + ", " + gatewayPing + "ms)";
+        }
+    }
+}
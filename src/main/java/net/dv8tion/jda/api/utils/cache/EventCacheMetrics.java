@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.api.utils.cache;
+
+/**
+ * Statistics of the cache which holds gateway events for entities JDA has not cached yet.
+ * <br>Such events are replayed once the entity is created, or expire after the gateway sent 100 further events.
+ * All counters are cumulative since the creation of the JDA instance.
+ *
+ * @see net.dv8tion.jda.api.JDA#getEventCacheMetrics()
+ */
+public interface EventCacheMetrics
+{
+    /**
+     * The maximum amount of events which can be held at once.
+     * <br>Once this limit is reached, the oldest events are evicted.
+     *
+     * @return The limit, {@link Integer#MAX_VALUE} if the cache is unbounded
+     *
+     * @see    net.dv8tion.jda.api.JDABuilder#setEventCacheLimit(int)
+     */
+    int getLimit();
+
+    /**
+     * The amount of events which are currently waiting for their entity.
+     *
+     * @return The current size
+     */
+    int getSize();
+
+    /**
+     * The amount of events which have been added to the cache.
+     *
+     * @return The amount of cached events
+     */
+    long getCachedCount();
+
+    /**
+     * The amount of events which have been handled again after their entity was created.
+     *
+     * @return The amount of replayed events
+     */
+    long getReplayedCount();
+
+    /**
+     * The amount of events which were removed because their entity was not created in time.
+     *
+     * @return The amount of expired events
+     */
+    long getExpiredCount();
+
+    /**
+     * The amount of events which were removed because the cache reached its {@link #getLimit() limit}.
+     *
+     * @return The amount of evicted events
+     */
+    long getEvictedCount();
+}
@@ -36,14 +36,18 @@ import net.dv8tion.jda.api.events.StatusChangeEvent;
 import net.dv8tion.jda.api.exceptions.AccountTypeException;
 import net.dv8tion.jda.api.exceptions.ParsingException;
 import net.dv8tion.jda.api.exceptions.RateLimitedException;
+import net.dv8tion.jda.api.hooks.EventQueueMetrics;
 import net.dv8tion.jda.api.hooks.IEventManager;
 import net.dv8tion.jda.api.hooks.InterfacedEventManager;
 import net.dv8tion.jda.api.hooks.VoiceDispatchInterceptor;
 import net.dv8tion.jda.api.interactions.commands.Command;
 import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.interactions.components.ComponentRouter;
 import net.dv8tion.jda.api.managers.AudioManager;
 import net.dv8tion.jda.api.managers.Presence;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.requests.GatewaySendMetrics;
+import net.dv8tion.jda.api.requests.GatewayTransport;
 import net.dv8tion.jda.api.requests.Request;
 import net.dv8tion.jda.api.requests.Response;
 import net.dv8tion.jda.api.requests.RestAction;
@@ -55,16 +59,20 @@ import net.dv8tion.jda.api.sharding.ShardManager;
 import net.dv8tion.jda.api.utils.*;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
 import net.dv8tion.jda.api.utils.cache.CacheView;
+import net.dv8tion.jda.api.utils.cache.EventCacheMetrics;
 import net.dv8tion.jda.api.utils.cache.SnowflakeCacheView;
 import net.dv8tion.jda.api.utils.data.DataArray;
 import net.dv8tion.jda.api.utils.data.DataObject;
 import net.dv8tion.jda.internal.entities.EntityBuilder;
+import net.dv8tion.jda.internal.entities.GuildImpl;
 import net.dv8tion.jda.internal.entities.UserImpl;
 import net.dv8tion.jda.internal.handle.EventCache;
+import net.dv8tion.jda.internal.handle.GuildHydrationController;
 import net.dv8tion.jda.internal.handle.GuildSetupController;
 import net.dv8tion.jda.internal.hooks.EventManagerProxy;
 import net.dv8tion.jda.internal.interactions.CommandDataImpl;
 import net.dv8tion.jda.internal.interactions.command.CommandImpl;
+import net.dv8tion.jda.internal.interactions.component.ComponentRouterImpl;
 import net.dv8tion.jda.internal.managers.AudioManagerImpl;
 import net.dv8tion.jda.internal.managers.DirectAudioControllerImpl;
 import net.dv8tion.jda.internal.managers.PresenceImpl;
@@ -78,6 +86,8 @@ import net.dv8tion.jda.internal.utils.Helpers;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import net.dv8tion.jda.internal.utils.UnlockHook;
 import net.dv8tion.jda.internal.utils.cache.AbstractCacheView;
+import net.dv8tion.jda.internal.utils.cache.ChannelCacheViewImpl;
+import net.dv8tion.jda.internal.utils.cache.EmojiCacheViewImpl;
 import net.dv8tion.jda.internal.utils.cache.SnowflakeCacheViewImpl;
 import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
 import net.dv8tion.jda.internal.utils.config.MetaConfig;
@@ -85,15 +95,18 @@ import net.dv8tion.jda.internal.utils.config.SessionConfig;
 import net.dv8tion.jda.internal.utils.config.ThreadingConfig;
 import okhttp3.OkHttpClient;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.MDC;
 
 import javax.security.auth.login.LoginException;
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class JDAImpl implements JDA
@@ -102,13 +115,18 @@ public class JDAImpl implements JDA
 
     protected final SnowflakeCacheViewImpl<User> userCache = new SnowflakeCacheViewImpl<>(User.class, User::getName);
     protected final SnowflakeCacheViewImpl<Guild> guildCache = new SnowflakeCacheViewImpl<>(Guild.class, Guild::getName);
-    protected final SnowflakeCacheViewImpl<Category> categories = new SnowflakeCacheViewImpl<>(Category.class, Channel::getName);
-    protected final SnowflakeCacheViewImpl<TextChannel> textChannelCache = new SnowflakeCacheViewImpl<>(TextChannel.class, Channel::getName);
-    protected final SnowflakeCacheViewImpl<NewsChannel> newsChannelCache = new SnowflakeCacheViewImpl<>(NewsChannel.class, Channel::getName);
-    protected final SnowflakeCacheViewImpl<VoiceChannel> voiceChannelCache = new SnowflakeCacheViewImpl<>(VoiceChannel.class, Channel::getName);
-    protected final SnowflakeCacheViewImpl<StageChannel> stageChannelCache = new SnowflakeCacheViewImpl<>(StageChannel.class, Channel::getName);
-    protected final SnowflakeCacheViewImpl<ThreadChannel> threadChannelsCache = new SnowflakeCacheViewImpl<>(ThreadChannel.class, Channel::getName);
+    // Every guild channel by id, the typed caches below are filtered views of this index
+    protected final ChannelCacheViewImpl channelCache = new ChannelCacheViewImpl();
+    protected final SnowflakeCacheViewImpl<Category> categories = channelCache.createView(Category.class);
+    protected final SnowflakeCacheViewImpl<TextChannel> textChannelCache = channelCache.createView(TextChannel.class);
+    protected final SnowflakeCacheViewImpl<NewsChannel> newsChannelCache = channelCache.createView(NewsChannel.class);
+    protected final SnowflakeCacheViewImpl<VoiceChannel> voiceChannelCache = channelCache.createView(VoiceChannel.class);
+    protected final SnowflakeCacheViewImpl<StageChannel> stageChannelCache = channelCache.createView(StageChannel.class);
+    protected final SnowflakeCacheViewImpl<ThreadChannel> threadChannelsCache = channelCache.createView(ThreadChannel.class);
     protected final SnowflakeCacheViewImpl<PrivateChannel> privateChannelCache = new SnowflakeCacheViewImpl<>(PrivateChannel.class, Channel::getName);
+    // Indexes of the role and emoji caches of all guilds, maintained next to the caches of the guilds
+    protected final SnowflakeCacheViewImpl<Role> roleCache = new SnowflakeCacheViewImpl<>(Role.class, Role::getName);
+    protected final SnowflakeCacheViewImpl<RichCustomEmoji> emojiCache = new SnowflakeCacheViewImpl<>(RichCustomEmoji.class, RichCustomEmoji::getName);
     protected final LinkedList<Long> privateChannelLRU = new LinkedList<>();
 
     protected final AbstractCacheView<AudioManager> audioManagers = new CacheView.SimpleCacheView<>(AudioManager.class, m -> m.getGuild().getName());
@@ -117,7 +135,10 @@ public class JDAImpl implements JDA
     protected final Thread shutdownHook;
     protected final EntityBuilder entityBuilder = new EntityBuilder(this);
     protected final EventCache eventCache;
+    protected final GuildHydrationController guildHydrationController;
+    protected final SnowflakeCacheView<RichCustomEmoji> emojiCacheView;
     protected final EventManagerProxy eventManager;
+    protected final ComponentRouterImpl componentRouter = new ComponentRouterImpl((task) -> getCallbackPool().execute(task));
 
     protected final GuildSetupController guildSetupController;
     protected final DirectAudioControllerImpl audioController;
@@ -161,8 +182,11 @@ public class JDAImpl implements JDA
         this.requester.setRetryOnTimeout(this.sessionConfig.isRetryOnTimeout());
         this.guildSetupController = new GuildSetupController(this);
         this.audioController = new DirectAudioControllerImpl(this);
-        this.eventCache = new EventCache();
-        this.eventManager = new EventManagerProxy(new InterfacedEventManager(), this.threadConfig.getEventPool());
+        this.eventCache = new EventCache(this.sessionConfig.getEventCacheLimit());
+        long hydrationIdleTime = this.sessionConfig.getGuildHydrationIdleTime();
+        this.guildHydrationController = hydrationIdleTime > 0 ? new GuildHydrationController(this, hydrationIdleTime, TimeUnit.MILLISECONDS) : null;
+        this.emojiCacheView = guildHydrationController != null ? new EmojiCacheViewImpl(this, emojiCache, guildHydrationController) : emojiCache;
+        this.eventManager = new EventManagerProxy(new InterfacedEventManager(), this.threadConfig.getEventPool(), this.threadConfig.getEventQueuePolicy());
     }
 
     public void handleEvent(@NotNull GenericEvent event)
@@ -224,6 +248,11 @@ public class JDAImpl implements JDA
         this.chunkingFilter = filter;
     }
 
+    public ChunkingFilter getChunkingFilter()
+    {
+        return chunkingFilter;
+    }
+
     public boolean cacheMember(Member member)
     {
         try
@@ -327,6 +356,15 @@ public class JDAImpl implements JDA
         return shardInfo == null ? -1 : shardInfo.getShardTotal();
     }
 
+    public WebSocketClient initReplay(ShardInfo shardInfo, int intents)
+    {
+        // Same setup as login, but the client never connects
+        this.shardInfo = shardInfo;
+        threadConfig.init(this::getIdentifierString);
+        client = new WebSocketClient(this, Compression.NONE, intents, GatewayEncoding.JSON, false);
+        return client;
+    }
+
     public String getGateway()
     {
         return getSessionController().getGateway();
@@ -525,6 +563,12 @@ public class JDAImpl implements JDA
         return threadConfig.getCallbackPool();
     }
 
+    @Nullable
+    public ExecutorService getGuildSetupPool()
+    {
+        return threadConfig.getGuildSetupPool();
+    }
+
     @NotNull
     @Override
     @SuppressWarnings("ConstantConditions") // this can't really happen unless you pass bad configs
@@ -611,14 +655,36 @@ public class JDAImpl implements JDA
     @Override
     public SnowflakeCacheView<Role> getRoleCache()
     {
-        return CacheView.allSnowflakes(() -> guildCache.stream().map(Guild::getRoleCache));
+        return roleCache;
     }
 
     @NotNull
     @Override
     public SnowflakeCacheView<RichCustomEmoji> getEmojiCache()
     {
-        return CacheView.allSnowflakes(() -> guildCache.stream().map(Guild::getEmojiCache));
+        // Emojis of compact guilds are only indexed once their guild is hydrated
+        return emojiCacheView;
+    }
+
+    @Nullable
+    @Override
+    public RichCustomEmoji getEmojiById(@NotNull String id)
+    {
+        return getEmojiById(MiscUtil.parseSnowflake(id));
+    }
+
+    @Nullable
+    @Override
+    public RichCustomEmoji getEmojiById(long id)
+    {
+        RichCustomEmoji emoji = emojiCache.get(id);
+        if (guildHydrationController == null)
+            return emoji;
+        if (emoji == null && guildHydrationController.hydrateDormantEmoji(id))
+            emoji = emojiCache.get(id);
+        else if (emoji != null)
+            ((GuildImpl) emoji.getGuild()).hydrate(); // keeps the guild from being compacted while its emojis are used
+        return emoji;
     }
 
     @NotNull
@@ -701,6 +767,13 @@ public class JDAImpl implements JDA
         return threadChannelsCache;
     }
 
+    @Nullable
+    @Override
+    public GuildChannel getGuildChannelById(long id)
+    {
+        return channelCache.get(id);
+    }
+
     @NotNull
     @Override
     public SnowflakeCacheView<PrivateChannel> getPrivateChannelCache()
@@ -840,6 +913,21 @@ public class JDAImpl implements JDA
         return sessionConfig.getMaxReconnectDelay();
     }
 
+    public long getPresenceCoalescingWindow()
+    {
+        return sessionConfig.getPresenceCoalescingWindow();
+    }
+
+    public File getSessionSnapshotFile()
+    {
+        return sessionConfig.getSessionSnapshotFile();
+    }
+
+    public File getGatewayRecordingFile()
+    {
+        return sessionConfig.getGatewayRecordingFile();
+    }
+
     @NotNull
     @Override
     public ShardInfo getShardInfo()
@@ -861,6 +949,33 @@ public class JDAImpl implements JDA
         return eventManager.getSubject();
     }
 
+    @Override
+    public EventQueueMetrics getEventQueueMetrics()
+    {
+        return eventManager.getQueue();
+    }
+
+    @NotNull
+    @Override
+    public GatewaySendMetrics getGatewaySendMetrics()
+    {
+        return client.getRateLimiter();
+    }
+
+    @NotNull
+    @Override
+    public EventCacheMetrics getEventCacheMetrics()
+    {
+        return eventCache;
+    }
+
+    @NotNull
+    @Override
+    public ComponentRouterImpl getComponentRouter()
+    {
+        return componentRouter;
+    }
+
     @NotNull
     @Override
     public AccountType getAccountType()
@@ -880,7 +995,17 @@ public class JDAImpl implements JDA
         Checks.noneNull(listeners, "listeners");
 
         for (Object listener: listeners)
-            eventManager.register(listener);
+        {
+            if (listener instanceof ComponentRouter.RoutedListener)
+            {
+                ComponentRouter.RoutedListener routed = (ComponentRouter.RoutedListener) listener;
+                componentRouter.register(routed.getRoutePrefix(), 0, TimeUnit.SECONDS, routed);
+            }
+            else
+            {
+                eventManager.register(listener);
+            }
+        }
     }
 
     @Override
@@ -889,7 +1014,10 @@ public class JDAImpl implements JDA
         Checks.noneNull(listeners, "listeners");
 
         for (Object listener: listeners)
+        {
             eventManager.unregister(listener);
+            componentRouter.unregister(listener);
+        }
     }
 
     @NotNull
@@ -1113,6 +1241,12 @@ public class JDAImpl implements JDA
         return sessionConfig.getWebSocketFactory();
     }
 
+    @Nullable
+    public GatewayTransport getGatewayTransport()
+    {
+        return sessionConfig.getGatewayTransport();
+    }
+
     public WebSocketClient getClient()
     {
         return client;
@@ -1163,6 +1297,21 @@ public class JDAImpl implements JDA
         return privateChannelCache;
     }
 
+    public ChannelCacheViewImpl getGuildChannelsView()
+    {
+        return channelCache;
+    }
+
+    public SnowflakeCacheViewImpl<Role> getRolesView()
+    {
+        return roleCache;
+    }
+
+    public SnowflakeCacheViewImpl<RichCustomEmoji> getEmojisView()
+    {
+        return emojiCache;
+    }
+
     public AbstractCacheView<AudioManager> getAudioManagersView()
     {
         return audioManagers;
@@ -1195,6 +1344,12 @@ public class JDAImpl implements JDA
         return eventCache;
     }
 
+    @Nullable
+    public GuildHydrationController getGuildHydrationController()
+    {
+        return guildHydrationController;
+    }
+
     public String getGatewayUrl()
     {
         if (gatewayUrl == null)
@@ -1211,4 +1366,9 @@ public class JDAImpl implements JDA
     {
         return threadConfig.getAudioPool(this::getIdentifierString);
     }
+
+    public ExecutorService getTransportPool()
+    {
+        return threadConfig.getTransportPool(this::getIdentifierString);
+    }
 }
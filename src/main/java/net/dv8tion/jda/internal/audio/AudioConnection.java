@@ -16,7 +16,6 @@
 
 package net.dv8tion.jda.internal.audio;
 
-import com.iwebpp.crypto.TweetNaclFast;
 import com.neovisionaries.ws.client.WebSocket;
 import com.sun.jna.ptr.PointerByReference;
 import gnu.trove.map.TIntLongMap;
@@ -24,6 +23,8 @@ import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntLongHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import net.dv8tion.jda.api.audio.*;
+import net.dv8tion.jda.api.audio.crypto.AudioCipher;
+import net.dv8tion.jda.api.audio.crypto.AudioCiphers;
 import net.dv8tion.jda.api.audio.factory.IAudioSendFactory;
 import net.dv8tion.jda.api.audio.factory.IAudioSendSystem;
 import net.dv8tion.jda.api.audio.factory.IPacketProvider;
@@ -57,6 +58,7 @@ public class AudioConnection
     public static final long MAX_UINT_32 = 4294967295L;
 
     private static final int NOT_SPEAKING = 0;
+    private static final long BUFFER_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
     private static final ByteBuffer silenceBytes = ByteBuffer.wrap(new byte[] {(byte)0xF8, (byte)0xFF, (byte)0xFE});
     private static boolean printedError = false;
 
@@ -64,14 +66,21 @@ public class AudioConnection
 
     private final TIntLongMap ssrcMap = new TIntLongHashMap();
     private final TIntObjectMap<Decoder> opusDecoders = new TIntObjectHashMap<>();
-    private final HashMap<User, Queue<AudioData>> combinedQueue = new HashMap<>();
+    private final ConcurrentMap<User, AudioRingBuffer> combinedQueue = new ConcurrentHashMap<>();
+    // Only used by the combined audio thread
+    private final AudioMixer mixer = new AudioMixer();
+    private final List<JitterBuffer> jitterBuffers = new CopyOnWriteArrayList<>();
     private final String threadIdentifier;
     private final AudioWebSocket webSocket;
     private final JDAImpl api;
 
     private AudioChannel channel;
     private PointerByReference opusEncoder;
+    // Reused by every frame of the send path
+    private ShortBuffer pcmBuffer = ShortBuffer.allocate(OpusPacket.OPUS_FRAME_SIZE * OpusPacket.OPUS_CHANNEL_COUNT);
+    private final ByteBuffer opusBuffer = ByteBuffer.allocate(4096);
     private ScheduledExecutorService combinedAudioExecutor;
+    private ScheduledExecutorService bufferedAudioExecutor;
     private IAudioSendSystem sendSystem;
     private Thread receiveThread;
     private long queueTimeout;
@@ -187,6 +196,7 @@ public class AudioConnection
             combinedAudioExecutor.shutdownNow();
             combinedAudioExecutor = null;
         }
+        shutdownBufferedExecutor();
         if (opusEncoder != null)
         {
             Opus.INSTANCE.opus_encoder_destroy(opusEncoder);
@@ -296,7 +306,7 @@ public class AudioConnection
         if (udpSocket != null && !udpSocket.isClosed() && sendHandler != null && sendSystem == null)
         {
             IAudioSendFactory factory = getJDA().getAudioSendFactory();
-            sendSystem = factory.createSendSystem(new PacketProvider(new TweetNaclFast.SecretBox(webSocket.getSecretKey())));
+            sendSystem = factory.createSendSystem(new PacketProvider(AudioCiphers.getProvider().createCipher(webSocket.getSecretKey())));
             sendSystem.setContextMap(getJDA().getContextMap());
             sendSystem.start();
         }
@@ -329,14 +339,20 @@ public class AudioConnection
                 combinedAudioExecutor.shutdownNow();
                 combinedAudioExecutor = null;
             }
+            shutdownBufferedExecutor();
 
             opusDecoders.valueCollection().forEach(Decoder::close);
             opusDecoders.clear();
         }
-        else if (receiveHandler != null && !receiveHandler.canReceiveCombined() && combinedAudioExecutor != null)
+        else if (receiveHandler != null)
         {
-            combinedAudioExecutor.shutdownNow();
-            combinedAudioExecutor = null;
+            if (!receiveHandler.canReceiveCombined() && combinedAudioExecutor != null)
+            {
+                combinedAudioExecutor.shutdownNow();
+                combinedAudioExecutor = null;
+            }
+            if (!receiveHandler.canReceiveBufferedUser())
+                shutdownBufferedExecutor();
         }
     }
 
@@ -355,36 +371,53 @@ public class AudioConnection
                 {
                     LOG.error("Couldn't set SO_TIMEOUT for UDP socket", e);
                 }
+                // Every packet is received, decrypted and decoded into these buffers
+                byte[] receiveBuffer = new byte[1920];
+                DatagramPacket receivedPacket = new DatagramPacket(receiveBuffer, receiveBuffer.length);
+                ShortBuffer decodeBuffer = ShortBuffer.allocate(AudioRingBuffer.FRAME_LENGTH);
+                byte[] nonce = new byte[AudioCipher.NONCE_LENGTH];
+                byte[] cipherKey = null;
+                AudioCipher cipher = null;
+                // Users are only resolved again if the SSRC was assigned to someone else
+                TIntObjectMap<User> users = new TIntObjectHashMap<>();
+                TIntObjectMap<JitterBuffer> buffers = new TIntObjectHashMap<>();
                 while (!udpSocket.isClosed() && !Thread.currentThread().isInterrupted())
                 {
-                    DatagramPacket receivedPacket = new DatagramPacket(new byte[1920], 1920);
                     try
                     {
+                        receivedPacket.setLength(receiveBuffer.length);
                         udpSocket.receive(receivedPacket);
 
-                        boolean shouldDecode = receiveHandler != null && (receiveHandler.canReceiveUser() || receiveHandler.canReceiveCombined());
-                        boolean canReceive = receiveHandler != null && (receiveHandler.canReceiveUser() || receiveHandler.canReceiveCombined() || receiveHandler.canReceiveEncoded());
-                        if (canReceive && webSocket.getSecretKey() != null)
+                        boolean shouldDecode = receiveHandler != null && (receiveHandler.canReceiveUser() || receiveHandler.canReceiveCombined() || receiveHandler.canReceiveBufferedUser());
+                        boolean canReceive = shouldDecode || (receiveHandler != null && receiveHandler.canReceiveEncoded());
+                        byte[] secretKey = webSocket.getSecretKey();
+                        if (canReceive && secretKey != null)
                         {
                             if (!couldReceive)
                             {
                                 couldReceive = true;
                                 sendSilentPackets();
                             }
-                            AudioPacket decryptedPacket = AudioPacket.decryptAudioPacket(webSocket.encryption, receivedPacket, webSocket.getSecretKey());
-                            if (decryptedPacket == null)
+                            if (secretKey != cipherKey)
+                            {
+                                cipher = AudioCiphers.getProvider().createCipher(secretKey);
+                                cipherKey = secretKey;
+                            }
+                            int length = AudioPacket.decryptAudioPacket(webSocket.encryption, cipher, receiveBuffer, receivedPacket.getLength(), nonce);
+                            if (length < 0)
                                 continue;
 
-                            int ssrc = decryptedPacket.getSSRC();
+                            int ssrc = IOUtil.getIntBigEndian(receiveBuffer, AudioPacket.SSRC_INDEX);
+                            char seq = (char) IOUtil.getShortBigEndian(receiveBuffer, AudioPacket.SEQ_INDEX);
+                            int timestamp = IOUtil.getIntBigEndian(receiveBuffer, AudioPacket.TIMESTAMP_INDEX);
+                            int offset = AudioPacket.getPayloadOffset(receiveBuffer, length);
                             final long userId = ssrcMap.get(ssrc);
                             Decoder decoder = opusDecoders.get(ssrc);
                             if (userId == ssrcMap.getNoEntryValue())
                             {
-                                ByteBuffer audio = decryptedPacket.getEncodedAudio();
-
                                 //If the bytes are silence, then this was caused by a User joining the voice channel,
                                 // and as such, we haven't yet received information to pair the SSRC with the UserId.
-                                if (!audio.equals(silenceBytes))
+                                if (!isSilence(receiveBuffer, offset, length))
                                     LOG.debug("Received audio data with an unknown SSRC id. Ignoring");
 
                                 continue;
@@ -401,38 +434,89 @@ public class AudioConnection
                                     break;
                                 }
                             }
-                            OpusPacket opusPacket = new OpusPacket(decryptedPacket, userId, decoder);
+                            // The handler might keep the packet, so it gets a copy
+                            OpusPacket opusPacket = null;
                             if (receiveHandler.canReceiveEncoded())
+                            {
+                                opusPacket = new OpusPacket(new AudioPacket(Arrays.copyOf(receiveBuffer, length)), userId, decoder);
                                 receiveHandler.handleEncodedAudio(opusPacket);
-                            if (!shouldDecode || !opusPacket.canDecode())
+                            }
+                            if (!shouldDecode || decoder == null)
                                 continue;
 
-                            User user = getJDA().getUserById(userId);
-                            if (user == null)
+                            User user = users.get(ssrc);
+                            if (user == null || user.getIdLong() != userId)
+                            {
+                                user = getJDA().getUserById(userId);
+                                if (user == null)
+                                {
+                                    LOG.warn("Received audio data with a known SSRC, but the userId associate with the SSRC is unknown to JDA!");
+                                    continue;
+                                }
+                                users.put(ssrc, user);
+                            }
+
+                            // The jitter buffer reorders the packets, so it also takes those which are out of order
+                            if (receiveHandler.canReceiveBufferedUser())
                             {
-                                LOG.warn("Received audio data with a known SSRC, but the userId associate with the SSRC is unknown to JDA!");
+                                JitterBuffer buffer = buffers.get(ssrc);
+                                if (buffer == null || buffer.isClosed())
+                                {
+                                    buffer = new JitterBuffer(ssrc, receiveHandler.getBufferedUserLatency());
+                                    buffers.put(ssrc, buffer);
+                                    jitterBuffers.add(buffer);
+                                }
+                                buffer.setUser(user);
+                                buffer.add(seq, timestamp, receiveBuffer, offset, length - offset, System.currentTimeMillis());
+                            }
+                            if (!(receiveHandler.canReceiveUser() || receiveHandler.canReceiveCombined()) || !decoder.isInOrder(seq))
                                 continue;
+
+                            AudioRingBuffer ring = null;
+                            if (receiveHandler.canReceiveCombined() && receiveHandler.includeUserInCombinedAudio(user))
+                            {
+                                ring = combinedQueue.get(user);
+                                if (ring == null)
+                                {
+                                    ring = new AudioRingBuffer();
+                                    combinedQueue.put(user, ring);
+                                }
                             }
-                            short[] decodedAudio = opusPacket.decode();
-                            //If decodedAudio is null, then the Opus decode failed, so throw away the packet.
-                            if (decodedAudio == null)
+                            ShortBuffer slot = ring == null ? null : ring.claim();
+
+                            short[] decodedAudio = null;
+                            int decodedLength;
+                            if (opusPacket != null)
+                            {
+                                // The encoded handler might have decoded the packet already, it must not be decoded twice
+                                decodedAudio = opusPacket.decode();
+                                decodedLength = decodedAudio == null ? -1 : decodedAudio.length;
+                                if (slot != null && decodedAudio != null)
+                                    slot.put(decodedAudio);
+                            }
+                            else
+                            {
+                                ShortBuffer target = slot == null ? decodeBuffer : slot;
+                                decodedLength = decoder.decodeFromOpus(receiveBuffer, offset, length - offset, seq, timestamp, target);
+                                if (decodedLength >= 0 && receiveHandler.canReceiveUser())
+                                {
+                                    decodedAudio = new short[decodedLength];
+                                    System.arraycopy(target.array(), 0, decodedAudio, 0, decodedLength);
+                                }
+                            }
+                            //If decoding failed, throw away the packet.
+                            if (decodedLength < 0)
                             {
                                 //decoder error logged in method
                                 continue;
                             }
-                            if (receiveHandler.canReceiveUser())
+                            if (receiveHandler.canReceiveUser() && decodedAudio != null)
                             {
                                 receiveHandler.handleUserAudio(new UserAudio(user, decodedAudio));
                             }
-                            if (receiveHandler.canReceiveCombined() && receiveHandler.includeUserInCombinedAudio(user))
+                            if (slot != null)
                             {
-                                Queue<AudioData> queue = combinedQueue.get(user);
-                                if (queue == null)
-                                {
-                                    queue = new ConcurrentLinkedQueue<>();
-                                    combinedQueue.put(user, queue);
-                                }
-                                queue.add(new AudioData(decodedAudio));
+                                ring.publish(decodedLength, timestamp, System.currentTimeMillis());
                             }
                         }
                         else if (couldReceive)
@@ -472,6 +556,96 @@ public class AudioConnection
         {
             setupCombinedExecutor();
         }
+        if (receiveHandler.canReceiveBufferedUser())
+        {
+            setupBufferedExecutor();
+        }
+    }
+
+    private synchronized void setupBufferedExecutor()
+    {
+        if (bufferedAudioExecutor == null)
+        {
+            bufferedAudioExecutor = Executors.newSingleThreadScheduledExecutor((task) ->
+            {
+                final Thread t = new Thread(task, threadIdentifier + " Buffered Audio Thread");
+                t.setDaemon(true);
+                t.setUncaughtExceptionHandler((thread, throwable) ->
+                {
+                    LOG.error("There was an uncaught exception in the bufferedAudioExecutor", throwable);
+                    JDAImpl api = getJDA();
+                    api.handleEvent(new ExceptionEvent(api, throwable, true));
+                });
+                return t;
+            });
+            ShortBuffer decoded = ShortBuffer.allocate(AudioRingBuffer.FRAME_LENGTH);
+            bufferedAudioExecutor.scheduleAtFixedRate(() ->
+            {
+                getJDA().setContext();
+                try
+                {
+                    AudioReceiveHandler handler = receiveHandler;
+                    long now = System.currentTimeMillis();
+                    for (JitterBuffer buffer : jitterBuffers)
+                    {
+                        // Users which left are not playing anymore, their buffers are closed after a while
+                        if (now - buffer.getLastPacket() > BUFFER_IDLE_TIMEOUT)
+                        {
+                            jitterBuffers.remove(buffer);
+                            buffer.close();
+                            continue;
+                        }
+                        if (handler == null || !handler.canReceiveBufferedUser())
+                            continue;
+                        playBufferedAudio(handler, buffer, now, decoded);
+                    }
+                }
+                catch (Exception e)
+                {
+                    LOG.error("There was some unexpected exception in the bufferedAudioExecutor!", e);
+                }
+            }, 0, 20, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void playBufferedAudio(AudioReceiveHandler handler, JitterBuffer buffer, long now, ShortBuffer decoded)
+    {
+        JitterBuffer.Playout playout = buffer.poll(now);
+        if (playout == JitterBuffer.Playout.IDLE)
+            return;
+        Decoder decoder = buffer.getDecoder();
+        if (decoder == null)
+            buffer.setDecoder(decoder = new Decoder(buffer.getSSRC()));
+
+        int length;
+        switch (playout)
+        {
+            case PACKET:
+                length = decoder.decodeFromOpus(buffer.getFrame(), 0, buffer.getFrameLength(), (char) 0, 0, decoded);
+                break;
+            case FEC:
+                length = decoder.decodeFec(buffer.getFrame(), 0, buffer.getFrameLength(), decoded);
+                break;
+            default:
+                length = decoder.decodeFromOpus(null, 0, 0, (char) 0, 0, decoded);
+                break;
+        }
+        if (length < 0)
+            return;
+        short[] audio = new short[length];
+        decoded.get(audio);
+        handler.handleBufferedUserAudio(new UserAudio(buffer.getUser(), audio));
+    }
+
+    private synchronized void shutdownBufferedExecutor()
+    {
+        if (bufferedAudioExecutor != null)
+        {
+            bufferedAudioExecutor.shutdownNow();
+            bufferedAudioExecutor = null;
+        }
+        jitterBuffers.forEach(JitterBuffer::close);
+        jitterBuffers.clear();
     }
 
     private synchronized void setupCombinedExecutor()
@@ -495,65 +669,12 @@ public class AudioConnection
                 getJDA().setContext();
                 try
                 {
-                    List<User> users = new LinkedList<>();
-                    List<short[]> audioParts = new LinkedList<>();
-                    if (receiveHandler != null && receiveHandler.canReceiveCombined())
+                    AudioReceiveHandler handler = receiveHandler;
+                    if (handler != null && handler.canReceiveCombined())
                     {
-                        long currentTime = System.currentTimeMillis();
-                        for (Map.Entry<User, Queue<AudioData>> entry : combinedQueue.entrySet())
-                        {
-                            User user = entry.getKey();
-                            Queue<AudioData> queue = entry.getValue();
-
-                            if (queue.isEmpty())
-                                continue;
-
-                            AudioData audioData = queue.poll();
-                            //Make sure the audio packet is younger than 100ms
-                            while (audioData != null && currentTime - audioData.time > queueTimeout)
-                            {
-                                audioData = queue.poll();
-                            }
-
-                            //If none of the audio packets were younger than 100ms, then there is nothing to add.
-                            if (audioData == null)
-                            {
-                                continue;
-                            }
-                            users.add(user);
-                            audioParts.add(audioData.data);
-                        }
-
-                        if (!audioParts.isEmpty())
-                        {
-                            int audioLength = audioParts.stream().mapToInt(it -> it.length).max().getAsInt();
-                            short[] mix = new short[1920];  //960 PCM samples for each channel
-                            int sample;
-                            for (int i = 0; i < audioLength; i++)
-                            {
-                                sample = 0;
-                                for (Iterator<short[]> iterator = audioParts.iterator(); iterator.hasNext(); )
-                                {
-                                    short[] audio = iterator.next();
-                                    if (i < audio.length)
-                                        sample += audio[i];
-                                    else
-                                        iterator.remove();
-                                }
-                                if (sample > Short.MAX_VALUE)
-                                    mix[i] = Short.MAX_VALUE;
-                                else if (sample < Short.MIN_VALUE)
-                                    mix[i] = Short.MIN_VALUE;
-                                else
-                                    mix[i] = (short) sample;
-                            }
-                            receiveHandler.handleCombinedAudio(new CombinedAudio(users, mix));
-                        }
-                        else
-                        {
-                            //No audio to mix, provide 20 MS of silence. (960 PCM samples for each channel)
-                            receiveHandler.handleCombinedAudio(new CombinedAudio(Collections.emptyList(), new short[1920]));
-                        }
+                        // Frames older than the timeout are dropped, even if their tick has not passed yet
+                        CombinedAudio audio = mixer.mix(combinedQueue, System.currentTimeMillis() - queueTimeout, handler.canReuseCombinedAudio());
+                        handler.handleCombinedAudio(audio);
                     }
                 }
                 catch (Exception e)
@@ -564,10 +685,26 @@ public class AudioConnection
         }
     }
 
+    private static boolean isSilence(byte[] packet, int offset, int length)
+    {
+        if (length - offset != silenceBytes.remaining())
+            return false;
+        for (int i = 0; i < silenceBytes.remaining(); i++)
+        {
+            if (packet[offset + i] != silenceBytes.get(i))
+                return false;
+        }
+        return true;
+    }
+
     private ByteBuffer encodeToOpus(ByteBuffer rawAudio)
     {
-        ShortBuffer nonEncodedBuffer = ShortBuffer.allocate(rawAudio.remaining() / 2);
-        ByteBuffer encoded = ByteBuffer.allocate(4096);
+        if (pcmBuffer.capacity() < rawAudio.remaining() / 2)
+            pcmBuffer = ShortBuffer.allocate(rawAudio.remaining() / 2);
+        ShortBuffer nonEncodedBuffer = pcmBuffer;
+        ByteBuffer encoded = opusBuffer;
+        ((Buffer) nonEncodedBuffer).clear();
+        ((Buffer) encoded).clear();
         for (int i = rawAudio.position(); i < rawAudio.limit(); i += 2)
         {
             int firstByte =  (0x000000FF & rawAudio.get(i));      //Promotes to int and handles the fact that it was unsigned.
@@ -617,15 +754,14 @@ public class AudioConnection
     {
         private char seq = 0;           //Sequence of audio packets. Used to determine the order of the packets.
         private int timestamp = 0;      //Used to sync up our packets within the same timeframe of other people talking.
-        private TweetNaclFast.SecretBox boxer;
+        private final AudioCipher cipher;
         private long nonce = 0;
         private ByteBuffer buffer = ByteBuffer.allocate(512);
-        private ByteBuffer encryptionBuffer = ByteBuffer.allocate(512);
-        private final byte[] nonceBuffer = new byte[TweetNaclFast.SecretBox.nonceLength];
+        private final byte[] nonceBuffer = new byte[AudioCipher.NONCE_LENGTH];
 
-        public PacketProvider(TweetNaclFast.SecretBox boxer)
+        public PacketProvider(AudioCipher cipher)
         {
-            this.boxer = boxer;
+            this.cipher = cipher;
         }
 
         @NotNull
@@ -675,7 +811,7 @@ public class AudioConnection
                     ByteBuffer rawAudio = sendHandler.provide20MsAudio();
                     if (rawAudio != null && !rawAudio.hasArray())
                     {
-                        // we can't use the boxer without an array so encryption would not work
+                        // we can't use the cipher without an array so encryption would not work
                         LOG.error("AudioSendHandler provided ByteBuffer without a backing array! This is unsupported.");
                     }
                     if (rawAudio == null || !rawAudio.hasRemaining() || !rawAudio.hasArray())
@@ -769,8 +905,6 @@ public class AudioConnection
 
         private ByteBuffer getPacketData(ByteBuffer rawAudio)
         {
-            ensureEncryptionBuffer(rawAudio);
-            AudioPacket packet = new AudioPacket(encryptionBuffer, seq, timestamp, webSocket.getSSRC(), rawAudio);
             int nlen;
             switch (webSocket.encryption)
             {
@@ -786,21 +920,12 @@ public class AudioConnection
                     break;
                 case XSALSA20_POLY1305_SUFFIX:
                     ThreadLocalRandom.current().nextBytes(nonceBuffer);
-                    nlen = TweetNaclFast.SecretBox.nonceLength;
+                    nlen = AudioCipher.NONCE_LENGTH;
                     break;
                 default:
                     throw new IllegalStateException("Encryption mode [" + webSocket.encryption + "] is not supported!");
             }
-            return buffer = packet.asEncryptedPacket(boxer, buffer, nonceBuffer, nlen);
-        }
-
-        private void ensureEncryptionBuffer(ByteBuffer data)
-        {
-            ((Buffer) encryptionBuffer).clear();
-            int currentCapacity = encryptionBuffer.remaining();
-            int requiredCapacity = AudioPacket.RTP_HEADER_BYTE_LENGTH + data.remaining();
-            if (currentCapacity < requiredCapacity)
-                encryptionBuffer = ByteBuffer.allocate(requiredCapacity);
+            return buffer = AudioPacket.writeEncryptedPacket(cipher, buffer, seq, timestamp, webSocket.getSSRC(), rawAudio, nonceBuffer, nlen);
         }
 
         private void loadNextNonce(long nonce)
@@ -825,16 +950,4 @@ public class AudioConnection
             webSocket.close(ConnectionStatus.ERROR_LOST_CONNECTION);
         }
     }
-
-    private static class AudioData
-    {
-        private final long time;
-        private final short[] data;
-
-        public AudioData(short[] data)
-        {
-            this.time = System.currentTimeMillis();
-            this.data = data;
-        }
-    }
 }
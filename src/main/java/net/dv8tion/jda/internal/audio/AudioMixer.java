@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio;
+
+import net.dv8tion.jda.api.audio.CombinedAudio;
+import net.dv8tion.jda.api.entities.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mixes the decoded frames of every {@link AudioRingBuffer} into one frame of {@link CombinedAudio} every 20 milliseconds.
+ * <br>Streams are aligned by their RTP timestamps with {@link AudioRingBuffer#pollAligned(long)}, so the jitter of
+ * the receive times does not shift a stream against the others.
+ *
+ * <p>The frames are summed into an {@code int} accumulator, which is clamped to 16 bit once all frames were added.
+ * Both loops have no branches and are vectorized by the JIT.
+ * The accumulator and the output buffer are reused, an instance must only be used by one thread.
+ */
+public class AudioMixer
+{
+    // The samples are never written, so every mixer can share the same silent frame
+    private static final CombinedAudio SILENCE = new CombinedAudio(Collections.emptyList(), new short[AudioRingBuffer.FRAME_LENGTH]);
+
+    private final int[] accumulator = new int[AudioRingBuffer.FRAME_LENGTH];
+    private final short[] output = new short[AudioRingBuffer.FRAME_LENGTH];
+    private final List<User> users = new ArrayList<>();
+    // Views the users and the output, which change with every mix
+    private final CombinedAudio pooled = new CombinedAudio(users, output);
+
+    /**
+     * Mixes the current tick of all streams.
+     *
+     * @param  streams
+     *         The streams of the users which are included in the combined audio
+     * @param  oldest
+     *         The oldest receive time in milliseconds to accept
+     * @param  reuse
+     *         Whether the returned audio can be reused by the next mix, otherwise new buffers are allocated
+     *
+     * @return The combined audio, silence if no user is speaking
+     */
+    public CombinedAudio mix(Map<User, AudioRingBuffer> streams, long oldest, boolean reuse)
+    {
+        users.clear();
+        for (Map.Entry<User, AudioRingBuffer> entry : streams.entrySet())
+        {
+            AudioRingBuffer ring = entry.getValue();
+            short[] frame = ring.pollAligned(oldest);
+            if (frame == null)
+                continue;
+            if (users.isEmpty())
+                Arrays.fill(accumulator, 0);
+            add(accumulator, frame, ring.length());
+            ring.release();
+            users.add(entry.getKey());
+        }
+
+        if (users.isEmpty())
+            return SILENCE;
+        if (reuse)
+        {
+            clamp(accumulator, output);
+            return pooled;
+        }
+        short[] audio = new short[AudioRingBuffer.FRAME_LENGTH];
+        clamp(accumulator, audio);
+        return new CombinedAudio(new ArrayList<>(users), audio);
+    }
+
+    static void add(int[] accumulator, short[] frame, int length)
+    {
+        for (int i = 0; i < length; i++)
+            accumulator[i] += frame[i];
+    }
+
+    static void clamp(int[] accumulator, short[] output)
+    {
+        for (int i = 0; i < output.length; i++)
+            output[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, accumulator[i]));
+    }
+}
@@ -16,7 +16,7 @@
 
 package net.dv8tion.jda.internal.audio;
 
-import com.iwebpp.crypto.TweetNaclFast;
+import net.dv8tion.jda.api.audio.crypto.AudioCipher;
 import net.dv8tion.jda.internal.utils.IOUtil;
 
 import java.net.DatagramPacket;
@@ -80,34 +80,39 @@ public class AudioPacket
         this.ssrc = buffer.getInt(SSRC_INDEX);
         this.type = buffer.get(PT_INDEX);
 
-        final byte profile = buffer.get(0);
         final byte[] data = buffer.array();
-        final boolean hasExtension = (profile & 0x10) != 0; // extension bit is at 000X
-        final byte cc = (byte) (profile & 0x0f);            // CSRC count - we ignore this for now
-        final int csrcLength = cc * 4;                      // defines count of 4-byte words
-        // it seems as if extensions only exist without a csrc list being present
-        final short extension = hasExtension ? IOUtil.getShortBigEndian(data, RTP_HEADER_BYTE_LENGTH + csrcLength) : 0;
-
-        int offset = RTP_HEADER_BYTE_LENGTH + csrcLength;
-        if (hasExtension && extension == RTP_DISCORD_EXTENSION)
-            offset = getPayloadOffset(data, csrcLength);
+        final int offset = getPayloadOffset(data, data.length);
 
         this.encodedAudio = ByteBuffer.allocate(data.length - offset);
         this.encodedAudio.put(data, offset, encodedAudio.capacity());
         ((Buffer) this.encodedAudio).flip();
     }
 
-    public AudioPacket(ByteBuffer buffer, char seq, int timestamp, int ssrc, ByteBuffer encodedAudio)
+    /**
+     * The offset of the audio in a packet, after the RTP header and its extensions.
+     *
+     * @param  data
+     *         The packet
+     * @param  length
+     *         The length of the packet
+     *
+     * @return The offset of the audio
+     */
+    public static int getPayloadOffset(byte[] data, int length)
     {
-        this.seq = seq;
-        this.ssrc = ssrc;
-        this.timestamp = timestamp;
-        this.encodedAudio = encodedAudio;
-        this.type = RTP_PAYLOAD_TYPE;
-        this.rawPacket = generateRawPacket(buffer, seq, timestamp, ssrc, encodedAudio);
+        final byte profile = data[0];
+        final boolean hasExtension = (profile & 0x10) != 0; // extension bit is at 000X
+        final byte cc = (byte) (profile & 0x0f);            // CSRC count - we ignore this for now
+        final int csrcLength = cc * 4;                      // defines count of 4-byte words
+        // it seems as if extensions only exist without a csrc list being present
+        final short extension = hasExtension ? IOUtil.getShortBigEndian(data, RTP_HEADER_BYTE_LENGTH + csrcLength) : 0;
+
+        if (hasExtension && extension == RTP_DISCORD_EXTENSION)
+            return getExtensionPayloadOffset(data, length, csrcLength);
+        return RTP_HEADER_BYTE_LENGTH + csrcLength;
     }
 
-    private int getPayloadOffset(byte[] data, int csrcLength)
+    private static int getExtensionPayloadOffset(byte[] data, int length, int csrcLength)
     {
         // headerLength defines number of 4-byte words in the extension
         final short headerLength = IOUtil.getShortBigEndian(data, RTP_HEADER_BYTE_LENGTH + 2 + csrcLength);
@@ -117,7 +122,7 @@ public class AudioPacket
                 + headerLength * 4;    // number of 4-byte words in extension = len * 4 bytes
 
         // strip excess 0 bytes
-        while (data[i] == 0)
+        while (i < length && data[i] == 0)
             i++;
         return i;
     }
@@ -131,7 +136,7 @@ public class AudioPacket
 
     public byte[] getNoncePadded()
     {
-        byte[] nonce = new byte[TweetNaclFast.SecretBox.nonceLength];
+        byte[] nonce = new byte[AudioCipher.NONCE_LENGTH];
         //The first 12 bytes are the rawPacket are the RTP Discord Nonce.
         System.arraycopy(rawPacket, 0, nonce, 0, RTP_HEADER_BYTE_LENGTH);
         return nonce;
@@ -162,26 +167,59 @@ public class AudioPacket
         return timestamp;
     }
 
-    protected ByteBuffer asEncryptedPacket(TweetNaclFast.SecretBox boxer, ByteBuffer buffer, byte[] nonce, int nlen)
+    /**
+     * Writes an encrypted packet into the buffer, without any intermediate allocations.
+     * <br>The audio is encrypted directly behind the RTP header, the buffer is only replaced if it is too small for the packet.
+     *
+     * @param  cipher
+     *         The {@link AudioCipher} of the connection
+     * @param  buffer
+     *         The heap buffer to reuse
+     * @param  seq
+     *         The sequence of the packet
+     * @param  timestamp
+     *         The RTP timestamp of the packet
+     * @param  ssrc
+     *         The SSRC of the connection
+     * @param  encodedAudio
+     *         The opus audio, which has to be backed by an array. This buffer is not modified.
+     * @param  nonce
+     *         The 24 byte nonce, if nlen is 0 this is overwritten with the padded RTP header
+     * @param  nlen
+     *         The amount of nonce bytes appended to the payload, 0 if the header is the nonce
+     *
+     * @return The buffer containing the packet, from position 0 to its limit
+     */
+    public static ByteBuffer writeEncryptedPacket(AudioCipher cipher, ByteBuffer buffer, char seq, int timestamp, int ssrc,
+                                                  ByteBuffer encodedAudio, byte[] nonce, int nlen)
     {
-        //Xsalsa20's Nonce is 24 bytes long, however RTP (and consequently Discord)'s nonce is a different length
-        // so we need to create a 24 byte array, and copy the nonce into it.
-        // we will leave the extra bytes as nulls. (Java sets non-populated bytes as 0).
-        byte[] extendedNonce = nonce;
-        if (nlen == 0) // this means the header is the nonce!
-            extendedNonce = getNoncePadded();
-
-        //Create our SecretBox encoder with the secretKey provided by Discord.
-        byte[] array = encodedAudio.array();
-        int offset = encodedAudio.arrayOffset() + encodedAudio.position();
         int length = encodedAudio.remaining();
-        byte[] encryptedAudio = boxer.box(array, offset, length, extendedNonce);
+        int capacity = RTP_HEADER_BYTE_LENGTH + AudioCipher.OVERHEAD_LENGTH + length + nlen;
+        if (buffer == null || buffer.capacity() < capacity)
+            buffer = ByteBuffer.allocate(capacity);
 
+        byte[] packet = buffer.array();
+        int offset = buffer.arrayOffset();
         ((Buffer) buffer).clear();
-        int capacity = RTP_HEADER_BYTE_LENGTH + encryptedAudio.length + nlen;
-        if (capacity > buffer.remaining())
-            buffer = ByteBuffer.allocate(capacity);
-        populateBuffer(seq, timestamp, ssrc, ByteBuffer.wrap(encryptedAudio), buffer);
+        buffer.put(RTP_VERSION_PAD_EXTEND);
+        buffer.put(RTP_PAYLOAD_TYPE);
+        buffer.putChar(seq);
+        buffer.putInt(timestamp);
+        buffer.putInt(ssrc);
+
+        //Xsalsa20's Nonce is 24 bytes long, however RTP (and consequently Discord)'s nonce is a different length
+        // so we use a 24 byte array, and copy the nonce into it with the extra bytes as zeros.
+        if (nlen == 0) // this means the header is the nonce!
+        {
+            System.arraycopy(packet, offset, nonce, 0, RTP_HEADER_BYTE_LENGTH);
+            Arrays.fill(nonce, RTP_HEADER_BYTE_LENGTH, nonce.length, (byte) 0);
+        }
+
+        int boxed = cipher.seal(encodedAudio.array(), encodedAudio.arrayOffset() + encodedAudio.position(), length,
+                                  nonce, packet, offset + RTP_HEADER_BYTE_LENGTH);
+        if (boxed < 0)
+            throw new IllegalStateException("Failed to encrypt audio packet");
+        ((Buffer) buffer).position(RTP_HEADER_BYTE_LENGTH + boxed);
         if (nlen > 0) // this means we append the nonce to the payload
             buffer.put(nonce, 0, nlen);
 
@@ -189,84 +227,62 @@ public class AudioPacket
         return buffer;
     }
 
-    protected static AudioPacket decryptAudioPacket(AudioEncryption encryption, DatagramPacket packet, byte[] secretKey)
+    /**
+     * Decrypts a received packet in place, without any intermediate allocations.
+     * <br>The decrypted audio is written directly behind the RTP header, which is left as is.
+     * The result has the same layout as an unencrypted packet, starting at index 0 of the array.
+     *
+     * @param  encryption
+     *         The encryption mode of the connection
+     * @param  cipher
+     *         The {@link AudioCipher} used by the receiving thread
+     * @param  packet
+     *         The received packet
+     * @param  length
+     *         The length of the received packet
+     * @param  nonce
+     *         The 24 byte array to use for the nonce
+     *
+     * @return The length of the decrypted packet, or -1 if the packet is not audio or could not be decrypted
+     */
+    public static int decryptAudioPacket(AudioEncryption encryption, AudioCipher cipher, byte[] packet, int length, byte[] nonce)
     {
-        TweetNaclFast.SecretBox boxer = new TweetNaclFast.SecretBox(secretKey);
-        AudioPacket encryptedPacket = new AudioPacket(packet);
-        if (encryptedPacket.type != RTP_PAYLOAD_TYPE)
-            return null;
+        if (length < RTP_HEADER_BYTE_LENGTH || packet[PT_INDEX] != RTP_PAYLOAD_TYPE)
+            return -1;
 
-        byte[] extendedNonce;
-        byte[] rawPacket = encryptedPacket.getRawPacket();
+        int offset = getPayloadOffset(packet, length);
+        //Xsalsa20's Nonce is 24 bytes long, however RTP (and consequently Discord)'s nonce is a different length
+        // so we use a 24 byte array, and copy the nonce into it with the extra bytes as zeros.
         switch (encryption)
         {
             case XSALSA20_POLY1305:
-                extendedNonce = encryptedPacket.getNoncePadded();
+                System.arraycopy(packet, 0, nonce, 0, RTP_HEADER_BYTE_LENGTH);
+                Arrays.fill(nonce, RTP_HEADER_BYTE_LENGTH, nonce.length, (byte) 0);
                 break;
             case XSALSA20_POLY1305_SUFFIX:
-                extendedNonce = new byte[TweetNaclFast.SecretBox.nonceLength];
-                System.arraycopy(rawPacket, rawPacket.length - extendedNonce.length, extendedNonce, 0, extendedNonce.length);
-                break;
-            case XSALSA20_POLY1305_LITE:
-                extendedNonce = new byte[TweetNaclFast.SecretBox.nonceLength];
-                System.arraycopy(rawPacket, rawPacket.length - 4, extendedNonce, 0, 4);
-                break;
-            default:
-                AudioConnection.LOG.debug("Failed to decrypt audio packet, unsupported encryption mode!");
-                return null;
-        }
-
-        ByteBuffer encodedAudio = encryptedPacket.encodedAudio;
-        int length = encodedAudio.remaining();
-        int offset = encodedAudio.arrayOffset() + encodedAudio.position();
-        switch (encryption)
-        {
-            case XSALSA20_POLY1305:
-//                length = encodedAudio.remaining();
+                length -= AudioCipher.NONCE_LENGTH;
+                if (length < offset)
+                    return -1;
+                System.arraycopy(packet, length, nonce, 0, AudioCipher.NONCE_LENGTH);
                 break;
             case XSALSA20_POLY1305_LITE:
                 length -= 4;
-                break;
-            case XSALSA20_POLY1305_SUFFIX:
-                length -= TweetNaclFast.SecretBox.nonceLength;
+                if (length < offset)
+                    return -1;
+                System.arraycopy(packet, length, nonce, 0, 4);
+                Arrays.fill(nonce, 4, nonce.length, (byte) 0);
                 break;
             default:
                 AudioConnection.LOG.debug("Failed to decrypt audio packet, unsupported encryption mode!");
-                return null;
+                return -1;
         }
 
-        final byte[] decryptedAudio = boxer.open(encodedAudio.array(), offset, length, extendedNonce);
-        if (decryptedAudio == null)
+        final int decrypted = cipher.open(packet, offset, length - offset, nonce, packet, RTP_HEADER_BYTE_LENGTH);
+        if (decrypted < 0)
         {
             AudioConnection.LOG.trace("Failed to decrypt audio packet");
-            return null;
+            return -1;
         }
-        final byte[] decryptedRawPacket = new byte[RTP_HEADER_BYTE_LENGTH + decryptedAudio.length];
-
-        //first 12 bytes of rawPacket are the RTP header
-        //the rest is the audio data we just decrypted
-        System.arraycopy(encryptedPacket.rawPacket, 0, decryptedRawPacket, 0, RTP_HEADER_BYTE_LENGTH);
-        System.arraycopy(decryptedAudio, 0, decryptedRawPacket, RTP_HEADER_BYTE_LENGTH, decryptedAudio.length);
-
-        return new AudioPacket(decryptedRawPacket);
-    }
-
-    private static byte[] generateRawPacket(ByteBuffer buffer, char seq, int timestamp, int ssrc, ByteBuffer data)
-    {
-        if (buffer == null)
-            buffer = ByteBuffer.allocate(RTP_HEADER_BYTE_LENGTH + data.remaining());
-        populateBuffer(seq, timestamp, ssrc, data, buffer);
-        return buffer.array();
-    }
-
-    private static void populateBuffer(char seq, int timestamp, int ssrc, ByteBuffer data, ByteBuffer buffer)
-    {
-        buffer.put(RTP_VERSION_PAD_EXTEND);
-        buffer.put(RTP_PAYLOAD_TYPE);
-        buffer.putChar(seq);
-        buffer.putInt(timestamp);
-        buffer.putInt(ssrc);
-        buffer.put(data);
-        ((Buffer) data).flip();
+        return RTP_HEADER_BYTE_LENGTH + decrypted;
     }
 }
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio;
+
+import net.dv8tion.jda.api.audio.OpusPacket;
+
+import java.nio.Buffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Ring of decoded frames for one SSRC, written by the receiving thread and read by the combined audio thread.
+ * <br>Every slot owns a frame of {@value OpusPacket#OPUS_FRAME_SIZE} samples per channel, so frames are decoded into
+ * the ring and read from it without copying or allocating.
+ *
+ * <p>The writer {@link #claim() claims} the next free slot, decodes into it and {@link #publish(int, int, long) publishes} it.
+ * The reader {@link #poll(long) polls} the oldest frame and {@link #release() releases} it once it is done with its samples.
+ * A slot is never written while the reader holds it. When the ring is full, new frames are dropped until the reader catches up.
+ *
+ * <p>The combined audio thread reads with {@link #pollAligned(long)}, which follows the RTP timestamps of the stream
+ * instead of the receive times. Every call is one tick of 20 milliseconds for the stream.
+ */
+public class AudioRingBuffer
+{
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final int FRAME_LENGTH = OpusPacket.OPUS_FRAME_SIZE * OpusPacket.OPUS_CHANNEL_COUNT;
+    // Frames a stream may be ahead or behind its clock before it is aligned again
+    private static final int MAX_SKEW = 5 * OpusPacket.OPUS_FRAME_SIZE;
+
+    private final short[][] frames;
+    private final ShortBuffer[] buffers;
+    private final int[] lengths;
+    private final int[] timestamps;
+    private final long[] times;
+    private final int mask;
+    // The reader only writes head, the writer only writes tail
+    private volatile long head, tail;
+    private long dropped;
+    // The RTP clock of the reader
+    private boolean aligned;
+    private int nextTimestamp;
+    private int missed;
+    private long late;
+
+    public AudioRingBuffer()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public AudioRingBuffer(int capacity)
+    {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        this.mask = capacity - 1;
+        this.frames = new short[capacity][FRAME_LENGTH];
+        this.buffers = new ShortBuffer[capacity];
+        for (int i = 0; i < capacity; i++)
+            buffers[i] = ShortBuffer.wrap(frames[i]);
+        this.lengths = new int[capacity];
+        this.timestamps = new int[capacity];
+        this.times = new long[capacity];
+    }
+
+    /**
+     * Claims the next slot for writing.
+     *
+     * @return The cleared buffer of the slot, or null if the ring is full
+     */
+    public ShortBuffer claim()
+    {
+        if (tail - head > mask)
+        {
+            dropped++;
+            return null;
+        }
+        ShortBuffer buffer = buffers[(int) tail & mask];
+        ((Buffer) buffer).clear();
+        return buffer;
+    }
+
+    /**
+     * Publishes the claimed slot to the reader.
+     *
+     * @param  length
+     *         The amount of shorts written to the slot
+     * @param  timestamp
+     *         The RTP timestamp of the frame
+     * @param  time
+     *         The time in milliseconds the frame was received at
+     */
+    public void publish(int length, int timestamp, long time)
+    {
+        int index = (int) tail & mask;
+        lengths[index] = length;
+        timestamps[index] = timestamp;
+        times[index] = time;
+        tail = tail + 1;
+    }
+
+    /**
+     * Returns the oldest frame which was received at or after the provided time, frames received before are released.
+     * <br>The frame is held until {@link #release()} is called, its length is {@link #length()}.
+     *
+     * @param  oldest
+     *         The oldest receive time in milliseconds to accept
+     *
+     * @return The samples of the frame, or null if there is none
+     */
+    public short[] poll(long oldest)
+    {
+        long h = head;
+        long t = tail;
+        while (h < t && times[(int) h & mask] < oldest)
+            h++;
+        head = h;
+        return h < t ? frames[(int) h & mask] : null;
+    }
+
+    /**
+     * Returns the frame with the RTP timestamp of the current tick, frames with an older timestamp are released.
+     * <br>The first frame of a stream, or a frame too far away from the current tick, aligns the stream again.
+     * Aligning delays the stream by one frame, so a frame arriving up to 20 milliseconds late still has its tick.
+     *
+     * <p>If a frame is returned, it is held until {@link #release()} is called. Otherwise, the current tick of this
+     * stream is silent and a frame with a later timestamp stays in the ring for its tick.
+     *
+     * @param  oldest
+     *         The oldest receive time in milliseconds to accept
+     *
+     * @return The samples of the frame, or null if the stream is silent in this tick
+     */
+    public short[] pollAligned(long oldest)
+    {
+        short[] frame;
+        while ((frame = poll(oldest)) != null)
+        {
+            int diff = timestamp() - nextTimestamp;
+            if (!aligned || diff > MAX_SKEW || diff < -MAX_SKEW)
+            {
+                aligned = true;
+                nextTimestamp = timestamp() - OpusPacket.OPUS_FRAME_SIZE;
+                frame = null;
+                break;
+            }
+            if (diff >= 0)
+            {
+                if (diff > 0)
+                    frame = null;
+                break;
+            }
+            // This tick has passed already
+            late++;
+            release();
+        }
+
+        if (frame != null)
+            missed = 0;
+        else if (aligned && ++missed * OpusPacket.OPUS_FRAME_SIZE > MAX_SKEW)
+            aligned = false;
+        nextTimestamp += OpusPacket.OPUS_FRAME_SIZE;
+        return frame;
+    }
+
+    /**
+     * The amount of frames {@link #pollAligned(long)} released, because their tick had already passed.
+     * <br>This is only accurate on the reading thread.
+     *
+     * @return The amount of late frames
+     */
+    public long getLateCount()
+    {
+        return late;
+    }
+
+    /**
+     * The amount of shorts of the frame returned by {@link #poll(long)}.
+     *
+     * @return The length of the held frame
+     */
+    public int length()
+    {
+        return lengths[(int) head & mask];
+    }
+
+    /**
+     * The RTP timestamp of the frame returned by {@link #poll(long)}.
+     *
+     * @return The timestamp of the held frame
+     */
+    public int timestamp()
+    {
+        return timestamps[(int) head & mask];
+    }
+
+    /**
+     * Releases the frame returned by {@link #poll(long)}, so its slot can be written again.
+     */
+    public void release()
+    {
+        if (head < tail)
+            head = head + 1;
+    }
+
+    /**
+     * The amount of frames waiting to be read.
+     *
+     * @return The amount of frames
+     */
+    public int size()
+    {
+        return (int) (tail - head);
+    }
+
+    /**
+     * The amount of frames which were dropped because the ring was full.
+     * <br>This is only accurate on the writing thread.
+     *
+     * @return The amount of dropped frames
+     */
+    public long getDroppedCount()
+    {
+        return dropped;
+    }
+}
@@ -46,6 +46,15 @@ public class ConnectionRequest
         this.stage = stage;
     }
 
+    // A reconnect closes the old session first. If our voice state has no channel, the old session is gone already,
+    // for instance after the gateway session was invalidated. Closing it again would only spend a request of the gateway budget.
+    public ConnectionStage resolveStage(AudioChannel currentChannel)
+    {
+        if (stage == ConnectionStage.RECONNECT && currentChannel == null)
+            stage = ConnectionStage.CONNECT;
+        return stage;
+    }
+
     public void setChannel(AudioChannel channel)
     {
         this.channelId = channel.getIdLong();
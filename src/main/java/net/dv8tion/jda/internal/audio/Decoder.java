@@ -20,6 +20,7 @@ import com.sun.jna.ptr.PointerByReference;
 import net.dv8tion.jda.api.audio.OpusPacket;
 import tomp2p.opuswrapper.Opus;
 
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
@@ -33,6 +34,9 @@ public class Decoder
     protected char lastSeq;
     protected int lastTimestamp;
     protected PointerByReference opusDecoder;
+    // Reused for every packet, the bindings do not accept an offset into the packet
+    private final byte[] opusBuffer = new byte[1920];
+    private final ShortBuffer decoded = ShortBuffer.allocate(OpusPacket.OPUS_FRAME_SIZE * OpusPacket.OPUS_CHANNEL_COUNT);
 
     protected Decoder(int ssrc)
     {
@@ -56,42 +60,111 @@ public class Decoder
         return newSeq > lastSeq + 1;
     }
 
-    public short[] decodeFromOpus(AudioPacket decryptedPacket)
+    public synchronized short[] decodeFromOpus(AudioPacket decryptedPacket)
     {
         int result;
-        ShortBuffer decoded = ShortBuffer.allocate(4096);
         if (decryptedPacket == null)    //Flag for packet-loss
         {
-            result = Opus.INSTANCE.opus_decode(opusDecoder, null, 0, decoded, OpusPacket.OPUS_FRAME_SIZE, 0);
-            lastSeq = (char) -1;
-            lastTimestamp = -1;
+            result = decodeFromOpus(null, 0, 0, (char) -1, -1, decoded);
         }
         else
         {
-            this.lastSeq = decryptedPacket.getSequence();
-            this.lastTimestamp = decryptedPacket.getTimestamp();
-
             ByteBuffer encodedAudio = decryptedPacket.getEncodedAudio();
             int length = encodedAudio.remaining();
             int offset = encodedAudio.arrayOffset() + encodedAudio.position();
-            byte[] buf = new byte[length];
-            byte[] data = encodedAudio.array();
-            System.arraycopy(data, offset, buf, 0, length);
-            result = Opus.INSTANCE.opus_decode(opusDecoder, buf, buf.length, decoded, OpusPacket.OPUS_FRAME_SIZE, 0);
+            result = decodeFromOpus(encodedAudio.array(), offset, length, decryptedPacket.getSequence(), decryptedPacket.getTimestamp(), decoded);
         }
 
         //If we get a result that is less than 0, then there was an error. Return null as a signifier.
         if (result < 0)
-        {
-            handleDecodeError(result);
             return null;
-        }
 
-        short[] audio = new short[result * 2];
+        short[] audio = new short[result];
         decoded.get(audio);
         return audio;
     }
 
+    /**
+     * Decodes the opus audio of a packet into the provided buffer, without allocating.
+     *
+     * @param  data
+     *         The packet, or null to flag packet-loss
+     * @param  offset
+     *         The offset of the opus audio
+     * @param  length
+     *         The length of the opus audio
+     * @param  seq
+     *         The sequence of the packet
+     * @param  timestamp
+     *         The RTP timestamp of the packet
+     * @param  decoded
+     *         The buffer for the decoded audio, which must be able to hold {@value OpusPacket#OPUS_FRAME_SIZE} samples per channel
+     *
+     * @return The amount of decoded shorts, which are available from position 0 of the buffer, or -1 if decoding failed
+     */
+    public synchronized int decodeFromOpus(byte[] data, int offset, int length, char seq, int timestamp, ShortBuffer decoded)
+    {
+        if (data == null)
+        {
+            lastSeq = (char) -1;
+            lastTimestamp = -1;
+        }
+        else
+        {
+            this.lastSeq = seq;
+            this.lastTimestamp = timestamp;
+        }
+        return decode(data, offset, length, decoded, false);
+    }
+
+    /**
+     * Recovers a lost frame from the forward error correction data of the packet following it, without allocating.
+     * <br>If the packet does not contain forward error correction data, the frame is concealed instead.
+     *
+     * @param  data
+     *         The packet following the lost frame
+     * @param  offset
+     *         The offset of the opus audio
+     * @param  length
+     *         The length of the opus audio
+     * @param  decoded
+     *         The buffer for the recovered audio, which must be able to hold {@value OpusPacket#OPUS_FRAME_SIZE} samples per channel
+     *
+     * @return The amount of decoded shorts, which are available from position 0 of the buffer, or -1 if decoding failed
+     */
+    public synchronized int decodeFec(byte[] data, int offset, int length, ShortBuffer decoded)
+    {
+        return decode(data, offset, length, decoded, true);
+    }
+
+    private int decode(byte[] data, int offset, int length, ShortBuffer decoded, boolean fec)
+    {
+        int result;
+        ((Buffer) decoded).clear();
+        if (opusDecoder == null) // closed
+            return -1;
+        if (data == null)
+        {
+            result = Opus.INSTANCE.opus_decode(opusDecoder, null, 0, decoded, OpusPacket.OPUS_FRAME_SIZE, 0);
+        }
+        else
+        {
+            byte[] buf = length <= opusBuffer.length ? opusBuffer : new byte[length];
+            System.arraycopy(data, offset, buf, 0, length);
+            result = Opus.INSTANCE.opus_decode(opusDecoder, buf, length, decoded, OpusPacket.OPUS_FRAME_SIZE, fec ? 1 : 0);
+        }
+
+        if (result < 0)
+        {
+            handleDecodeError(result);
+            return -1;
+        }
+
+        int shorts = result * OpusPacket.OPUS_CHANNEL_COUNT;
+        ((Buffer) decoded).position(0).limit(shorts);
+        return shorts;
+    }
+
     private void handleDecodeError(int result)
     {
         StringBuilder b = new StringBuilder("Decoder failed to decode audio from user with code ");
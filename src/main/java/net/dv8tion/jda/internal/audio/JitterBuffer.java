@@ -0,0 +1,337 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio;
+
+import net.dv8tion.jda.api.audio.OpusPacket;
+import net.dv8tion.jda.api.entities.User;
+
+import java.util.Arrays;
+
+/**
+ * Adaptive jitter buffer for the opus packets of one SSRC.
+ * <br>Packets are added in arrival order by the receiving thread and played out in sequence order, one frame per tick.
+ *
+ * <p>Playout of a talk spurt starts once its first packet has been delayed by the target delay.
+ * The target delay adapts to the interarrival jitter, as defined for RTP by RFC 3550, and is at most the configured latency.
+ * It only changes at the start of a talk spurt, so the audio within a spurt is never stretched.
+ *
+ * <p>If the next packet is missing when it is due, the frame is recovered with the forward error correction data of
+ * the following packet if that has already arrived, otherwise it is concealed by the decoder.
+ * Packets arriving after their frame was played out are dropped.
+ * Once nothing arrived for more than {@link #MAX_CONCEALED} frames, the talk spurt has ended and playout stops.
+ */
+public class JitterBuffer
+{
+    public static final int MAX_CONCEALED = 5;
+    private static final int FRAME_TIME = OpusPacket.OPUS_FRAME_TIME_AMOUNT;
+    private static final int SAMPLES_PER_MILLI = OpusPacket.OPUS_SAMPLE_RATE / 1000;
+
+    public enum Playout
+    {
+        /** No frame is due */
+        IDLE,
+        /** The frame is the opus audio of its packet */
+        PACKET,
+        /** The frame is the opus audio of the following packet, which has to be decoded with forward error correction */
+        FEC,
+        /** The packet is lost, the frame has to be concealed */
+        CONCEAL
+    }
+
+    private final int ssrc;
+    private final long maxLatency;
+    private final int mask;
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final char[] sequences;
+    private final boolean[] present;
+    private final byte[] frame = new byte[1920];
+    private int frameLength;
+
+    private volatile User user;
+    private Decoder decoder;
+    private int size;
+    private boolean playing;
+    private char nextSeq;
+    private long startAt;
+    private int concealed;
+
+    // Interarrival jitter in milliseconds
+    private double jitter;
+    private long lastArrival = -1;
+    private int lastTimestamp;
+    private long delay = FRAME_TIME;
+    private long lastPacket;
+    private long late, lost, recovered;
+    private boolean closed;
+
+    public JitterBuffer(int ssrc, long maxLatency)
+    {
+        this.ssrc = ssrc;
+        this.maxLatency = Math.max(FRAME_TIME, maxLatency);
+        int capacity = Integer.highestOneBit((int) (this.maxLatency / FRAME_TIME) + MAX_CONCEALED) << 1;
+        this.mask = capacity - 1;
+        this.slots = new byte[capacity][];
+        this.lengths = new int[capacity];
+        this.sequences = new char[capacity];
+        this.present = new boolean[capacity];
+    }
+
+    public int getSSRC()
+    {
+        return ssrc;
+    }
+
+    public User getUser()
+    {
+        return user;
+    }
+
+    public void setUser(User user)
+    {
+        this.user = user;
+    }
+
+    /**
+     * The decoder used for the playout, which is only used by the playout thread.
+     *
+     * @return The decoder, or null
+     */
+    public Decoder getDecoder()
+    {
+        return decoder;
+    }
+
+    public void setDecoder(Decoder decoder)
+    {
+        this.decoder = decoder;
+    }
+
+    /**
+     * Buffers the opus audio of a packet.
+     *
+     * @param  seq
+     *         The sequence of the packet
+     * @param  timestamp
+     *         The RTP timestamp of the packet
+     * @param  data
+     *         The array containing the opus audio
+     * @param  offset
+     *         The offset of the opus audio
+     * @param  length
+     *         The length of the opus audio
+     * @param  now
+     *         The current time in milliseconds
+     *
+     * @return False, if the packet arrived too late and was dropped
+     */
+    public synchronized boolean add(char seq, int timestamp, byte[] data, int offset, int length, long now)
+    {
+        // Not every sender advances the timestamp during silence, so the jitter is only measured within a talk spurt
+        if (lastArrival >= 0 && (playing || size > 0))
+        {
+            double transit = (now - lastArrival) - (timestamp - lastTimestamp) / (double) SAMPLES_PER_MILLI;
+            jitter += (Math.abs(transit) - jitter) / 16;
+        }
+        lastArrival = now;
+        lastTimestamp = timestamp;
+        lastPacket = now;
+
+        if (playing)
+        {
+            int distance = (short) (seq - nextSeq);
+            if (distance < 0)
+            {
+                late++;
+                return false;
+            }
+            if (distance > mask)
+            {
+                // The stream skipped ahead further than the buffer can hold, start a new talk spurt
+                reset();
+            }
+        }
+        if (!playing)
+        {
+            if (size == 0)
+            {
+                delay = Math.min(maxLatency, FRAME_TIME + Math.round(jitter * 3));
+                startAt = now + delay;
+                nextSeq = seq;
+            }
+            else if ((short) (seq - nextSeq) < 0)
+            {
+                nextSeq = seq;
+            }
+        }
+
+        int index = seq & mask;
+        if (!present[index])
+            size++;
+        byte[] slot = slots[index];
+        if (slot == null || slot.length < length)
+            slots[index] = slot = new byte[Math.max(length, 256)];
+        System.arraycopy(data, offset, slot, 0, length);
+        lengths[index] = length;
+        sequences[index] = seq;
+        present[index] = true;
+        return true;
+    }
+
+    /**
+     * Plays out the next frame if it is due. The frame is available from {@link #getFrame()} until the next call.
+     *
+     * @param  now
+     *         The current time in milliseconds
+     *
+     * @return How the frame has to be decoded
+     */
+    public synchronized Playout poll(long now)
+    {
+        if (!playing)
+        {
+            if (size == 0 || now < startAt)
+                return Playout.IDLE;
+            playing = true;
+            concealed = 0;
+        }
+
+        int index = nextSeq & mask;
+        if (present[index] && sequences[index] == nextSeq)
+        {
+            frameLength = lengths[index];
+            System.arraycopy(slots[index], 0, frame, 0, frameLength);
+            present[index] = false;
+            size--;
+            nextSeq++;
+            concealed = 0;
+            return Playout.PACKET;
+        }
+
+        // Packets are dropped once their frame has been played, this removes packets that were overwritten
+        removeStale();
+        if (size == 0 && concealed >= MAX_CONCEALED)
+        {
+            // Nothing arrived for a while, this is the end of the talk spurt
+            playing = false;
+            return Playout.IDLE;
+        }
+
+        concealed++;
+        lost++;
+        char followingSeq = (char) (nextSeq + 1);
+        int following = followingSeq & mask;
+        nextSeq++;
+        if (present[following] && sequences[following] == followingSeq)
+        {
+            frameLength = lengths[following];
+            System.arraycopy(slots[following], 0, frame, 0, frameLength);
+            recovered++;
+            return Playout.FEC;
+        }
+        frameLength = 0;
+        return Playout.CONCEAL;
+    }
+
+    public byte[] getFrame()
+    {
+        return frame;
+    }
+
+    public int getFrameLength()
+    {
+        return frameLength;
+    }
+
+    /**
+     * The time the last packet arrived at.
+     *
+     * @return The time in milliseconds
+     */
+    public synchronized long getLastPacket()
+    {
+        return lastPacket;
+    }
+
+    /**
+     * The delay of the current or last talk spurt.
+     *
+     * @return The delay in milliseconds
+     */
+    public synchronized long getDelay()
+    {
+        return delay;
+    }
+
+    public synchronized double getJitter()
+    {
+        return jitter;
+    }
+
+    public synchronized long getLateCount()
+    {
+        return late;
+    }
+
+    public synchronized long getLostCount()
+    {
+        return lost;
+    }
+
+    public synchronized long getRecoveredCount()
+    {
+        return recovered;
+    }
+
+    public synchronized boolean isClosed()
+    {
+        return closed;
+    }
+
+    public synchronized void close()
+    {
+        closed = true;
+        reset();
+        Arrays.fill(slots, null);
+        if (decoder != null)
+        {
+            decoder.close();
+            decoder = null;
+        }
+    }
+
+    private void removeStale()
+    {
+        for (int i = 0; i <= mask; i++)
+        {
+            if (present[i] && (short) (sequences[i] - nextSeq) < 0)
+            {
+                present[i] = false;
+                size--;
+            }
+        }
+    }
+
+    private void reset()
+    {
+        playing = false;
+        size = 0;
+        concealed = 0;
+        for (int i = 0; i <= mask; i++)
+            present[i] = false;
+    }
+}
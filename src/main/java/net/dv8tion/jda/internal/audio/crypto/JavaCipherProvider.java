@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio.crypto;
+
+import com.iwebpp.crypto.TweetNaclFast;
+import net.dv8tion.jda.api.audio.crypto.AudioCipher;
+import net.dv8tion.jda.api.audio.crypto.AudioCipherProvider;
+import net.dv8tion.jda.internal.utils.Checks;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Pure Java ciphers, using the in-place variants of {@link TweetNaclFast.SecretBox}.
+ * <br>The Salsa20 core of TweetNaclFast is fully unrolled into local variables and the in-place variants reuse a
+ * workspace, so sealing and opening a packet does not allocate.
+ */
+public class JavaCipherProvider implements AudioCipherProvider
+{
+    @NotNull
+    @Override
+    public String getName()
+    {
+        return "Java";
+    }
+
+    @Override
+    public boolean isAvailable()
+    {
+        return true;
+    }
+
+    @NotNull
+    @Override
+    public AudioCipher createCipher(@NotNull byte[] key)
+    {
+        Checks.notNull(key, "Key");
+        Checks.check(key.length == AudioCipher.KEY_LENGTH, "Key must be %d bytes long", AudioCipher.KEY_LENGTH);
+        return new Cipher(key.clone());
+    }
+
+    private static class Cipher implements AudioCipher
+    {
+        private final TweetNaclFast.SecretBox box;
+
+        private Cipher(byte[] key)
+        {
+            this.box = new TweetNaclFast.SecretBox(key);
+        }
+
+        @Override
+        public int seal(byte[] message, int moff, int mlen, byte[] nonce, byte[] out, int outoff)
+        {
+            return box.box(message, moff, mlen, nonce, out, outoff);
+        }
+
+        @Override
+        public int open(byte[] box, int boxoff, int boxlen, byte[] nonce, byte[] out, int outoff)
+        {
+            return this.box.open(box, boxoff, boxlen, nonce, out, outoff);
+        }
+    }
+}
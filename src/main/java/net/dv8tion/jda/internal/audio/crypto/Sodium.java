@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio.crypto;
+
+import com.sun.jna.Library;
+import com.sun.jna.Pointer;
+
+/**
+ * The functions of libsodium used by the {@link SodiumCipherProvider}.
+ *
+ * @see SodiumNatives
+ */
+public interface Sodium extends Library
+{
+    int sodium_init();
+
+    int crypto_secretbox_easy(Pointer c, Pointer m, long mlen, Pointer n, Pointer k);
+
+    int crypto_secretbox_open_easy(Pointer m, Pointer c, long clen, Pointer n, Pointer k);
+}
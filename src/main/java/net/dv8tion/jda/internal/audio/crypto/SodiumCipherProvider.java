@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio.crypto;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import net.dv8tion.jda.api.audio.crypto.AudioCipher;
+import net.dv8tion.jda.api.audio.crypto.AudioCipherProvider;
+import net.dv8tion.jda.internal.utils.Checks;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Ciphers backed by libsodium, see {@link SodiumNatives}.
+ *
+ * <p>JNA copies heap arrays for every call, which would break encrypting in place.
+ * Every cipher owns native memory for its key, its nonce and one packet instead. A packet is copied into it,
+ * sealed or opened in place and copied back, without allocating on the heap.
+ */
+public class SodiumCipherProvider implements AudioCipherProvider
+{
+    // Larger packets grow the workspace
+    private static final int DEFAULT_CAPACITY = 2048;
+
+    @NotNull
+    @Override
+    public String getName()
+    {
+        return "libsodium";
+    }
+
+    @Override
+    public boolean isAvailable()
+    {
+        return SodiumNatives.ensureSodium();
+    }
+
+    @NotNull
+    @Override
+    public AudioCipher createCipher(@NotNull byte[] key)
+    {
+        Checks.notNull(key, "Key");
+        Checks.check(key.length == AudioCipher.KEY_LENGTH, "Key must be %d bytes long", AudioCipher.KEY_LENGTH);
+        if (!isAvailable())
+            throw new IllegalStateException("libsodium is not available");
+        return new Cipher(SodiumNatives.getLibrary(), key);
+    }
+
+    private static class Cipher implements AudioCipher
+    {
+        private final Sodium sodium;
+        private final Memory key = new Memory(KEY_LENGTH);
+        private final Memory nonce = new Memory(NONCE_LENGTH);
+        // The box at offset 0, its message at the offset of the overhead
+        private Memory box;
+        private Pointer message;
+
+        private Cipher(Sodium sodium, byte[] key)
+        {
+            this.sodium = sodium;
+            this.key.write(0, key, 0, KEY_LENGTH);
+            allocate(DEFAULT_CAPACITY);
+        }
+
+        private void allocate(int capacity)
+        {
+            box = new Memory(capacity);
+            message = box.share(OVERHEAD_LENGTH);
+        }
+
+        @Override
+        public int seal(byte[] message, int moff, int mlen, byte[] nonce, byte[] out, int outoff)
+        {
+            if (!(message != null && mlen >= 0 && moff >= 0 && message.length >= moff + mlen &&
+                    nonce != null && nonce.length == NONCE_LENGTH &&
+                    out != null && outoff >= 0 && out.length >= outoff + OVERHEAD_LENGTH + mlen))
+                return -1;
+            if (box.size() < OVERHEAD_LENGTH + mlen)
+                allocate(OVERHEAD_LENGTH + mlen);
+
+            this.nonce.write(0, nonce, 0, NONCE_LENGTH);
+            this.message.write(0, message, moff, mlen);
+            if (sodium.crypto_secretbox_easy(box, this.message, mlen, this.nonce, key) != 0)
+                return -1;
+            box.read(0, out, outoff, OVERHEAD_LENGTH + mlen);
+            return OVERHEAD_LENGTH + mlen;
+        }
+
+        @Override
+        public int open(byte[] box, int boxoff, int boxlen, byte[] nonce, byte[] out, int outoff)
+        {
+            if (!(box != null && boxlen >= OVERHEAD_LENGTH && boxoff >= 0 && box.length >= boxoff + boxlen &&
+                    nonce != null && nonce.length == NONCE_LENGTH &&
+                    out != null && outoff >= 0 && out.length >= outoff + boxlen - OVERHEAD_LENGTH))
+                return -1;
+            if (this.box.size() < boxlen)
+                allocate(boxlen);
+
+            int mlen = boxlen - OVERHEAD_LENGTH;
+            this.nonce.write(0, nonce, 0, NONCE_LENGTH);
+            this.box.write(0, box, boxoff, boxlen);
+            if (sodium.crypto_secretbox_open_easy(message, this.box, boxlen, this.nonce, key) != 0)
+                return -1;
+            message.read(0, out, outoff, mlen);
+            return mlen;
+        }
+    }
+}
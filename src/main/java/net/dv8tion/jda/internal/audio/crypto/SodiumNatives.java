@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.audio.crypto;
+
+import com.sun.jna.Native;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.slf4j.Logger;
+
+/**
+ * Controller used by JDA to load the libsodium library of the system.
+ * <br>Unlike opus, libsodium is not shipped with JDA. It is loaded through JNA from the library path,
+ * the name of the library can be changed with the system property {@value #LIBRARY_PROPERTY}.
+ */
+public final class SodiumNatives
+{
+    public static final String LIBRARY_PROPERTY = "jda.sodium.library";
+    private static final Logger LOG = JDALogger.getLog(SodiumNatives.class);
+    private static boolean initialized;
+    private static Sodium library;
+
+    private SodiumNatives() {}
+
+    /**
+     * Whether libsodium is loaded or not.
+     * <br>This is initialized by the first call to {@link #ensureSodium()}.
+     *
+     * @return True, libsodium is loaded.
+     */
+    public static synchronized boolean isSodiumSupported()
+    {
+        return library != null;
+    }
+
+    /**
+     * Whether this class was already initialized or not.
+     *
+     * @return True, if this class was already initialized.
+     *
+     * @see    #ensureSodium()
+     */
+    public static synchronized boolean isInitialized()
+    {
+        return initialized;
+    }
+
+    /**
+     * Checks whether libsodium was loaded, if not it will be initialized here.
+     *
+     * @return True, if the library could be loaded.
+     */
+    public static synchronized boolean ensureSodium()
+    {
+        if (initialized)
+            return library != null;
+        initialized = true;
+        if (!isJnaAvailable())
+        {
+            // The jar without opus does not include JNA either
+            LOG.debug("JNA is not available, using the Java implementation for audio encryption");
+            return false;
+        }
+        try
+        {
+            Sodium sodium = (Sodium) Native.loadLibrary(System.getProperty(LIBRARY_PROPERTY, "sodium"), Sodium.class);
+            // 1 means it was initialized already
+            if (sodium.sodium_init() < 0)
+                LOG.warn("libsodium could not be initialized");
+            else
+                library = sodium;
+        }
+        catch (UnsatisfiedLinkError e)
+        {
+            LOG.debug("libsodium is not installed, using the Java implementation for audio encryption");
+        }
+        catch (Throwable e)
+        {
+            LOG.warn("Failed to load libsodium", e);
+        }
+        finally
+        {
+            if (library != null)
+                LOG.info("Loaded libsodium for audio encryption");
+        }
+        return library != null;
+    }
+
+    private static boolean isJnaAvailable()
+    {
+        try
+        {
+            Class.forName("com.sun.jna.Native", false, SodiumNatives.class.getClassLoader());
+            return true;
+        }
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            return false;
+        }
+    }
+
+    static synchronized Sodium getLibrary()
+    {
+        return library;
+    }
+}
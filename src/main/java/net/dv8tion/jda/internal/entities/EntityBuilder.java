@@ -58,6 +58,7 @@ import net.dv8tion.jda.internal.entities.mixin.channel.attribute.IPermissionCont
 import net.dv8tion.jda.internal.entities.mixin.channel.middleman.AudioChannelMixin;
 import net.dv8tion.jda.internal.entities.sticker.*;
 import net.dv8tion.jda.internal.handle.EventCache;
+import net.dv8tion.jda.internal.handle.GuildHydrationController;
 import net.dv8tion.jda.internal.utils.Helpers;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import net.dv8tion.jda.internal.utils.UnlockHook;
@@ -152,9 +153,12 @@ public class EntityBuilder {
     private void createGuildEmojiPass(GuildImpl guildObj, DataArray array) {
         if (!getJDA().isCacheFlagSet(CacheFlag.EMOJI))
             return;
-        SnowflakeCacheViewImpl<RichCustomEmoji> emojiView = guildObj.getEmojisView();
-        try (UnlockHook hook = emojiView.writeLock()) {
+        SnowflakeCacheViewImpl<RichCustomEmoji> emojiView = guildObj.getEmojisView(),
+                globalEmojiView = getJDA().getEmojisView();
+        try (UnlockHook hook = emojiView.writeLock();
+             UnlockHook globalHook = globalEmojiView.writeLock()) {
             TLongObjectMap<RichCustomEmoji> emojiMap = emojiView.getMap();
+            TLongObjectMap<RichCustomEmoji> globalEmojiMap = globalEmojiView.getMap();
             for (int i = 0; i < array.length(); i++) {
                 DataObject object = array.getObject(i);
                 if (object.isNull("id")) {
@@ -162,7 +166,9 @@ public class EntityBuilder {
                     continue;
                 }
                 final long emojiId = object.getLong("id");
-                emojiMap.put(emojiId, createEmoji(guildObj, object));
+                RichCustomEmojiImpl emoji = createEmoji(guildObj, object);
+                emojiMap.put(emojiId, emoji);
+                globalEmojiMap.put(emojiId, emoji);
             }
         }
     }
@@ -193,6 +199,26 @@ public class EntityBuilder {
     }
 
     public GuildImpl createGuild(long guildId, DataObject guildJson, TLongObjectMap<DataObject> members, int memberCount) {
+        return publishGuild(prepareGuild(guildId, guildJson, members, memberCount));
+    }
+
+    /**
+     * Builds the parts of a guild which are not shared with other guilds, such as roles, members and presences.
+     * <br>This neither modifies shared caches nor fires events, so several guilds can be prepared in parallel.
+     * The result has to be passed to {@link #publishGuild(PreparedGuild)} on the dispatching thread.
+     *
+     * @param  guildId
+     *         The guild id
+     * @param  guildJson
+     *         The guild payload, must not be modified until the guild is published
+     * @param  members
+     *         The member payloads by user id, must not be modified until the guild is published
+     * @param  memberCount
+     *         The total member count
+     *
+     * @return The prepared guild
+     */
+    public PreparedGuild prepareGuild(long guildId, DataObject guildJson, TLongObjectMap<DataObject> members, int memberCount) {
         final GuildImpl guildObj = new GuildImpl(getJDA(), guildId);
         final String name = guildJson.getString("name", "");
         final String iconId = guildJson.getString("icon", null);
@@ -202,18 +228,9 @@ public class EntityBuilder {
         final String bannerId = guildJson.getString("banner", null);
         final String locale = guildJson.getString("preferred_locale", "en-US");
         final DataArray roleArray = guildJson.getArray("roles");
-        final DataArray channelArray = guildJson.getArray("channels");
-        final DataArray threadArray = guildJson.getArray("threads");
-        final DataArray emojisArray = guildJson.getArray("emojis");
-        final DataArray stickersArray = guildJson.getArray("stickers");
-        final DataArray voiceStateArray = guildJson.getArray("voice_states");
         final Optional<DataArray> featuresArray = guildJson.optArray("features");
         final Optional<DataArray> presencesArray = guildJson.optArray("presences");
         final long ownerId = guildJson.getUnsignedLong("owner_id", 0L);
-        final long afkChannelId = guildJson.getUnsignedLong("afk_channel_id", 0L);
-        final long systemChannelId = guildJson.getUnsignedLong("system_channel_id", 0L);
-        final long rulesChannelId = guildJson.getUnsignedLong("rules_channel_id", 0L);
-        final long communityUpdatesChannelId = guildJson.getUnsignedLong("public_updates_channel_id", 0L);
         final int boostCount = guildJson.getInt("premium_subscription_count", 0);
         final int boostTier = guildJson.getInt("premium_tier", 0);
         final int maxMembers = guildJson.getInt("max_members", 0);
@@ -247,11 +264,6 @@ public class EntityBuilder {
                 .setNSFWLevel(Guild.NSFWLevel.fromKey(nsfwLevel))
                 .setBoostProgressBarEnabled(boostProgressBarEnabled);
 
-        SnowflakeCacheViewImpl<Guild> guildView = getJDA().getGuildsView();
-        try (UnlockHook hook = guildView.writeLock()) {
-            guildView.getMap().put(guildId, guildObj);
-        }
-
         guildObj.setFeatures(featuresArray.map(it ->
                 StreamSupport.stream(it.spliterator(), false)
                         .map(String::valueOf)
@@ -263,29 +275,81 @@ public class EntityBuilder {
             TLongObjectMap<Role> map = roleView.getMap();
             for (int i = 0; i < roleArray.length(); i++) {
                 DataObject obj = roleArray.getObject(i);
-                Role role = createRole(guildObj, obj, guildId);
+                RoleImpl role = new RoleImpl(obj.getLong("id"), guildObj);
+                updateRole(role, obj);
                 map.put(role.getIdLong(), role);
                 if (role.getIdLong() == guildObj.getIdLong())
                     guildObj.setPublicRole(role);
             }
         }
 
-        for (int i = 0; i < channelArray.length(); i++) {
-            DataObject channelJson = channelArray.getObject(i);
-            createGuildChannel(guildObj, channelJson);
+        // Users are only looked up here, updates of known users are applied once the guild is published
+        TLongObjectMap<DataObject> presences = presencesArray.map(o1 -> Helpers.convertToMap(o2 -> o2.getObject("user").getUnsignedLong("id"), o1)).orElseGet(TLongObjectHashMap::new);
+        SnowflakeCacheViewImpl<User> userView = getJDA().getUsersView();
+        List<MemberImpl> memberList = new ArrayList<>(members.size());
+        for (DataObject memberJson : members.valueCollection()) {
+            DataObject userJson = memberJson.getObject("user");
+            long userId = userJson.getUnsignedLong("id");
+            UserImpl user = (UserImpl) userView.get(userId);
+            if (user == null)
+                user = initUser(new UserImpl(userId, getJDA()), userJson);
+            MemberImpl member = initMember(guildObj, user, memberJson);
+            DataObject presence = presences.get(userId);
+            if (presence != null)
+                createPresence(member, presence);
+            memberList.add(member);
+        }
+
+        return new PreparedGuild(guildObj, guildJson, members, memberList);
+    }
+
+    /**
+     * Adds a {@link #prepareGuild(long, DataObject, TLongObjectMap, int) prepared guild} to the cache.
+     * <br>This builds the channels of the guild and its emojis and stickers, unless the guild is kept compact,
+     * and updates the shared user cache, which might fire events. This must be called on the dispatching thread.
+     *
+     * @param  prepared
+     *         The prepared guild
+     *
+     * @return The guild
+     */
+    public GuildImpl publishGuild(PreparedGuild prepared) {
+        final GuildImpl guildObj = prepared.guild;
+        final long guildId = guildObj.getIdLong();
+        final DataObject guildJson = prepared.json;
+        final DataArray roleArray = guildJson.getArray("roles");
+        final DataArray voiceStateArray = guildJson.getArray("voice_states");
+
+        SnowflakeCacheViewImpl<Guild> guildView = getJDA().getGuildsView();
+        try (UnlockHook hook = guildView.writeLock()) {
+            guildView.getMap().put(guildId, guildObj);
         }
 
+        // The roles are indexed here, since prepared guilds must not modify shared caches
+        SnowflakeCacheViewImpl<Role> globalRoleView = getJDA().getRolesView();
+        try (UnlockHook hook = globalRoleView.writeLock()) {
+            TLongObjectMap<Role> globalRoleMap = globalRoleView.getMap();
+            guildObj.getRolesView().forEachUnordered(role -> globalRoleMap.put(role.getIdLong(), role));
+        }
+
+        for (int i = 0; i < roleArray.length(); i++)
+            getJDA().getEventCache().playbackCache(EventCache.Type.ROLE, roleArray.getObject(i).getLong("id"));
+
+        createGuildChannels(guildObj, guildJson.getArray("channels"));
+
         TLongObjectMap<DataObject> voiceStates = Helpers.convertToMap((o) -> o.getUnsignedLong("user_id", 0L), voiceStateArray);
-        TLongObjectMap<DataObject> presences = presencesArray.map(o1 -> Helpers.convertToMap(o2 -> o2.getObject("user").getUnsignedLong("id"), o1)).orElseGet(TLongObjectHashMap::new);
         try (UnlockHook h1 = guildObj.getMembersView().writeLock();
              UnlockHook h2 = getJDA().getUsersView().writeLock()) {
             //Add members to cache when subscriptions are disabled when they appear here
             // this is done because we can still keep track of members in voice channels
-            for (DataObject memberJson : members.valueCollection()) {
-                long userId = memberJson.getObject("user").getUnsignedLong("id");
-                DataObject voiceState = voiceStates.get(userId);
-                DataObject presence = presences.get(userId);
-                updateMemberCache(createMember(guildObj, memberJson, voiceState, presence));
+            for (MemberImpl member : prepared.members) {
+                // Resolves to the cached user, which might have been added after the guild was prepared
+                UserImpl user = (UserImpl) member.getUser();
+                updateUser(user, prepared.memberJson.get(member.getIdLong()).getObject("user"));
+                DataObject voiceState = voiceStates.get(member.getIdLong());
+                if (voiceState != null && member.getVoiceState() != null)
+                    createVoiceState(guildObj, voiceState, user, member);
+                updateMemberCache(member);
             }
         }
 
@@ -303,13 +367,56 @@ public class EntityBuilder {
             });
         }
 
+        createGuildContent(guildObj, guildJson);
+
+        GuildHydrationController hydration = getJDA().getGuildHydrationController();
+        byte[] compactData = hydration == null ? null : hydration.compact(guildJson);
+        if (compactData != null) {
+            // Emojis and stickers are built on first access
+            guildObj.setCompactData(compactData);
+            return guildObj;
+        }
+
+        createGuildEmojiPass(guildObj, guildJson.getArray("emojis"));
+        createGuildStickerPass(guildObj, guildJson.getArray("stickers"));
+        return guildObj;
+    }
+
+    /**
+     * Builds the emojis and stickers of a compact guild.
+     *
+     * @param  guildObj
+     *         The guild with its roles and members
+     * @param  compactData
+     *         The compact payload of the guild
+     *
+     * @see    GuildHydrationController
+     */
+    public void hydrateGuild(GuildImpl guildObj, DataObject compactData) {
+        createGuildEmojiPass(guildObj, compactData.getArray("emojis"));
+        createGuildStickerPass(guildObj, compactData.getArray("stickers"));
+    }
+
+    private void createGuildChannels(GuildImpl guildObj, DataArray channelArray) {
+        for (int i = 0; i < channelArray.length(); i++) {
+            DataObject channelJson = channelArray.getObject(i);
+            createGuildChannel(guildObj, channelJson);
+        }
+    }
+
+    // Threads need the self member, so this happens after the members have been added
+    private void createGuildContent(GuildImpl guildObj, DataObject guildJson) {
+        final DataArray threadArray = guildJson.getArray("threads");
+        final long afkChannelId = guildJson.getUnsignedLong("afk_channel_id", 0L);
+        final long systemChannelId = guildJson.getUnsignedLong("system_channel_id", 0L);
+        final long rulesChannelId = guildJson.getUnsignedLong("rules_channel_id", 0L);
+        final long communityUpdatesChannelId = guildJson.getUnsignedLong("public_updates_channel_id", 0L);
+
         for (int i = 0; i < threadArray.length(); i++) {
             DataObject threadJson = threadArray.getObject(i);
             createThreadChannel(guildObj, threadJson, guildObj.getIdLong());
         }
 
-        createGuildEmojiPass(guildObj, emojisArray);
-        createGuildStickerPass(guildObj, stickersArray);
         guildJson.optArray("stage_instances")
                 .map(arr -> arr.stream(DataArray::getObject))
                 .ifPresent(list -> list.forEach(it -> createStageInstance(guildObj, it)));
@@ -318,8 +425,6 @@ public class EntityBuilder {
                 .setSystemChannel(guildObj.getTextChannelById(systemChannelId))
                 .setRulesChannel(guildObj.getTextChannelById(rulesChannelId))
                 .setCommunityUpdatesChannel(guildObj.getTextChannelById(communityUpdatesChannelId));
-
-        return guildObj;
     }
 
     private void createGuildChannel(GuildImpl guildObj, DataObject channelData) {
@@ -359,19 +464,9 @@ public class EntityBuilder {
             }
         }
 
-        User.Profile profile = user.hasKey("banner")
-                ? new User.Profile(id, user.getString("banner", null), user.getInt("accent_color", User.DEFAULT_ACCENT_COLOR_RAW))
-                : null;
-
         if (newUser) {
             // Initial creation
-            userObj.setName(user.getString("username"))
-                    .setDiscriminator(user.get("discriminator").toString())
-                    .setAvatarId(user.getString("avatar", null))
-                    .setBot(user.getBoolean("bot"))
-                    .setSystem(user.getBoolean("system"))
-                    .setFlags(user.getInt("public_flags", 0))
-                    .setProfile(profile);
+            initUser(userObj, user);
         } else {
             // Fire update events
             updateUser(userObj, user);
@@ -380,6 +475,20 @@ public class EntityBuilder {
         return userObj;
     }
 
+    private UserImpl initUser(UserImpl userObj, DataObject user) {
+        User.Profile profile = user.hasKey("banner")
+                ? new User.Profile(userObj.getIdLong(), user.getString("banner", null), user.getInt("accent_color", User.DEFAULT_ACCENT_COLOR_RAW))
+                : null;
+
+        return userObj.setName(user.getString("username"))
+                .setDiscriminator(user.get("discriminator").toString())
+                .setAvatarId(user.getString("avatar", null))
+                .setBot(user.getBoolean("bot"))
+                .setSystem(user.getBoolean("system"))
+                .setFlags(user.getInt("public_flags", 0))
+                .setProfile(profile);
+    }
+
     public void updateUser(UserImpl userObj, DataObject user) {
         String oldName = userObj.getName();
         String newName = user.getString("username");
@@ -489,29 +598,7 @@ public class EntityBuilder {
         MemberImpl member = (MemberImpl) guild.getMember(user);
         if (member == null) {
             // Create a brand new member
-            member = new MemberImpl(guild, user);
-            member.setNickname(memberJson.getString("nick", null));
-            member.setAvatarId(memberJson.getString("avatar", null));
-
-            long boostTimestamp = memberJson.isNull("premium_since")
-                    ? 0
-                    : Helpers.toTimestamp(memberJson.getString("premium_since"));
-            member.setBoostDate(boostTimestamp);
-
-            long timeOutTimestamp = memberJson.isNull("communication_disabled_until")
-                    ? 0
-                    : Helpers.toTimestamp(memberJson.getString("communication_disabled_until"));
-            member.setTimeOutEnd(timeOutTimestamp);
-
-            if (!memberJson.isNull("pending"))
-                member.setPending(memberJson.getBoolean("pending"));
-            Set<Role> roles = member.getRoleSet();
-            for (int i = 0; i < roleArray.length(); i++) {
-                long roleId = roleArray.getUnsignedLong(i);
-                Role role = guild.getRoleById(roleId);
-                if (role != null)
-                    roles.add(role);
-            }
+            member = initMember(guild, user, memberJson);
         } else {
             // Update cached member and fire events
             List<Role> roles = new ArrayList<>(roleArray.length());
@@ -537,6 +624,36 @@ public class EntityBuilder {
         return member;
     }
 
+    private MemberImpl initMember(GuildImpl guild, User user, DataObject memberJson) {
+        MemberImpl member = new MemberImpl(guild, user);
+        DataArray roleArray = memberJson.getArray("roles");
+        member.setNickname(memberJson.getString("nick", null));
+        member.setAvatarId(memberJson.getString("avatar", null));
+
+        long boostTimestamp = memberJson.isNull("premium_since")
+                ? 0
+                : Helpers.toTimestamp(memberJson.getString("premium_since"));
+        member.setBoostDate(boostTimestamp);
+
+        long timeOutTimestamp = memberJson.isNull("communication_disabled_until")
+                ? 0
+                : Helpers.toTimestamp(memberJson.getString("communication_disabled_until"));
+        member.setTimeOutEnd(timeOutTimestamp);
+
+        if (!memberJson.isNull("joined_at"))
+            member.setJoinDate(Helpers.toTimestamp(memberJson.getString("joined_at")));
+        if (!memberJson.isNull("pending"))
+            member.setPending(memberJson.getBoolean("pending"));
+        Set<Role> roles = member.getRoleSet();
+        for (int i = 0; i < roleArray.length(); i++) {
+            long roleId = roleArray.getUnsignedLong(i);
+            Role role = guild.getRoleById(roleId);
+            if (role != null)
+                roles.add(role);
+        }
+        return member;
+    }
+
     private void createVoiceState(GuildImpl guild, DataObject voiceStateJson, User user, MemberImpl member) {
         GuildVoiceStateImpl voiceState = (GuildVoiceStateImpl) member.getVoiceState();
 
@@ -1179,12 +1296,24 @@ public class EntityBuilder {
             guild = (GuildImpl) getJDA().getGuildsView().get(guildId);
         RoleImpl role = (RoleImpl) guild.getRolesView().get(id);
         if (role == null) {
-            SnowflakeCacheViewImpl<Role> roleView = guild.getRolesView();
-            try (UnlockHook hook = roleView.writeLock()) {
+            SnowflakeCacheViewImpl<Role>
+                    roleView = guild.getRolesView(),
+                    globalRoleView = getJDA().getRolesView();
+            try (
+                    UnlockHook hook = roleView.writeLock();
+                    UnlockHook globalHook = globalRoleView.writeLock()) {
                 role = new RoleImpl(id, guild);
                 playbackCache = roleView.getMap().put(id, role) == null;
+                globalRoleView.getMap().put(id, role);
             }
         }
+        updateRole(role, roleJson);
+        if (playbackCache)
+            getJDA().getEventCache().playbackCache(EventCache.Type.ROLE, id);
+        return role;
+    }
+
+    private void updateRole(RoleImpl role, DataObject roleJson) {
         final int color = roleJson.getInt("color");
         role.setName(roleJson.getString("name"))
                 .setRawPosition(roleJson.getInt("position"))
@@ -1200,11 +1329,7 @@ public class EntityBuilder {
         if (iconId == null && emoji == null)
             role.setIcon(null);
         else
-            role.setIcon(new RoleIcon(iconId, emoji, id));
-
-        if (playbackCache)
-            getJDA().getEventCache().playbackCache(EventCache.Type.ROLE, id);
-        return role;
+            role.setIcon(new RoleIcon(iconId, emoji, role.getIdLong()));
     }
 
     public ReceivedMessage createMessageWithChannel(DataObject json, @NotNull MessageChannel channel, boolean modifyCache) {
@@ -1996,4 +2121,21 @@ public class EntityBuilder {
 
         return mappedObjects;
     }
+
+    /**
+     * A guild which has been built by {@link #prepareGuild(long, DataObject, TLongObjectMap, int)} but is not cached yet.
+     */
+    public static class PreparedGuild {
+        private final GuildImpl guild;
+        private final DataObject json;
+        private final TLongObjectMap<DataObject> memberJson;
+        private final List<MemberImpl> members;
+
+        private PreparedGuild(GuildImpl guild, DataObject json, TLongObjectMap<DataObject> memberJson, List<MemberImpl> members) {
+            this.guild = guild;
+            this.json = json;
+            this.memberJson = memberJson;
+            this.members = members;
+        }
+    }
 }
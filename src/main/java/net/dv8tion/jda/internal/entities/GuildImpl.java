@@ -55,6 +55,7 @@ import net.dv8tion.jda.api.utils.data.DataArray;
 import net.dv8tion.jda.api.utils.data.DataObject;
 import net.dv8tion.jda.internal.JDAImpl;
 import net.dv8tion.jda.internal.handle.EventCache;
+import net.dv8tion.jda.internal.handle.GuildHydrationController;
 import net.dv8tion.jda.internal.interactions.CommandDataImpl;
 import net.dv8tion.jda.internal.interactions.command.CommandImpl;
 import net.dv8tion.jda.internal.managers.AudioManagerImpl;
@@ -72,6 +73,7 @@ import net.dv8tion.jda.internal.utils.Helpers;
 import net.dv8tion.jda.internal.utils.PermissionUtil;
 import net.dv8tion.jda.internal.utils.UnlockHook;
 import net.dv8tion.jda.internal.utils.cache.AbstractCacheView;
+import net.dv8tion.jda.internal.utils.cache.ChannelCacheViewImpl;
 import net.dv8tion.jda.internal.utils.cache.MemberCacheViewImpl;
 import net.dv8tion.jda.internal.utils.cache.SnowflakeCacheViewImpl;
 import net.dv8tion.jda.internal.utils.cache.SortedSnowflakeCacheViewImpl;
@@ -97,12 +99,14 @@ public class GuildImpl implements Guild
     private final long id;
     private final JDAImpl api;
 
-    private final SortedSnowflakeCacheViewImpl<Category> categoryCache = new SortedSnowflakeCacheViewImpl<>(Category.class, Channel::getName, Comparator.naturalOrder());
-    private final SortedSnowflakeCacheViewImpl<VoiceChannel> voiceChannelCache = new SortedSnowflakeCacheViewImpl<>(VoiceChannel.class, Channel::getName, Comparator.naturalOrder());
-    private final SortedSnowflakeCacheViewImpl<TextChannel> textChannelCache = new SortedSnowflakeCacheViewImpl<>(TextChannel.class, Channel::getName, Comparator.naturalOrder());
-    private final SortedSnowflakeCacheViewImpl<NewsChannel> newsChannelCache = new SortedSnowflakeCacheViewImpl<>(NewsChannel.class, Channel::getName, Comparator.naturalOrder());
-    private final SortedSnowflakeCacheViewImpl<StageChannel> stageChannelCache = new SortedSnowflakeCacheViewImpl<>(StageChannel.class, Channel::getName, Comparator.naturalOrder());
-    private final SortedSnowflakeCacheViewImpl<ThreadChannel> threadChannelCache = new SortedSnowflakeCacheViewImpl<>(ThreadChannel.class, Channel::getName, Comparator.naturalOrder());
+    // Every channel of this guild by id, the typed caches below are filtered views of this index
+    private final ChannelCacheViewImpl channelCache = new ChannelCacheViewImpl();
+    private final SortedSnowflakeCacheViewImpl<Category> categoryCache = channelCache.createSortedView(Category.class);
+    private final SortedSnowflakeCacheViewImpl<VoiceChannel> voiceChannelCache = channelCache.createSortedView(VoiceChannel.class);
+    private final SortedSnowflakeCacheViewImpl<TextChannel> textChannelCache = channelCache.createSortedView(TextChannel.class);
+    private final SortedSnowflakeCacheViewImpl<NewsChannel> newsChannelCache = channelCache.createSortedView(NewsChannel.class);
+    private final SortedSnowflakeCacheViewImpl<StageChannel> stageChannelCache = channelCache.createSortedView(StageChannel.class);
+    private final SortedSnowflakeCacheViewImpl<ThreadChannel> threadChannelCache = channelCache.createSortedView(ThreadChannel.class);
     private final SortedSnowflakeCacheViewImpl<Role> roleCache = new SortedSnowflakeCacheViewImpl<>(Role.class, Role::getName, Comparator.reverseOrder());
     private final SnowflakeCacheViewImpl<RichCustomEmoji> emojicache = new SnowflakeCacheViewImpl<>(RichCustomEmoji.class, RichCustomEmoji::getName);
     private final SnowflakeCacheViewImpl<GuildSticker> stickerCache = new SnowflakeCacheViewImpl<>(GuildSticker.class, GuildSticker::getName);
@@ -136,6 +140,13 @@ public class GuildImpl implements Guild
     private int memberCount;
     private boolean boostProgressBarEnabled;
 
+    // Emojis and stickers of a dormant guild, see GuildHydrationController
+    private volatile byte[] compactData;
+    // The payload this guild was hydrated from, as long as no event changed the caches since
+    private byte[] hydratedData;
+    private boolean hydrating;
+    private volatile long lastAccess;
+
     public GuildImpl(JDAImpl api, long id)
     {
         this.id = id;
@@ -148,9 +159,136 @@ public class GuildImpl implements Guild
 
     public void invalidate()
     {
+        // A compact guild has no emojis in the global cache, there is no need to hydrate it
+        compactData = null;
         //Remove everything from global cache
         // this prevents some race-conditions for getting audio managers from guilds
         SnowflakeCacheViewImpl<Guild> guildView = getJDA().getGuildsView();
+        guildView.remove(id);
+        removeChannels();
+        removeRoles();
+        removeEmojis();
+
+        // Clear audio connection
+        getJDA().getClient().removeAudioConnection(id);
+        final AbstractCacheView<AudioManager> audioManagerView = getJDA().getAudioManagersView();
+        final AudioManagerImpl manager = (AudioManagerImpl) audioManagerView.get(id); //read-lock access/release
+        if (manager != null)
+            manager.closeAudioConnection(ConnectionStatus.DISCONNECTED_REMOVED_FROM_GUILD); //connection-lock access/release
+        audioManagerView.remove(id); //write-lock access/release
+
+        //cleaning up all users that we do not share a guild with anymore
+        // Anything left in memberIds will be removed from the main userMap
+        //Use a new HashSet so that we don't actually modify the Member map so it doesn't affect Guild#getMembers for the leave event.
+        TLongSet memberIds = getMembersView().keySet(); // copies keys
+        getJDA().getGuildCache().stream()
+                .map(GuildImpl.class::cast)
+                .forEach(g -> memberIds.removeAll(g.getMembersView().keySet()));
+        // Remember, everything left in memberIds is removed from the userMap
+        SnowflakeCacheViewImpl<User> userView = getJDA().getUsersView();
+        try (UnlockHook hook = userView.writeLock())
+        {
+            long selfId = getJDA().getSelfUser().getIdLong();
+            memberIds.forEach(memberId -> {
+                if (memberId == selfId)
+                    return true; // don't remove selfUser from cache
+                userView.remove(memberId);
+                getJDA().getEventCache().clear(EventCache.Type.USER, memberId);
+                return true;
+            });
+        }
+    }
+
+    public boolean isCompact()
+    {
+        return compactData != null;
+    }
+
+    public byte[] getCompactData()
+    {
+        return compactData;
+    }
+
+    public void setCompactData(byte[] compactData)
+    {
+        this.compactData = compactData;
+    }
+
+    /**
+     * Builds the emojis and stickers of a compact guild.
+     * <br>This is called by every getter of these caches and does nothing for a guild which is already hydrated.
+     */
+    public void hydrate()
+    {
+        GuildHydrationController controller = getJDA().getGuildHydrationController();
+        if (controller == null)
+            return;
+        lastAccess = System.nanoTime();
+        if (compactData == null)
+            return;
+
+        synchronized (this)
+        {
+            byte[] data = compactData;
+            // The entity builder uses the getters of this guild while hydrating
+            if (data == null || hydrating)
+                return;
+            hydrating = true;
+            try
+            {
+                getJDA().getEntityBuilder().hydrateGuild(this, DataObject.fromETF(data));
+                hydratedData = data;
+                compactData = null;
+                controller.track(this);
+            }
+            finally
+            {
+                hydrating = false;
+            }
+        }
+    }
+
+    public synchronized void discardHydratedData()
+    {
+        hydratedData = null;
+    }
+
+    /**
+     * Removes the emojis and stickers of this guild from the cache, if they have not been accessed for the provided time.
+     * <br>The guild is hydrated from the payload it was hydrated from before, on the next access.
+     *
+     * @param  now
+     *         The current {@link System#nanoTime()}
+     * @param  idleTime
+     *         The idle time in nanoseconds
+     *
+     * @return True, if this guild has been compacted
+     */
+    public synchronized boolean compactIfIdle(long now, long idleTime)
+    {
+        GuildHydrationController controller = getJDA().getGuildHydrationController();
+        if (compactData != null || hydratedData == null)
+        {
+            controller.untrack(this);
+            return false;
+        }
+        if (now - lastAccess < idleTime)
+            return false;
+        // Looking up one of these emojis hydrates this guild again
+        long[] emojiIds = emojicache.keySet().toArray();
+        removeEmojis();
+        controller.addDormantEmojis(id, emojiIds);
+        emojicache.clear();
+        stickerCache.clear();
+        compactData = hydratedData;
+        hydratedData = null;
+        // Untracked while holding the lock, so a concurrent hydration tracks this guild again afterwards
+        controller.untrack(this);
+        return true;
+    }
+
+    private void removeChannels()
+    {
         SnowflakeCacheViewImpl<StageChannel> stageView = getJDA().getStageChannelView();
         SnowflakeCacheViewImpl<TextChannel> textView = getJDA().getTextChannelsView();
         SnowflakeCacheViewImpl<ThreadChannel> threadView = getJDA().getThreadChannelsView();
@@ -158,8 +296,6 @@ public class GuildImpl implements Guild
         SnowflakeCacheViewImpl<VoiceChannel> voiceView = getJDA().getVoiceChannelsView();
         SnowflakeCacheViewImpl<Category> categoryView = getJDA().getCategoriesView();
 
-        guildView.remove(id);
-
         try (UnlockHook hook = stageView.writeLock())
         {
             getStageChannelCache()
@@ -190,34 +326,23 @@ public class GuildImpl implements Guild
             getCategoryCache()
                 .forEachUnordered(chan -> categoryView.getMap().remove(chan.getIdLong()));
         }
+    }
 
-        // Clear audio connection
-        getJDA().getClient().removeAudioConnection(id);
-        final AbstractCacheView<AudioManager> audioManagerView = getJDA().getAudioManagersView();
-        final AudioManagerImpl manager = (AudioManagerImpl) audioManagerView.get(id); //read-lock access/release
-        if (manager != null)
-            manager.closeAudioConnection(ConnectionStatus.DISCONNECTED_REMOVED_FROM_GUILD); //connection-lock access/release
-        audioManagerView.remove(id); //write-lock access/release
+    private void removeRoles()
+    {
+        SnowflakeCacheViewImpl<Role> roleView = getJDA().getRolesView();
+        try (UnlockHook hook = roleView.writeLock())
+        {
+            roleCache.forEachUnordered(role -> roleView.getMap().remove(role.getIdLong()));
+        }
+    }
 
-        //cleaning up all users that we do not share a guild with anymore
-        // Anything left in memberIds will be removed from the main userMap
-        //Use a new HashSet so that we don't actually modify the Member map so it doesn't affect Guild#getMembers for the leave event.
-        TLongSet memberIds = getMembersView().keySet(); // copies keys
-        getJDA().getGuildCache().stream()
-                .map(GuildImpl.class::cast)
-                .forEach(g -> memberIds.removeAll(g.getMembersView().keySet()));
-        // Remember, everything left in memberIds is removed from the userMap
-        SnowflakeCacheViewImpl<User> userView = getJDA().getUsersView();
-        try (UnlockHook hook = userView.writeLock())
+    private void removeEmojis()
+    {
+        SnowflakeCacheViewImpl<RichCustomEmoji> emojiView = getJDA().getEmojisView();
+        try (UnlockHook hook = emojiView.writeLock())
         {
-            long selfId = getJDA().getSelfUser().getIdLong();
-            memberIds.forEach(memberId -> {
-                if (memberId == selfId)
-                    return true; // don't remove selfUser from cache
-                userView.remove(memberId);
-                getJDA().getEventCache().clear(EventCache.Type.USER, memberId);
-                return true;
-            });
+            emojicache.forEachUnordered(emoji -> emojiView.getMap().remove(emoji.getIdLong()));
         }
     }
 
@@ -656,6 +781,13 @@ public class GuildImpl implements Guild
         return threadChannelCache;
     }
 
+    @Nullable
+    @Override
+    public GuildChannel getGuildChannelById(long id)
+    {
+        return channelCache.get(id);
+    }
+
     @NotNull
     @Override
     public SortedSnowflakeCacheView<Role> getRoleCache()
@@ -667,6 +799,7 @@ public class GuildImpl implements Guild
     @Override
     public SnowflakeCacheView<RichCustomEmoji> getEmojiCache()
     {
+        hydrate();
         return emojicache;
     }
 
@@ -674,6 +807,7 @@ public class GuildImpl implements Guild
     @Override
     public SnowflakeCacheView<GuildSticker> getStickerCache()
     {
+        hydrate();
         return stickerCache;
     }
 
@@ -2124,11 +2258,13 @@ public class GuildImpl implements Guild
 
     public SnowflakeCacheViewImpl<RichCustomEmoji> getEmojisView()
     {
+        hydrate();
         return emojicache;
     }
 
     public SnowflakeCacheViewImpl<GuildSticker> getStickersView()
     {
+        hydrate();
         return stickerCache;
     }
 
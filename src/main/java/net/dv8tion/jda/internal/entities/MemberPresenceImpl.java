@@ -20,6 +20,7 @@ import net.dv8tion.jda.api.OnlineStatus;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.entities.ClientType;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
@@ -29,10 +30,19 @@ public class MemberPresenceImpl
     private List<Activity> activities = Collections.emptyList();
     private EnumMap<ClientType, OnlineStatus> clientStatus;
     private OnlineStatus status = OnlineStatus.OFFLINE;
+    private byte[] rawActivities; // serialized JSON of the activities they were parsed from, null if unknown
+    private int activitiesHash; // hash of the serialized activities
 
     public void setActivities(List<Activity> activities)
+    {
+        setActivities(activities, null, 0);
+    }
+
+    public void setActivities(List<Activity> activities, byte[] rawActivities, int activitiesHash)
     {
         this.activities = activities;
+        this.rawActivities = rawActivities;
+        this.activitiesHash = activitiesHash;
     }
 
     public void setClientStatus(EnumMap<ClientType, OnlineStatus> clientStatus)
@@ -50,6 +60,12 @@ public class MemberPresenceImpl
         return activities;
     }
 
+    public boolean isSameActivities(byte[] rawActivities, int activitiesHash)
+    {
+        // The hash only rules out changes, equal hashes still have to be compared
+        return this.rawActivities != null && this.activitiesHash == activitiesHash && Arrays.equals(this.rawActivities, rawActivities);
+    }
+
     public EnumMap<ClientType, OnlineStatus> getClientStatus()
     {
         if (clientStatus == null)
@@ -363,6 +363,16 @@ public class ThreadChannelImpl extends AbstractGuildChannelImpl<ThreadChannelImp
         return archiveTimestamp;
     }
 
+    public long getCreationTimestamp()
+    {
+        return creationTimestamp;
+    }
+
+    public long getParentChannelIdLong()
+    {
+        return parentChannelId;
+    }
+
 
     // -- Object overrides --
 
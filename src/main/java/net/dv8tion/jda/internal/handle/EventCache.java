@@ -15,116 +15,264 @@
  */
 package net.dv8tion.jda.internal.handle;
 
-import gnu.trove.iterator.TLongObjectIterator;
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
+import net.dv8tion.jda.api.utils.cache.EventCacheMetrics;
 import net.dv8tion.jda.api.utils.data.DataObject;
 import net.dv8tion.jda.internal.utils.CacheConsumer;
+import net.dv8tion.jda.internal.utils.Checks;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import org.slf4j.Logger;
 
-import java.util.EnumMap;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class EventCache
+/**
+ * Holds events for entities which are not cached yet, until the entity is created or the event times out.
+ *
+ * <p>Every {@link Type} has its own lock, so the types never contend with each other.
+ * Each type keeps its nodes in a second list ordered by sequence number, which makes expiring
+ * and evicting the oldest node O(1) instead of walking every trigger.
+ *
+ * <p>Events expire lazily. A type drops its expired events whenever a new event of that type is cached,
+ * and {@link #timeout(long)} only checks every type once per {@link #SWEEP_INTERVAL} events.
+ * An event can therefore outlive the {@link #TIMEOUT_AMOUNT} by up to {@link #SWEEP_INTERVAL} events.
+ */
+public class EventCache implements EventCacheMetrics
 {
     public static final Logger LOG = JDALogger.getLog(EventCache.class);
     /** Sequence difference after which events will be removed from cache */
     public static final long TIMEOUT_AMOUNT = 100;
-    private final EnumMap<Type, TLongObjectMap<List<CacheNode>>> eventCache = new EnumMap<>(Type.class);
+    /** Sequence difference between two checks of every type for expired events */
+    public static final long SWEEP_INTERVAL = 10;
+    /** Default amount of events which can be cached at once, the cache is unbounded by default */
+    public static final int DEFAULT_LIMIT = Integer.MAX_VALUE;
+    private static final long WARN_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+
+    private final Stripe[] stripes;
+    private final int limit;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong cached = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private volatile long lastWarning;
+    private volatile long lastSweep;
 
-    public EventCache() {}
+    public EventCache()
+    {
+        this(DEFAULT_LIMIT);
+    }
+
+    public EventCache(int limit)
+    {
+        Checks.positive(limit, "Limit");
+        this.limit = limit;
+        Type[] types = Type.values();
+        this.stripes = new Stripe[types.length];
+        for (Type type : types)
+            stripes[type.ordinal()] = new Stripe(type);
+    }
 
-    public synchronized void timeout(final long responseTotal)
+    public void timeout(final long responseTotal)
     {
-        if (eventCache.isEmpty())
+        // The sequence starts over with a new session, which also has to sweep
+        long last = lastSweep;
+        if (responseTotal >= last && responseTotal - last < SWEEP_INTERVAL)
+            return;
+        lastSweep = responseTotal;
+        if (size.get() == 0)
             return;
-        AtomicInteger count = new AtomicInteger();
-        eventCache.forEach((type, map) ->
+        int count = 0;
+        for (Stripe stripe : stripes)
         {
-            if (map.isEmpty())
-                return;
-            TLongObjectIterator<List<CacheNode>> iterator = map.iterator();
-            while (iterator.hasNext())
+            stripe.lock.lock();
+            try
             {
-                iterator.advance();
-                long triggerId = iterator.key();
-                List<CacheNode> cache = iterator.value();
-                //Remove when this node is more than 100 events ago
-                cache.removeIf(node ->
-                {
-                    boolean remove = responseTotal - node.responseTotal > TIMEOUT_AMOUNT;
-                    if (remove)
-                    {
-                        count.incrementAndGet();
-                        LOG.trace("Removing type {}/{} from event cache with payload {}", type, triggerId, node.event);
-                    }
-                    return remove;
-                });
-                if (cache.isEmpty())
-                    iterator.remove();
+                count += stripe.expire(responseTotal);
             }
-        });
-        int amount = count.get();
-        if (amount > 0)
-            LOG.debug("Removed {} events from cache that were too old to be recycled", amount);
+            finally
+            {
+                stripe.lock.unlock();
+            }
+        }
+        if (count > 0)
+            LOG.debug("Removed {} events from cache that were too old to be recycled", count);
     }
 
-    public synchronized void cache(Type type, long triggerId, long responseTotal, DataObject event, CacheConsumer handler)
+    public void cache(Type type, long triggerId, long responseTotal, DataObject event, CacheConsumer handler)
     {
-        TLongObjectMap<List<CacheNode>> triggerCache =
-                eventCache.computeIfAbsent(type, k -> new TLongObjectHashMap<>());
+        if (size.get() >= limit)
+            evictOldest();
 
-        List<CacheNode> items = triggerCache.get(triggerId);
-        if (items == null)
+        Stripe stripe = stripes[type.ordinal()];
+        stripe.lock.lock();
+        try
         {
-            items = new LinkedList<>();
-            triggerCache.put(triggerId, items);
+            stripe.expire(responseTotal);
+            stripe.add(triggerId, new CacheNode(responseTotal, event, handler));
         }
-
-        items.add(new CacheNode(responseTotal, event, handler));
+        finally
+        {
+            stripe.lock.unlock();
+        }
+        cached.incrementAndGet();
     }
 
-    public synchronized void playbackCache(Type type, long triggerId)
+    public void playbackCache(Type type, long triggerId)
     {
-        TLongObjectMap<List<CacheNode>> typeCache = this.eventCache.get(type);
-        if (typeCache == null)
-            return;
+        Stripe stripe = stripes[type.ordinal()];
+        Bucket bucket;
+        stripe.lock.lock();
+        try
+        {
+            bucket = stripe.detach(triggerId);
+        }
+        finally
+        {
+            stripe.lock.unlock();
+        }
 
-        List<CacheNode> items = typeCache.remove(triggerId);
-        if (items != null && !items.isEmpty())
+        if (bucket != null)
         {
             EventCache.LOG.debug("Replaying {} events from the EventCache for type {} with id: {}",
-                items.size(), type, triggerId);
-            for (CacheNode item : items)
+                bucket.size, type, triggerId);
+            replayed.addAndGet(bucket.size);
+            // The handlers might cache the event again, so they run without holding the lock
+            for (CacheNode item = bucket.head; item != null; item = item.next)
                 item.execute();
         }
     }
 
-    public synchronized int size()
+    public int size()
     {
-        return (int) eventCache.values().stream()
-                .mapToLong(typeMap ->
-                    typeMap.valueCollection().stream().mapToLong(List::size).sum())
-                .sum();
+        return size.get();
     }
 
-    public synchronized void clear()
+    public void clear()
     {
-        eventCache.clear();
+        lastSweep = 0;
+        for (Stripe stripe : stripes)
+        {
+            stripe.lock.lock();
+            try
+            {
+                stripe.clear();
+            }
+            finally
+            {
+                stripe.lock.unlock();
+            }
+        }
     }
 
-    public synchronized void clear(Type type, long id)
+    public void clear(Type type, long id)
     {
-        TLongObjectMap<List<CacheNode>> typeCache = this.eventCache.get(type);
-        if (typeCache == null)
+        Stripe stripe = stripes[type.ordinal()];
+        Bucket bucket;
+        stripe.lock.lock();
+        try
+        {
+            bucket = stripe.detach(id);
+        }
+        finally
+        {
+            stripe.lock.unlock();
+        }
+        if (bucket != null)
+            LOG.debug("Clearing cache for type {} with ID {} (Size: {})", type, id, bucket.size);
+    }
+
+    @Override
+    public int getLimit()
+    {
+        return limit;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return size.get();
+    }
+
+    @Override
+    public long getCachedCount()
+    {
+        return cached.get();
+    }
+
+    @Override
+    public long getReplayedCount()
+    {
+        return replayed.get();
+    }
+
+    @Override
+    public long getExpiredCount()
+    {
+        return expired.get();
+    }
+
+    @Override
+    public long getEvictedCount()
+    {
+        return evicted.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "EventCache(size=" + size.get() + ", limit=" + limit + ", expired=" + expired.get() + ", evicted=" + evicted.get() + ")";
+    }
+
+    private void evictOldest()
+    {
+        // Only one lock is held at a time, the chosen node might be gone by the time we lock its stripe again
+        Stripe oldestStripe = null;
+        long oldestResponse = Long.MAX_VALUE;
+        for (Stripe stripe : stripes)
+        {
+            stripe.lock.lock();
+            try
+            {
+                if (stripe.oldest != null && stripe.oldest.responseTotal < oldestResponse)
+                {
+                    oldestStripe = stripe;
+                    oldestResponse = stripe.oldest.responseTotal;
+                }
+            }
+            finally
+            {
+                stripe.lock.unlock();
+            }
+        }
+        if (oldestStripe == null)
             return;
 
-        List<CacheNode> events = typeCache.remove(id);
-        if (events != null)
-            LOG.debug("Clearing cache for type {} with ID {} (Size: {})", type, id, events.size());
+        CacheNode node;
+        oldestStripe.lock.lock();
+        try
+        {
+            node = oldestStripe.oldest;
+            if (node == null)
+                return;
+            oldestStripe.remove(node);
+        }
+        finally
+        {
+            oldestStripe.lock.unlock();
+        }
+        evicted.incrementAndGet();
+
+        long now = System.nanoTime();
+        if (lastWarning == 0 || now - lastWarning >= WARN_INTERVAL)
+        {
+            lastWarning = now;
+            LOG.warn("The event cache reached its limit of {} events, evicting the oldest events. Evicted: {}", limit, evicted.get());
+        }
+        LOG.trace("Evicted type {}/{} from event cache with payload {}", oldestStripe.type, node.bucket.triggerId, node.event);
     }
 
     public enum Type
@@ -132,13 +280,160 @@ public class EventCache
         USER, MEMBER, GUILD, CHANNEL, ROLE, RELATIONSHIP, CALL
     }
 
-    private class CacheNode
+    private class Stripe
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TLongObjectMap<Bucket> buckets = new TLongObjectHashMap<>();
+        private final Type type;
+        // Every node of this type ordered by the time it was cached
+        // Events replayed with their original sequence are appended as well, they expire once the nodes before them did
+        private CacheNode oldest, newest;
+        private int size;
+
+        private Stripe(Type type)
+        {
+            this.type = type;
+        }
+
+        private void add(long triggerId, CacheNode node)
+        {
+            Bucket bucket = buckets.get(triggerId);
+            if (bucket == null)
+            {
+                bucket = new Bucket(triggerId);
+                buckets.put(triggerId, bucket);
+            }
+            bucket.add(node);
+
+            if (newest == null)
+            {
+                oldest = newest = node;
+            }
+            else
+            {
+                newest.newer = node;
+                node.older = newest;
+                newest = node;
+            }
+            size++;
+            EventCache.this.size.incrementAndGet();
+        }
+
+        private int expire(long responseTotal)
+        {
+            //Remove when the oldest node is more than 100 events ago
+            int count = 0;
+            CacheNode node = oldest;
+            while (node != null && responseTotal - node.responseTotal > TIMEOUT_AMOUNT)
+            {
+                LOG.trace("Removing type {}/{} from event cache with payload {}", type, node.bucket.triggerId, node.event);
+                remove(node);
+                node = oldest;
+                count++;
+            }
+            if (count > 0)
+                expired.addAndGet(count);
+            return count;
+        }
+
+        private void remove(CacheNode node)
+        {
+            Bucket bucket = node.bucket;
+            bucket.remove(node);
+            if (bucket.size == 0)
+                buckets.remove(bucket.triggerId);
+            unlinkAge(node);
+        }
+
+        private Bucket detach(long triggerId)
+        {
+            Bucket bucket = buckets.remove(triggerId);
+            if (bucket == null)
+                return null;
+            // The bucket keeps its own links, so it can be iterated after the lock is released
+            for (CacheNode node = bucket.head; node != null; node = node.next)
+                unlinkAge(node);
+            return bucket;
+        }
+
+        private void clear()
+        {
+            buckets.clear();
+            EventCache.this.size.addAndGet(-size);
+            oldest = newest = null;
+            size = 0;
+        }
+
+        private void unlinkAge(CacheNode node)
+        {
+            if (node.older == null)
+                oldest = node.newer;
+            else
+                node.older.newer = node.newer;
+            if (node.newer == null)
+                newest = node.older;
+            else
+                node.newer.older = node.older;
+            node.older = node.newer = null;
+            size--;
+            EventCache.this.size.decrementAndGet();
+        }
+    }
+
+    private static class Bucket
+    {
+        private final long triggerId;
+        private CacheNode head, tail;
+        private int size;
+
+        private Bucket(long triggerId)
+        {
+            this.triggerId = triggerId;
+        }
+
+        private void add(CacheNode node)
+        {
+            node.bucket = this;
+            if (tail == null)
+            {
+                head = tail = node;
+            }
+            else
+            {
+                tail.next = node;
+                node.prev = tail;
+                tail = node;
+            }
+            size++;
+        }
+
+        private void remove(CacheNode node)
+        {
+            if (node.prev == null)
+                head = node.next;
+            else
+                node.prev.next = node.next;
+            if (node.next == null)
+                tail = node.prev;
+            else
+                node.next.prev = node.prev;
+            node.prev = node.next = null;
+            size--;
+        }
+    }
+
+    private static class CacheNode
     {
         private final long responseTotal;
         private final DataObject event;
         private final CacheConsumer callback;
+        private Bucket bucket;
+        // Links within the bucket of the trigger id
+        private CacheNode prev, next;
+        // Links within the age order of the type
+        private CacheNode older, newer;
 
-        public CacheNode(long responseTotal, DataObject event, CacheConsumer callback)
+        private CacheNode(long responseTotal, DataObject event, CacheConsumer callback)
         {
             this.responseTotal = responseTotal;
             this.event = event;
@@ -117,6 +117,16 @@ public class GuildEmojisUpdateHandler extends SocketHandler
             for (RichCustomEmoji e : oldEmojis)
                 emojiMap.remove(e.getIdLong());
         }
+
+        SnowflakeCacheViewImpl<RichCustomEmoji> globalEmojiView = getJDA().getEmojisView();
+        try (UnlockHook hook = globalEmojiView.writeLock())
+        {
+            TLongObjectMap<RichCustomEmoji> globalEmojiMap = globalEmojiView.getMap();
+            for (RichCustomEmoji e : newEmojis)
+                globalEmojiMap.put(e.getIdLong(), e);
+            for (RichCustomEmoji e : oldEmojis)
+                globalEmojiMap.remove(e.getIdLong());
+        }
         //cleanup old emojis that don't exist anymore
         for (RichCustomEmoji e : oldEmojis)
         {
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.handle;
+
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the emojis and stickers of dormant guilds as a compact payload.
+ * <br>A {@link GuildImpl} is hydrated on first access of these caches, or before an event which changes them is handled.
+ * Once a hydrated guild has not been accessed for the idle time, it is compacted again.
+ *
+ * <p>Roles, members and channels are always built.
+ * Channels are looked up through JDA, referenced by voice states and held by user code,
+ * a compacted channel would be missing from these lookups and replaced by a new instance once the guild is hydrated again.
+ *
+ * <p>The emojis of compact guilds are not part of the emoji index of {@link JDAImpl}, instead their ids are mapped to their guild.
+ * Looking up such an emoji hydrates its guild, which adds the emojis of the guild to the index again.
+ *
+ * <p>Events and compaction are handled under the dispatch lock of the {@link net.dv8tion.jda.internal.requests.WebSocketClient WebSocketClient},
+ * guilds accessed from other threads are hydrated under the lock of the guild.
+ */
+public class GuildHydrationController
+{
+    public static final Logger LOG = JDALogger.getLog(GuildHydrationController.class);
+
+    // Events which change the emojis or stickers of their guild
+    private static final Set<String> HYDRATE_EVENTS = new HashSet<>(Arrays.asList(
+        "GUILD_EMOJIS_UPDATE", "GUILD_STICKERS_UPDATE", "GUILD_ROLE_DELETE"));
+
+    private final JDAImpl api;
+    private final long idleTime;
+    // Hydrated guilds which might still have an up-to-date payload and can be compacted again
+    private final TLongSet hydratedGuilds = new TLongHashSet();
+    // Emoji id to guild id, for the emojis of compact guilds
+    // Entries of removed guilds or emojis are only dropped once they are looked up
+    private final TLongLongMap dormantEmojis = new TLongLongHashMap();
+
+    public GuildHydrationController(JDAImpl api, long idleTime, TimeUnit unit)
+    {
+        this.api = api;
+        this.idleTime = unit.toNanos(idleTime);
+    }
+
+    public long getIdleTime(TimeUnit unit)
+    {
+        return unit.convert(idleTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates the compact payload of a guild, or returns null if the guild has nothing to compact.
+     *
+     * @param  guildJson
+     *         The GUILD_CREATE payload
+     *
+     * @return The compact payload, or null
+     */
+    public byte[] compact(DataObject guildJson)
+    {
+        DataArray emojiArray = guildJson.getArray("emojis");
+        DataArray stickerArray = guildJson.getArray("stickers");
+        if (emojiArray.isEmpty() && stickerArray.isEmpty())
+            return null;
+        DataObject data = DataObject.empty()
+            .put("emojis", emojiArray)
+            .put("stickers", stickerArray);
+        if (api.isCacheFlagSet(CacheFlag.EMOJI))
+        {
+            long guildId = guildJson.getUnsignedLong("id");
+            synchronized (dormantEmojis)
+            {
+                for (int i = 0; i < emojiArray.length(); i++)
+                {
+                    DataObject emoji = emojiArray.getObject(i);
+                    if (!emoji.isNull("id"))
+                        dormantEmojis.put(emoji.getUnsignedLong("id"), guildId);
+                }
+            }
+        }
+        return data.toETF();
+    }
+
+    /**
+     * Hydrates the guild of an event which changes its emojis or stickers, before the event is handled.
+     * <br>Afterwards the compact payload is outdated, so the guild keeps its caches until it is removed.
+     *
+     * @param type
+     *        The event type
+     * @param guildId
+     *        The guild of the event, or 0
+     */
+    public void onEvent(String type, long guildId)
+    {
+        if (guildId == 0 || !HYDRATE_EVENTS.contains(type))
+            return;
+        GuildImpl guild = (GuildImpl) api.getGuildsView().get(guildId);
+        if (guild == null)
+            return;
+        guild.hydrate();
+        // The guild is no longer compacted, it is untracked once the next compaction sees it
+        guild.discardHydratedData();
+    }
+
+    /**
+     * Called by {@link GuildImpl#hydrate()} while holding the lock of the guild, once it has been built from its compact payload.
+     *
+     * @param guild
+     *        The hydrated guild
+     */
+    public void track(GuildImpl guild)
+    {
+        LOG.trace("Hydrated guild {}", guild.getIdLong());
+        synchronized (hydratedGuilds)
+        {
+            hydratedGuilds.add(guild.getIdLong());
+        }
+        // The emojis are part of the emoji index again
+        synchronized (dormantEmojis)
+        {
+            if (!dormantEmojis.isEmpty())
+                guild.getEmojisView().forEachUnordered(emoji -> dormantEmojis.remove(emoji.getIdLong()));
+        }
+    }
+
+    /**
+     * Called by {@link GuildImpl#compactIfIdle(long, long)} while holding the lock of the guild.
+     *
+     * @param guild
+     *        The guild which does not have to be checked anymore
+     */
+    public void untrack(GuildImpl guild)
+    {
+        synchronized (hydratedGuilds)
+        {
+            hydratedGuilds.remove(guild.getIdLong());
+        }
+    }
+
+    /**
+     * Called by {@link GuildImpl#compactIfIdle(long, long)} while holding the lock of the guild,
+     * once the emojis of the guild have been removed from the emoji index.
+     *
+     * @param guildId
+     *        The compacted guild
+     * @param emojiIds
+     *        The emojis of the guild
+     */
+    public void addDormantEmojis(long guildId, long[] emojiIds)
+    {
+        synchronized (dormantEmojis)
+        {
+            for (long emojiId : emojiIds)
+                dormantEmojis.put(emojiId, guildId);
+        }
+    }
+
+    /**
+     * The amount of emojis of compact guilds, which are not part of the emoji index.
+     *
+     * @return The amount of dormant emojis
+     */
+    public int getDormantEmojiCount()
+    {
+        synchronized (dormantEmojis)
+        {
+            return dormantEmojis.size();
+        }
+    }
+
+    /**
+     * Hydrates the compact guild of an emoji which is not part of the emoji index.
+     *
+     * @param  emojiId
+     *         The emoji id
+     *
+     * @return True, if a guild has been hydrated and the emoji index should be checked again
+     */
+    public boolean hydrateDormantEmoji(long emojiId)
+    {
+        long guildId;
+        synchronized (dormantEmojis)
+        {
+            guildId = dormantEmojis.get(emojiId);
+        }
+        return guildId != 0 && hydrateDormant(guildId);
+    }
+
+    /**
+     * Hydrates every compact guild with emojis, so the emoji index contains all emojis.
+     * <br>This is used when the emoji cache is iterated.
+     */
+    public void hydrateDormantEmojis()
+    {
+        TLongSet guildIds;
+        synchronized (dormantEmojis)
+        {
+            if (dormantEmojis.isEmpty())
+                return;
+            guildIds = new TLongHashSet(dormantEmojis.valueCollection());
+        }
+        guildIds.forEach(guildId -> {
+            hydrateDormant(guildId);
+            return true;
+        });
+    }
+
+    private boolean hydrateDormant(long guildId)
+    {
+        GuildImpl guild = (GuildImpl) api.getGuildsView().get(guildId);
+        if (guild != null && guild.isCompact())
+        {
+            guild.hydrate();
+            return true;
+        }
+        // The guild has been removed, or the emoji has been removed after the guild was hydrated
+        synchronized (dormantEmojis)
+        {
+            dormantEmojis.retainEntries((emojiId, dormantGuildId) -> dormantGuildId != guildId);
+        }
+        return false;
+    }
+
+    /**
+     * Compacts every hydrated guild which has not been accessed for the idle time.
+     */
+    public void compactIdle()
+    {
+        long[] ids;
+        // The guilds are locked one by one, never while holding this lock
+        synchronized (hydratedGuilds)
+        {
+            if (hydratedGuilds.isEmpty())
+                return;
+            ids = hydratedGuilds.toArray();
+        }
+        long now = System.nanoTime();
+        int compacted = 0;
+        for (long id : ids)
+        {
+            GuildImpl guild = (GuildImpl) api.getGuildsView().get(id);
+            if (guild == null)
+            {
+                synchronized (hydratedGuilds)
+                {
+                    hydratedGuilds.remove(id);
+                }
+            }
+            else if (guild.compactIfIdle(now, idleTime))
+            {
+                compacted++;
+            }
+        }
+        if (compacted > 0)
+            LOG.debug("Compacted {} idle guilds, {} guilds were checked", compacted, ids.length);
+    }
+
+    public void clear()
+    {
+        synchronized (hydratedGuilds)
+        {
+            hydratedGuilds.clear();
+        }
+        synchronized (dormantEmojis)
+        {
+            dormantEmojis.clear();
+        }
+    }
+}
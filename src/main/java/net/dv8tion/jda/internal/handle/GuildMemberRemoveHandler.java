@@ -40,6 +40,8 @@ public class GuildMemberRemoveHandler extends SocketHandler
     protected Long handleInternally(DataObject content)
     {
         final long id = content.getLong("guild_id");
+        if (getJDA().getGuildSetupController().isBuilding(id))
+            return id; // the member payload has already been handed to the guild setup pool
         boolean setup = getJDA().getGuildSetupController().onRemoveMember(id, content);
         if (setup)
             return null;
@@ -59,6 +59,7 @@ public class GuildRoleDeleteHandler extends SocketHandler
         //Allow for position to still be retrievable in event handling
         removedRole.freezePosition();
         guild.getRolesView().remove(roleId);
+        getJDA().getRolesView().remove(roleId);
 
         //Now that the role is removed from the Guild, remove it from all users and emojis.
         guild.getMembersView().forEach(m ->
@@ -27,16 +27,21 @@ import net.dv8tion.jda.api.utils.MiscUtil;
 import net.dv8tion.jda.api.utils.data.DataArray;
 import net.dv8tion.jda.api.utils.data.DataObject;
 import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.EntityBuilder;
 import net.dv8tion.jda.internal.requests.MemberChunkManager;
 import net.dv8tion.jda.internal.requests.WebSocketClient;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
+import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -52,6 +57,8 @@ public class GuildSetupController
     private final TLongObjectMap<GuildSetupNode> setupNodes = new TLongObjectHashMap<>();
     private final TLongSet chunkingGuilds = new TLongHashSet();
     private final TLongSet unavailableGuilds = new TLongHashSet();
+    // Guilds prepared by the guild setup pool, published in the order their setup completed
+    private final Queue<GuildSetupNode> buildingNodes = new ArrayDeque<>();
 
     // TODO: Rewrite this incompleteCount system to just rely on the state of each node
     private int incompleteCount = 0;
@@ -161,6 +168,12 @@ public class GuildSetupController
             setupNodes.put(id, node);
             // do not increment incomplete counter, it is only relevant to init guilds
         }
+        else if (node.isBuilding())
+        {
+            // The guild is published with the payload we already have
+            log.debug("Ignoring GUILD_CREATE for guild {} which is currently being built", id);
+            return;
+        }
         else if (node.markedUnavailable && available && incompleteCount > 0)
         {
             //Looks like this guild decided to become available again during startup
@@ -222,7 +235,7 @@ public class GuildSetupController
         int count = chunk.getInt("chunk_count");
         log.debug("Received member chunk for guild id: {} size: {} index: {}/{}", id, members.length(), index, count);
         GuildSetupNode node = setupNodes.get(id);
-        if (node != null)
+        if (node != null && !node.isBuilding())
             node.handleMemberChunk(MemberChunkManager.isLastChunk(chunk), members);
     }
 
@@ -249,15 +262,51 @@ public class GuildSetupController
     public void onSync(long id, DataObject obj)
     {
         GuildSetupNode node = setupNodes.get(id);
-        if (node != null)
+        if (node != null && !node.isBuilding())
             node.handleSync(obj);
     }
 
+    void onBuilding(GuildSetupNode node, CompletableFuture<EntityBuilder.PreparedGuild> build)
+    {
+        buildingNodes.add(node);
+        build.whenComplete((prepared, error) -> {
+            try
+            {
+                api.getGatewayPool().execute(api.getClient()::publishGuilds);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                log.debug("Could not publish guild {}, the gateway pool has been shutdown", node.getId());
+            }
+        });
+    }
+
+    /**
+     * Adds all guilds which have been prepared by the guild setup pool to the cache.
+     * <br>Guilds are published in the order their setup completed, a guild which is still being built holds back the guilds after it.
+     * This must be called while holding the dispatch lock of the client.
+     */
+    public void publishCompleted()
+    {
+        GuildSetupNode node;
+        while ((node = buildingNodes.peek()) != null && node.isBuilt())
+        {
+            buildingNodes.poll();
+            node.publish();
+        }
+    }
+
     public boolean isLocked(long id)
     {
         return setupNodes.containsKey(id);
     }
 
+    public boolean isBuilding(long id)
+    {
+        GuildSetupNode node = setupNodes.get(id);
+        return node != null && node.isBuilding();
+    }
+
     public boolean isUnavailable(long id)
     {
         return unavailableGuilds.contains(id);
@@ -283,6 +332,7 @@ public class GuildSetupController
         setupNodes.clear();
         chunkingGuilds.clear();
         unavailableGuilds.clear();
+        buildingNodes.clear();
         incompleteCount = 0;
         close();
     }
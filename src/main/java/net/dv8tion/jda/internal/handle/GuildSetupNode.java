@@ -33,6 +33,7 @@ import net.dv8tion.jda.api.managers.AudioManager;
 import net.dv8tion.jda.api.utils.data.DataArray;
 import net.dv8tion.jda.api.utils.data.DataObject;
 import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.EntityBuilder;
 import net.dv8tion.jda.internal.entities.GuildImpl;
 import net.dv8tion.jda.internal.managers.AudioManagerImpl;
 import net.dv8tion.jda.internal.utils.UnlockHook;
@@ -42,6 +43,10 @@ import org.jetbrains.annotations.Nullable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 public class GuildSetupNode
 {
@@ -52,6 +57,8 @@ public class GuildSetupNode
     private TLongSet removedMembers;
     private DataObject partialGuild;
     private int expectedMemberCount = 1;
+    // Only set while the guild is prepared by the guild setup pool
+    private CompletableFuture<EntityBuilder.PreparedGuild> build;
     boolean requestedChunk;
 
     final Type type;
@@ -94,6 +101,9 @@ public class GuildSetupNode
 
     public int getCurrentMemberCount()
     {
+        // The maps are dropped on reset while the guild is still being built
+        if (members == null || removedMembers == null)
+            return 0;
         TLongHashSet knownMembers = new TLongHashSet(members.keySet());
         knownMembers.removeAll(removedMembers);
         return knownMembers.size();
@@ -173,12 +183,29 @@ public class GuildSetupNode
         this.status = status;
     }
 
+    boolean isBuilding()
+    {
+        return build != null;
+    }
+
+    boolean isBuilt()
+    {
+        return build == null || build.isDone() || getController().getSetupNodeById(id) != this;
+    }
+
     void reset()
     {
         updateStatus(GuildSetupController.Status.UNAVAILABLE);
         expectedMemberCount = 1;
         partialGuild = null;
         requestedChunk = false;
+        if (build != null)
+        {
+            // The pool might still read the payload, the build is discarded once it completes
+            build = null;
+            members = null;
+            removedMembers = null;
+        }
         if (members != null)
             members.clear();
         if (removedMembers != null)
@@ -355,7 +382,51 @@ public class GuildSetupNode
         for (TLongIterator it = removedMembers.iterator(); it.hasNext(); )
             members.remove(it.next());
         removedMembers.clear();
-        GuildImpl guild = api.getEntityBuilder().createGuild(id, partialGuild, members, expectedMemberCount);
+        ExecutorService pool = api.getGuildSetupPool();
+        if (pool != null)
+        {
+            // From here on the payload must not be modified until the guild is published
+            DataObject guildJson = partialGuild;
+            TLongObjectMap<DataObject> memberJson = members;
+            int memberCount = expectedMemberCount;
+            try
+            {
+                build = CompletableFuture.supplyAsync(() -> api.getEntityBuilder().prepareGuild(id, guildJson, memberJson, memberCount), pool);
+                getController().onBuilding(this, build);
+                return;
+            }
+            catch (RejectedExecutionException ex)
+            {
+                GuildSetupController.log.debug("Guild setup pool rejected guild {}, building it on the gateway thread", id);
+            }
+        }
+        finishSetup(api.getEntityBuilder().createGuild(id, partialGuild, members, expectedMemberCount));
+    }
+
+    void publish()
+    {
+        CompletableFuture<EntityBuilder.PreparedGuild> future = build;
+        build = null;
+        if (future == null || getController().getSetupNodeById(id) != this)
+            return; // the setup was reset or removed while building
+
+        JDAImpl api = getController().getJDA();
+        GuildImpl guild;
+        try
+        {
+            guild = api.getEntityBuilder().publishGuild(future.join());
+        }
+        catch (CompletionException ex)
+        {
+            GuildSetupController.log.error("Failed to build guild {} on the guild setup pool, building it on the gateway thread", id, ex.getCause());
+            guild = api.getEntityBuilder().createGuild(id, partialGuild, members, expectedMemberCount);
+        }
+        finishSetup(guild);
+    }
+
+    private void finishSetup(GuildImpl guild)
+    {
+        JDAImpl api = getController().getJDA();
         updateAudioManagerReference(guild);
         switch (type)
         {
@@ -25,6 +25,7 @@ import net.dv8tion.jda.api.events.interaction.command.MessageContextInteractionE
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.UserContextInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.GenericComponentInteractionCreateEvent;
 import net.dv8tion.jda.api.events.interaction.component.SelectMenuInteractionEvent;
 import net.dv8tion.jda.api.interactions.InteractionType;
 import net.dv8tion.jda.api.interactions.commands.Command;
@@ -125,18 +126,22 @@ public class InteractionCreateHandler extends SocketHandler
 
     private void handleAction(DataObject content)
     {
+        GenericComponentInteractionCreateEvent event;
         switch (Component.Type.fromKey(content.getObject("data").getInt("component_type")))
         {
         case BUTTON:
-            api.handleEvent(
-                new ButtonInteractionEvent(api, responseNumber,
-                    new ButtonInteractionImpl(api, content)));
+            event = new ButtonInteractionEvent(api, responseNumber,
+                new ButtonInteractionImpl(api, content));
             break;
         case SELECT_MENU:
-            api.handleEvent(
-                new SelectMenuInteractionEvent(api, responseNumber,
-                    new SelectMenuInteractionImpl(api, content)));
+            event = new SelectMenuInteractionEvent(api, responseNumber,
+                new SelectMenuInteractionImpl(api, content));
             break;
+        default:
+            return;
         }
+        // Routes are looked up by custom id, listeners still receive the event afterwards
+        api.getComponentRouter().handle(event);
+        api.handleEvent(event);
     }
 }
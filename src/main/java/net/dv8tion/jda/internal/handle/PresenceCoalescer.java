@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.internal.handle;
+
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.utils.CacheConsumer;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers PRESENCE_UPDATE payloads for a short window and only forwards the latest payload per guild and user.
+ * <br>Discord tends to send several updates for the same member within milliseconds, processing each of them
+ * means parsing activities and firing events which are immediately outdated again.
+ *
+ * <p>The window starts with the first buffered payload, newer payloads replace it without extending the deadline.
+ * This means a presence is delayed by at most one window.
+ * A buffered payload is handled early with {@link #flush(long, long)} before another event of the same member,
+ * so the events of one member keep their order.
+ */
+public class PresenceCoalescer
+{
+    public static final Logger LOG = JDALogger.getLog(PresenceCoalescer.class);
+
+    // Insertion order is the order of the first payload, which is also the deadline order
+    private final Map<Key, Pending> pending = new LinkedHashMap<>();
+    private final long window;
+    private final CacheConsumer handler;
+    private long coalesced;
+
+    public PresenceCoalescer(long window, TimeUnit unit, CacheConsumer handler)
+    {
+        this.window = unit.toNanos(window);
+        this.handler = handler;
+    }
+
+    /**
+     * Buffers the provided PRESENCE_UPDATE payload.
+     *
+     * @param  responseTotal
+     *         The sequence number of the payload
+     * @param  raw
+     *         The full payload, including the {@code op} and {@code t} fields
+     *
+     * @return True, if the payload was buffered. False if it has to be handled immediately.
+     */
+    public synchronized boolean offer(long responseTotal, DataObject raw)
+    {
+        DataObject content = raw.getObject("d");
+        if (content.isNull("guild_id") || content.isNull("user"))
+            return false;
+        Key key = new Key(content.getUnsignedLong("guild_id"), content.getObject("user").getUnsignedLong("id"));
+        Pending node = pending.get(key);
+        if (node == null)
+        {
+            pending.put(key, new Pending(responseTotal, raw, System.nanoTime() + window));
+        }
+        else
+        {
+            node.responseTotal = responseTotal;
+            node.event = raw;
+            coalesced++;
+        }
+        return true;
+    }
+
+    /**
+     * Handles all payloads for which the window has passed.
+     */
+    public void flushDue()
+    {
+        flush(false);
+    }
+
+    /**
+     * Handles all buffered payloads, regardless of their deadline.
+     */
+    public void flushAll()
+    {
+        flush(true);
+    }
+
+    /**
+     * Handles the buffered payload of the specified member immediately, if there is one.
+     *
+     * @param guildId
+     *        The guild id
+     * @param userId
+     *        The user id
+     */
+    public void flush(long guildId, long userId)
+    {
+        Pending node;
+        synchronized (this)
+        {
+            node = pending.remove(new Key(guildId, userId));
+        }
+        if (node != null)
+            handle(node);
+    }
+
+    /**
+     * Drops all buffered payloads of the specified guild, used when the guild is removed from cache.
+     *
+     * @param guildId
+     *        The guild id
+     */
+    public synchronized void discard(long guildId)
+    {
+        pending.keySet().removeIf(key -> key.guildId == guildId);
+    }
+
+    /**
+     * Drops the buffered payload of the specified member, used when the member leaves the guild.
+     *
+     * @param guildId
+     *        The guild id
+     * @param userId
+     *        The user id
+     */
+    public synchronized void discard(long guildId, long userId)
+    {
+        pending.remove(new Key(guildId, userId));
+    }
+
+    public synchronized void clear()
+    {
+        pending.clear();
+    }
+
+    public synchronized int size()
+    {
+        return pending.size();
+    }
+
+    public synchronized long getCoalescedCount()
+    {
+        return coalesced;
+    }
+
+    private void flush(boolean all)
+    {
+        List<Pending> due;
+        synchronized (this)
+        {
+            if (pending.isEmpty())
+                return;
+            long now = System.nanoTime();
+            due = new ArrayList<>();
+            for (Iterator<Pending> it = pending.values().iterator(); it.hasNext();)
+            {
+                Pending node = it.next();
+                if (!all && node.deadline - now > 0)
+                    break;
+                it.remove();
+                due.add(node);
+            }
+        }
+
+        // Handle outside of the lock, the handler might fire events which take a while
+        for (Pending node : due)
+            handle(node);
+    }
+
+    private void handle(Pending node)
+    {
+        try
+        {
+            handler.execute(node.responseTotal, node.event);
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Encountered exception while handling coalesced presence update. JSON: {}", node.event, ex);
+        }
+    }
+
+    private static final class Key
+    {
+        private final long guildId, userId;
+
+        private Key(long guildId, long userId)
+        {
+            this.guildId = guildId;
+            this.userId = userId;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(guildId) * 31 + Long.hashCode(userId);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj == this)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return other.guildId == guildId && other.userId == userId;
+        }
+    }
+
+    private static final class Pending
+    {
+        private final long deadline;
+        private long responseTotal;
+        private DataObject event;
+
+        private Pending(long responseTotal, DataObject event, long deadline)
+        {
+            this.responseTotal = responseTotal;
+            this.event = event;
+            this.deadline = deadline;
+        }
+    }
+}
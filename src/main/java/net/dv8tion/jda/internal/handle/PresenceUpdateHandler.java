@@ -39,6 +39,7 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
 
@@ -102,15 +103,20 @@ public class PresenceUpdateHandler extends SocketHandler
         // This is stored in the Member objects.
         //We set the activities to null to prevent parsing if the cache was disabled
         final DataArray activityArray = !getJDA().isCacheFlagSet(CacheFlag.ACTIVITY) || content.isNull("activities") ? null : content.getArray("activities");
+        // Discord repeats the same activities for every guild and status change, skip parsing if the raw payload did not change
+        // The presence keeps the serialized bytes, the parsed payload is not retained for every cached member
+        final byte[] rawActivities = activityArray == null ? null : activityArray.toJson();
+        final int activitiesHash = rawActivities == null ? 0 : Arrays.hashCode(rawActivities);
+        final boolean unchanged = rawActivities != null && presence.isSameActivities(rawActivities, activitiesHash);
         List<Activity> newActivities = new ArrayList<>();
-        boolean parsedActivity = parseActivities(userId, activityArray, newActivities);
+        boolean parsedActivity = !unchanged && parseActivities(userId, activityArray, newActivities);
 
         if (getJDA().isCacheFlagSet(CacheFlag.CLIENT_STATUS) && !content.isNull("client_status"))
             handleClientStatus(content, presence);
 
         // Check if activities changed
         if (parsedActivity)
-            handleActivities(newActivities, member, presence);
+            handleActivities(newActivities, rawActivities, activitiesHash, member, presence);
 
         //The member is already cached, so modify the presence values and fire events as needed.
 
@@ -152,10 +158,10 @@ public class PresenceUpdateHandler extends SocketHandler
         return parsedActivity;
     }
 
-    private void handleActivities(List<Activity> newActivities, @Nullable MemberImpl member, MemberPresenceImpl presence)
+    private void handleActivities(List<Activity> newActivities, byte[] rawActivities, int activitiesHash, @Nullable MemberImpl member, MemberPresenceImpl presence)
     {
         List<Activity> oldActivities = presence.getActivities();
-        presence.setActivities(newActivities);
+        presence.setActivities(newActivities, rawActivities, activitiesHash);
         if (member == null)
             return;
         boolean unorderedEquals = Helpers.deepEqualsUnordered(oldActivities, newActivities);
@@ -53,8 +53,9 @@ public class TypingStartHandler extends SocketHandler
 
         final long channelId = content.getLong("channel_id");
 
-        //TODO-v5-unified-channel-cache
-        MessageChannel channel = getJDA().getChannelById(MessageChannel.class, channelId);
+        MessageChannel channel = guild != null
+            ? guild.getChannelById(MessageChannel.class, channelId)
+            : getJDA().getChannelById(MessageChannel.class, channelId);
 
         //We don't have the channel cached yet. We chose not to cache this event
         // because that happens very often and could easily fill up the EventCache if
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.hooks;
+
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.EventQueueMetrics;
+import net.dv8tion.jda.api.hooks.EventQueuePolicy;
+import net.dv8tion.jda.internal.JDAImpl;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FIFO queue of pending events with a fixed capacity.
+ * <br>Every accepted event is represented by exactly one node, evictions and coalescing replace nodes or events
+ * in place so the amount of scheduled drain tasks always matches the amount of nodes.
+ */
+public class BoundedEventQueue implements EventQueueMetrics
+{
+    // Events fired by listeners on the event pool must never block, the pool might be waiting on itself otherwise
+    private static final ThreadLocal<Boolean> DISPATCHING = ThreadLocal.withInitial(() -> false);
+    private static final long WARN_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final EventQueuePolicy policy;
+    private final Map<Object, Node> pendingKeys = new HashMap<>();
+    private final TreeMap<Integer, ArrayDeque<Node>> priorities = new TreeMap<>();
+
+    private Node head, tail;
+    private int size, peakSize;
+    private long enqueued, dispatched, dropped, coalesced, blocked, blockedNanos;
+    private long lastWarning;
+
+    public BoundedEventQueue(@NotNull EventQueuePolicy policy)
+    {
+        this.policy = policy;
+    }
+
+    public static boolean isDispatching()
+    {
+        return DISPATCHING.get();
+    }
+
+    public static void setDispatching(boolean dispatching)
+    {
+        DISPATCHING.set(dispatching);
+    }
+
+    /**
+     * Adds the event to the queue, applying the overflow strategy of the policy.
+     *
+     * @param  event
+     *         The event
+     *
+     * @return True, if a new node was added and a drain task has to be scheduled
+     */
+    public boolean offer(@NotNull GenericEvent event)
+    {
+        final EventQueuePolicy.Overflow overflow = policy.getOverflow();
+        final Object key = overflow == EventQueuePolicy.Overflow.COALESCE ? policy.getCoalescingKey(event) : null;
+        final int priority = overflow == EventQueuePolicy.Overflow.DROP ? policy.getPriority(event) : EventQueuePolicy.PRIORITY_CRITICAL;
+
+        lock.lock();
+        try
+        {
+            boolean replaced = false;
+            boolean waited = false;
+            while (true)
+            {
+                if (key != null)
+                {
+                    Node pending = pendingKeys.get(key);
+                    if (pending != null)
+                    {
+                        pending.event = event;
+                        coalesced++;
+                        return false;
+                    }
+                }
+
+                if (size < policy.getCapacity() || isDispatching())
+                    break;
+
+                if (overflow == EventQueuePolicy.Overflow.DROP)
+                {
+                    Map.Entry<Integer, ArrayDeque<Node>> lowest = priorities.firstEntry();
+                    if (lowest != null && lowest.getKey() < priority)
+                    {
+                        Node evicted = lowest.getValue().pollFirst();
+                        if (lowest.getValue().isEmpty())
+                            priorities.remove(lowest.getKey());
+                        unlink(evicted);
+                        dropped++;
+                        warnOverflow();
+                        replaced = true;
+                        break;
+                    }
+                    else if (priority != EventQueuePolicy.PRIORITY_CRITICAL)
+                    {
+                        dropped++;
+                        warnOverflow();
+                        return false;
+                    }
+                }
+
+                if (!waited)
+                {
+                    blocked++;
+                    waited = true;
+                    warnOverflow();
+                }
+                if (!awaitSpace())
+                    break;
+            }
+
+            Node node = new Node(event, key, priority);
+            link(node);
+            enqueued++;
+            return !replaced;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the oldest pending event.
+     *
+     * @return The event, or null if the queue is empty
+     */
+    public GenericEvent poll()
+    {
+        lock.lock();
+        try
+        {
+            Node node = head;
+            if (node == null)
+                return null;
+            unlink(node);
+            if (policy.getOverflow() == EventQueuePolicy.Overflow.DROP)
+            {
+                ArrayDeque<Node> bucket = priorities.get(node.priority);
+                bucket.pollFirst(); // FIFO order is shared with the bucket, so this is always our node
+                if (bucket.isEmpty())
+                    priorities.remove(node.priority);
+            }
+            dispatched++;
+            notFull.signal();
+            return node.event;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private boolean awaitSpace()
+    {
+        long start = System.nanoTime();
+        try
+        {
+            notFull.await();
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            // Accept the event anyway, the thread is most likely shutting down
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        finally
+        {
+            blockedNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void warnOverflow()
+    {
+        long now = System.nanoTime();
+        if (lastWarning != 0 && now - lastWarning < WARN_INTERVAL)
+            return;
+        lastWarning = now;
+        JDAImpl.LOG.warn("Event queue is full! Your event listeners are too slow to keep up with incoming events. Policy: {} Dropped: {} Coalesced: {} Blocked: {}",
+                policy, dropped, coalesced, blocked);
+    }
+
+    private void link(Node node)
+    {
+        if (tail == null)
+        {
+            head = tail = node;
+        }
+        else
+        {
+            tail.next = node;
+            node.prev = tail;
+            tail = node;
+        }
+        if (node.key != null)
+            pendingKeys.put(node.key, node);
+        if (policy.getOverflow() == EventQueuePolicy.Overflow.DROP)
+            priorities.computeIfAbsent(node.priority, (k) -> new ArrayDeque<>()).addLast(node);
+        peakSize = Math.max(peakSize, ++size);
+    }
+
+    private void unlink(Node node)
+    {
+        if (node.prev == null)
+            head = node.next;
+        else
+            node.prev.next = node.next;
+        if (node.next == null)
+            tail = node.prev;
+        else
+            node.next.prev = node.prev;
+        node.prev = node.next = null;
+        if (node.key != null)
+            pendingKeys.remove(node.key);
+        size--;
+    }
+
+    @NotNull
+    @Override
+    public EventQueuePolicy getPolicy()
+    {
+        return policy;
+    }
+
+    @Override
+    public int getSize()
+    {
+        lock.lock();
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getPeakSize()
+    {
+        lock.lock();
+        try
+        {
+            return peakSize;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getEnqueuedCount()
+    {
+        lock.lock();
+        try
+        {
+            return enqueued;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getDispatchedCount()
+    {
+        lock.lock();
+        try
+        {
+            return dispatched;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getDroppedCount()
+    {
+        lock.lock();
+        try
+        {
+            return dropped;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getCoalescedCount()
+    {
+        lock.lock();
+        try
+        {
+            return coalesced;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getBlockedCount()
+    {
+        lock.lock();
+        try
+        {
+            return blocked;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getBlockedNanos()
+    {
+        lock.lock();
+        try
+        {
+            return blockedNanos;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        lock.lock();
+        try
+        {
+            return "BoundedEventQueue(" + policy + ", size=" + size + ", dropped=" + dropped + ", coalesced=" + coalesced + ")";
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private static class Node
+    {
+        private final Object key;
+        private final int priority;
+        private GenericEvent event;
+        private Node prev, next;
+
+        private Node(GenericEvent event, Object key, int priority)
+        {
+            this.event = event;
+            this.key = key;
+            this.priority = priority;
+        }
+    }
+}
@@ -17,11 +17,13 @@
 package net.dv8tion.jda.internal.hooks;
 
 import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.EventQueuePolicy;
 import net.dv8tion.jda.api.hooks.IEventManager;
 import net.dv8tion.jda.api.hooks.InterfacedEventManager;
 import net.dv8tion.jda.internal.JDAImpl;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
@@ -29,12 +31,20 @@ import java.util.concurrent.RejectedExecutionException;
 public class EventManagerProxy implements IEventManager
 {
     private final ExecutorService executor;
+    private final BoundedEventQueue queue;
     private IEventManager subject;
 
     public EventManagerProxy(IEventManager subject, ExecutorService executor)
+    {
+        this(subject, executor, null);
+    }
+
+    public EventManagerProxy(IEventManager subject, ExecutorService executor, EventQueuePolicy queuePolicy)
     {
         this.subject = subject;
         this.executor = executor;
+        // The queue only bounds the hand-off to the pool, without a pool events are handled on the calling thread anyway
+        this.queue = executor != null && queuePolicy != null ? new BoundedEventQueue(queuePolicy) : null;
     }
 
     public void setSubject(IEventManager subject)
@@ -47,6 +57,12 @@ public class EventManagerProxy implements IEventManager
         return subject;
     }
 
+    @Nullable
+    public BoundedEventQueue getQueue()
+    {
+        return queue;
+    }
+
     @Override
     public void register(@NotNull Object listener)
     {
@@ -64,15 +80,20 @@ public class EventManagerProxy implements IEventManager
     {
         try
         {
-            if (executor != null && !executor.isShutdown())
-                executor.execute(() -> handleInternally(event));
-            else
+            if (executor == null || executor.isShutdown())
                 handleInternally(event);
+            else if (queue == null)
+                executor.execute(() -> handleInternally(event));
+            else if (queue.offer(event))
+                executor.execute(this::handleQueued);
         }
         catch (RejectedExecutionException ex)
         {
             JDAImpl.LOG.warn("Event-Pool rejected event execution! Running on handling thread instead...");
-            handleInternally(event);
+            if (queue == null)
+                handleInternally(event);
+            else
+                handleQueued();
         }
         catch (Exception ex)
         {
@@ -80,6 +101,24 @@ public class EventManagerProxy implements IEventManager
         }
     }
 
+    private void handleQueued()
+    {
+        // The event might not be the one that scheduled this task, but every node has exactly one task
+        GenericEvent event = queue.poll();
+        if (event == null)
+            return;
+        boolean nested = BoundedEventQueue.isDispatching();
+        BoundedEventQueue.setDispatching(true);
+        try
+        {
+            handleInternally(event);
+        }
+        finally
+        {
+            BoundedEventQueue.setDispatching(nested);
+        }
+    }
+
     private void handleInternally(@NotNull GenericEvent event)
     {
         // don't allow mere exceptions to obstruct the socket handler
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.interactions.component;
+
+import net.dv8tion.jda.api.events.interaction.component.GenericComponentInteractionCreateEvent;
+import net.dv8tion.jda.api.interactions.components.ComponentRouter;
+import net.dv8tion.jda.internal.utils.Checks;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hash table of routes by custom id prefix, with expiration handled by a hashed timing wheel.
+ * <br>The wheel is advanced lazily whenever routes are registered or dispatched, each slot covers one {@link #TICK}.
+ * Routes which are refreshed before their slot is reached are moved to the slot of their new deadline.
+ *
+ * <p>Matching routes are looked up on the calling thread and invoked by the executor of this router.
+ */
+public class ComponentRouterImpl implements ComponentRouter
+{
+    public static final Logger LOG = JDALogger.getLog(ComponentRouter.class);
+    public static final long TICK = 1000;
+    public static final int WHEEL_SIZE = 512;
+
+    private final Map<String, List<RouteImpl>> routes = new HashMap<>();
+    // Routes by handler identity, so removing an event listener does not scan all routes
+    private final Map<Object, List<RouteImpl>> handlers = new IdentityHashMap<>();
+    private final List<List<RouteImpl>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final Executor executor;
+    private long currentTick;
+    private int size;
+
+    public ComponentRouterImpl()
+    {
+        this(Runnable::run);
+    }
+
+    public ComponentRouterImpl(Executor executor)
+    {
+        this.executor = executor;
+        for (int i = 0; i < WHEEL_SIZE; i++)
+            wheel.add(new ArrayList<>());
+        currentTick = System.currentTimeMillis() / TICK;
+    }
+
+    @NotNull
+    @Override
+    public Route register(@NotNull String prefix, long ttl, @NotNull TimeUnit unit, @NotNull Consumer<? super GenericComponentInteractionCreateEvent> handler)
+    {
+        Checks.notEmpty(prefix, "Prefix");
+        Checks.notNegative(ttl, "TTL");
+        Checks.notNull(unit, "Unit");
+        Checks.notNull(handler, "Handler");
+        long now = System.currentTimeMillis();
+        RouteImpl route = new RouteImpl(prefix, unit.toMillis(ttl), handler);
+        route.refresh(now);
+        synchronized (this)
+        {
+            advance(now);
+            routes.computeIfAbsent(prefix, (k) -> new ArrayList<>(1)).add(route);
+            handlers.computeIfAbsent(handler, (k) -> new ArrayList<>(1)).add(route);
+            size++;
+            if (route.ttl > 0)
+                schedule(route);
+        }
+        return route;
+    }
+
+    @Override
+    public synchronized boolean unregister(@NotNull Object handler)
+    {
+        Checks.notNull(handler, "Handler");
+        List<RouteImpl> list = handlers.get(handler);
+        if (list == null)
+            return false;
+        for (RouteImpl route : new ArrayList<>(list))
+            remove(route);
+        return true;
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        advance(System.currentTimeMillis());
+        return size;
+    }
+
+    /**
+     * Invokes the routes matching the custom id of the provided event on the executor of this router.
+     *
+     * @param  event
+     *         The component interaction
+     *
+     * @return True, if at least one route matched
+     */
+    public boolean handle(@NotNull GenericComponentInteractionCreateEvent event)
+    {
+        String id = event.getComponentId();
+        long now = System.currentTimeMillis();
+        List<RouteImpl> matched = null;
+        synchronized (this)
+        {
+            if (size == 0)
+                return false;
+            advance(now);
+            // Check the full id first, then every prefix ending before a ':' from longest to shortest
+            int end = id.length();
+            while (end > 0)
+            {
+                List<RouteImpl> list = routes.get(end == id.length() ? id : id.substring(0, end));
+                if (list != null)
+                {
+                    if (matched == null)
+                        matched = new ArrayList<>(list.size());
+                    for (RouteImpl route : list)
+                    {
+                        if (route.isActive(now))
+                            matched.add(route);
+                    }
+                }
+                end = id.lastIndexOf(':', end - 1);
+            }
+        }
+
+        if (matched == null || matched.isEmpty())
+            return false;
+        List<RouteImpl> handlers = matched;
+        try
+        {
+            executor.execute(() -> invoke(handlers, event));
+        }
+        catch (RejectedExecutionException ex)
+        {
+            LOG.debug("Executor rejected component routes, running them on the calling thread");
+            invoke(handlers, event);
+        }
+        return true;
+    }
+
+    private void invoke(List<RouteImpl> matched, GenericComponentInteractionCreateEvent event)
+    {
+        for (RouteImpl route : matched)
+        {
+            try
+            {
+                route.handler.accept(event);
+            }
+            catch (Throwable t)
+            {
+                LOG.error("One of the component routes had an uncaught exception", t);
+                if (t instanceof Error)
+                    throw (Error) t;
+            }
+        }
+    }
+
+    private void schedule(RouteImpl route)
+    {
+        long tick = Math.max(route.deadline / TICK, currentTick + 1);
+        wheel.get((int) (tick % WHEEL_SIZE)).add(route);
+    }
+
+    private void advance(long now)
+    {
+        long target = now / TICK;
+        if (target <= currentTick)
+            return;
+        // After a long pause every slot has to be visited once, but never more than once
+        long steps = Math.min(target - currentTick, WHEEL_SIZE);
+        long start = target - steps;
+        currentTick = target;
+        for (long tick = start + 1; tick <= target; tick++)
+        {
+            int slot = (int) (tick % WHEEL_SIZE);
+            List<RouteImpl> bucket = wheel.get(slot);
+            if (bucket.isEmpty())
+                continue;
+            wheel.set(slot, new ArrayList<>());
+            for (RouteImpl route : bucket)
+            {
+                if (route.cancelled)
+                    continue;
+                if (route.deadline <= now)
+                    remove(route);
+                else
+                    schedule(route);
+            }
+        }
+    }
+
+    private void remove(RouteImpl route)
+    {
+        route.cancelled = true;
+        List<RouteImpl> list = routes.get(route.prefix);
+        if (list != null && list.remove(route))
+        {
+            size--;
+            if (list.isEmpty())
+                routes.remove(route.prefix);
+            List<RouteImpl> byHandler = handlers.get(route.handler);
+            if (byHandler != null && byHandler.remove(route) && byHandler.isEmpty())
+                handlers.remove(route.handler);
+        }
+    }
+
+    private synchronized void cancel(RouteImpl route)
+    {
+        // The wheel entry is dropped once its slot is reached
+        remove(route);
+    }
+
+    private class RouteImpl implements Route
+    {
+        private final String prefix;
+        private final long ttl;
+        private final Consumer<? super GenericComponentInteractionCreateEvent> handler;
+        private volatile long deadline;
+        private volatile boolean cancelled;
+
+        private RouteImpl(String prefix, long ttl, Consumer<? super GenericComponentInteractionCreateEvent> handler)
+        {
+            this.prefix = prefix;
+            this.ttl = ttl;
+            this.handler = handler;
+        }
+
+        private boolean isActive(long now)
+        {
+            return !cancelled && (ttl == 0 || deadline > now);
+        }
+
+        @NotNull
+        @Override
+        public String getPrefix()
+        {
+            return prefix;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return isActive(System.currentTimeMillis());
+        }
+
+        @Override
+        public void refresh()
+        {
+            refresh(System.currentTimeMillis());
+        }
+
+        private void refresh(long now)
+        {
+            if (ttl > 0)
+                deadline = ttl > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + ttl;
+        }
+
+        @Override
+        public void cancel()
+        {
+            ComponentRouterImpl.this.cancel(this);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Route(" + prefix + ")";
+        }
+    }
+}
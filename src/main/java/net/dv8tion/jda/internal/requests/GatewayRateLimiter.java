@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.requests;
+
+import net.dv8tion.jda.api.requests.GatewaySendMetrics;
+import net.dv8tion.jda.internal.utils.Checks;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding window accounting of the gateway send limit.
+ * <br>The timestamps of the most recent sends are kept in a ring buffer, a new message is allowed once the oldest
+ * of them has left the window. Only {@link #BUDGET} of the {@link #LIMIT} sends allowed by the gateway are used,
+ * the difference is a margin for latency between our clock and the gateway and for sends of a previous connection.
+ * Queued messages can only use {@link #BUDGET} - {@link #RESERVED} permits, the rest is kept for heartbeats and
+ * session messages so a full send queue can never delay them.
+ */
+public class GatewayRateLimiter implements GatewaySendMetrics
+{
+    /** The number of sends the gateway allows per minute */
+    public static final int LIMIT = 120;
+    /** The number of sends this limiter allows per {@link #WINDOW} */
+    public static final int BUDGET = 110;
+    /** The number of permits only available to heartbeats and session messages */
+    public static final int RESERVED = 4;
+    // The gateway starts counting once the message arrives, the margin covers varying latency between two sends
+    public static final long WINDOW = TimeUnit.SECONDS.toNanos(60) + TimeUnit.MILLISECONDS.toNanos(500);
+
+    private static final Category[] CATEGORIES = Category.values();
+
+    private final long[] sent = new long[BUDGET];
+    private int head, count;
+
+    private final long[] sentCount = new long[CATEGORIES.length];
+    private final long[] totalLatency = new long[CATEGORIES.length];
+    private final long[] maxLatency = new long[CATEGORIES.length];
+    private long coalesced, rateLimited;
+
+    public static Category getCategory(int opcode)
+    {
+        switch (opcode)
+        {
+            case WebSocketCode.HEARTBEAT:
+                return Category.HEARTBEAT;
+            case WebSocketCode.IDENTIFY:
+            case WebSocketCode.RESUME:
+                return Category.SESSION;
+            case WebSocketCode.VOICE_STATE:
+                return Category.VOICE_STATE;
+            case WebSocketCode.MEMBER_CHUNK_REQUEST:
+                return Category.MEMBER_CHUNK_REQUEST;
+            case WebSocketCode.PRESENCE:
+                return Category.PRESENCE;
+            default:
+                return Category.OTHER;
+        }
+    }
+
+    /**
+     * Takes a permit if one is available at the provided time.
+     *
+     * @param  now
+     *         The current {@link System#nanoTime()}
+     * @param  reserved
+     *         Whether the reserved permits can be used
+     *
+     * @return True, if the message can be sent
+     */
+    public synchronized boolean tryAcquire(long now, boolean reserved)
+    {
+        expire(now);
+        if (count >= getLimit(reserved))
+        {
+            rateLimited++;
+            return false;
+        }
+        sent[(head + count) % BUDGET] = now;
+        count++;
+        return true;
+    }
+
+    /**
+     * The time until the next permit becomes available.
+     *
+     * @param  now
+     *         The current {@link System#nanoTime()}
+     * @param  reserved
+     *         Whether the reserved permits can be used
+     *
+     * @return The delay in nanoseconds, 0 if a permit is available right now
+     */
+    public synchronized long getDelay(long now, boolean reserved)
+    {
+        expire(now);
+        int limit = getLimit(reserved);
+        if (count < limit)
+            return 0;
+        // The send which has to leave the window before we are below the limit again
+        long blocking = sent[(head + count - limit) % BUDGET];
+        return Math.max(0, blocking + WINDOW - now);
+    }
+
+    public synchronized void reset()
+    {
+        head = count = 0;
+    }
+
+    public synchronized void recordSent(@NotNull Category category, long latencyNanos)
+    {
+        int index = category.ordinal();
+        sentCount[index]++;
+        totalLatency[index] += latencyNanos;
+        maxLatency[index] = Math.max(maxLatency[index], latencyNanos);
+    }
+
+    public synchronized void recordCoalesced()
+    {
+        coalesced++;
+    }
+
+    private int getLimit(boolean reserved)
+    {
+        return reserved ? BUDGET : BUDGET - RESERVED;
+    }
+
+    private void expire(long now)
+    {
+        while (count > 0 && now - sent[head] >= WINDOW)
+        {
+            head = (head + 1) % BUDGET;
+            count--;
+        }
+    }
+
+    @Override
+    public synchronized int getAvailablePermits()
+    {
+        expire(System.nanoTime());
+        return Math.max(0, BUDGET - RESERVED - count);
+    }
+
+    @Override
+    public synchronized long getSentCount(@NotNull Category category)
+    {
+        Checks.notNull(category, "Category");
+        return sentCount[category.ordinal()];
+    }
+
+    @Override
+    public synchronized long getTotalLatencyNanos(@NotNull Category category)
+    {
+        Checks.notNull(category, "Category");
+        return totalLatency[category.ordinal()];
+    }
+
+    @Override
+    public synchronized long getMaxLatencyNanos(@NotNull Category category)
+    {
+        Checks.notNull(category, "Category");
+        return maxLatency[category.ordinal()];
+    }
+
+    @Override
+    public synchronized long getCoalescedCount()
+    {
+        return coalesced;
+    }
+
+    @Override
+    public synchronized long getRateLimitedCount()
+    {
+        return rateLimited;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "GatewayRateLimiter(used=" + count + "/" + BUDGET + ", rateLimited=" + rateLimited + ", coalesced=" + coalesced + ")";
+    }
+}
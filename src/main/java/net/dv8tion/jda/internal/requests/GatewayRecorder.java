@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.requests;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.io.*;
+
+/**
+ * Records the decompressed gateway frames of a session, so they can be fed through the handlers again by {@link GatewayReplay}.
+ *
+ * <p>The file starts with a magic number, the format version, the gateway intents and the shard info.
+ * Every frame is stored as its encoding ({@link #FRAME_JSON} or {@link #FRAME_ETF}), the length and the raw payload.
+ * <br>Frames are appended from the reading thread through a buffered stream. If writing fails, the recording stops
+ * and the session continues normally.
+ */
+public class GatewayRecorder implements Closeable
+{
+    public static final Logger LOG = JDALogger.getLog(GatewayRecorder.class);
+    public static final int MAGIC = 0x4A444152; // JDAR
+    public static final int VERSION = 1;
+    public static final int FRAME_JSON = 0;
+    public static final int FRAME_ETF = 1;
+
+    private final File file;
+    private DataOutputStream output;
+
+    private GatewayRecorder(File file, DataOutputStream output)
+    {
+        this.file = file;
+        this.output = output;
+    }
+
+    /**
+     * Creates a new recording, replacing the file if it already exists.
+     *
+     * @param  file
+     *         The target file
+     * @param  intents
+     *         The gateway intents of the session
+     * @param  shardInfo
+     *         The shard info of the session
+     *
+     * @throws IOException
+     *         If the file could not be created
+     *
+     * @return The recorder
+     */
+    @NotNull
+    public static GatewayRecorder open(@NotNull File file, int intents, @NotNull JDA.ShardInfo shardInfo) throws IOException
+    {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        try
+        {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(intents);
+            output.writeInt(shardInfo.getShardId());
+            output.writeInt(shardInfo.getShardTotal());
+        }
+        catch (IOException e)
+        {
+            output.close();
+            throw e;
+        }
+        return new GatewayRecorder(file, output);
+    }
+
+    public synchronized void record(@NotNull byte[] payload, boolean etf)
+    {
+        if (output == null)
+            return;
+        try
+        {
+            output.writeByte(etf ? FRAME_ETF : FRAME_JSON);
+            output.writeInt(payload.length);
+            output.write(payload);
+        }
+        catch (IOException e)
+        {
+            LOG.error("Failed to record gateway frame to {}, stopping the recording", file, e);
+            close();
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (output == null)
+            return;
+        try
+        {
+            output.close();
+        }
+        catch (IOException e)
+        {
+            LOG.error("Failed to close gateway recording {}", file, e);
+        }
+        output = null;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.requests;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.ReadyEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import net.dv8tion.jda.internal.utils.Measurement;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.ThreadingConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a {@link GatewayRecorder recording} through the gateway handlers, without any network access.
+ * <br>Every run uses a new JDA instance, which rebuilds the cache from the same frames. This makes the throughput of
+ * the handlers, the {@link net.dv8tion.jda.internal.entities.EntityBuilder EntityBuilder} and the caches reproducible.
+ *
+ * <p>Only dispatches are replayed, lifecycle frames such as HELLO or INVALIDATE_SESSION would try to use the connection.
+ * The recording should start with a READY, a session which was resumed in the recording has no cache to resume.
+ * Guilds are not chunked during the replay, recorded member chunks are applied to the cache once the guild is available.
+ *
+ * <p>Besides the throughput, every run measures the time until the {@link ReadyEvent}, which depends on how guilds are built.
+ * Passing {@code parallel} replays with a {@link ForkJoinPool} as guild setup pool.
+ *
+ * <p>Usage: {@code java net.dv8tion.jda.internal.requests.GatewayReplay <recording> [runs] [parallel]}
+ */
+public class GatewayReplay
+{
+    public static final Logger LOG = JDALogger.getLog(GatewayReplay.class);
+
+    private final int intents;
+    private final JDA.ShardInfo shardInfo;
+    private final List<Frame> frames;
+
+    private GatewayReplay(int intents, JDA.ShardInfo shardInfo, List<Frame> frames)
+    {
+        this.intents = intents;
+        this.shardInfo = shardInfo;
+        this.frames = frames;
+    }
+
+    /**
+     * Loads the recording into memory, so reading the file is not part of the measurement.
+     *
+     * @param  file
+     *         The recording
+     *
+     * @throws IOException
+     *         If the file could not be read or is not a recording
+     *
+     * @return The replay
+     */
+    @NotNull
+    public static GatewayReplay read(@NotNull File file) throws IOException
+    {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (input.readInt() != GatewayRecorder.MAGIC)
+                throw new IOException("The file " + file + " is not a gateway recording");
+            int version = input.readInt();
+            if (version != GatewayRecorder.VERSION)
+                throw new IOException("Unsupported gateway recording version " + version);
+            int intents = input.readInt();
+            JDA.ShardInfo shardInfo = new JDA.ShardInfo(input.readInt(), input.readInt());
+
+            List<Frame> frames = new ArrayList<>();
+            while (true)
+            {
+                int type = input.read();
+                if (type == -1)
+                    break;
+                byte[] payload;
+                try
+                {
+                    payload = new byte[input.readInt()];
+                    input.readFully(payload);
+                }
+                catch (EOFException e)
+                {
+                    // The recording was not closed properly, the last frame is incomplete
+                    LOG.warn("Ignoring truncated frame at the end of {}", file);
+                    break;
+                }
+                frames.add(new Frame(payload, type == GatewayRecorder.FRAME_ETF));
+            }
+            return new GatewayReplay(intents, shardInfo, frames);
+        }
+    }
+
+    public int getFrameCount()
+    {
+        return frames.size();
+    }
+
+    /**
+     * Replays all frames on the calling thread, with a new JDA instance.
+     *
+     * @return The {@link Result} of this run
+     */
+    @NotNull
+    public Result run()
+    {
+        return run(null);
+    }
+
+    /**
+     * Replays all frames on the calling thread, with a new JDA instance.
+     * <br>With a guild setup pool, this waits for the guilds which are still being built once all frames have been replayed.
+     *
+     * @param  guildSetupPool
+     *         The pool used to build guilds, or null to build them on the calling thread
+     *
+     * @return The {@link Result} of this run
+     */
+    @NotNull
+    public Result run(@Nullable ExecutorService guildSetupPool)
+    {
+        ThreadingConfig threadingConfig = new ThreadingConfig();
+        threadingConfig.setGuildSetupPool(guildSetupPool, false);
+        JDAImpl api = new JDAImpl(new AuthorizationConfig("replay"), null, threadingConfig, null);
+        api.setChunkingFilter(ChunkingFilter.NONE);
+        CountDownLatch ready = new CountDownLatch(1);
+        long[] readyTime = new long[1];
+        api.addEventListener((EventListener) (event) -> {
+            if (event instanceof ReadyEvent)
+            {
+                readyTime[0] = System.nanoTime();
+                ready.countDown();
+            }
+        });
+        WebSocketClient client = api.initReplay(shardInfo, intents);
+        try
+        {
+            int events = 0;
+            Measurement measurement = Measurement.start();
+            long start = System.nanoTime();
+            for (Frame frame : frames)
+            {
+                // Parsing is part of the measurement, just like on the reading thread
+                DataObject content = frame.etf ? DataObject.fromETF(frame.payload) : DataObject.fromJson(frame.payload);
+                if (content.getInt("op", -1) != WebSocketCode.DISPATCH)
+                    continue;
+                client.handleEvent(content);
+                events++;
+            }
+            Measurement.Sample sample = measurement.stop(events);
+            if (guildSetupPool != null && !ready.await(30, TimeUnit.SECONDS))
+                LOG.warn("Guilds are still being built 30 seconds after the replay ended");
+            return new Result(sample, ready.getCount() == 0 ? readyTime[0] - start : -1);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        finally
+        {
+            WebSocketClient.WS_THREAD.set(false);
+            api.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            LOG.error("Usage: GatewayReplay <recording> [runs] [parallel]");
+            return;
+        }
+        GatewayReplay replay = read(new File(args[0]));
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        ExecutorService guildSetupPool = args.length > 2 && args[2].equals("parallel") ? ForkJoinPool.commonPool() : null;
+        LOG.info("Replaying {} frames {} times, the first runs include JIT warmup", replay.getFrameCount(), runs);
+        for (int i = 1; i <= runs; i++)
+            LOG.info("Run {}: {}", i, replay.run(guildSetupPool));
+    }
+
+    public static class Result
+    {
+        private final Measurement.Sample sample;
+        private final long readyNanos;
+
+        public Result(Measurement.Sample sample, long readyNanos)
+        {
+            this.sample = sample;
+            this.readyNanos = readyNanos;
+        }
+
+        public int getEvents()
+        {
+            return (int) sample.getOperations();
+        }
+
+        public long getNanos()
+        {
+            return sample.getNanos();
+        }
+
+        /**
+         * The time and allocations of the replaying thread, every replayed dispatch counts as one operation.
+         *
+         * @return The {@link Measurement.Sample}
+         */
+        public Measurement.Sample getSample()
+        {
+            return sample;
+        }
+
+        /**
+         * The time from the first frame until the {@link ReadyEvent} was fired.
+         * <br>With a guild setup pool, this can be longer than the replay itself.
+         *
+         * @return The time in nanoseconds, or -1 if the recording did not complete the startup
+         */
+        public long getReadyNanos()
+        {
+            return readyNanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%d events in %d ms, %.0f events/s, %d bytes/event, ready after %d ms",
+                getEvents(), TimeUnit.NANOSECONDS.toMillis(sample.getNanos()), sample.getOperationsPerSecond(),
+                sample.getAllocatedBytesPerOperation(), readyNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(readyNanos));
+        }
+    }
+
+    private static class Frame
+    {
+        private final byte[] payload;
+        private final boolean etf;
+
+        private Frame(byte[] payload, boolean etf)
+        {
+            this.payload = payload;
+            this.etf = etf;
+        }
+    }
+}
@@ -30,15 +30,30 @@ import net.dv8tion.jda.internal.utils.Helpers;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
 
+/**
+ * Handles member chunk requests with a nonce, such as {@link net.dv8tion.jda.api.entities.Guild#loadMembers()}.
+ * <br>Chunks without a nonce for a guild which is already cached are converted the same way, see {@link #handleUnrequestedChunk(GuildImpl, DataObject)}.
+ *
+ * <p>By default, chunks are converted to members on the reading thread.
+ * With a {@link net.dv8tion.jda.api.JDABuilder#setGuildSetupPool(java.util.concurrent.ExecutorService) guild setup pool},
+ * they are converted on that pool instead, so large responses don't block the reading thread.
+ * Conversions of the same guild run in order and conversions of different guilds run in parallel.
+ * Before the reading thread handles another event of a guild, it waits for the pending conversions of that guild,
+ * which keeps the cache consistent with the order of the gateway.
+ */
 public class MemberChunkManager
 {
-    private static final long MAX_CHUNK_AGE = 10 * 1000; // 10 seconds
+    private static final long MAX_CHUNK_AGE = 10 * 1000; // 10 seconds since the request was sent or the last chunk arrived
     private final WebSocketClient client;
     private final ReentrantLock lock = new ReentrantLock();
     private final TLongObjectMap<ChunkRequest> requests = new TLongObjectHashMap<>();
+    // Guild id -> latest conversion of that guild
+    private final TLongObjectMap<CompletableFuture<Void>> conversions = new TLongObjectHashMap<>();
+    private final AtomicInteger pendingConversions = new AtomicInteger();
     private Future<?> timeoutHandle;
 
     public MemberChunkManager(WebSocketClient client)
@@ -112,24 +127,157 @@ public class MemberChunkManager
 
     public boolean handleChunk(long guildId, DataObject response)
     {
-        return MiscUtil.locked(lock, () -> {
-            String nonce = response.getString("nonce", null);
-            if (nonce == null || nonce.isEmpty())
-                return false;
-            long key = Long.parseLong(nonce);
-            ChunkRequest request = requests.get(key);
-            if (request == null)
-                return false;
+        ChunkRequest request = getRequest(response);
+        if (request == null)
+            return false;
 
-            boolean lastChunk = isLastChunk(response);
+        boolean lastChunk = isLastChunk(response);
+        request.touch();
+        convert(guildId, () ->
+        {
             request.handleChunk(lastChunk, response);
             if (lastChunk || request.isCancelled())
             {
-                requests.remove(key);
+                cancelRequest(request);
                 request.complete(null);
             }
-            return true;
         });
+        return true;
+    }
+
+    /**
+     * Converts a chunk without a nonce, such as a chunk of the startup chunking which arrives after its guild has been built.
+     *
+     * @param  guild
+     *         The cached guild
+     * @param  chunk
+     *         The chunk
+     */
+    public void handleUnrequestedChunk(GuildImpl guild, DataObject chunk)
+    {
+        convert(guild.getIdLong(), () -> toMembers(guild, chunk));
+    }
+
+    public void onSent(DataObject request)
+    {
+        ChunkRequest chunkRequest = getRequest(request);
+        if (chunkRequest != null)
+            chunkRequest.touch();
+    }
+
+    /**
+     * Blocks until all chunks of the guild which have been received so far are converted.
+     *
+     * @param  guildId
+     *         The guild id
+     */
+    public void awaitConversions(long guildId)
+    {
+        if (pendingConversions.get() == 0)
+            return;
+        CompletableFuture<Void> conversion = MiscUtil.locked(lock, () -> conversions.get(guildId));
+        if (conversion != null)
+            conversion.join();
+    }
+
+    private ChunkRequest getRequest(DataObject json)
+    {
+        String nonce = json.getString("nonce", null);
+        if (nonce == null || nonce.isEmpty())
+            return null;
+        long key = Long.parseLong(nonce);
+        return MiscUtil.locked(lock, () -> requests.get(key));
+    }
+
+    private static List<Member> toMembers(GuildImpl guild, DataObject chunk)
+    {
+        EntityBuilder builder = guild.getJDA().getEntityBuilder();
+        DataArray memberArray = chunk.getArray("members");
+        TLongObjectMap<DataObject> presences = chunk.optArray("presences").map(it ->
+            Helpers.convertToMap(o -> o.getObject("user").getUnsignedLong("id"), it)
+        ).orElseGet(TLongObjectHashMap::new);
+        List<Member> collect = new ArrayList<>(memberArray.length());
+        for (int i = 0; i < memberArray.length(); i++)
+        {
+            DataObject json = memberArray.getObject(i);
+            long userId = json.getObject("user").getUnsignedLong("id");
+            DataObject presence = presences.get(userId);
+            MemberImpl member = builder.createMember(guild, json, null, presence);
+            builder.updateMemberCache(member);
+            collect.add(member);
+        }
+        return collect;
+    }
+
+    private void convert(long guildId, Runnable task)
+    {
+        // The user facing callback pool is never used, a busy pool would stall the reading thread in awaitConversions
+        ExecutorService pool = client.getJDA().getGuildSetupPool();
+        if (pool == null)
+        {
+            try
+            {
+                task.run();
+            }
+            catch (Throwable ex)
+            {
+                WebSocketClient.LOG.error("Encountered exception trying to handle member chunk response", ex);
+            }
+            return;
+        }
+
+        Runnable conversion = () ->
+        {
+            // Keep the same restrictions as the gateway thread, the reading thread might be waiting for this
+            WebSocketClient.WS_THREAD.set(true);
+            try
+            {
+                task.run();
+            }
+            catch (Throwable ex)
+            {
+                WebSocketClient.LOG.error("Encountered exception trying to handle member chunk response", ex);
+            }
+            finally
+            {
+                WebSocketClient.WS_THREAD.set(false);
+            }
+        };
+
+        pendingConversions.incrementAndGet();
+        lock.lock();
+        try
+        {
+            CompletableFuture<Void> previous = conversions.get(guildId);
+            CompletableFuture<Void> next;
+            try
+            {
+                next = previous == null
+                    ? CompletableFuture.runAsync(conversion, pool)
+                    : previous.thenRunAsync(conversion, pool);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                // Shutting down, nobody will wait for this anymore
+                conversion.run();
+                next = CompletableFuture.completedFuture(null);
+            }
+            conversions.put(guildId, next);
+            CompletableFuture<Void> current = next;
+            next.whenComplete((ignored, error) ->
+            {
+                pendingConversions.decrementAndGet();
+                MiscUtil.locked(lock, () ->
+                {
+                    if (conversions.get(guildId) == current)
+                        conversions.remove(guildId);
+                });
+            });
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     public void cancelRequest(ChunkRequest request)
@@ -158,7 +306,7 @@ public class MemberChunkManager
         private final GuildImpl guild;
         private final DataObject request;
         private final long nonce;
-        private long startTime;
+        private volatile long startTime;
 
         public ChunkRequest(BiConsumer<Boolean, List<Member>> handler, GuildImpl guild, DataObject request)
         {
@@ -185,28 +333,12 @@ public class MemberChunkManager
 
         public DataObject getRequest()
         {
-            startTime = System.currentTimeMillis();
             return request;
         }
 
-        private List<Member> toMembers(DataObject chunk)
+        public void touch()
         {
-            EntityBuilder builder = guild.getJDA().getEntityBuilder();
-            DataArray memberArray = chunk.getArray("members");
-            TLongObjectMap<DataObject> presences = chunk.optArray("presences").map(it ->
-                Helpers.convertToMap(o -> o.getObject("user").getUnsignedLong("id"), it)
-            ).orElseGet(TLongObjectHashMap::new);
-            List<Member> collect = new ArrayList<>(memberArray.length());
-            for (int i = 0; i < memberArray.length(); i++)
-            {
-                DataObject json = memberArray.getObject(i);
-                long userId = json.getObject("user").getUnsignedLong("id");
-                DataObject presence = presences.get(userId);
-                MemberImpl member = builder.createMember(guild, json, null, presence);
-                builder.updateMemberCache(member);
-                collect.add(member);
-            }
-            return collect;
+            startTime = System.currentTimeMillis();
         }
 
         public void handleChunk(boolean last, DataObject chunk)
@@ -214,7 +346,7 @@ public class MemberChunkManager
             try
             {
                 if (!isDone())
-                    handler.accept(last, toMembers(chunk));
+                    handler.accept(last, toMembers(guild, chunk));
             }
             catch (Throwable ex)
             {
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.requests;
+
+import gnu.trove.iterator.TLongLongIterator;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding window of member chunk requests which have been sent but not answered yet.
+ * <br>The gateway answers chunk requests one after another. Sending every request at once only moves the backlog
+ * to the gateway, which then sends the responses faster than a busy reading thread can process them.
+ *
+ * <p>The window grows by one for every request which is answered completely and is halved when a request stalls.
+ * A stalled request no longer occupies the window, so lost responses can never block chunking.
+ */
+public class MemberChunkWindow
+{
+    public static final int MIN_SIZE = 4;
+    public static final int MAX_SIZE = 50;
+    public static final long STALL_TIMEOUT = TimeUnit.SECONDS.toMillis(15);
+
+    // Guild id -> time of the request or the latest chunk
+    private final TLongLongMap pending = new TLongLongHashMap();
+    private int size = MIN_SIZE;
+
+    public synchronized boolean isFull(long now)
+    {
+        boolean stalled = false;
+        for (TLongLongIterator it = pending.iterator(); it.hasNext(); )
+        {
+            it.advance();
+            if (now - it.value() > STALL_TIMEOUT)
+            {
+                it.remove();
+                stalled = true;
+            }
+        }
+        if (stalled)
+        {
+            size = Math.max(MIN_SIZE, size / 2);
+            WebSocketClient.LOG.debug("Member chunk request stalled, reducing window to {}", size);
+        }
+        return pending.size() >= size;
+    }
+
+    public synchronized void onSent(long guildId, long now)
+    {
+        pending.put(guildId, now);
+    }
+
+    public synchronized void onChunk(long guildId, boolean last, long now)
+    {
+        if (!pending.containsKey(guildId))
+            return;
+        if (last)
+        {
+            pending.remove(guildId);
+            size = Math.min(MAX_SIZE, size + 1);
+        }
+        else
+        {
+            pending.put(guildId, now);
+        }
+    }
+
+    public synchronized void clear()
+    {
+        pending.clear();
+    }
+
+    public synchronized int getSize()
+    {
+        return size;
+    }
+
+    public synchronized int getPendingCount()
+    {
+        return pending.size();
+    }
+}
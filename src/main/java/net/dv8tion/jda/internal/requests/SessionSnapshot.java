@@ -0,0 +1,579 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.requests;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.OnlineStatus;
+import net.dv8tion.jda.api.entities.*;
+import net.dv8tion.jda.api.entities.emoji.CustomEmoji;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
+import net.dv8tion.jda.api.entities.emoji.EmojiUnion;
+import net.dv8tion.jda.api.entities.emoji.RichCustomEmoji;
+import net.dv8tion.jda.api.entities.sticker.GuildSticker;
+import net.dv8tion.jda.api.entities.sticker.Sticker;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.EntityBuilder;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.entities.MemberImpl;
+import net.dv8tion.jda.internal.entities.MemberPresenceImpl;
+import net.dv8tion.jda.internal.entities.ThreadChannelImpl;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot of a gateway session and the entity cache, used to RESUME the session after a process restart.
+ *
+ * <p>The file starts with a magic number, a format version, the CRC32 checksum and the length of the payload.
+ * The payload is an ETF encoded object with the session id, the sequence and the guilds in the same shape as a GUILD_CREATE,
+ * which allows the cache to be rebuilt by the {@link EntityBuilder}.
+ * <br>Voice states, presences and active threads are part of it, a RESUME only replays the events which were missed.
+ * The emojis and stickers of a compact guild are copied from its compact payload, without hydrating the guild.
+ */
+public class SessionSnapshot
+{
+    public static final Logger LOG = JDALogger.getLog(SessionSnapshot.class);
+    public static final int MAGIC = 0x4A444153; // JDAS
+    public static final int VERSION = 1;
+
+    private final DataObject data;
+
+    public SessionSnapshot(@NotNull DataObject data)
+    {
+        this.data = data;
+    }
+
+    @NotNull
+    public static SessionSnapshot capture(@NotNull JDAImpl api, @NotNull String sessionId, int intents)
+    {
+        JDA.ShardInfo shardInfo = api.getShardInfo();
+        DataArray guilds = DataArray.empty();
+        api.getGuildCache().forEach(guild -> guilds.add(serializeGuild((GuildImpl) guild)));
+        DataObject data = DataObject.empty()
+            .put("session_id", sessionId)
+            .put("seq", api.getResponseTotal())
+            .put("shard_id", shardInfo.getShardId())
+            .put("shard_total", shardInfo.getShardTotal())
+            .put("intents", intents)
+            .put("user", serializeSelfUser(api.getSelfUser()))
+            .put("guilds", guilds);
+        return new SessionSnapshot(data);
+    }
+
+    /**
+     * Reads and validates the snapshot file.
+     *
+     * @param  file
+     *         The snapshot file
+     *
+     * @return The snapshot, or null if the file does not exist or is corrupted
+     */
+    @Nullable
+    public static SessionSnapshot read(@NotNull File file)
+    {
+        if (!file.isFile())
+            return null;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (input.readInt() != MAGIC)
+            {
+                LOG.warn("Ignoring session snapshot {}, the file is not a session snapshot", file);
+                return null;
+            }
+            int version = input.readInt();
+            if (version != VERSION)
+            {
+                LOG.warn("Ignoring session snapshot {} with unsupported version {}", file, version);
+                return null;
+            }
+            long checksum = input.readLong();
+            byte[] payload = new byte[input.readInt()];
+            input.readFully(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            if (crc.getValue() != checksum)
+            {
+                LOG.warn("Ignoring session snapshot {}, the checksum does not match", file);
+                return null;
+            }
+            return new SessionSnapshot(DataObject.fromETF(payload));
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Failed to read session snapshot {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot to the file.
+     * <br>The file is replaced atomically, a crash while writing never leaves a partial snapshot behind.
+     *
+     * @param  file
+     *         The target file
+     *
+     * @throws IOException
+     *         If the file could not be written
+     */
+    public void write(@NotNull File file) throws IOException
+    {
+        byte[] payload = data.toETF();
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+        {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(crc.getValue());
+            output.writeInt(payload.length);
+            output.write(payload);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @NotNull
+    public String getSessionId()
+    {
+        return data.getString("session_id");
+    }
+
+    public int getSequence()
+    {
+        return data.getInt("seq");
+    }
+
+    @NotNull
+    public DataObject toData()
+    {
+        return data;
+    }
+
+    /**
+     * Whether this snapshot was taken by a session with the same shard, intents and account.
+     *
+     * @param  api
+     *         The JDA instance which should resume the session
+     * @param  intents
+     *         The gateway intents of the new session
+     *
+     * @return True, if the snapshot can be restored
+     */
+    public boolean isCompatible(@NotNull JDAImpl api, int intents)
+    {
+        JDA.ShardInfo shardInfo = api.getShardInfo();
+        if (data.getInt("shard_id") != shardInfo.getShardId() || data.getInt("shard_total") != shardInfo.getShardTotal())
+            return false;
+        if (data.getInt("intents") != intents)
+            return false;
+        return !api.hasSelfUser() || api.getSelfUser().getIdLong() == data.getObject("user").getUnsignedLong("id");
+    }
+
+    /**
+     * Rebuilds the entity cache from this snapshot.
+     *
+     * @param api
+     *        The JDA instance to populate
+     */
+    public void restore(@NotNull JDAImpl api)
+    {
+        EntityBuilder builder = api.getEntityBuilder();
+        builder.createSelfUser(data.getObject("user"));
+        DataArray guilds = data.getArray("guilds");
+        for (int i = 0; i < guilds.length(); i++)
+        {
+            DataObject guild = guilds.getObject(i);
+            DataArray memberArray = guild.getArray("members");
+            TLongObjectMap<DataObject> members = new TLongObjectHashMap<>(memberArray.length());
+            for (int j = 0; j < memberArray.length(); j++)
+            {
+                DataObject member = memberArray.getObject(j);
+                members.put(member.getObject("user").getUnsignedLong("id"), member);
+            }
+            builder.createGuild(guild.getUnsignedLong("id"), guild, members, guild.getInt("member_count"));
+        }
+    }
+
+    private static DataObject serializeSelfUser(SelfUser self)
+    {
+        return DataObject.empty()
+            .put("id", self.getIdLong())
+            .put("application_id", self.getApplicationIdLong())
+            .put("username", self.getName())
+            .put("discriminator", self.getDiscriminator())
+            .put("avatar", self.getAvatarId())
+            .put("verified", self.isVerified())
+            .put("mfa_enabled", self.isMfaEnabled())
+            .put("bot", self.isBot());
+    }
+
+    private static DataObject serializeGuild(GuildImpl guild)
+    {
+        DataArray roles = DataArray.empty();
+        guild.getRoleCache().forEach(role -> roles.add(serializeRole(role)));
+        DataArray channels = DataArray.empty();
+        guild.getCategoryCache().forEach(channel -> channels.add(serializeChannel(channel)));
+        guild.getTextChannelCache().forEach(channel -> channels.add(serializeChannel(channel)
+            .put("topic", channel.getTopic())
+            .put("nsfw", channel.isNSFW())
+            .put("rate_limit_per_user", channel.getSlowmode())
+            .put("last_message_id", channel.getLatestMessageIdLong())));
+        guild.getNewsChannelCache().forEach(channel -> channels.add(serializeChannel(channel)
+            .put("topic", channel.getTopic())
+            .put("nsfw", channel.isNSFW())
+            .put("last_message_id", channel.getLatestMessageIdLong())));
+        guild.getVoiceChannelCache().forEach(channel -> channels.add(serializeChannel(channel)
+            .put("user_limit", channel.getUserLimit())
+            .put("bitrate", channel.getBitrate())
+            .put("rtc_region", channel.getRegionRaw())
+            .put("nsfw", channel.isNSFW())
+            .put("last_message_id", channel.getLatestMessageIdLong())));
+        guild.getStageChannelCache().forEach(channel -> channels.add(serializeChannel(channel)
+            .put("bitrate", channel.getBitrate())
+            .put("rtc_region", channel.getRegionRaw())));
+        DataArray threads = DataArray.empty();
+        guild.getThreadChannelCache().forEach(thread -> {
+            if (!thread.isArchived())
+                threads.add(serializeThread((ThreadChannelImpl) thread));
+        });
+        DataArray emojis, stickers;
+        byte[] compactData = guild.getCompactData();
+        if (compactData != null)
+        {
+            // The compact payload is the GUILD_CREATE payload of these caches, hydrating the guild would only build them to serialize them again
+            DataObject compact = DataObject.fromETF(compactData);
+            emojis = compact.getArray("emojis");
+            stickers = compact.getArray("stickers");
+        }
+        else
+        {
+            DataArray emojiArray = emojis = DataArray.empty();
+            guild.getEmojiCache().forEach(emoji -> emojiArray.add(serializeEmoji(emoji)));
+            DataArray stickerArray = stickers = DataArray.empty();
+            guild.getStickerCache().forEach(sticker -> stickerArray.add(serializeSticker(sticker)));
+        }
+        DataArray members = DataArray.empty();
+        DataArray voiceStates = DataArray.empty();
+        DataArray presences = DataArray.empty();
+        guild.getMemberCache().forEach(member -> {
+            members.add(serializeMember((MemberImpl) member));
+            GuildVoiceState voiceState = member.getVoiceState();
+            if (voiceState != null && voiceState.getChannel() != null)
+                voiceStates.add(serializeVoiceState(voiceState));
+            MemberPresenceImpl presence = ((MemberImpl) member).getPresence();
+            if (presence != null && presence.getOnlineStatus() != OnlineStatus.OFFLINE)
+                presences.add(serializePresence(member.getIdLong(), presence));
+        });
+        DataArray stageInstances = DataArray.empty();
+        guild.getStageChannelCache().forEach(channel -> {
+            StageInstance instance = channel.getStageInstance();
+            if (instance != null)
+                stageInstances.add(serializeStageInstance(instance));
+        });
+
+        return DataObject.empty()
+            .put("id", guild.getIdLong())
+            .put("name", guild.getName())
+            .put("icon", guild.getIconId())
+            .put("splash", guild.getSplashId())
+            .put("description", guild.getDescription())
+            .put("vanity_url_code", guild.getVanityCode())
+            .put("banner", guild.getBannerId())
+            .put("preferred_locale", guild.getLocale().getLocale())
+            .put("owner_id", guild.getOwnerIdLong())
+            .put("afk_channel_id", idOf(guild.getAfkChannel()))
+            .put("system_channel_id", idOf(guild.getSystemChannel()))
+            .put("rules_channel_id", idOf(guild.getRulesChannel()))
+            .put("public_updates_channel_id", idOf(guild.getCommunityUpdatesChannel()))
+            .put("premium_subscription_count", guild.getBoostCount())
+            .put("premium_tier", guild.getBoostTier().getKey())
+            .put("max_members", guild.getMaxMembers())
+            .put("max_presences", guild.getMaxPresences())
+            .put("mfa_level", guild.getRequiredMFALevel().getKey())
+            .put("afk_timeout", guild.getAfkTimeout().getSeconds())
+            .put("verification_level", guild.getVerificationLevel().getKey())
+            .put("default_message_notifications", guild.getDefaultNotificationLevel().getKey())
+            .put("explicit_content_filter", guild.getExplicitContentLevel().getKey())
+            .put("nsfw_level", guild.getNSFWLevel().getKey())
+            .put("premium_progress_bar_enabled", guild.isBoostProgressBarEnabled())
+            .put("member_count", guild.getMemberCount())
+            .put("features", DataArray.fromCollection(guild.getFeatures()))
+            .put("roles", roles)
+            .put("channels", channels)
+            .put("emojis", emojis)
+            .put("members", members)
+            .put("threads", threads)
+            .put("stickers", stickers)
+            .put("voice_states", voiceStates)
+            .put("presences", presences)
+            .put("stage_instances", stageInstances);
+    }
+
+    private static DataObject serializeRole(Role role)
+    {
+        Role.RoleTags tags = role.getTags();
+        DataObject tagData = DataObject.empty();
+        if (tags.isBot())
+            tagData.put("bot_id", tags.getBotIdLong());
+        if (tags.isIntegration())
+            tagData.put("integration_id", tags.getIntegrationIdLong());
+        if (tags.isBoost())
+            tagData.put("premium_subscriber", null);
+        RoleIcon icon = role.getIcon();
+        return DataObject.empty()
+            .put("id", role.getIdLong())
+            .put("name", role.getName())
+            .put("position", role.getPositionRaw())
+            .put("permissions", role.getPermissionsRaw())
+            .put("managed", role.isManaged())
+            .put("hoist", role.isHoisted())
+            .put("color", role.getColorRaw() == Role.DEFAULT_COLOR_RAW ? 0 : role.getColorRaw())
+            .put("mentionable", role.isMentionable())
+            .put("tags", tagData)
+            .put("icon", icon == null ? null : icon.getIconId())
+            .put("unicode_emoji", icon == null ? null : icon.getEmoji());
+    }
+
+    private static DataObject serializeChannel(GuildChannel channel)
+    {
+        DataObject json = DataObject.empty()
+            .put("id", channel.getIdLong())
+            .put("type", channel.getType().getId())
+            .put("name", channel.getName());
+        if (channel instanceof IPositionableChannel)
+            json.put("position", ((IPositionableChannel) channel).getPositionRaw());
+        if (channel instanceof ICategorizableChannel)
+            json.put("parent_id", ((ICategorizableChannel) channel).getParentCategoryIdLong());
+        DataArray overrides = DataArray.empty();
+        if (channel instanceof IPermissionContainer)
+        {
+            for (PermissionOverride override : ((IPermissionContainer) channel).getPermissionOverrides())
+            {
+                overrides.add(DataObject.empty()
+                    .put("id", override.getIdLong())
+                    .put("type", override.isRoleOverride() ? 0 : 1)
+                    .put("allow", override.getAllowedRaw())
+                    .put("deny", override.getDeniedRaw()));
+            }
+        }
+        return json.put("permission_overwrites", overrides);
+    }
+
+    private static DataObject serializeThread(ThreadChannelImpl thread)
+    {
+        DataObject metadata = DataObject.empty()
+            .put("locked", thread.isLocked())
+            .put("archived", thread.isArchived())
+            .put("invitable", thread.getType() == ChannelType.GUILD_PRIVATE_THREAD && thread.isInvitable())
+            .put("archive_timestamp", formatTimestamp(thread.getArchiveTimestamp()))
+            .put("create_timestamp", toTimestamp(thread.getCreationTimestamp()))
+            .put("auto_archive_duration", thread.getAutoArchiveDuration().getMinutes());
+        DataObject json = DataObject.empty()
+            .put("id", thread.getIdLong())
+            .put("type", thread.getType().getId())
+            .put("name", thread.getName())
+            .put("parent_id", thread.getParentChannelIdLong())
+            .put("owner_id", thread.getOwnerIdLong())
+            .put("member_count", thread.getMemberCount())
+            .put("message_count", thread.getMessageCount())
+            .put("last_message_id", thread.getLatestMessageIdLong())
+            .put("rate_limit_per_user", thread.getSlowmode())
+            .put("thread_metadata", metadata);
+        ThreadMember self = thread.getSelfThreadMember();
+        if (self != null)
+        {
+            json.put("member", DataObject.empty()
+                .put("join_timestamp", self.getTimeJoined().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
+                .put("flags", self.getFlagsRaw()));
+        }
+        return json;
+    }
+
+    private static DataObject serializeEmoji(RichCustomEmoji emoji)
+    {
+        DataArray roles = DataArray.empty();
+        emoji.getRoles().forEach(role -> roles.add(role.getIdLong()));
+        return DataObject.empty()
+            .put("id", emoji.getIdLong())
+            .put("name", emoji.getName())
+            .put("animated", emoji.isAnimated())
+            .put("managed", emoji.isManaged())
+            .put("available", emoji.isAvailable())
+            .put("roles", roles);
+    }
+
+    private static DataObject serializeSticker(GuildSticker sticker)
+    {
+        User owner = sticker.getOwner();
+        return DataObject.empty()
+            .put("id", sticker.getIdLong())
+            .put("name", sticker.getName())
+            .put("format_type", sticker.getFormatType().getId())
+            .put("type", Sticker.Type.GUILD.getId())
+            .put("description", sticker.getDescription())
+            .put("tags", sticker.getTags().isEmpty() ? null : String.join(", ", sticker.getTags()))
+            .put("available", sticker.isAvailable())
+            .put("guild_id", sticker.getGuildIdLong())
+            .put("user", owner == null ? null : serializeUser(owner));
+    }
+
+    private static DataObject serializeUser(User user)
+    {
+        return DataObject.empty()
+            .put("id", user.getIdLong())
+            .put("username", user.getName())
+            .put("discriminator", user.getDiscriminator())
+            .put("avatar", user.getAvatarId())
+            .put("bot", user.isBot())
+            .put("system", user.isSystem())
+            .put("public_flags", user.getFlagsRaw());
+    }
+
+    private static DataObject serializeMember(MemberImpl member)
+    {
+        DataArray roles = DataArray.empty();
+        member.getRoleSet().forEach(role -> roles.add(role.getIdLong()));
+        DataObject json = DataObject.empty()
+            .put("user", serializeUser(member.getUser()))
+            .put("nick", member.getNickname())
+            .put("avatar", member.getAvatarId())
+            .put("roles", roles)
+            .put("pending", member.isPending())
+            .put("premium_since", toTimestamp(member.getBoostDateRaw()))
+            .put("communication_disabled_until", toTimestamp(member.getTimeOutEndRaw()));
+        if (member.hasTimeJoined())
+            json.put("joined_at", member.getTimeJoined().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        return json;
+    }
+
+    private static DataObject serializeVoiceState(GuildVoiceState voiceState)
+    {
+        OffsetDateTime requestToSpeak = voiceState.getRequestToSpeakTimestamp();
+        return DataObject.empty()
+            .put("user_id", voiceState.getMember().getIdLong())
+            .put("channel_id", voiceState.getChannel().getIdLong())
+            .put("session_id", voiceState.getSessionId())
+            .put("self_mute", voiceState.isSelfMuted())
+            .put("self_deaf", voiceState.isSelfDeafened())
+            .put("mute", voiceState.isGuildMuted())
+            .put("deaf", voiceState.isGuildDeafened())
+            .put("suppress", voiceState.isSuppressed())
+            .put("self_stream", voiceState.isStream())
+            .put("request_to_speak_timestamp", requestToSpeak == null ? null : requestToSpeak.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+    }
+
+    private static DataObject serializePresence(long userId, MemberPresenceImpl presence)
+    {
+        DataObject clientStatus = DataObject.empty();
+        presence.getClientStatus().forEach((type, status) -> clientStatus.put(type.getKey(), status.getKey()));
+        DataArray activities = DataArray.empty();
+        presence.getActivities().forEach(activity -> activities.add(serializeActivity(activity)));
+        return DataObject.empty()
+            .put("user", DataObject.empty().put("id", userId))
+            .put("status", presence.getOnlineStatus().getKey())
+            .put("client_status", clientStatus)
+            .put("activities", activities);
+    }
+
+    private static DataObject serializeActivity(Activity activity)
+    {
+        DataObject json = DataObject.empty()
+            .put("name", activity.getName())
+            .put("type", activity.getType().getKey())
+            .put("url", activity.getUrl());
+        Activity.Timestamps timestamps = activity.getTimestamps();
+        if (timestamps != null)
+            json.put("timestamps", DataObject.empty().put("start", timestamps.getStart()).put("end", timestamps.getEnd()));
+        EmojiUnion emoji = activity.getEmoji();
+        if (emoji != null)
+        {
+            DataObject emojiJson = DataObject.empty().put("name", emoji.getName());
+            if (emoji.getType() == Emoji.Type.CUSTOM)
+            {
+                CustomEmoji custom = emoji.asCustom();
+                emojiJson.put("id", custom.getIdLong()).put("animated", custom.isAnimated());
+            }
+            json.put("emoji", emojiJson);
+        }
+
+        RichPresence rich = activity.asRichPresence();
+        if (rich == null)
+            return json;
+        json.put("application_id", rich.getApplicationIdLong())
+            .put("session_id", rich.getSessionId())
+            .put("sync_id", rich.getSyncId())
+            .put("flags", rich.getFlags())
+            .put("details", rich.getDetails())
+            .put("state", rich.getState());
+        RichPresence.Party party = rich.getParty();
+        if (party != null)
+            json.put("party", DataObject.empty().put("id", party.getId()).put("size", DataArray.empty().add(party.getSize()).add(party.getMax())));
+        RichPresence.Image large = rich.getLargeImage(), small = rich.getSmallImage();
+        if (large != null || small != null)
+        {
+            DataObject assets = DataObject.empty();
+            if (large != null)
+                assets.put("large_image", large.getKey()).put("large_text", large.getText());
+            if (small != null)
+                assets.put("small_image", small.getKey()).put("small_text", small.getText());
+            json.put("assets", assets);
+        }
+        return json;
+    }
+
+    private static DataObject serializeStageInstance(StageInstance instance)
+    {
+        return DataObject.empty()
+            .put("id", instance.getIdLong())
+            .put("channel_id", instance.getChannel().getIdLong())
+            .put("topic", instance.getTopic())
+            .put("privacy_level", instance.getPrivacyLevel().getKey());
+    }
+
+    private static String toTimestamp(long epochMillis)
+    {
+        if (epochMillis == 0)
+            return null;
+        return formatTimestamp(epochMillis);
+    }
+
+    private static String formatTimestamp(long epochMillis)
+    {
+        return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(Instant.ofEpochMilli(epochMillis).atOffset(ZoneOffset.UTC));
+    }
+
+    private static long idOf(ISnowflake entity)
+    {
+        return entity == null ? 0L : entity.getIdLong();
+    }
+}
@@ -28,6 +28,7 @@ import net.dv8tion.jda.api.events.*;
 import net.dv8tion.jda.api.exceptions.ParsingException;
 import net.dv8tion.jda.api.managers.AudioManager;
 import net.dv8tion.jda.api.requests.CloseCode;
+import net.dv8tion.jda.api.requests.GatewayTransport;
 import net.dv8tion.jda.api.utils.Compression;
 import net.dv8tion.jda.api.utils.MiscUtil;
 import net.dv8tion.jda.api.utils.SessionController;
@@ -47,21 +48,25 @@ import net.dv8tion.jda.internal.utils.UnlockHook;
 import net.dv8tion.jda.internal.utils.cache.AbstractCacheView;
 import net.dv8tion.jda.internal.utils.compress.Decompressor;
 import net.dv8tion.jda.internal.utils.compress.ZlibDecompressor;
+import net.dv8tion.jda.internal.utils.concurrent.SerialExecutor;
 import org.slf4j.Logger;
 import org.slf4j.MDC;
 
 import org.jetbrains.annotations.NotNull;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.lang.ref.SoftReference;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
@@ -76,6 +81,8 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
     public static final int ZLIB_SUFFIX = 0x0000FFFF;
 
     protected static final String INVALIDATE_REASON = "INVALIDATE_SESSION";
+    // Any close code other than 1000 and 1001 keeps the session resumable
+    protected static final int SNAPSHOT_CLOSE_CODE = 4900;
     protected static final long IDENTIFY_BACKOFF = TimeUnit.SECONDS.toMillis(SessionController.IDENTIFY_DELAY); // same as 1000 * IDENTIFY_DELAY
 
     protected final JDAImpl api;
@@ -87,6 +94,9 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
     protected final GatewayEncoding encoding;
 
     public WebSocket socket;
+    // Replaces the socket when a transport is configured
+    protected final GatewayTransport transport;
+    protected volatile GatewayTransport.Connection connection;
     protected volatile String sessionId = null;
     protected final Object readLock = new Object();
     protected Decompressor decompressor;
@@ -95,6 +105,14 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
     protected final ScheduledExecutorService executor;
     protected WebSocketSendingThread ratelimitThread;
     protected volatile Future<?> keepAliveThread;
+    protected volatile Future<?> presenceFlushThread;
+    protected volatile Future<?> guildCompactionThread;
+
+    // Only used with presence coalescing, parallel guild setup or lazy guild hydration, tasks on the gateway pool must not dispatch while the reading thread is dispatching
+    protected final ReentrantLock dispatchLock = new ReentrantLock();
+    protected final boolean lockDispatch;
+    protected final PresenceCoalescer presenceCoalescer;
+    protected final GatewayRecorder recorder;
 
     protected boolean initiating;
 
@@ -102,20 +120,24 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
     protected int reconnectTimeoutS = 2;
     protected long heartbeatStartTime;
     protected long identifyTime = 0;
+    protected volatile long identifyNanos = Long.MIN_VALUE;
 
     protected final TLongObjectMap<ConnectionRequest> queuedAudioConnections = MiscUtil.newLongMap();
-    protected final Queue<DataObject> chunkSyncQueue = new ConcurrentLinkedQueue<>();
-    protected final Queue<DataObject> ratelimitQueue = new ConcurrentLinkedQueue<>();
+    protected final Queue<QueuedMessage> chunkSyncQueue = new ConcurrentLinkedQueue<>();
+    protected final Queue<QueuedMessage> ratelimitQueue = new ConcurrentLinkedQueue<>();
+    // Only the latest presence is relevant, guarded by the queueLock
+    protected QueuedMessage queuedPresence;
+    protected final MemberChunkWindow chunkWindow = new MemberChunkWindow();
 
-    protected volatile long ratelimitResetTime;
-    protected final AtomicInteger messagesSent = new AtomicInteger(0);
+    protected final GatewayRateLimiter rateLimiter = new GatewayRateLimiter();
+    protected volatile long lastRateLimitWarning;
 
     protected volatile boolean shutdown = false;
+    protected volatile boolean snapshotOnClose = false;
     protected boolean shouldReconnect;
     protected boolean handleIdentifyRateLimit = false;
     protected boolean connected = false;
 
-    protected volatile boolean printedRateLimitMessage = false;
     protected volatile boolean sentAuthInfo = false;
     protected boolean firstInit = true;
     protected boolean processingReady = true;
@@ -123,6 +145,15 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
     protected volatile ConnectNode connectNode;
 
     public WebSocketClient(JDAImpl api, Compression compression, int gatewayIntents, GatewayEncoding encoding)
+    {
+        this(api, compression, gatewayIntents, encoding, true);
+    }
+
+    /**
+     * Creates the client for the session of the provided JDA instance.
+     * <br>A client which does not connect is used by {@link GatewayReplay}, which passes recorded frames to {@link #handleEvent(DataObject)} directly.
+     */
+    public WebSocketClient(JDAImpl api, Compression compression, int gatewayIntents, GatewayEncoding encoding, boolean connect)
     {
         this.api = api;
         this.executor = api.getGatewayPool();
@@ -131,12 +162,27 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         this.gatewayIntents = gatewayIntents;
         this.chunkManager = new MemberChunkManager(this);
         this.encoding = encoding;
+        this.transport = api.getGatewayTransport();
         this.shouldReconnect = api.isAutoReconnect();
         this.connectNode = new StartingNode();
+        long coalescingWindow = api.getPresenceCoalescingWindow();
+        this.presenceCoalescer = coalescingWindow > 0 ? new PresenceCoalescer(coalescingWindow, TimeUnit.NANOSECONDS, this::handleCoalescedPresence) : null;
+        this.lockDispatch = presenceCoalescer != null || api.getGuildSetupPool() != null || api.getGuildHydrationController() != null;
         setupHandlers();
+        if (!connect)
+        {
+            this.recorder = null;
+            this.initiating = true;
+            return;
+        }
+        this.recorder = openRecorder();
+        restoreSnapshot();
         try
         {
-            api.getSessionController().appendSession(connectNode);
+            if (sessionId != null)
+                resumeRestoredSession();
+            else
+                api.getSessionController().appendSession(connectNode);
         }
         catch (RuntimeException | Error e)
         {
@@ -230,54 +276,88 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         events.forEach(this::onDispatch);
     }
 
+    public GatewayRateLimiter getRateLimiter()
+    {
+        return rateLimiter;
+    }
+
+    public MemberChunkWindow getChunkWindow()
+    {
+        return chunkWindow;
+    }
+
     public void send(DataObject message)
     {
-        locked("Interrupted while trying to add request to queue", () -> ratelimitQueue.add(message));
+        locked("Interrupted while trying to add request to queue", () ->
+        {
+            if (message.getInt("op", -1) != WebSocketCode.PRESENCE)
+            {
+                ratelimitQueue.add(new QueuedMessage(message));
+            }
+            else if (queuedPresence == null)
+            {
+                queuedPresence = new QueuedMessage(message);
+            }
+            else
+            {
+                // Superseded before it was sent, keep the original enqueue time for the latency metrics
+                queuedPresence.data = message;
+                rateLimiter.recordCoalesced();
+            }
+        });
     }
 
     public void cancelChunkRequest(String nonce)
     {
         locked("Interrupted while trying to cancel chunk request",
-            () -> chunkSyncQueue.removeIf(it -> it.getString("nonce", "").equals(nonce)));
+            () -> chunkSyncQueue.removeIf(it -> it.data.getString("nonce", "").equals(nonce)));
     }
 
     public void sendChunkRequest(DataObject request)
     {
-        locked("Interrupted while trying to add chunk request", () -> chunkSyncQueue.add(request));
+        locked("Interrupted while trying to add chunk request", () -> chunkSyncQueue.add(new QueuedMessage(request)));
     }
 
     protected boolean send(DataObject message, boolean skipQueue)
+    {
+        return send(message, skipQueue, System.nanoTime());
+    }
+
+    protected boolean send(DataObject message, boolean skipQueue, long enqueueTime)
     {
         if (!connected)
             return false;
 
-        long now = System.currentTimeMillis();
-
-        if (this.ratelimitResetTime <= now)
-        {
-            this.messagesSent.set(0);
-            this.ratelimitResetTime = now + 60000;//60 seconds
-            this.printedRateLimitMessage = false;
-        }
-
-        //Allows 115 messages to be sent before limiting.
-        if (this.messagesSent.get() <= 115 || (skipQueue && this.messagesSent.get() <= 119))   //technically we could go to 120, but we aren't going to chance it
+        long now = System.nanoTime();
+        // Heartbeats, identify and resume can use the reserved permits
+        if (rateLimiter.tryAcquire(now, skipQueue))
         {
             LOG.trace("<- {}", message);
-            if (encoding == GatewayEncoding.ETF)
+            if (transport != null)
+            {
+                if (encoding == GatewayEncoding.ETF)
+                    connection.sendBinary(message.toETF());
+                else
+                    connection.sendText(message.toString());
+            }
+            else if (encoding == GatewayEncoding.ETF)
+            {
                 socket.sendBinary(message.toETF());
+            }
             else
+            {
                 socket.sendText(message.toString());
-            this.messagesSent.getAndIncrement();
+            }
+            rateLimiter.recordSent(GatewayRateLimiter.getCategory(message.getInt("op", -1)), now - enqueueTime);
             return true;
         }
         else
         {
-            if (!printedRateLimitMessage)
+            if (now - lastRateLimitWarning > GatewayRateLimiter.WINDOW || lastRateLimitWarning == 0)
             {
                 LOG.warn("Hit the WebSocket RateLimit! This can be caused by too many presence or voice status updates (connect/disconnect/mute/deaf). " +
                          "Regular: {} Voice: {} Chunking: {}", ratelimitQueue.size(), queuedAudioConnections.size(), chunkSyncQueue.size());
-                printedRateLimitMessage = true;
+                lastRateLimitWarning = now;
             }
             return false;
         }
@@ -291,6 +371,8 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
 
     private void prepareClose()
     {
+        if (connection != null)
+            connection.setReadTimeout(10000);
         try
         {
             if (socket != null)
@@ -306,21 +388,27 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
     public void close()
     {
         prepareClose();
-        if (socket != null)
+        if (connection != null)
+            connection.close(1000, null);
+        else if (socket != null)
             socket.sendClose(1000);
     }
 
     public void close(int code)
     {
         prepareClose();
-        if (socket != null)
+        if (connection != null)
+            connection.close(code, null);
+        else if (socket != null)
             socket.sendClose(code);
     }
 
     public void close(int code, String reason)
     {
         prepareClose();
-        if (socket != null)
+        if (connection != null)
+            connection.close(code, reason);
+        else if (socket != null)
             socket.sendClose(code, reason);
     }
 
@@ -330,7 +418,118 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         shouldReconnect = false;
         if (connectNode != null)
             api.getSessionController().removeSession(connectNode);
-        close(1000, "Shutting down");
+        snapshotOnClose = api.getSessionSnapshotFile() != null && sessionId != null && connected;
+        close(snapshotOnClose ? SNAPSHOT_CLOSE_CODE : 1000, "Shutting down");
+    }
+
+    protected GatewayRecorder openRecorder()
+    {
+        File file = api.getGatewayRecordingFile();
+        if (file == null)
+            return null;
+        try
+        {
+            GatewayRecorder recorder = GatewayRecorder.open(file, gatewayIntents, shardInfo);
+            LOG.info("Recording gateway frames to {}", file);
+            return recorder;
+        }
+        catch (IOException e)
+        {
+            LOG.error("Failed to create gateway recording {}", file, e);
+            return null;
+        }
+    }
+
+    protected void restoreSnapshot()
+    {
+        File file = api.getSessionSnapshotFile();
+        if (file == null)
+            return;
+        SessionSnapshot snapshot = SessionSnapshot.read(file);
+        // The sequence is outdated as soon as the session receives new events, so a snapshot can only be resumed once
+        if (file.exists() && !file.delete())
+            LOG.warn("Failed to delete session snapshot {}", file);
+        if (snapshot == null)
+            return;
+        if (!snapshot.isCompatible(api, gatewayIntents))
+        {
+            LOG.info("Ignoring session snapshot {}, it was taken with a different shard, intents or account", file);
+            return;
+        }
+
+        try
+        {
+            snapshot.restore(api);
+        }
+        catch (RuntimeException e)
+        {
+            LOG.warn("Failed to restore session snapshot, falling back to IDENTIFY", e);
+            invalidate();
+            return;
+        }
+        sessionId = snapshot.getSessionId();
+        api.setResponseTotal(snapshot.getSequence());
+        // There is no READY to process, RESUMED completes the startup
+        processingReady = false;
+        LOG.info("Restored session snapshot with {} guilds", api.getGuildCache().size());
+    }
+
+    protected void resumeRestoredSession()
+    {
+        // RESUME does not count towards the identify limits, so there is no need to wait in the session controller queue
+        executor.execute(() ->
+        {
+            try
+            {
+                connectNode.run(true);
+            }
+            catch (Exception e)
+            {
+                if (shutdown)
+                    return;
+                LOG.warn("Failed to connect with restored session, falling back to IDENTIFY", e);
+                if (ratelimitThread != null)
+                {
+                    ratelimitThread.shutdown();
+                    ratelimitThread = null;
+                }
+                invalidate();
+                api.getSessionController().appendSession(connectNode);
+            }
+        });
+    }
+
+    protected void writeSnapshot()
+    {
+        File file = api.getSessionSnapshotFile();
+        String session = sessionId;
+        if (file == null || session == null)
+            return;
+        if (presenceCoalescer != null)
+        {
+            // Buffered presences are older than the current sequence and would be lost otherwise
+            dispatchLock.lock();
+            try
+            {
+                WS_THREAD.set(true);
+                presenceCoalescer.flushAll();
+            }
+            finally
+            {
+                WS_THREAD.set(false);
+                dispatchLock.unlock();
+            }
+        }
+
+        try
+        {
+            SessionSnapshot.capture(api, session, gatewayIntents).write(file);
+            LOG.info("Saved session snapshot to {}", file);
+        }
+        catch (Exception e)
+        {
+            LOG.error("Failed to write session snapshot {}", file, e);
+        }
     }
 
     /*
@@ -362,6 +561,12 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
             }
         }
 
+        if (transport != null)
+        {
+            connectTransport(url);
+            return;
+        }
+
         try
         {
             WebSocketFactory socketFactory = new WebSocketFactory(api.getWebSocketFactory());
@@ -384,6 +589,20 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         }
     }
 
+    protected void connectTransport(String url)
+    {
+        try
+        {
+            connection = transport.connect(URI.create(url), new TransportListener());
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            api.resetGatewayUrl();
+            //Completely fail here. We couldn't make the connection.
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public void onThreadStarted(WebSocket websocket, ThreadType threadType, Thread thread) throws Exception
     {
@@ -408,8 +627,9 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         }
         connected = true;
         //reconnectTimeoutS = 2; We will reset this when the session was started successfully (ready/resume)
-        messagesSent.set(0);
-        ratelimitResetTime = System.currentTimeMillis() + 60000;
+        // The gateway counts sends per connection
+        rateLimiter.reset();
+        chunkWindow.clear();
         if (sessionId == null)
             sendIdentify();
         else
@@ -449,6 +669,16 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
             keepAliveThread.cancel(false);
             keepAliveThread = null;
         }
+        if (presenceFlushThread != null)
+        {
+            presenceFlushThread.cancel(false);
+            presenceFlushThread = null;
+        }
+        if (guildCompactionThread != null)
+        {
+            guildCompactionThread.cancel(false);
+            guildCompactionThread = null;
+        }
         if (closedByServer && serverCloseFrame != null)
         {
             rawCloseCode = serverCloseFrame.getCloseCode();
@@ -496,6 +726,10 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
 
             if (decompressor != null)
                 decompressor.shutdown();
+            if (snapshotOnClose)
+                writeSnapshot();
+            if (recorder != null)
+                recorder.close();
             api.shutdownInternals();
             api.handleEvent(new ShutdownEvent(api, OffsetDateTime.now(), rawCloseCode));
         }
@@ -648,15 +882,22 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
 
     protected void setupKeepAlive(int timeout)
     {
-        try
+        if (connection != null)
         {
-            Socket rawSocket = this.socket.getSocket();
-            if (rawSocket != null)
-                rawSocket.setSoTimeout(timeout + 10000); // setup a timeout when we miss heartbeats
+            connection.setReadTimeout(timeout + 10000); // setup a timeout when we miss heartbeats
         }
-        catch (SocketException ex)
+        else
         {
-            LOG.warn("Failed to setup timeout for socket", ex);
+            try
+            {
+                Socket rawSocket = this.socket.getSocket();
+                if (rawSocket != null)
+                    rawSocket.setSoTimeout(timeout + 10000); // setup a timeout when we miss heartbeats
+            }
+            catch (SocketException ex)
+            {
+                LOG.warn("Failed to setup timeout for socket", ex);
+            }
         }
 
         keepAliveThread = executor.scheduleAtFixedRate(() ->
@@ -665,6 +906,119 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
             if (connected)
                 sendKeepAlive();
         }, 0, timeout, TimeUnit.MILLISECONDS);
+
+        if (presenceCoalescer != null && presenceFlushThread == null)
+        {
+            long window = api.getPresenceCoalescingWindow();
+            presenceFlushThread = executor.scheduleAtFixedRate(this::flushPresences, window, window, TimeUnit.NANOSECONDS);
+        }
+
+        GuildHydrationController hydration = api.getGuildHydrationController();
+        if (hydration != null && guildCompactionThread == null)
+        {
+            long idleTime = hydration.getIdleTime(TimeUnit.MILLISECONDS);
+            guildCompactionThread = executor.scheduleAtFixedRate(this::compactGuilds, idleTime, idleTime, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    protected void flushPresences()
+    {
+        api.setContext();
+        dispatchLock.lock();
+        try
+        {
+            WS_THREAD.set(true);
+            presenceCoalescer.flushDue();
+        }
+        finally
+        {
+            WS_THREAD.set(false);
+            dispatchLock.unlock();
+        }
+    }
+
+    protected void compactGuilds()
+    {
+        api.setContext();
+        dispatchLock.lock();
+        try
+        {
+            api.getGuildHydrationController().compactIdle();
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Encountered exception while compacting guilds", ex);
+        }
+        finally
+        {
+            dispatchLock.unlock();
+        }
+    }
+
+    public void publishGuilds()
+    {
+        api.setContext();
+        dispatchLock.lock();
+        try
+        {
+            WS_THREAD.set(true);
+            api.getGuildSetupController().publishCompleted();
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Encountered exception while publishing guilds", ex);
+            api.handleEvent(new ExceptionEvent(api, ex, true));
+        }
+        finally
+        {
+            WS_THREAD.set(false);
+            dispatchLock.unlock();
+        }
+    }
+
+    protected void handleCoalescedPresence(long responseTotal, DataObject raw)
+    {
+        long guildId = raw.getObject("d").getUnsignedLong("guild_id");
+        if (api.isUnavailable(guildId))
+            return;
+        getHandler("PRESENCE_UPDATE").handle(responseTotal, raw);
+        if (api.isRawEvents())
+            api.handleEvent(new RawGatewayEvent(api, responseTotal, raw));
+    }
+
+    protected boolean coalescePresence(String type, long responseTotal, DataObject raw, DataObject content)
+    {
+        switch (type)
+        {
+            case "PRESENCE_UPDATE":
+                return presenceCoalescer.offer(responseTotal, raw);
+            case "GUILD_DELETE":
+                presenceCoalescer.discard(content.getUnsignedLong("id"));
+                return false;
+            case "GUILD_MEMBER_REMOVE":
+                presenceCoalescer.discard(content.getUnsignedLong("guild_id"), content.getObject("user").getUnsignedLong("id"));
+                return false;
+            default:
+                // A buffered presence happened before this event, handle it first so the member sees its events in order
+                long guildId = content.getUnsignedLong("guild_id", 0L);
+                long userId = getEventUserId(content);
+                if (guildId != 0 && userId != 0)
+                    presenceCoalescer.flush(guildId, userId);
+                return false;
+        }
+    }
+
+    protected static long getEventUserId(DataObject content)
+    {
+        if (!content.isNull("user_id"))
+            return content.getUnsignedLong("user_id", 0L);
+        if (content.isType("user", DataType.OBJECT))
+            return content.getObject("user").getUnsignedLong("id", 0L);
+        if (content.isType("author", DataType.OBJECT))
+            return content.getObject("author").getUnsignedLong("id", 0L);
+        if (content.isType("member", DataType.OBJECT) && content.getObject("member").isType("user", DataType.OBJECT))
+            return content.getObject("member").getObject("user").getUnsignedLong("id", 0L);
+        return 0L;
     }
 
     protected void sendKeepAlive()
@@ -680,7 +1034,10 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
             missedHeartbeats = 0;
             LOG.warn("Missed 2 heartbeats! Trying to reconnect...");
             prepareClose();
-            socket.disconnect(4900, "ZOMBIE CONNECTION");
+            if (connection != null)
+                connection.close(4900, "ZOMBIE CONNECTION");
+            else
+                socket.disconnect(4900, "ZOMBIE CONNECTION");
         }
         else
         {
@@ -716,6 +1073,7 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
                     .add(shardInfo.getShardTotal()));
         }
         send(identify, true);
+        identifyNanos = System.nanoTime();
         handleIdentifyRateLimit = true;
         identifyTime = System.currentTimeMillis();
         sentAuthInfo = true;
@@ -742,6 +1100,7 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         sentAuthInfo = false;
 
         locked("Interrupted while trying to invalidate chunk/sync queue", chunkSyncQueue::clear);
+        chunkWindow.clear();
 
         api.getTextChannelsView().clear();
         api.getVoiceChannelsView().clear();
@@ -750,6 +1109,8 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         api.getPrivateChannelsView().clear();
         api.getStageChannelView().clear();
         api.getThreadChannelsView().clear();
+        api.getRolesView().clear();
+        api.getEmojisView().clear();
 
         api.getGuildsView().clear();
         api.getUsersView().clear();
@@ -757,6 +1118,10 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         api.getEventCache().clear();
         api.getGuildSetupController().clearCache();
         chunkManager.clear();
+        if (presenceCoalescer != null)
+            presenceCoalescer.clear();
+        if (api.getGuildHydrationController() != null)
+            api.getGuildHydrationController().clear();
     }
 
     protected void updateAudioManagerReferences()
@@ -813,6 +1178,8 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
 
     protected void handleEvent(DataObject content)
     {
+        if (lockDispatch)
+            dispatchLock.lock();
         try
         {
             onEvent(content);
@@ -822,6 +1189,11 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
             LOG.error("Encountered exception on lifecycle level\nJSON: {}", content, ex);
             api.handleEvent(new ExceptionEvent(api, ex, true));
         }
+        finally
+        {
+            if (lockDispatch)
+                dispatchLock.unlock();
+        }
     }
 
     protected void onEvent(DataObject content)
@@ -882,6 +1254,8 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
     {
         String type = raw.getString("t");
         long responseTotal = api.getResponseTotal();
+        if (presenceCoalescer != null)
+            presenceCoalescer.flushDue();
 
         if (!raw.isType("d", DataType.OBJECT))
         {
@@ -911,6 +1285,7 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         LOG.trace("{} -> {}", type, content);
 
         JDAImpl jda = (JDAImpl) getJDA();
+        boolean buffered = false;
         try
         {
             switch (type)
@@ -932,7 +1307,9 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
                     sentAuthInfo = true;
                     if (!processingReady)
                     {
-                        initiating = false;
+                        // A restored session was never ready in this process, resuming it completes the initial startup
+                        if (!firstInit)
+                            initiating = false;
                         ready();
                     }
                     else
@@ -948,6 +1325,19 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
                         LOG.debug("Ignoring {} for unavailable guild with id {}. JSON: {}", type, guildId, content);
                         break;
                     }
+                    long eventGuildId = guildId != 0 || !type.startsWith("GUILD_") ? guildId : content.getUnsignedLong("id", 0L);
+                    // Member chunks of this guild might still be converted in the background, they happened before this event
+                    // Chunks themselves are converted in order by the chunk manager
+                    if (!type.equals("GUILD_MEMBERS_CHUNK"))
+                        chunkManager.awaitConversions(eventGuildId);
+                    if (api.getGuildHydrationController() != null)
+                        api.getGuildHydrationController().onEvent(type, eventGuildId);
+                    if (presenceCoalescer != null && coalescePresence(type, responseTotal, raw, content))
+                    {
+                        // Handled once the coalescing window has passed
+                        buffered = true;
+                        break;
+                    }
                     SocketHandler handler = handlers.get(type);
                     if (handler != null)
                         handler.handle(responseTotal, raw);
@@ -955,7 +1345,7 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
                         LOG.debug("Unrecognized event:\n{}", raw);
             }
             // Send raw event after cache has been updated
-            if (api.isRawEvents())
+            if (api.isRawEvents() && !buffered)
                 api.handleEvent(new RawGatewayEvent(api, responseTotal, raw));
         }
         catch (ParsingException ex)
@@ -969,18 +1359,25 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
                 JDAInfo.VERSION, type, content, ex);
         }
 
-        if (responseTotal % EventCache.TIMEOUT_AMOUNT == 0)
-            jda.getEventCache().timeout(responseTotal);
+        // Only checks every type once every few events, each type also expires its events when a new one is cached
+        jda.getEventCache().timeout(responseTotal);
     }
 
     @Override
     public void onTextMessage(WebSocket websocket, byte[] data)
     {
+        if (recorder != null)
+            recorder.record(data, false);
         handleEvent(DataObject.fromJson(data));
     }
 
     @Override
     public void onBinaryMessage(WebSocket websocket, byte[] binary) throws DataFormatException
+    {
+        onBinaryMessage(ByteBuffer.wrap(binary));
+    }
+
+    protected void onBinaryMessage(ByteBuffer binary) throws DataFormatException
     {
         DataObject message;
         // Only acquire lock for decompression and unlock for event handling
@@ -992,12 +1389,30 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
             handleEvent(message);
     }
 
-    protected DataObject handleBinary(byte[] binary) throws DataFormatException
+    protected void onTextMessage(ByteBuffer data)
+    {
+        if (recorder != null)
+            recorder.record(toArray(data.duplicate()), false);
+        if (!data.hasArray())
+        {
+            handleEvent(DataObject.fromJson(toArray(data)));
+            return;
+        }
+        // Jackson reads the buffer of the transport, without copying it first
+        handleEvent(DataObject.fromJson(new ByteArrayInputStream(data.array(), data.arrayOffset() + data.position(), data.remaining())));
+    }
+
+    protected DataObject handleBinary(ByteBuffer binary) throws DataFormatException
     {
         if (decompressor == null)
         {
             if (encoding == GatewayEncoding.ETF)
-                return DataObject.fromETF(binary);
+            {
+                byte[] data = toArray(binary);
+                if (recorder != null)
+                    recorder.record(data, true);
+                return DataObject.fromETF(data);
+            }
             throw new IllegalStateException("Cannot decompress binary message due to unknown compression algorithm: " + compression);
         }
         // Scoping allows us to print the json that possibly failed parsing
@@ -1007,6 +1422,8 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
             data = decompressor.decompress(binary);
             if (data == null)
                 return null;
+            if (recorder != null)
+                recorder.record(data, encoding == GatewayEncoding.ETF);
         }
         catch (DataFormatException e)
         {
@@ -1035,21 +1452,35 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         }
     }
 
+    private static byte[] toArray(ByteBuffer buffer)
+    {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length)
+            return buffer.array();
+        byte[] array = new byte[buffer.remaining()];
+        buffer.get(array);
+        return array;
+    }
+
     @Override
     public void onError(WebSocket websocket, WebSocketException cause) throws Exception
     {
-        if (cause.getCause() instanceof SocketTimeoutException)
+        handleError(cause.getCause(), cause);
+    }
+
+    protected void handleError(Throwable cause, Throwable error)
+    {
+        if (cause instanceof SocketTimeoutException)
         {
             LOG.debug("Socket timed out");
         }
-        else if (cause.getCause() instanceof IOException)
+        else if (cause instanceof IOException)
         {
-            LOG.debug("Encountered I/O error", cause);
+            LOG.debug("Encountered I/O error", error);
         }
         else
         {
-            LOG.error("There was an error in the WebSocket connection", cause);
-            api.handleEvent(new ExceptionEvent(api, cause, true));
+            LOG.error("There was an error in the WebSocket connection", error);
+            api.handleEvent(new ExceptionEvent(api, error, true));
         }
     }
 
@@ -1250,6 +1681,7 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
 
         long now = System.currentTimeMillis();
         AtomicReference<ConnectionRequest> request = new AtomicReference<>();
+        int[] requestOrder = { Integer.MAX_VALUE };
         queuedAudioConnections.retainEntries((guildId, audioRequest) -> // we use this because it locks the mutex
         {
             if (audioRequest.getNextAttemptEpoch() < now)
@@ -1269,7 +1701,8 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
                     return true;
                 }
 
-                ConnectionListener listener = guild.getAudioManager().getConnectionListener();
+                AudioManager audioManager = guild.getAudioManager();
+                ConnectionListener listener = audioManager.getConnectionListener();
                 if (audioRequest.getStage() != ConnectionStage.DISCONNECT)
                 {
                     // Check if we can connect to the target channel
@@ -1288,8 +1721,14 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
                         return false;
                     }
                 }
-                // This will take the first result
-                request.compareAndSet(null, audioRequest);
+                // The budget is shared, so the due request which matters most is sent first
+                int order = getAudioRequestOrder(audioManager, audioRequest);
+                ConnectionRequest current = request.get();
+                if (order < requestOrder[0] || (order == requestOrder[0] && audioRequest.getNextAttemptEpoch() < current.getNextAttemptEpoch()))
+                {
+                    request.set(audioRequest);
+                    requestOrder[0] = order;
+                }
             }
             return true;
         });
@@ -1297,6 +1736,22 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         return request.get();
     }
 
+    // Lower is sent first: sessions which are sending audio, then other connections, then disconnects.
+    // Within each group a connect which completes a reconnect comes first, it restores a session with its last request.
+    static int getAudioRequestOrder(AudioManager audioManager, ConnectionRequest request)
+    {
+        switch (request.getStage())
+        {
+            case DISCONNECT:
+                return 4;
+            case RECONNECT:
+                return audioManager.getSendingHandler() != null ? 1 : 3;
+            case CONNECT:
+            default:
+                return audioManager.getSendingHandler() != null ? 0 : 2;
+        }
+    }
+
     public Map<String, SocketHandler> getHandlers()
     {
         return handlers;
@@ -1372,6 +1827,106 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         handlers.put("WEBHOOKS_UPDATE",           nopHandler);
     }
 
+    // Passes the callbacks of a GatewayTransport to the same methods nv-websocket-client calls
+    // The transport thread might serve other shards as well, so it only does I/O.
+    // The callbacks of a connection run in order on the transport pool of the session, like they would on the reading thread of nv-websocket-client.
+    // The pool is shared by all shards of a ShardManager.
+    protected class TransportListener implements GatewayTransport.Listener
+    {
+        protected final SerialExecutor dispatcher = new SerialExecutor(api.getTransportPool());
+
+        @Override
+        public void onOpen(@NotNull GatewayTransport.Connection connection)
+        {
+            WebSocketClient.this.connection = connection;
+            dispatch(() -> onConnected(null, Collections.emptyMap()));
+        }
+
+        @Override
+        public void onMessage(@NotNull GatewayTransport.Message message)
+        {
+            // The transport keeps the buffer until the message is released, so it is handled without copying it
+            boolean dispatched = dispatch(() ->
+            {
+                try
+                {
+                    if (!message.isBinary())
+                        onTextMessage(message.getData());
+                    else
+                        onBinaryMessage(message.getData());
+                }
+                catch (DataFormatException e)
+                {
+                    LOG.error("Failed to decompress message", e);
+                }
+                finally
+                {
+                    message.release();
+                }
+            });
+            if (!dispatched)
+                message.release();
+        }
+
+        @Override
+        public void onError(@NotNull Throwable error)
+        {
+            dispatch(() -> handleError(error, error));
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote)
+        {
+            WebSocketFrame serverCloseFrame = remote ? WebSocketFrame.createCloseFrame(code, reason) : null;
+            WebSocketFrame clientCloseFrame = !remote && code != 1006 ? WebSocketFrame.createCloseFrame(code, reason) : null;
+            // The frames received before the close are handled first.
+            // Reconnecting might sleep, which would block a thread of the shared pool.
+            Runnable disconnect = () ->
+            {
+                Thread thread = new Thread(() ->
+                {
+                    api.setContext();
+                    onDisconnected(null, serverCloseFrame, clientCloseFrame, remote);
+                });
+                thread.setName(api.getIdentifierString() + " MainWS-ReconnectThread");
+                thread.start();
+            };
+            // The shard manager might have shut down the pool already, the session still has to finish its shutdown
+            if (!dispatch(disconnect))
+                disconnect.run();
+            dispatcher.shutdown();
+        }
+
+        protected boolean dispatch(Runnable task)
+        {
+            try
+            {
+                dispatcher.execute(() ->
+                {
+                    api.setContext();
+                    task.run();
+                });
+                return true;
+            }
+            catch (RejectedExecutionException e)
+            {
+                LOG.debug("Ignoring a callback of a closed connection");
+                return false;
+            }
+        }
+    }
+
+    protected static class QueuedMessage
+    {
+        protected final long enqueueTime = System.nanoTime();
+        protected DataObject data;
+
+        protected QueuedMessage(DataObject data)
+        {
+            this.data = data;
+        }
+    }
+
     protected abstract class ConnectNode implements SessionController.SessionConnectNode
     {
         @NotNull
@@ -1387,6 +1942,12 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         {
             return api.getShardInfo();
         }
+
+        @Override
+        public long getIdentifyNanos()
+        {
+            return identifyNanos;
+        }
     }
 
     protected class StartingNode extends ConnectNode
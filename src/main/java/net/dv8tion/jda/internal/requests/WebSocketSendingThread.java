@@ -35,6 +35,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 //Helper class delegated to WebSocketClient
+// Every opcode has its own queue, they are sent in the order voice state > presence > member chunk request > other.
+// Voice states are coalesced per guild and presences to the latest update, so they can never starve the other queues.
 class WebSocketSendingThread implements Runnable
 {
     private static final Logger LOG = WebSocketClient.LOG;
@@ -42,8 +44,9 @@ class WebSocketSendingThread implements Runnable
     private final WebSocketClient client;
     private final JDAImpl api;
     private final ReentrantLock queueLock;
-    private final Queue<DataObject> chunkQueue;
-    private final Queue<DataObject> ratelimitQueue;
+    private final GatewayRateLimiter rateLimiter;
+    private final Queue<WebSocketClient.QueuedMessage> chunkQueue;
+    private final Queue<WebSocketClient.QueuedMessage> ratelimitQueue;
     private final TLongObjectMap<ConnectionRequest> queuedAudioConnections;
     private final ScheduledExecutorService executor;
     private Future<?> handle;
@@ -57,6 +60,7 @@ class WebSocketSendingThread implements Runnable
         this.client = client;
         this.api = client.api;
         this.queueLock = client.queueLock;
+        this.rateLimiter = client.rateLimiter;
         this.chunkQueue = client.chunkSyncQueue;
         this.ratelimitQueue = client.ratelimitQueue;
         this.queuedAudioConnections = client.queuedAudioConnections;
@@ -94,7 +98,11 @@ class WebSocketSendingThread implements Runnable
     {
         if (shutdown)
             return;
-        handle = executor.schedule(this, 1, TimeUnit.MINUTES);
+        long delay = rateLimiter.getDelay(System.nanoTime(), false);
+        if (delay == 0) // not connected, the limit is fine
+            scheduleIdle();
+        else
+            handle = executor.schedule(this, delay, TimeUnit.NANOSECONDS);
     }
 
     @Override
@@ -108,12 +116,19 @@ class WebSocketSendingThread implements Runnable
         }
 
         ConnectionRequest audioRequest = null;
-        DataObject chunkRequest = null;
+        WebSocketClient.QueuedMessage chunkRequest = null;
         try
         {
             api.setContext();
             attemptedToSend = false;
             needRateLimit = false;
+            // Don't bother collecting a request which can't be sent anyway
+            if (rateLimiter.getDelay(System.nanoTime(), false) > 0)
+            {
+                needRateLimit = true;
+                scheduleNext();
+                return;
+            }
             // We do this outside of the lock because otherwise we could potentially deadlock here
             audioRequest = client.getNextAudioConnectRequest();
             if (!queueLock.tryLock() && !queueLock.tryLock(10, TimeUnit.SECONDS))
@@ -122,12 +137,14 @@ class WebSocketSendingThread implements Runnable
                 return;
             }
 
-            chunkRequest = chunkQueue.peek();
-            if (chunkRequest != null)
-                handleChunkSync(chunkRequest);
-            else if (audioRequest != null)
+            WebSocketClient.QueuedMessage presence = client.queuedPresence;
+            if (audioRequest != null)
                 handleAudioRequest(audioRequest);
-            else
+            else if (presence != null)
+                handlePresence(presence);
+            else if (!chunkQueue.isEmpty() && !client.chunkWindow.isFull(System.currentTimeMillis()))
+                handleChunkSync(chunkRequest = chunkQueue.peek());
+            else if (!ratelimitQueue.isEmpty())
                 handleNormalRequest();
         }
         catch (InterruptedException ignored)
@@ -143,10 +160,10 @@ class WebSocketSendingThread implements Runnable
             if (!attemptedToSend)
             {
                 // Try to remove the failed request
-                if (chunkRequest != null)
-                    client.chunkSyncQueue.remove(chunkRequest);
-                else if (audioRequest != null)
+                if (audioRequest != null)
                     client.removeAudioConnection(audioRequest.getGuildIdLong());
+                else if (chunkRequest != null)
+                    client.chunkSyncQueue.remove(chunkRequest);
             }
 
             // Rethrow if error to kill thread
@@ -182,17 +199,22 @@ class WebSocketSendingThread implements Runnable
         }
     }
 
-    private void handleChunkSync(DataObject chunkOrSyncRequest)
+    private void handleChunkSync(WebSocketClient.QueuedMessage chunkOrSyncRequest)
     {
-        LOG.debug("Sending chunk/sync request {}", chunkOrSyncRequest);
+        LOG.debug("Sending chunk/sync request {}", chunkOrSyncRequest.data);
         boolean success = send(
             DataObject.empty()
                 .put("op", WebSocketCode.MEMBER_CHUNK_REQUEST)
-                .put("d", chunkOrSyncRequest)
+                .put("d", chunkOrSyncRequest.data),
+            chunkOrSyncRequest.enqueueTime
         );
 
         if (success)
+        {
             chunkQueue.remove();
+            client.chunkWindow.onSent(chunkOrSyncRequest.data.getUnsignedLong("guild_id"), System.currentTimeMillis());
+            client.getChunkManager().onSent(chunkOrSyncRequest.data);
+        }
     }
 
     private void handleAudioRequest(ConnectionRequest audioRequest)
@@ -207,8 +229,9 @@ class WebSocketSendingThread implements Runnable
             queuedAudioConnections.remove(guildId);
             return;
         }
-        ConnectionStage stage = audioRequest.getStage();
         AudioManager audioManager = guild.getAudioManager();
+        final GuildVoiceState voiceState = guild.getSelfMember().getVoiceState();
+        ConnectionStage stage = audioRequest.resolveStage(voiceState.getChannel());
         DataObject packet;
         switch (stage)
         {
@@ -221,7 +244,9 @@ class WebSocketSendingThread implements Runnable
                 packet = newVoiceOpen(audioManager, channelId, guild.getIdLong());
         }
         LOG.debug("Sending voice request {}", packet);
-        if (send(packet))
+        // The request is due since its next attempt time, which is the closest we have to an enqueue time
+        long waited = Math.max(0, System.currentTimeMillis() - audioRequest.getNextAttemptEpoch());
+        if (send(packet, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(waited)))
         {
             //If we didn't get RateLimited, Next request attempt will be 10 seconds from now
             // we remove it in VoiceStateUpdateHandler once we hear that it has updated our status
@@ -230,26 +255,32 @@ class WebSocketSendingThread implements Runnable
             //If we are already in the correct state according to voice state
             // we will not receive a VOICE_STATE_UPDATE that would remove it
             // thus we update it here
-            final GuildVoiceState voiceState = guild.getSelfMember().getVoiceState();
             client.updateAudioConnection0(guild.getIdLong(), voiceState.getChannel());
         }
     }
 
     private void handleNormalRequest()
     {
-        DataObject message = ratelimitQueue.peek();
+        WebSocketClient.QueuedMessage message = ratelimitQueue.peek();
         if (message != null)
         {
-            LOG.debug("Sending normal message {}", message);
-            if (send(message))
+            LOG.debug("Sending normal message {}", message.data);
+            if (send(message.data, message.enqueueTime))
                 ratelimitQueue.remove();
         }
     }
 
+    private void handlePresence(WebSocketClient.QueuedMessage presence)
+    {
+        LOG.debug("Sending presence update {}", presence.data);
+        if (send(presence.data, presence.enqueueTime))
+            client.queuedPresence = null;
+    }
+
     //returns true if send was successful
-    private boolean send(DataObject request)
+    private boolean send(DataObject request, long enqueueTime)
     {
-        needRateLimit = !client.send(request, false);
+        needRateLimit = !client.send(request, false, enqueueTime);
         attemptedToSend = true;
         return !needRateLimit;
     }
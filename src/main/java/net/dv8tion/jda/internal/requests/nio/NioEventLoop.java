@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.requests.nio;
+
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A selector thread which serves many {@link NioWebSocket NioWebSockets}.
+ * <br>The buffers of this loop are shared by all of its connections. A connection only holds buffers while it has
+ * incomplete data, so idle connections do not keep any buffers.
+ */
+public class NioEventLoop implements Runnable
+{
+    public static final Logger LOG = JDALogger.getLog(NioEventLoop.class);
+    // Fits a TLS record, larger buffers are allocated when needed and not pooled
+    public static final int BUFFER_SIZE = 32 * 1024;
+    private static final int MAX_POOLED = 32;
+    private static final long TICK = TimeUnit.SECONDS.toMillis(1);
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    // Only used on the loop thread
+    private final Set<NioWebSocket> sockets = new HashSet<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ArrayDeque<ByteBuffer> heapPool = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> directPool = new ArrayDeque<>();
+
+    public NioEventLoop(String name) throws IOException
+    {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public boolean inEventLoop()
+    {
+        return Thread.currentThread() == thread;
+    }
+
+    public boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    public int getConnectionCount()
+    {
+        return connections.get();
+    }
+
+    public void execute(Runnable task)
+    {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    public void shutdown()
+    {
+        shutdown = true;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run()
+    {
+        long lastTick = System.nanoTime();
+        while (!shutdown)
+        {
+            try
+            {
+                selector.select(TICK);
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ((NioWebSocket) key.attachment()).handle(key);
+                }
+
+                long now = System.nanoTime();
+                if (now - lastTick >= TimeUnit.MILLISECONDS.toNanos(TICK))
+                {
+                    lastTick = now;
+                    for (NioWebSocket socket : new ArrayList<>(sockets))
+                        socket.checkTimeout(now);
+                }
+            }
+            catch (Throwable e)
+            {
+                LOG.error("Uncaught exception in event loop {}", thread.getName(), e);
+                if (e instanceof Error)
+                    break;
+            }
+        }
+
+        runTasks();
+        for (NioWebSocket socket : new ArrayList<>(sockets))
+            socket.abort(null);
+        try
+        {
+            selector.close();
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Failed to close selector", e);
+        }
+    }
+
+    private void runTasks()
+    {
+        Runnable task;
+        while ((task = tasks.poll()) != null)
+        {
+            try
+            {
+                task.run();
+            }
+            catch (Throwable e)
+            {
+                LOG.error("Uncaught exception in event loop task", e);
+            }
+        }
+    }
+
+    void connectionCreated()
+    {
+        connections.incrementAndGet();
+    }
+
+    SelectionKey register(SocketChannel channel, NioWebSocket socket) throws ClosedChannelException
+    {
+        sockets.add(socket);
+        return channel.register(selector, 0, socket);
+    }
+
+    void connectionClosed(NioWebSocket socket)
+    {
+        sockets.remove(socket);
+        connections.decrementAndGet();
+    }
+
+    ByteBuffer getReadBuffer()
+    {
+        readBuffer.clear();
+        return readBuffer;
+    }
+
+    /**
+     * Makes sure the buffer has the required space left, the content is copied into a larger buffer if necessary.
+     *
+     * @param  buffer
+     *         The buffer in write mode, or null
+     * @param  required
+     *         The amount of bytes which have to fit
+     * @param  direct
+     *         Whether a new buffer should be a direct buffer
+     *
+     * @return The buffer with enough space
+     */
+    ByteBuffer ensureRemaining(ByteBuffer buffer, int required, boolean direct)
+    {
+        if (buffer == null)
+            return acquire(required, direct);
+        if (buffer.remaining() >= required)
+            return buffer;
+        ByteBuffer larger = allocate(Math.max(buffer.capacity() * 2, buffer.position() + required), direct);
+        buffer.flip();
+        larger.put(buffer);
+        release(buffer);
+        return larger;
+    }
+
+    ByteBuffer acquire(int capacity, boolean direct)
+    {
+        if (capacity > BUFFER_SIZE)
+            return allocate(capacity, direct);
+        ByteBuffer buffer = (direct ? directPool : heapPool).poll();
+        return buffer != null ? buffer : allocate(BUFFER_SIZE, direct);
+    }
+
+    void release(ByteBuffer buffer)
+    {
+        if (buffer == null || buffer.capacity() != BUFFER_SIZE)
+            return;
+        ArrayDeque<ByteBuffer> pool = buffer.isDirect() ? directPool : heapPool;
+        if (pool.size() < MAX_POOLED)
+        {
+            buffer.clear();
+            pool.add(buffer);
+        }
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct)
+    {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+}
@@ -0,0 +1,943 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.requests.nio;
+
+import net.dv8tion.jda.api.requests.GatewayTransport;
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import javax.net.ssl.*;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A client WebSocket connection driven by a {@link NioEventLoop}.
+ * <br>All reads, the TLS engine and the frame parser run on the thread of the loop. Messages are handed to the
+ * {@link GatewayTransport.Listener Listener} as views into the buffers of the loop, complete frames are never copied.
+ * A buffer is only returned to the loop once every message which uses it has been released.
+ * Sending only encodes the frame on the calling thread and queues it for the loop.
+ */
+public class NioWebSocket implements GatewayTransport.Connection
+{
+    public static final Logger LOG = JDALogger.getLog(NioWebSocket.class);
+    public static final int CLOSE_TIMEOUT = 10000;
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final SecureRandom KEY_RANDOM = new SecureRandom();
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final int MAX_HANDSHAKE_SIZE = 8192;
+    // Even an uncompressed GUILD_CREATE of a large guild is far below this, larger frames are a corrupted stream
+    private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    private static final int OP_CONTINUATION = 0x0;
+    private static final int OP_TEXT = 0x1;
+    private static final int OP_BINARY = 0x2;
+    private static final int OP_CLOSE = 0x8;
+    private static final int OP_PING = 0x9;
+    private static final int OP_PONG = 0xA;
+
+    private static final int CONNECTING = 0;
+    private static final int OPEN = 1;
+    private static final int CANCELLED = 2;
+
+    private final NioEventLoop loop;
+    private final URI uri;
+    private final InetSocketAddress address;
+    private final SSLEngine engine;
+    private final GatewayTransport.Listener listener;
+    private final String key = createKey();
+    private final CompletableFuture<NioWebSocket> opened = new CompletableFuture<>();
+    private final AtomicInteger state = new AtomicInteger(CONNECTING);
+    private final AtomicBoolean closing = new AtomicBoolean();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    // Encoded frames, which are written by the loop
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private volatile int readTimeout;
+    private volatile long lastRead;
+
+    // Only used on the loop thread
+    private SocketChannel channel;
+    private SelectionKey selectionKey;
+    private ByteBuffer netIn, netOut, appIn, message;
+    // Set while messages delivered from appIn might still be in use
+    private SharedBuffer appInShared;
+    private boolean messageBinary;
+    private int requiredCapacity;
+    private boolean tlsEstablished, upgraded, closed, inputClosed;
+    private int closeCode, remoteCloseCode;
+    private String closeReason, remoteCloseReason;
+    private long closeDeadline;
+
+    public NioWebSocket(@NotNull NioEventLoop loop, @NotNull URI uri, SSLContext sslContext, @NotNull GatewayTransport.Listener listener) throws IOException
+    {
+        String host = uri.getHost();
+        if (host == null)
+            throw new IllegalArgumentException("Missing host in " + uri);
+        boolean secure = "wss".equalsIgnoreCase(uri.getScheme());
+        if (!secure && !"ws".equalsIgnoreCase(uri.getScheme()))
+            throw new IllegalArgumentException("Unsupported scheme in " + uri);
+        int port = uri.getPort() == -1 ? (secure ? 443 : 80) : uri.getPort();
+
+        // Resolve here, so DNS lookups never block the loop
+        this.address = new InetSocketAddress(host, port);
+        if (address.isUnresolved())
+            throw new UnknownHostException(host);
+        this.loop = loop;
+        this.uri = uri;
+        this.listener = listener;
+        this.engine = secure ? createEngine(sslContext, host, port) : null;
+    }
+
+    /**
+     * Opens the connection on the loop and blocks until the opening handshake has completed.
+     *
+     * @param  timeout
+     *         The connect timeout in milliseconds
+     *
+     * @throws IOException
+     *         If the connection or the handshake failed
+     *
+     * @return This connection
+     */
+    @NotNull
+    public NioWebSocket connect(int timeout) throws IOException
+    {
+        loop.connectionCreated();
+        loop.execute(this::open);
+        try
+        {
+            return opened.get(timeout, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            if (state.compareAndSet(CONNECTING, CANCELLED))
+            {
+                loop.execute(() -> abort(null));
+                throw new SocketTimeoutException("Timed out while connecting to " + uri.getHost());
+            }
+            // The handshake completed just now
+            return opened.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            if (state.compareAndSet(CONNECTING, CANCELLED))
+                loop.execute(() -> abort(null));
+            throw new InterruptedIOException("Interrupted while connecting to " + uri.getHost());
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException("Failed to connect to " + uri.getHost(), cause);
+        }
+    }
+
+    @Override
+    public boolean sendText(@NotNull String text)
+    {
+        return send(OP_TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean sendBinary(@NotNull byte[] data)
+    {
+        return send(OP_BINARY, data);
+    }
+
+    @Override
+    public void setReadTimeout(int millis)
+    {
+        lastRead = System.nanoTime();
+        readTimeout = millis;
+    }
+
+    @Override
+    public void close(int code, String reason)
+    {
+        if (!closing.compareAndSet(false, true))
+            return;
+        ByteBuffer frame = encodeClose(code, reason);
+        loop.execute(() ->
+        {
+            if (closed)
+                return;
+            closeCode = code;
+            closeReason = reason;
+            closeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT);
+            outbound.add(frame);
+            flushSafely();
+        });
+    }
+
+    @Override
+    public String toString()
+    {
+        return "NioWebSocket(" + uri.getHost() + ", closed=" + closed + ")";
+    }
+
+    private boolean send(int opcode, byte[] payload)
+    {
+        if (closing.get())
+            return false;
+        outbound.add(encode(opcode, payload, payload.length));
+        if (loop.inEventLoop())
+            flushSafely();
+        else if (flushQueued.compareAndSet(false, true))
+            loop.execute(() ->
+            {
+                flushQueued.set(false);
+                flushSafely();
+            });
+        return true;
+    }
+
+    /*
+        ### Loop thread ###
+     */
+
+    void handle(SelectionKey key)
+    {
+        try
+        {
+            if (key.isConnectable())
+            {
+                channel.finishConnect();
+                onConnected();
+            }
+            if (key.isValid() && key.isReadable())
+                read();
+            if (key.isValid() && key.isWritable())
+                flush();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            abort(e);
+        }
+    }
+
+    void checkTimeout(long now)
+    {
+        if (closed || !upgraded)
+            return;
+        if (closeDeadline != 0 && now - closeDeadline >= 0)
+        {
+            LOG.debug("Server did not respond to the closing handshake in time");
+            abort(null);
+            return;
+        }
+        int timeout = readTimeout;
+        if (timeout > 0 && now - lastRead > TimeUnit.MILLISECONDS.toNanos(timeout))
+            abort(new SocketTimeoutException("Read timed out"));
+    }
+
+    void abort(Throwable error)
+    {
+        if (closed)
+            return;
+        if (error != null && upgraded)
+            notifyError(error);
+        // The server closed first, its close frame is reported even if our echo could not be sent
+        if (remoteCloseCode != 0)
+        {
+            finish(remoteCloseCode, remoteCloseReason, true, null);
+            return;
+        }
+        // Reports our close frame if we started the closing handshake
+        finish(closeCode != 0 ? closeCode : 1006, closeReason, false, error);
+    }
+
+    private void open()
+    {
+        try
+        {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            selectionKey = loop.register(channel, this);
+            if (channel.connect(address))
+                onConnected();
+            else
+                selectionKey.interestOps(SelectionKey.OP_CONNECT);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            abort(e);
+        }
+    }
+
+    private void onConnected() throws IOException
+    {
+        lastRead = System.nanoTime();
+        selectionKey.interestOps(SelectionKey.OP_READ);
+        if (engine == null)
+        {
+            sendUpgrade();
+        }
+        else
+        {
+            engine.beginHandshake();
+            progressHandshake();
+        }
+    }
+
+    private void read() throws IOException
+    {
+        int read;
+        if (engine == null)
+        {
+            ByteBuffer buffer = loop.getReadBuffer();
+            read = channel.read(buffer);
+            if (read > 0)
+            {
+                buffer.flip();
+                appIn = loop.ensureRemaining(appIn, read, false);
+                appIn.put(buffer);
+            }
+        }
+        else
+        {
+            netIn = loop.ensureRemaining(netIn, engine.getSession().getPacketBufferSize(), true);
+            read = channel.read(netIn);
+            if (read > 0)
+                unwrap();
+        }
+
+        if (read > 0)
+            lastRead = System.nanoTime();
+        // The close frame might have arrived together with the end of the stream
+        process();
+        if ((read < 0 || inputClosed) && !closed)
+            abort(upgraded && closeCode == 0 && remoteCloseCode == 0 ? new EOFException("Connection closed by peer") : null);
+    }
+
+    private void unwrap() throws IOException
+    {
+        netIn.flip();
+        try
+        {
+            while (netIn.hasRemaining())
+            {
+                appIn = loop.ensureRemaining(appIn, engine.getSession().getApplicationBufferSize(), false);
+                SSLEngineResult result = engine.unwrap(netIn, appIn);
+                switch (result.getStatus())
+                {
+                case BUFFER_UNDERFLOW:
+                    // The rest of the record has not arrived yet
+                    return;
+                case BUFFER_OVERFLOW:
+                    appIn = loop.ensureRemaining(appIn, appIn.capacity(), false);
+                    break;
+                case CLOSED:
+                    inputClosed = true;
+                    return;
+                default:
+                    progressHandshake();
+                }
+            }
+        }
+        finally
+        {
+            netIn.compact();
+            if (netIn.position() == 0)
+            {
+                loop.release(netIn);
+                netIn = null;
+            }
+        }
+    }
+
+    private void progressHandshake() throws IOException
+    {
+        SSLEngineResult.HandshakeStatus status;
+        while (true)
+        {
+            status = engine.getHandshakeStatus();
+            if (status == SSLEngineResult.HandshakeStatus.NEED_TASK)
+            {
+                Runnable task;
+                while ((task = engine.getDelegatedTask()) != null)
+                    task.run();
+            }
+            else if (status == SSLEngineResult.HandshakeStatus.NEED_WRAP)
+            {
+                netOut = loop.ensureRemaining(netOut, engine.getSession().getPacketBufferSize(), true);
+                if (engine.wrap(EMPTY, netOut).getStatus() == SSLEngineResult.Status.CLOSED)
+                    throw new EOFException("TLS session was closed");
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        if (!tlsEstablished && status == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING)
+        {
+            tlsEstablished = true;
+            sendUpgrade();
+        }
+        else
+        {
+            flush();
+        }
+    }
+
+    private void sendUpgrade() throws IOException
+    {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null)
+            path += "?" + uri.getRawQuery();
+        String host = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        String request = "GET " + path + " HTTP/1.1\r\n" +
+                         "Host: " + host + "\r\n" +
+                         "Upgrade: websocket\r\n" +
+                         "Connection: Upgrade\r\n" +
+                         "Sec-WebSocket-Key: " + key + "\r\n" +
+                         "Sec-WebSocket-Version: 13\r\n\r\n";
+        outbound.add(ByteBuffer.wrap(request.getBytes(StandardCharsets.ISO_8859_1)));
+        flush();
+    }
+
+    private void flushSafely()
+    {
+        try
+        {
+            flush();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            abort(e);
+        }
+    }
+
+    private void flush() throws IOException
+    {
+        if (closed || selectionKey == null || !channel.isConnected())
+            return;
+        boolean pending = false;
+        if (engine == null)
+        {
+            ByteBuffer next;
+            while ((next = outbound.peek()) != null)
+            {
+                channel.write(next);
+                if (next.hasRemaining())
+                {
+                    pending = true;
+                    break;
+                }
+                outbound.poll();
+            }
+        }
+        else
+        {
+            while (true)
+            {
+                if (!writeNet())
+                {
+                    pending = true;
+                    break;
+                }
+                ByteBuffer next = outbound.peek();
+                // Application data can only be wrapped once the handshake is done
+                if (next == null || !tlsEstablished)
+                    break;
+                netOut = loop.ensureRemaining(netOut, engine.getSession().getPacketBufferSize(), true);
+                if (engine.wrap(next, netOut).getStatus() == SSLEngineResult.Status.CLOSED)
+                    throw new EOFException("TLS session was closed");
+                if (!next.hasRemaining())
+                    outbound.poll();
+            }
+        }
+
+        int ops = selectionKey.interestOps();
+        selectionKey.interestOps(pending ? ops | SelectionKey.OP_WRITE : ops & ~SelectionKey.OP_WRITE);
+        // The echo of a close frame from the server has been written completely
+        if (!pending && remoteCloseCode != 0)
+            finish(remoteCloseCode, remoteCloseReason, true, null);
+    }
+
+    private boolean writeNet() throws IOException
+    {
+        if (netOut == null)
+            return true;
+        netOut.flip();
+        channel.write(netOut);
+        netOut.compact();
+        if (netOut.position() > 0)
+            return false;
+        loop.release(netOut);
+        netOut = null;
+        return true;
+    }
+
+    private void process() throws IOException
+    {
+        if (appIn == null || appIn.position() == 0)
+            return;
+        appIn.flip();
+        try
+        {
+            if (!upgraded && !readUpgrade())
+                return;
+            // Frames after the close frame of the server are ignored
+            while (!closed && remoteCloseCode == 0 && readFrame());
+        }
+        finally
+        {
+            if (appInShared != null)
+            {
+                // The listeners own the buffer now, the unread bytes move to a new buffer
+                ByteBuffer shared = appIn;
+                appIn = null;
+                if (shared != null && (shared.hasRemaining() || requiredCapacity > 0))
+                {
+                    appIn = loop.acquire(Math.max(shared.remaining(), requiredCapacity), false);
+                    appIn.put(shared);
+                }
+                appInShared.release();
+                appInShared = null;
+            }
+            else if (appIn != null)
+            {
+                appIn.compact();
+                if (appIn.position() == 0 && requiredCapacity == 0)
+                {
+                    loop.release(appIn);
+                    appIn = null;
+                }
+                else if (requiredCapacity > appIn.capacity())
+                {
+                    // Grow once, instead of with every read of a large frame
+                    appIn = loop.ensureRemaining(appIn, requiredCapacity - appIn.position(), false);
+                }
+            }
+        }
+    }
+
+    private boolean readUpgrade() throws IOException
+    {
+        int end = indexOfHeaderEnd(appIn);
+        if (end < 0)
+        {
+            if (appIn.remaining() > MAX_HANDSHAKE_SIZE)
+                throw new ProtocolException("Response to the opening handshake is too large");
+            return false;
+        }
+        byte[] head = new byte[end - appIn.position()];
+        appIn.get(head);
+        appIn.position(end + 4);
+
+        String[] lines = new String(head, StandardCharsets.ISO_8859_1).split("\r\n");
+        String[] statusLine = lines[0].split(" ", 3);
+        if (statusLine.length < 2 || !statusLine[1].equals("101"))
+            throw new ProtocolException("Unexpected response to the opening handshake: " + lines[0]);
+        String accept = null;
+        for (int i = 1; i < lines.length; i++)
+        {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0 && lines[i].substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Accept"))
+                accept = lines[i].substring(colon + 1).trim();
+        }
+        if (!getExpectedAccept(key).equals(accept))
+            throw new ProtocolException("Invalid Sec-WebSocket-Accept in the opening handshake: " + accept);
+
+        upgraded = true;
+        if (!state.compareAndSet(CONNECTING, OPEN))
+        {
+            // The connect call already timed out
+            abort(null);
+            return false;
+        }
+        try
+        {
+            listener.onOpen(this);
+        }
+        catch (RuntimeException e)
+        {
+            LOG.error("Listener failed to handle the opened connection", e);
+        }
+        opened.complete(this);
+        return true;
+    }
+
+    private boolean readFrame() throws IOException
+    {
+        int start = appIn.position();
+        int available = appIn.remaining();
+        if (available < 2)
+            return false;
+        int b0 = appIn.get(start) & 0xFF;
+        int b1 = appIn.get(start + 1) & 0xFF;
+        if ((b0 & 0x70) != 0)
+            throw new ProtocolException("Frame uses reserved bits");
+        if ((b1 & 0x80) != 0)
+            throw new ProtocolException("Frame from the server is masked");
+
+        long length = b1 & 0x7F;
+        int header = 2;
+        if (length == 126)
+        {
+            if (available < 4)
+                return false;
+            length = appIn.getShort(start + 2) & 0xFFFF;
+            header = 4;
+        }
+        else if (length == 127)
+        {
+            if (available < 10)
+                return false;
+            length = appIn.getLong(start + 2);
+            header = 10;
+        }
+        if (length < 0 || length > MAX_FRAME_SIZE)
+            throw new ProtocolException("Frame length " + length + " is not supported");
+
+        int size = header + (int) length;
+        if (available < size)
+        {
+            requiredCapacity = size;
+            return false;
+        }
+        requiredCapacity = 0;
+
+        ByteBuffer payload = appIn.duplicate();
+        payload.position(start + header).limit(start + size);
+        appIn.position(start + size);
+        handleFrame((b0 & 0x80) != 0, b0 & 0x0F, payload);
+        return true;
+    }
+
+    private void handleFrame(boolean fin, int opcode, ByteBuffer payload) throws IOException
+    {
+        switch (opcode)
+        {
+        case OP_TEXT:
+        case OP_BINARY:
+            if (message != null)
+                throw new ProtocolException("Expected a continuation frame");
+            if (fin)
+            {
+                if (appInShared == null)
+                    appInShared = new SharedBuffer(loop, appIn);
+                appInShared.retain();
+                deliver(payload, opcode == OP_BINARY, appInShared);
+            }
+            else
+            {
+                message = loop.ensureRemaining(null, payload.remaining(), false);
+                message.put(payload);
+                messageBinary = opcode == OP_BINARY;
+            }
+            break;
+        case OP_CONTINUATION:
+            if (message == null)
+                throw new ProtocolException("Unexpected continuation frame");
+            message = loop.ensureRemaining(message, payload.remaining(), false);
+            message.put(payload);
+            if (fin)
+            {
+                message.flip();
+                deliver(message, messageBinary, new SharedBuffer(loop, message));
+                message = null;
+            }
+            break;
+        case OP_CLOSE:
+            handleClose(payload);
+            break;
+        case OP_PING:
+            byte[] data = new byte[payload.remaining()];
+            payload.get(data);
+            outbound.add(encode(OP_PONG, data, data.length));
+            flush();
+            break;
+        case OP_PONG:
+            break;
+        default:
+            throw new ProtocolException("Unknown opcode " + opcode);
+        }
+    }
+
+    private void deliver(ByteBuffer data, boolean binary, SharedBuffer buffer)
+    {
+        try
+        {
+            listener.onMessage(new NioMessage(data, binary, buffer));
+        }
+        catch (RuntimeException e)
+        {
+            LOG.error("Listener failed to handle a message", e);
+        }
+    }
+
+    private void handleClose(ByteBuffer payload) throws IOException
+    {
+        if (closeCode != 0)
+        {
+            // Response to our closing handshake
+            finish(closeCode, closeReason, false, null);
+            return;
+        }
+
+        int code = 1005;
+        String reason = null;
+        if (payload.remaining() >= 2)
+        {
+            code = payload.getShort() & 0xFFFF;
+            if (payload.hasRemaining())
+                reason = StandardCharsets.UTF_8.decode(payload).toString();
+        }
+        // Echo the close code, the connection is closed once the echo has been flushed
+        closing.set(true);
+        remoteCloseCode = code;
+        remoteCloseReason = reason;
+        closeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT);
+        outbound.add(encodeClose(code == 1005 ? 1000 : code, null));
+        flush();
+    }
+
+    private void finish(int code, String reason, boolean remote, Throwable error)
+    {
+        if (closed)
+            return;
+        closed = true;
+        closing.set(true);
+        loop.connectionClosed(this);
+        if (selectionKey != null)
+            selectionKey.cancel();
+        try
+        {
+            if (channel != null)
+                channel.close();
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Failed to close channel", e);
+        }
+        loop.release(netIn);
+        loop.release(netOut);
+        // A shared buffer is released once the frame parser is done with it
+        if (appInShared == null)
+            loop.release(appIn);
+        loop.release(message);
+        netIn = netOut = appIn = message = null;
+        outbound.clear();
+
+        if (!upgraded)
+        {
+            opened.completeExceptionally(error != null ? error : new EOFException("Connection closed during the opening handshake"));
+            return;
+        }
+        if (state.get() != OPEN)
+            return;
+        try
+        {
+            listener.onClose(code, reason, remote);
+        }
+        catch (RuntimeException e)
+        {
+            LOG.error("Listener failed to handle the closed connection", e);
+        }
+    }
+
+    private void notifyError(Throwable error)
+    {
+        try
+        {
+            listener.onError(error);
+        }
+        catch (RuntimeException e)
+        {
+            LOG.error("Listener failed to handle an error", e);
+        }
+    }
+
+    /*
+        ### Encoding ###
+     */
+
+    private static ByteBuffer encodeClose(int code, String reason)
+    {
+        byte[] text = reason == null ? new byte[0] : reason.getBytes(StandardCharsets.UTF_8);
+        // Control frames are limited to 125 bytes
+        int length = Math.min(text.length, 123);
+        byte[] payload = new byte[2 + length];
+        payload[0] = (byte) (code >> 8);
+        payload[1] = (byte) code;
+        System.arraycopy(text, 0, payload, 2, length);
+        return encode(OP_CLOSE, payload, payload.length);
+    }
+
+    private static ByteBuffer encode(int opcode, byte[] payload, int length)
+    {
+        int header = length <= 125 ? 2 : length <= 0xFFFF ? 4 : 10;
+        ByteBuffer frame = ByteBuffer.allocate(header + 4 + length);
+        frame.put((byte) (0x80 | opcode));
+        if (length <= 125)
+        {
+            frame.put((byte) (0x80 | length));
+        }
+        else if (length <= 0xFFFF)
+        {
+            frame.put((byte) (0x80 | 126));
+            frame.putShort((short) length);
+        }
+        else
+        {
+            frame.put((byte) (0x80 | 127));
+            frame.putLong(length);
+        }
+
+        // Clients have to mask every frame
+        int mask = ThreadLocalRandom.current().nextInt();
+        frame.putInt(mask);
+        byte[] array = frame.array();
+        int offset = frame.position();
+        for (int i = 0; i < length; i++)
+            array[offset + i] = (byte) (payload[i] ^ (mask >>> (24 - 8 * (i & 3))));
+        frame.position(0);
+        return frame;
+    }
+
+    private static int indexOfHeaderEnd(ByteBuffer buffer)
+    {
+        for (int i = buffer.position(); i + 3 < buffer.limit(); i++)
+        {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n' && buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    private static String createKey()
+    {
+        byte[] nonce = new byte[16];
+        KEY_RANDOM.nextBytes(nonce);
+        return Base64.getEncoder().encodeToString(nonce);
+    }
+
+    private static String getExpectedAccept(String key)
+    {
+        try
+        {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] hash = sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(hash);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static SSLEngine createEngine(SSLContext context, String host, int port)
+    {
+        SSLEngine engine = context.createSSLEngine(host, port);
+        engine.setUseClientMode(true);
+        SSLParameters parameters = engine.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        try
+        {
+            parameters.setServerNames(Collections.singletonList(new SNIHostName(host)));
+        }
+        catch (IllegalArgumentException ignored) {} // IP addresses have no server name
+        engine.setSSLParameters(parameters);
+        return engine;
+    }
+
+    // A buffer which is used by delivered messages, and by the frame parser until it stops reading from it
+    private static final class SharedBuffer
+    {
+        private final NioEventLoop loop;
+        private final ByteBuffer buffer;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private SharedBuffer(NioEventLoop loop, ByteBuffer buffer)
+        {
+            this.loop = loop;
+            this.buffer = buffer;
+        }
+
+        private void retain()
+        {
+            references.incrementAndGet();
+        }
+
+        private void release()
+        {
+            if (references.decrementAndGet() != 0)
+                return;
+            // The buffer pools are only used by the thread of the loop
+            if (loop.inEventLoop())
+                loop.release(buffer);
+            else
+                loop.execute(() -> loop.release(buffer));
+        }
+    }
+
+    private static final class NioMessage implements GatewayTransport.Message
+    {
+        private final ByteBuffer data;
+        private final boolean binary;
+        private final SharedBuffer buffer;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private NioMessage(ByteBuffer data, boolean binary, SharedBuffer buffer)
+        {
+            this.data = data;
+            this.binary = binary;
+            this.buffer = buffer;
+        }
+
+        @NotNull
+        @Override
+        public ByteBuffer getData()
+        {
+            return data;
+        }
+
+        @Override
+        public boolean isBinary()
+        {
+            return binary;
+        }
+
+        @Override
+        public void release()
+        {
+            if (released.compareAndSet(false, true))
+                buffer.release();
+        }
+    }
+}
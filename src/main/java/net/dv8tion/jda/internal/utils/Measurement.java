@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time and the bytes allocated by the current thread for a batch of operations.
+ * <br>This is used by the {@link net.dv8tion.jda.internal.requests.GatewayReplay GatewayReplay} and the benchmarks.
+ *
+ * <p>A measurement has to be stopped on the thread which started it, allocations of other threads are not counted.
+ */
+public class Measurement
+{
+    private final long startNanos;
+    private final long startAllocated;
+
+    private Measurement()
+    {
+        this.startAllocated = getAllocatedBytes();
+        this.startNanos = System.nanoTime();
+    }
+
+    public static Measurement start()
+    {
+        return new Measurement();
+    }
+
+    /**
+     * Stops the measurement, using the time since {@link #start()}.
+     *
+     * @param  operations
+     *         The amount of operations performed since the start
+     *
+     * @return The {@link Sample}
+     */
+    public Sample stop(long operations)
+    {
+        return stop(operations, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Stops the measurement with a time which was measured by the caller.
+     * <br>This is useful if only a part of every operation should be timed, the allocations are still counted for all of it.
+     *
+     * @param  operations
+     *         The amount of operations performed since the start
+     * @param  nanos
+     *         The measured time in nanoseconds
+     *
+     * @return The {@link Sample}
+     */
+    public Sample stop(long operations, long nanos)
+    {
+        long allocated = startAllocated < 0 ? -1 : getAllocatedBytes() - startAllocated;
+        return new Sample(operations, nanos, allocated);
+    }
+
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    public static class Sample
+    {
+        private final long operations;
+        private final long nanos;
+        private final long allocatedBytes;
+
+        public Sample(long operations, long nanos, long allocatedBytes)
+        {
+            this.operations = operations;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public long getOperations()
+        {
+            return operations;
+        }
+
+        public long getNanos()
+        {
+            return nanos;
+        }
+
+        /**
+         * The bytes allocated by the measuring thread.
+         *
+         * @return The allocated bytes, or -1 if the JVM does not support allocation tracking
+         */
+        public long getAllocatedBytes()
+        {
+            return allocatedBytes;
+        }
+
+        public long getNanosPerOperation()
+        {
+            return operations == 0 ? 0 : nanos / operations;
+        }
+
+        public long getAllocatedBytesPerOperation()
+        {
+            return allocatedBytes < 0 || operations == 0 ? -1 : allocatedBytes / operations;
+        }
+
+        public double getOperationsPerSecond()
+        {
+            return nanos == 0 ? 0 : operations * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%d ns/op, %.0f ops/s, %d bytes/op",
+                getNanosPerOperation(), getOperationsPerSecond(), getAllocatedBytesPerOperation());
+        }
+    }
+}
@@ -38,14 +38,21 @@ import java.util.stream.StreamSupport;
 
 public abstract class AbstractCacheView<T> extends ReadWriteLockCache<T> implements CacheView<T>
 {
-    protected final TLongObjectMap<T> elements = new TLongObjectHashMap<>();
+    protected final TLongObjectMap<T> elements;
     protected final T[] emptyArray;
     protected final Function<T, String> nameMapper;
     protected final Class<T> type;
 
-    @SuppressWarnings("unchecked")
     protected AbstractCacheView(Class<T> type, Function<T, String> nameMapper)
     {
+        this(type, nameMapper, new TLongObjectHashMap<>(), new ReentrantReadWriteLock());
+    }
+
+    @SuppressWarnings("unchecked")
+    protected AbstractCacheView(Class<T> type, Function<T, String> nameMapper, TLongObjectMap<T> elements, ReentrantReadWriteLock lock)
+    {
+        super(lock);
+        this.elements = elements;
         this.nameMapper = nameMapper;
         this.type = type;
         this.emptyArray = (T[]) Array.newInstance(type, 0);
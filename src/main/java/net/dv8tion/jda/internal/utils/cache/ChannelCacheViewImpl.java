@@ -0,0 +1,506 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.utils.cache;
+
+import gnu.trove.function.TObjectFunction;
+import gnu.trove.impl.HashFunctions;
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.procedure.TLongObjectProcedure;
+import gnu.trove.procedure.TLongProcedure;
+import gnu.trove.procedure.TObjectProcedure;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.dv8tion.jda.api.entities.Channel;
+import net.dv8tion.jda.api.entities.GuildChannel;
+import net.dv8tion.jda.internal.utils.UnlockHook;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Unified index of the guild channel caches of a {@link net.dv8tion.jda.api.JDA JDA} session or a guild.
+ * <br>All guild channels are stored in a single map, the typed channel caches created by {@link #createView(Class)}
+ * and {@link #createSortedView(Class)} are filtered views of it. A channel of any type is found with a single lookup.
+ *
+ * <p>The index and its views share one lock.
+ * Code holding the read lock of any of them must not modify another one, the write lock cannot be acquired while reading.
+ */
+public class ChannelCacheViewImpl extends SnowflakeCacheViewImpl<GuildChannel>
+{
+    private final List<TypedMap<?>> maps = new ArrayList<>();
+
+    public ChannelCacheViewImpl()
+    {
+        super(GuildChannel.class, Channel::getName);
+    }
+
+    /**
+     * Creates a cache of the channels of the provided type, which is backed by this index.
+     *
+     * @param  type
+     *         The channel type
+     * @param  <T>
+     *         The channel type
+     *
+     * @return The typed cache
+     */
+    public <T extends GuildChannel> SnowflakeCacheViewImpl<T> createView(Class<T> type)
+    {
+        TypedMap<T> map = createMap(type);
+        SnowflakeCacheViewImpl<T> view = new SnowflakeCacheViewImpl<>(type, Channel::getName, map, lock);
+        map.view = view;
+        return view;
+    }
+
+    /**
+     * Creates a sorted cache of the channels of the provided type, which is backed by this index.
+     *
+     * @param  type
+     *         The channel type
+     * @param  <T>
+     *         The channel type
+     *
+     * @return The typed cache
+     */
+    public <T extends GuildChannel> SortedSnowflakeCacheViewImpl<T> createSortedView(Class<T> type)
+    {
+        TypedMap<T> map = createMap(type);
+        SortedSnowflakeCacheViewImpl<T> view = new SortedSnowflakeCacheViewImpl<>(type, Channel::getName, Comparator.naturalOrder(), map, lock);
+        map.view = view;
+        return view;
+    }
+
+    @Override
+    public TLongObjectMap<GuildChannel> getMap()
+    {
+        throw new UnsupportedOperationException("Channels have to be modified through their typed cache");
+    }
+
+    @Override
+    public GuildChannel remove(long id)
+    {
+        try (UnlockHook hook = writeLock())
+        {
+            GuildChannel channel = elements.remove(id);
+            if (channel != null)
+                removed(channel);
+            return channel;
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        try (UnlockHook hook = writeLock())
+        {
+            elements.clear();
+            for (TypedMap<?> map : maps)
+            {
+                map.size = 0;
+                map.view.clearCachedLists();
+            }
+        }
+    }
+
+    private <T extends GuildChannel> TypedMap<T> createMap(Class<T> type)
+    {
+        TypedMap<T> map = new TypedMap<>(type);
+        try (UnlockHook hook = writeLock())
+        {
+            maps.add(map);
+        }
+        return map;
+    }
+
+    private TypedMap<?> getTypedMap(GuildChannel channel)
+    {
+        for (TypedMap<?> map : maps)
+        {
+            if (map.type.isInstance(channel))
+                return map;
+        }
+        return null;
+    }
+
+    private void added(GuildChannel channel)
+    {
+        TypedMap<?> map = getTypedMap(channel);
+        if (map != null)
+        {
+            map.size++;
+            map.view.clearCachedLists();
+        }
+        clearCachedLists();
+    }
+
+    private void removed(GuildChannel channel)
+    {
+        TypedMap<?> map = getTypedMap(channel);
+        if (map != null)
+        {
+            map.size--;
+            map.view.clearCachedLists();
+        }
+        clearCachedLists();
+    }
+
+    // Filters the channels of the index by type, the size is counted on every change to keep size() and isEmpty() constant
+    private class TypedMap<T extends GuildChannel> implements TLongObjectMap<T>
+    {
+        private final Class<T> type;
+        private ReadWriteLockCache<T> view;
+        private int size;
+
+        private TypedMap(Class<T> type)
+        {
+            this.type = type;
+        }
+
+        private void checkWrite()
+        {
+            if (!lock.isWriteLockedByCurrentThread())
+                throw new IllegalStateException("Cannot modify the channel cache without holding its write lock!");
+        }
+
+        private T cast(GuildChannel channel)
+        {
+            return type.isInstance(channel) ? type.cast(channel) : null;
+        }
+
+        @Override
+        public long getNoEntryKey()
+        {
+            return elements.getNoEntryKey();
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return size == 0;
+        }
+
+        @Override
+        public boolean containsKey(long key)
+        {
+            return get(key) != null;
+        }
+
+        @Override
+        public boolean containsValue(Object value)
+        {
+            return type.isInstance(value) && elements.containsValue(value);
+        }
+
+        @Override
+        public T get(long key)
+        {
+            return cast(elements.get(key));
+        }
+
+        @Override
+        public T put(long key, T value)
+        {
+            checkWrite();
+            GuildChannel previous = elements.put(key, value);
+            // A channel can change its type, the replaced channel might belong to another typed cache
+            if (previous != null)
+                removed(previous);
+            added(value);
+            return cast(previous);
+        }
+
+        @Override
+        public T putIfAbsent(long key, T value)
+        {
+            T previous = get(key);
+            if (previous != null)
+                return previous;
+            put(key, value);
+            return null;
+        }
+
+        @Override
+        public T remove(long key)
+        {
+            checkWrite();
+            T previous = get(key);
+            if (previous != null)
+            {
+                elements.remove(key);
+                removed(previous);
+            }
+            return previous;
+        }
+
+        @Override
+        public void putAll(Map<? extends Long, ? extends T> map)
+        {
+            map.forEach(this::put);
+        }
+
+        @Override
+        public void putAll(TLongObjectMap<? extends T> map)
+        {
+            map.forEachEntry((key, value) -> {
+                put(key, value);
+                return true;
+            });
+        }
+
+        @Override
+        public void clear()
+        {
+            checkWrite();
+            if (isEmpty())
+                return;
+            elements.retainEntries((key, channel) -> !type.isInstance(channel));
+            size = 0;
+            view.clearCachedLists();
+            clearCachedLists();
+        }
+
+        @Override
+        public TLongSet keySet()
+        {
+            // Not backed by the map, the only caller copies it anyway
+            TLongSet keys = new TLongHashSet(size);
+            forEachKey(keys::add);
+            return keys;
+        }
+
+        @Override
+        public long[] keys()
+        {
+            return keys(new long[size]);
+        }
+
+        @Override
+        public long[] keys(long[] array)
+        {
+            if (array.length < size)
+                array = new long[size];
+            long[] keys = array;
+            int[] index = {0};
+            forEachKey(key -> {
+                keys[index[0]++] = key;
+                return true;
+            });
+            return keys;
+        }
+
+        @Override
+        public Collection<T> valueCollection()
+        {
+            return new AbstractCollection<T>()
+            {
+                @NotNull
+                @Override
+                public Iterator<T> iterator()
+                {
+                    TLongObjectIterator<T> iterator = TypedMap.this.iterator();
+                    return new Iterator<T>()
+                    {
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public T next()
+                        {
+                            if (!iterator.hasNext())
+                                throw new NoSuchElementException();
+                            iterator.advance();
+                            return iterator.value();
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            iterator.remove();
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public Object[] values()
+        {
+            Object[] values = new Object[size];
+            int[] index = {0};
+            forEachValue(value -> {
+                values[index[0]++] = value;
+                return true;
+            });
+            return values;
+        }
+
+        @Override
+        public T[] values(T[] array)
+        {
+            if (array.length < size)
+                array = Arrays.copyOf(array, size);
+            else if (array.length > size)
+                array[size] = null;
+            T[] values = array;
+            int[] index = {0};
+            forEachValue(value -> {
+                values[index[0]++] = value;
+                return true;
+            });
+            return values;
+        }
+
+        @Override
+        public TLongObjectIterator<T> iterator()
+        {
+            // Iterates a snapshot of the keys, the iterators of the index do not support removals of the filtered entries
+            long[] keys = keys();
+            return new TLongObjectIterator<T>()
+            {
+                private int index = -1;
+                private boolean removed;
+
+                @Override
+                public long key()
+                {
+                    return keys[index];
+                }
+
+                @Override
+                public T value()
+                {
+                    return get(keys[index]);
+                }
+
+                @Override
+                public T setValue(T value)
+                {
+                    return put(keys[index], value);
+                }
+
+                @Override
+                public void advance()
+                {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    index++;
+                    removed = false;
+                }
+
+                @Override
+                public boolean hasNext()
+                {
+                    return index + 1 < keys.length;
+                }
+
+                @Override
+                public void remove()
+                {
+                    if (index < 0 || removed)
+                        throw new IllegalStateException();
+                    TypedMap.this.remove(keys[index]);
+                    removed = true;
+                }
+            };
+        }
+
+        @Override
+        public boolean forEachKey(TLongProcedure procedure)
+        {
+            return elements.forEachEntry((key, channel) -> !type.isInstance(channel) || procedure.execute(key));
+        }
+
+        @Override
+        public boolean forEachValue(TObjectProcedure<? super T> procedure)
+        {
+            return elements.forEachValue(channel -> !type.isInstance(channel) || procedure.execute(type.cast(channel)));
+        }
+
+        @Override
+        public boolean forEachEntry(TLongObjectProcedure<? super T> procedure)
+        {
+            return elements.forEachEntry((key, channel) -> !type.isInstance(channel) || procedure.execute(key, type.cast(channel)));
+        }
+
+        @Override
+        public void transformValues(TObjectFunction<T, T> function)
+        {
+            checkWrite();
+            for (long key : keys())
+                put(key, function.execute(get(key)));
+        }
+
+        @Override
+        public boolean retainEntries(TLongObjectProcedure<? super T> procedure)
+        {
+            checkWrite();
+            boolean modified = elements.retainEntries((key, channel) -> {
+                if (!type.isInstance(channel) || procedure.execute(key, type.cast(channel)))
+                    return true;
+                size--;
+                return false;
+            });
+            if (modified)
+            {
+                view.clearCachedLists();
+                clearCachedLists();
+            }
+            return modified;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj == this)
+                return true;
+            if (!(obj instanceof TLongObjectMap))
+                return false;
+            TLongObjectMap<?> map = (TLongObjectMap<?>) obj;
+            if (map.size() != size)
+                return false;
+            return forEachEntry((key, value) -> value.equals(map.get(key)));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            // Same as TLongObjectHashMap
+            int[] hashCode = {0};
+            forEachEntry((key, value) -> {
+                hashCode[0] += HashFunctions.hash(key) ^ value.hashCode();
+                return true;
+            });
+            return hashCode[0];
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.utils.cache;
+
+import net.dv8tion.jda.api.entities.emoji.RichCustomEmoji;
+import net.dv8tion.jda.api.utils.ClosableIterator;
+import net.dv8tion.jda.api.utils.cache.SnowflakeCacheView;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.handle.GuildHydrationController;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * The global emoji cache of a session with guild hydration.
+ * <br>The emojis of compact guilds are not part of the emoji index. Lookups by id only hydrate the guild of the emoji,
+ * every guild with dormant emojis is only hydrated once the view is iterated or searched by name.
+ */
+public class EmojiCacheViewImpl implements SnowflakeCacheView<RichCustomEmoji>
+{
+    private final JDAImpl api;
+    private final SnowflakeCacheViewImpl<RichCustomEmoji> index;
+    private final GuildHydrationController controller;
+
+    public EmojiCacheViewImpl(JDAImpl api, SnowflakeCacheViewImpl<RichCustomEmoji> index, GuildHydrationController controller)
+    {
+        this.api = api;
+        this.index = index;
+        this.controller = controller;
+    }
+
+    private SnowflakeCacheViewImpl<RichCustomEmoji> hydrated()
+    {
+        controller.hydrateDormantEmojis();
+        return index;
+    }
+
+    @Override
+    public RichCustomEmoji getElementById(long id)
+    {
+        return api.getEmojiById(id);
+    }
+
+    @Override
+    public long size()
+    {
+        // Dormant emojis are never part of the index, so they can be counted without hydrating their guilds
+        return index.size() + controller.getDormantEmojiCount();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return index.isEmpty() && controller.getDormantEmojiCount() == 0;
+    }
+
+    @NotNull
+    @Override
+    public List<RichCustomEmoji> asList()
+    {
+        return hydrated().asList();
+    }
+
+    @NotNull
+    @Override
+    public Set<RichCustomEmoji> asSet()
+    {
+        return hydrated().asSet();
+    }
+
+    @NotNull
+    @Override
+    public ClosableIterator<RichCustomEmoji> lockedIterator()
+    {
+        return hydrated().lockedIterator();
+    }
+
+    @Override
+    public void forEachUnordered(@NotNull Consumer<? super RichCustomEmoji> action)
+    {
+        hydrated().forEachUnordered(action);
+    }
+
+    @Override
+    public void forEach(Consumer<? super RichCustomEmoji> action)
+    {
+        hydrated().forEach(action);
+    }
+
+    @NotNull
+    @Override
+    public List<RichCustomEmoji> getElementsByName(@NotNull String name, boolean ignoreCase)
+    {
+        return hydrated().getElementsByName(name, ignoreCase);
+    }
+
+    @NotNull
+    @Override
+    public Stream<RichCustomEmoji> stream()
+    {
+        return hydrated().stream();
+    }
+
+    @NotNull
+    @Override
+    public Stream<RichCustomEmoji> parallelStream()
+    {
+        return hydrated().parallelStream();
+    }
+
+    @NotNull
+    @Override
+    public Iterator<RichCustomEmoji> iterator()
+    {
+        return hydrated().iterator();
+    }
+
+    @Override
+    public Spliterator<RichCustomEmoji> spliterator()
+    {
+        return hydrated().spliterator();
+    }
+
+    @Override
+    public String toString()
+    {
+        return index.toString();
+    }
+}
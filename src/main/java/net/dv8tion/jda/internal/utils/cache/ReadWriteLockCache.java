@@ -28,10 +28,20 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public abstract class ReadWriteLockCache<T>
 {
-    protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    protected final ReentrantReadWriteLock lock;
     protected WeakReference<List<T>> cachedList;
     protected WeakReference<Set<T>>  cachedSet;
 
+    protected ReadWriteLockCache()
+    {
+        this(new ReentrantReadWriteLock());
+    }
+
+    protected ReadWriteLockCache(ReentrantReadWriteLock lock)
+    {
+        this.lock = lock;
+    }
+
     public UnlockHook writeLock()
     {
         if (lock.getReadHoldCount() > 0)
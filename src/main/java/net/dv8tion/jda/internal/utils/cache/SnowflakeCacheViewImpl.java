@@ -16,9 +16,11 @@
 
 package net.dv8tion.jda.internal.utils.cache;
 
+import gnu.trove.map.TLongObjectMap;
 import net.dv8tion.jda.api.entities.ISnowflake;
 import net.dv8tion.jda.api.utils.cache.SnowflakeCacheView;
 
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
 
 public class SnowflakeCacheViewImpl<T extends ISnowflake> extends AbstractCacheView<T> implements SnowflakeCacheView<T>
@@ -28,6 +30,11 @@ public class SnowflakeCacheViewImpl<T extends ISnowflake> extends AbstractCacheV
         super(type, nameMapper);
     }
 
+    public SnowflakeCacheViewImpl(Class<T> type, Function<T, String> nameMapper, TLongObjectMap<T> elements, ReentrantReadWriteLock lock)
+    {
+        super(type, nameMapper, elements, lock);
+    }
+
     @Override
     public T getElementById(long id)
     {
@@ -16,6 +16,7 @@
 
 package net.dv8tion.jda.internal.utils.cache;
 
+import gnu.trove.map.TLongObjectMap;
 import net.dv8tion.jda.api.entities.ISnowflake;
 import net.dv8tion.jda.api.utils.cache.SortedSnowflakeCacheView;
 import net.dv8tion.jda.internal.utils.UnlockHook;
@@ -23,6 +24,7 @@ import org.apache.commons.collections4.iterators.ObjectArrayIterator;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -45,6 +47,12 @@ public class SortedSnowflakeCacheViewImpl<T extends ISnowflake & Comparable<? su
         this.comparator = comparator;
     }
 
+    public SortedSnowflakeCacheViewImpl(Class<T> type, Function<T, String> nameMapper, Comparator<T> comparator, TLongObjectMap<T> elements, ReentrantReadWriteLock lock)
+    {
+        super(type, nameMapper, elements, lock);
+        this.comparator = comparator;
+    }
+
     @Override
     public void forEach(@NotNull Consumer<? super T> action)
     {
@@ -21,6 +21,7 @@ import net.dv8tion.jda.internal.utils.JDALogger;
 import org.slf4j.Logger;
 
 import org.jetbrains.annotations.Nullable;
+import java.nio.ByteBuffer;
 import java.util.zip.DataFormatException;
 
 public interface Decompressor
@@ -35,4 +36,12 @@ public interface Decompressor
 
     @Nullable // returns null when the decompression isn't done, for example when no Z_SYNC_FLUSH was present
     byte[] decompress(byte[] data) throws DataFormatException;
+
+    @Nullable // the buffer is consumed, implementations should avoid copying it
+    default byte[] decompress(ByteBuffer data) throws DataFormatException
+    {
+        byte[] array = new byte[data.remaining()];
+        data.get(array);
+        return decompress(array);
+    }
 }
@@ -60,34 +60,39 @@ public class ZlibDecompressor implements Decompressor
         return buffer;
     }
 
-    private boolean isFlush(byte[] data)
+    private boolean isFlush(ByteBuffer data)
     {
-        if (data.length < 4)
+        if (data.remaining() < 4)
             return false;
-        int suffix = IOUtil.getIntBigEndian(data, data.length - 4);
+        int suffix = data.getInt(data.limit() - 4);
         return suffix == Z_SYNC_FLUSH;
     }
 
-    private void buffer(byte[] data)
+    private void buffer(ByteBuffer data)
     {
         if (flushBuffer == null)
-            flushBuffer = ByteBuffer.allocate(data.length * 2);
+            flushBuffer = ByteBuffer.allocate(data.remaining() * 2);
 
         //Ensure the capacity can hold the new data, ByteBuffer doesn't grow automatically
-        if (flushBuffer.capacity() < data.length + flushBuffer.position())
+        if (flushBuffer.capacity() < data.remaining() + flushBuffer.position())
         {
             //Flip to make it a read buffer
             flushBuffer.flip();
             //Reallocate for the new capacity
-            flushBuffer = IOUtil.reallocate(flushBuffer, (flushBuffer.capacity() + data.length) * 2);
+            flushBuffer = IOUtil.reallocate(flushBuffer, (flushBuffer.capacity() + data.remaining()) * 2);
         }
 
         flushBuffer.put(data);
     }
 
-    private Object lazy(byte[] data)
+    private Object lazy(ByteBuffer data)
     {
-        return JDALogger.getLazyString(() -> Arrays.toString(data));
+        return JDALogger.getLazyString(() ->
+        {
+            byte[] array = new byte[data.remaining()];
+            data.duplicate().get(array);
+            return Arrays.toString(array);
+        });
     }
 
     @Override
@@ -110,12 +115,18 @@ public class ZlibDecompressor implements Decompressor
 
     @Override
     public byte[] decompress(byte[] data) throws DataFormatException
+    {
+        return decompress(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public byte[] decompress(ByteBuffer data) throws DataFormatException
     {
         //Handle split messages
         if (!isFlush(data))
         {
             //There is no flush suffix so this is not the end of the message
-            LOG.debug("Received incomplete data, writing to buffer. Length: {}", data.length);
+            LOG.debug("Received incomplete data, writing to buffer. Length: {}", data.remaining());
             buffer(data);
             return null; // signal failure to decompress
         }
@@ -125,11 +136,16 @@ public class ZlibDecompressor implements Decompressor
             //concatenate the package with the new data and decompress it below
             LOG.debug("Received final part of incomplete data");
             buffer(data);
-            byte[] arr = flushBuffer.array();
-            data = new byte[flushBuffer.position()];
-            System.arraycopy(arr, 0, data, 0, data.length);
+            flushBuffer.flip();
+            data = flushBuffer;
             flushBuffer = null;
         }
+        else if (!data.hasArray())
+        {
+            //The inflater can only read arrays
+            data = ByteBuffer.allocate(data.remaining()).put(data);
+            data.flip();
+        }
         LOG.trace("Decompressing data {}", lazy(data));
         //Get the compressed message and inflate it
         //We use the same buffer here to optimize gc use
@@ -137,7 +153,8 @@ public class ZlibDecompressor implements Decompressor
         try (InflaterOutputStream decompressor = new InflaterOutputStream(buffer, inflater))
         {
             // This decompressor writes the received data and inflates it
-            decompressor.write(data);
+            decompressor.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
             // Once decompressed we re-interpret the data as a String which can be used for JSON parsing
             return buffer.toByteArray();
         }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.utils.concurrent;
+
+import net.dv8tion.jda.internal.utils.JDALogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks one after another on a shared executor, in the order they were submitted.
+ * <br>Many serial executors can share a bounded pool, instead of using a thread each.
+ * A task which blocks still occupies a thread of the pool, so blocking work should be handed off.
+ */
+public class SerialExecutor implements Executor
+{
+    public static final Logger LOG = JDALogger.getLog(SerialExecutor.class);
+    // Tasks run before the thread is returned to the pool, so a busy queue does not starve the other queues
+    private static final int BATCH_SIZE = 64;
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean shutdown;
+
+    public SerialExecutor(@NotNull Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(@NotNull Runnable task)
+    {
+        if (shutdown)
+            throw new RejectedExecutionException("Executor is shut down");
+        tasks.add(task);
+        schedule();
+    }
+
+    /**
+     * Rejects new tasks, the tasks which were already submitted still run.
+     */
+    public void shutdown()
+    {
+        shutdown = true;
+    }
+
+    public boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    private void schedule()
+    {
+        if (tasks.isEmpty() || !scheduled.compareAndSet(false, true))
+            return;
+        try
+        {
+            executor.execute(this::drain);
+        }
+        catch (RejectedExecutionException e)
+        {
+            scheduled.set(false);
+            throw e;
+        }
+    }
+
+    private void drain()
+    {
+        try
+        {
+            for (int i = 0; i < BATCH_SIZE; i++)
+            {
+                Runnable task = tasks.poll();
+                if (task == null)
+                    break;
+                try
+                {
+                    task.run();
+                }
+                catch (Throwable e)
+                {
+                    LOG.error("Uncaught exception in serial task", e);
+                    if (e instanceof Error)
+                        throw e;
+                }
+            }
+        }
+        finally
+        {
+            // A task submitted after the last poll might have seen the flag still set
+            scheduled.set(false);
+            schedule();
+        }
+    }
+}
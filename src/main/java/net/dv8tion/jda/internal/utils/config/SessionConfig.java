@@ -18,13 +18,16 @@ package net.dv8tion.jda.internal.utils.config;
 
 import com.neovisionaries.ws.client.WebSocketFactory;
 import net.dv8tion.jda.api.hooks.VoiceDispatchInterceptor;
+import net.dv8tion.jda.api.requests.GatewayTransport;
 import net.dv8tion.jda.api.utils.ConcurrentSessionController;
 import net.dv8tion.jda.api.utils.SessionController;
+import net.dv8tion.jda.internal.handle.EventCache;
 import net.dv8tion.jda.internal.utils.config.flags.ConfigFlag;
 import okhttp3.OkHttpClient;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import java.io.File;
 import java.util.EnumSet;
 
 public class SessionConfig
@@ -36,6 +39,12 @@ public class SessionConfig
     private final int largeThreshold;
     private EnumSet<ConfigFlag> flags;
     private int maxReconnectDelay;
+    private long presenceCoalescingWindow; // nanoseconds
+    private int eventCacheLimit = EventCache.DEFAULT_LIMIT;
+    private long guildHydrationIdleTime;
+    private File sessionSnapshotFile;
+    private File gatewayRecordingFile;
+    private GatewayTransport gatewayTransport;
 
     public SessionConfig(
         @Nullable SessionController sessionController, @Nullable OkHttpClient httpClient,
@@ -64,6 +73,36 @@ public class SessionConfig
             flags.remove(ConfigFlag.AUTO_RECONNECT);
     }
 
+    public void setPresenceCoalescingWindow(long presenceCoalescingWindow)
+    {
+        this.presenceCoalescingWindow = presenceCoalescingWindow;
+    }
+
+    public void setEventCacheLimit(int eventCacheLimit)
+    {
+        this.eventCacheLimit = eventCacheLimit;
+    }
+
+    public void setGuildHydrationIdleTime(long guildHydrationIdleTime)
+    {
+        this.guildHydrationIdleTime = guildHydrationIdleTime;
+    }
+
+    public void setSessionSnapshotFile(@Nullable File sessionSnapshotFile)
+    {
+        this.sessionSnapshotFile = sessionSnapshotFile;
+    }
+
+    public void setGatewayRecordingFile(@Nullable File gatewayRecordingFile)
+    {
+        this.gatewayRecordingFile = gatewayRecordingFile;
+    }
+
+    public void setGatewayTransport(@Nullable GatewayTransport gatewayTransport)
+    {
+        this.gatewayTransport = gatewayTransport;
+    }
+
     @NotNull
     public SessionController getSessionController()
     {
@@ -128,6 +167,39 @@ public class SessionConfig
         return largeThreshold;
     }
 
+    public long getPresenceCoalescingWindow()
+    {
+        return presenceCoalescingWindow;
+    }
+
+    public int getEventCacheLimit()
+    {
+        return eventCacheLimit;
+    }
+
+    public long getGuildHydrationIdleTime()
+    {
+        return guildHydrationIdleTime;
+    }
+
+    @Nullable
+    public File getSessionSnapshotFile()
+    {
+        return sessionSnapshotFile;
+    }
+
+    @Nullable
+    public File getGatewayRecordingFile()
+    {
+        return gatewayRecordingFile;
+    }
+
+    @Nullable
+    public GatewayTransport getGatewayTransport()
+    {
+        return gatewayTransport;
+    }
+
     public EnumSet<ConfigFlag> getFlags()
     {
         return flags;
@@ -16,6 +16,7 @@
 
 package net.dv8tion.jda.internal.utils.config;
 
+import net.dv8tion.jda.api.hooks.EventQueuePolicy;
 import net.dv8tion.jda.internal.utils.concurrent.CountingThreadFactory;
 import org.jetbrains.annotations.NotNull;
 
@@ -26,18 +27,24 @@ import java.util.function.Supplier;
 public class ThreadingConfig
 {
     private final Object audioLock = new Object();
+    private final Object transportLock = new Object();
 
     private ScheduledExecutorService rateLimitPool;
     private ScheduledExecutorService gatewayPool;
     private ExecutorService callbackPool;
     private ExecutorService eventPool;
+    private ExecutorService guildSetupPool;
     private ScheduledExecutorService audioPool;
+    private ExecutorService transportPool;
+    private EventQueuePolicy eventQueuePolicy;
 
     private boolean shutdownRateLimitPool;
     private boolean shutdownGatewayPool;
     private boolean shutdownCallbackPool;
     private boolean shutdownEventPool;
+    private boolean shutdownGuildSetupPool;
     private boolean shutdownAudioPool;
+    private boolean shutdownTransportPool;
 
     public ThreadingConfig()
     {
@@ -47,6 +54,7 @@ public class ThreadingConfig
         this.shutdownGatewayPool = true;
         this.shutdownCallbackPool = false;
         this.shutdownAudioPool = true;
+        this.shutdownTransportPool = true;
     }
 
     public void setRateLimitPool(@Nullable ScheduledExecutorService executor, boolean shutdown)
@@ -73,12 +81,29 @@ public class ThreadingConfig
         this.shutdownEventPool = shutdown;
     }
 
+    public void setGuildSetupPool(@Nullable ExecutorService executor, boolean shutdown)
+    {
+        this.guildSetupPool = executor;
+        this.shutdownGuildSetupPool = shutdown;
+    }
+
+    public void setEventQueuePolicy(@Nullable EventQueuePolicy policy)
+    {
+        this.eventQueuePolicy = policy;
+    }
+
     public void setAudioPool(@Nullable ScheduledExecutorService executor, boolean shutdown)
     {
         this.audioPool = executor;
         this.shutdownAudioPool = shutdown;
     }
 
+    public void setTransportPool(@Nullable ExecutorService executor, boolean shutdown)
+    {
+        this.transportPool = executor;
+        this.shutdownTransportPool = shutdown;
+    }
+
     public void init(@NotNull Supplier<String> identifier)
     {
         if (this.rateLimitPool == null)
@@ -95,8 +120,12 @@ public class ThreadingConfig
             gatewayPool.shutdown();
         if (shutdownEventPool && eventPool != null)
             eventPool.shutdown();
+        if (shutdownGuildSetupPool && guildSetupPool != null)
+            guildSetupPool.shutdown();
         if (shutdownAudioPool && audioPool != null)
             audioPool.shutdown();
+        if (shutdownTransportPool && transportPool != null)
+            transportPool.shutdown();
         if (shutdownRateLimitPool)
         {
             if (rateLimitPool instanceof ScheduledThreadPoolExecutor)
@@ -128,8 +157,12 @@ public class ThreadingConfig
             rateLimitPool.shutdownNow();
         if (shutdownEventPool && eventPool != null)
             eventPool.shutdownNow();
+        if (shutdownGuildSetupPool && guildSetupPool != null)
+            guildSetupPool.shutdownNow();
         if (shutdownAudioPool && audioPool != null)
             audioPool.shutdownNow();
+        if (shutdownTransportPool && transportPool != null)
+            transportPool.shutdownNow();
     }
 
     @NotNull
@@ -156,6 +189,18 @@ public class ThreadingConfig
         return eventPool;
     }
 
+    @Nullable
+    public ExecutorService getGuildSetupPool()
+    {
+        return guildSetupPool;
+    }
+
+    @Nullable
+    public EventQueuePolicy getEventQueuePolicy()
+    {
+        return eventQueuePolicy;
+    }
+
     @Nullable
     public ScheduledExecutorService getAudioPool(@NotNull Supplier<String> identifier)
     {
@@ -172,6 +217,22 @@ public class ThreadingConfig
         return pool;
     }
 
+    @NotNull
+    public ExecutorService getTransportPool(@NotNull Supplier<String> identifier)
+    {
+        ExecutorService pool = transportPool;
+        if (pool == null)
+        {
+            synchronized (transportLock)
+            {
+                pool = transportPool;
+                if (pool == null)
+                    pool = transportPool = ThreadingConfig.newTransportPool(identifier);
+            }
+        }
+        return pool;
+    }
+
     public boolean isShutdownRateLimitPool()
     {
         return shutdownRateLimitPool;
@@ -192,6 +253,11 @@ public class ThreadingConfig
         return shutdownEventPool;
     }
 
+    public boolean isShutdownGuildSetupPool()
+    {
+        return shutdownGuildSetupPool;
+    }
+
     public boolean isShutdownAudioPool()
     {
         return shutdownAudioPool;
@@ -209,6 +275,18 @@ public class ThreadingConfig
         return new ScheduledThreadPoolExecutor(coreSize, new CountingThreadFactory(identifier, baseName, daemon));
     }
 
+    // Handles the callbacks of every GatewayTransport connection, each connection is a serial queue on this pool
+    @NotNull
+    public static ExecutorService newTransportPool(Supplier<String> identifier)
+    {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            new CountingThreadFactory(identifier, "MainWS-ReadThread"));
+        // Idle threads are stopped, so a pool shared by many shards only keeps the threads it needs
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
     @NotNull
     public static ThreadingConfig getDefault()
     {
@@ -28,6 +28,7 @@ import okhttp3.OkHttpClient;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import java.io.File;
 import java.util.EnumSet;
 
 public class ShardingSessionConfig extends SessionConfig
@@ -35,6 +36,8 @@ public class ShardingSessionConfig extends SessionConfig
     private final OkHttpClient.Builder builder;
     private final IAudioSendFactory audioSendFactory;
     private final EnumSet<ShardingConfigFlag> shardingFlags;
+    private File sessionSnapshotDirectory;
+    private File gatewayRecordingDirectory;
 
     public ShardingSessionConfig(
         @Nullable SessionController sessionController, @Nullable VoiceDispatchInterceptor interceptor,
@@ -52,9 +55,40 @@ public class ShardingSessionConfig extends SessionConfig
         this.shardingFlags = shardingFlags;
     }
 
-    public SessionConfig toSessionConfig(OkHttpClient client)
+    public SessionConfig toSessionConfig(OkHttpClient client, int shardId)
     {
-        return new SessionConfig(getSessionController(), client, getWebSocketFactory(), getVoiceDispatchInterceptor(), getFlags(), getMaxReconnectDelay(), getLargeThreshold());
+        SessionConfig config = new SessionConfig(getSessionController(), client, getWebSocketFactory(), getVoiceDispatchInterceptor(), getFlags(), getMaxReconnectDelay(), getLargeThreshold());
+        config.setPresenceCoalescingWindow(getPresenceCoalescingWindow());
+        config.setEventCacheLimit(getEventCacheLimit());
+        config.setGuildHydrationIdleTime(getGuildHydrationIdleTime());
+        config.setGatewayTransport(getGatewayTransport());
+        if (sessionSnapshotDirectory != null)
+            config.setSessionSnapshotFile(new File(sessionSnapshotDirectory, "shard-" + shardId + ".snapshot"));
+        if (gatewayRecordingDirectory != null)
+            config.setGatewayRecordingFile(new File(gatewayRecordingDirectory, "shard-" + shardId + ".recording"));
+        return config;
+    }
+
+    public void setSessionSnapshotDirectory(@Nullable File sessionSnapshotDirectory)
+    {
+        this.sessionSnapshotDirectory = sessionSnapshotDirectory;
+    }
+
+    @Nullable
+    public File getSessionSnapshotDirectory()
+    {
+        return sessionSnapshotDirectory;
+    }
+
+    public void setGatewayRecordingDirectory(@Nullable File gatewayRecordingDirectory)
+    {
+        this.gatewayRecordingDirectory = gatewayRecordingDirectory;
+    }
+
+    @Nullable
+    public File getGatewayRecordingDirectory()
+    {
+        return gatewayRecordingDirectory;
     }
 
     public EnumSet<ShardingConfigFlag> getShardingFlags()
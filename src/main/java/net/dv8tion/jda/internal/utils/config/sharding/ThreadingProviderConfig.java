@@ -16,6 +16,7 @@
 
 package net.dv8tion.jda.internal.utils.config.sharding;
 
+import net.dv8tion.jda.api.hooks.EventQueuePolicy;
 import net.dv8tion.jda.api.sharding.ThreadPoolProvider;
 
 import org.jetbrains.annotations.NotNull;
@@ -32,6 +33,8 @@ public class ThreadingProviderConfig
     private final ThreadPoolProvider<? extends ExecutorService> eventPoolProvider;
     private final ThreadPoolProvider<? extends ScheduledExecutorService> audioPoolProvider;
     private final ThreadFactory threadFactory;
+    private final EventQueuePolicy eventQueuePolicy;
+    private ThreadPoolProvider<? extends ExecutorService> guildSetupPoolProvider;
 
     public ThreadingProviderConfig(
             @Nullable ThreadPoolProvider<? extends ScheduledExecutorService> rateLimitPoolProvider,
@@ -39,7 +42,8 @@ public class ThreadingProviderConfig
             @Nullable ThreadPoolProvider<? extends ExecutorService> callbackPoolProvider,
             @Nullable ThreadPoolProvider<? extends ExecutorService> eventPoolProvider,
             @Nullable ThreadPoolProvider<? extends ScheduledExecutorService> audioPoolProvider,
-            @Nullable ThreadFactory threadFactory)
+            @Nullable ThreadFactory threadFactory,
+            @Nullable EventQueuePolicy eventQueuePolicy)
     {
         this.rateLimitPoolProvider = rateLimitPoolProvider;
         this.gatewayPoolProvider = gatewayPoolProvider;
@@ -47,6 +51,12 @@ public class ThreadingProviderConfig
         this.eventPoolProvider = eventPoolProvider;
         this.audioPoolProvider = audioPoolProvider;
         this.threadFactory = threadFactory;
+        this.eventQueuePolicy = eventQueuePolicy;
+    }
+
+    public void setGuildSetupPoolProvider(@Nullable ThreadPoolProvider<? extends ExecutorService> provider)
+    {
+        this.guildSetupPoolProvider = provider;
     }
 
     @Nullable
@@ -79,15 +89,27 @@ public class ThreadingProviderConfig
         return eventPoolProvider;
     }
 
+    @Nullable
+    public ThreadPoolProvider<? extends ExecutorService> getGuildSetupPoolProvider()
+    {
+        return guildSetupPoolProvider;
+    }
+
     @Nullable
     public ThreadPoolProvider<? extends ScheduledExecutorService> getAudioPoolProvider()
     {
         return audioPoolProvider;
     }
 
+    @Nullable
+    public EventQueuePolicy getEventQueuePolicy()
+    {
+        return eventQueuePolicy;
+    }
+
     @NotNull
     public static ThreadingProviderConfig getDefault()
     {
-        return new ThreadingProviderConfig(null, null, null, null, null, null);
+        return new ThreadingProviderConfig(null, null, null, null, null, null, null);
     }
 }
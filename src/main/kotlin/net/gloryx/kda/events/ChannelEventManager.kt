@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 Florian Spieß
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.gloryx.kda.events
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.trySendBlocking
+import kotlinx.coroutines.launch
+import net.dv8tion.jda.api.events.GenericEvent
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import kotlin.time.Duration
+
+/**
+ * Event manager which routes events into a bounded [Channel] per listener.
+ *
+ * Unlike [CoroutineEventManager], this does not launch a coroutine for each event.
+ * Every listener owns a channel and a fixed amount of worker coroutines which consume it,
+ * events are only offered to listeners whose [CoroutineEventListener.eventType] matches.
+ *
+ * By default, a full channel drops the oldest pending event of that listener, so a slow listener never stalls the others.
+ * With [BufferOverflow.SUSPEND], a full channel blocks the thread which fires the event until the listener catches up.
+ * For events from the gateway, this stops reading from the socket, and listeners which fire events themselves
+ * can wait on each other forever.
+ *
+ * A listener with a concurrency of `1` receives its events in the order they were fired.
+ * With a higher concurrency, the workers take events from the same channel and may finish them in any order.
+ *
+ * ## Example
+ *
+ * ```kotlin
+ * val manager = ChannelEventManager(capacity = 10000, onBufferOverflow = BufferOverflow.DROP_OLDEST, concurrency = 4)
+ * val jda = light(token) {
+ *     setEventManager(manager)
+ * }
+ * ```
+ */
+open class ChannelEventManager(
+    scope: CoroutineScope = getDefaultScope(),
+    /** Timeout [Duration] each event listener is allowed to run. Set to [Duration.INFINITE] for no timeout. Default: [Duration.INFINITE] */
+    timeout: Duration = Duration.INFINITE,
+    /** The amount of pending events per listener. Default: `1024` */
+    val capacity: Int = 1024,
+    /** The strategy used when the channel of a listener is full. Default: [BufferOverflow.DROP_OLDEST] */
+    val onBufferOverflow: BufferOverflow = BufferOverflow.DROP_OLDEST,
+    /** The amount of events each listener handles at the same time, unless the listener overrides it. Values above `1` give up the order of events. Default: `1` */
+    val concurrency: Int = 1
+) : CoroutineEventManager(scope, timeout) {
+    protected val subscriptions = CopyOnWriteArrayList<Subscription>()
+    // Replaced on every change, so a route computed from an outdated subscription list is never used again
+    @Volatile
+    protected var routes = ConcurrentHashMap<Class<*>, List<Subscription>>()
+
+    init {
+        require(capacity > 0) { "Capacity must be positive" }
+        require(concurrency > 0) { "Concurrency must be positive" }
+    }
+
+    override fun handle(event: GenericEvent) {
+        val cache = routes
+        val targets = cache.getOrPut(event.javaClass) {
+            subscriptions.filter { it.type.isInstance(event) }
+        }
+        for (subscription in targets)
+            subscription.offer(event)
+    }
+
+    override fun register(listener: Any) {
+        super.register(listener)
+        subscriptions.add(Subscription(listener))
+        routes = ConcurrentHashMap()
+    }
+
+    override fun unregister(listener: Any) {
+        super.unregister(listener)
+        val removed = subscriptions.filter { it.listener == listener }
+        subscriptions.removeAll(removed)
+        routes = ConcurrentHashMap()
+        removed.forEach(Subscription::close)
+    }
+
+    protected inner class Subscription(val listener: Any) {
+        val type: Class<*> = if (listener is CoroutineEventListener) listener.eventType else GenericEvent::class.java
+        private val channel = Channel<GenericEvent>(capacity, onBufferOverflow)
+
+        init {
+            val workers = (listener as? CoroutineEventListener)?.concurrency?.takeIf { it > 0 } ?: concurrency
+            repeat(workers) {
+                launch {
+                    for (event in channel)
+                        invokeListener(listener, event)
+                }
+            }
+        }
+
+        fun offer(event: GenericEvent) {
+            // Drop strategies never fail, only a suspending channel has to wait for space
+            if (channel.trySend(event).isFailure)
+                channel.trySendBlocking(event)
+        }
+
+        fun close() {
+            channel.cancel()
+        }
+    }
+}
@@ -29,6 +29,21 @@ fun interface CoroutineEventListener {
      */
     val timeout: EventTimeout get() = EventTimeout.Inherit
 
+    /**
+     * The type of events this listener handles.
+     *
+     * This is used by [ChannelEventManager] to route events, other event managers still pass every event to [onEvent].
+     */
+    val eventType: Class<out GenericEvent> get() = GenericEvent::class.java
+
+    /**
+     * The maximum amount of events this listener handles at the same time, or `0` to use the event manager default.
+     *
+     * With more than one, events of this listener are no longer handled in order.
+     * This is only used by [ChannelEventManager].
+     */
+    val concurrency: Int get() = 0
+
     suspend fun onEvent(event: GenericEvent)
 
     /**
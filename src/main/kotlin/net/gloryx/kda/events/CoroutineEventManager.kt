@@ -77,23 +77,40 @@ open class CoroutineEventManager(
 
     override fun handle(event: GenericEvent) {
         launch {
-            for (listener in listeners) try {
-                val actualTimeout = timeout(listener)
-                if (actualTimeout.isPositive() && actualTimeout.isFinite()) {
-                    // Timeout only works when the continuations implement a cancellation handler
-                    val result = withTimeoutOrNull(actualTimeout.inWholeMilliseconds) {
-                        runListener(listener, event)
-                    }
-                    if (result == null) {
-                        log.debug("Event of type ${event.javaClass.simpleName} timed out.")
-                    }
-                } else {
+            for (listener in listeners)
+                invokeListener(listener, event)
+        }
+    }
+
+    /**
+     * Runs a listener which is not registered on this manager, using the same timeout and error handling.
+     *
+     * This is used for handlers of the [ComponentRouter][net.dv8tion.jda.api.interactions.components.ComponentRouter].
+     *
+     * @param[listener] The listener
+     * @param[event] The event to pass to the listener
+     *
+     * @return[Job] The job of the listener
+     */
+    fun dispatch(listener: Any, event: GenericEvent): Job = launch { invokeListener(listener, event) }
+
+    protected suspend fun invokeListener(listener: Any, event: GenericEvent) {
+        try {
+            val actualTimeout = timeout(listener)
+            if (actualTimeout.isPositive() && actualTimeout.isFinite()) {
+                // Timeout only works when the continuations implement a cancellation handler
+                val result = withTimeoutOrNull(actualTimeout.inWholeMilliseconds) {
                     runListener(listener, event)
                 }
+                if (result == null) {
+                    log.debug("Event of type ${event.javaClass.simpleName} timed out.")
+                }
+            } else {
+                runListener(listener, event)
             }
-            catch (ex: Exception) {
-                log.error("Uncaught exception in event listener", ex)
-            }
+        }
+        catch (ex: Exception) {
+            log.error("Uncaught exception in event listener", ex)
         }
     }
 
@@ -110,7 +127,7 @@ open class CoroutineEventManager(
         })
     }
 
-    override fun getRegisteredListeners(): MutableList<Any> = mutableListOf(listeners)
+    override fun getRegisteredListeners(): MutableList<Any> = listeners.toMutableList()
 
     override fun unregister(listener: Any) {
         listeners.remove(listener)
@@ -137,6 +154,9 @@ open class CoroutineEventManager(
             override val timeout: EventTimeout
                 get() = timeout.toTimeout()
 
+            override val eventType: Class<out GenericEvent>
+                get() = T::class.java
+
             override fun cancel() {
                 return unregister(this)
             }
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2020 Florian Spieß
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.gloryx.kda.events
+
+import kotlinx.coroutines.CancellableContinuation
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.withTimeout
+import net.dv8tion.jda.api.JDA
+import net.dv8tion.jda.api.events.GenericEvent
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent
+import net.dv8tion.jda.api.events.interaction.component.GenericComponentInteractionCreateEvent
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent
+import net.dv8tion.jda.api.hooks.EventListener
+import net.dv8tion.jda.api.hooks.IEventManager
+import net.dv8tion.jda.api.hooks.SubscribeEvent
+import net.dv8tion.jda.api.sharding.ShardManager
+import java.lang.ref.WeakReference
+import java.util.*
+import java.util.concurrent.CopyOnWriteArrayList
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+import kotlin.time.Duration
+
+private val registries = WeakHashMap<Any, EventWaiter>()
+
+private fun registry(owner: Any, register: (EventWaiter) -> Unit, ensure: (EventWaiter) -> Unit) = synchronized(registries) {
+    registries[owner]?.also(ensure) ?: EventWaiter().also {
+        registries[owner] = it
+        register(it)
+    }
+}
+
+// Replacing the event manager drops all listeners, so the waiter is registered again if the event manager changed.
+// The listeners are only scanned when the event manager is not the one the waiter was last registered on.
+private fun EventWaiter.ensureRegistered(jda: JDA) {
+    val manager = jda.eventManager
+    if (registeredManagers[jda]?.get() === manager)
+        return
+    if (this !in jda.registeredListeners)
+        jda.addEventListener(this)
+    registeredManagers[jda] = WeakReference(manager)
+}
+
+/**
+ * The [EventWaiter] used by [await][dev.minn.jda.ktx.events.await] and the other await helpers of this JDA instance.
+ *
+ * The waiter is registered as an event listener on first access,
+ * and registered again on access if the [event manager][JDA.setEventManager] was replaced since.
+ * Waiters which are pending while the event manager is replaced only resume once this is accessed again.
+ */
+val JDA.waiters: EventWaiter
+    get() = registry(this, { it.ensureRegistered(this) }) { it.ensureRegistered(this) }
+
+/**
+ * The [EventWaiter] used by [await][dev.minn.jda.ktx.events.await] of this shard manager.
+ *
+ * The waiter is registered as an event listener on first access,
+ * and registered again on access for every shard whose [event manager][JDA.setEventManager] was replaced since.
+ */
+val ShardManager.waiters: EventWaiter
+    get() = registry(this, { waiter ->
+        // Also adds the waiter to shards which are started later
+        addEventListener(waiter)
+        shardCache.forEach { waiter.ensureRegistered(it) }
+    }) { waiter ->
+        shardCache.forEach { waiter.ensureRegistered(it) }
+    }
+
+/**
+ * Key function used by [EventWaiter] to index pending waiters.
+ *
+ * Waiters which are registered with an index are only tested against events which produce the same key,
+ * which makes dispatch a hash lookup instead of a scan over all pending waiters.
+ *
+ * @param[keyOf] The function which extracts the key of an event
+ */
+class WaiterIndex<in T : GenericEvent>(val keyOf: (T) -> Any?) {
+    companion object {
+        /** Index of [MessageReceivedEvent] by channel id */
+        val Channel = WaiterIndex<MessageReceivedEvent> { it.channel.idLong }
+        /** Index of component interactions by component id */
+        val ComponentId = WaiterIndex<GenericComponentInteractionCreateEvent> { it.componentId }
+        /** Index of interactions by user id */
+        val User = WaiterIndex<GenericInteractionCreateEvent> { it.user.idLong }
+    }
+}
+
+/**
+ * Registry of coroutines which wait for a single event.
+ *
+ * Waiters are grouped by event type and [WaiterIndex] key, an event is only tested against the filters of waiters
+ * with a matching key. Waiters without an index are tested against every event of their type.
+ *
+ * Waiters are removed as soon as they are resumed, cancelled or their timeout expires.
+ *
+ * @see [JDA.waiters]
+ * @see [ShardManager.waiters]
+ */
+class EventWaiter : EventListener {
+    private val buckets = CopyOnWriteArrayList<Bucket<*>>()
+    // The event manager of each JDA instance this waiter was last registered on, guarded by the registries lock
+    internal val registeredManagers = WeakHashMap<JDA, WeakReference<IEventManager>>()
+
+    /**
+     * The amount of pending waiters.
+     */
+    val size: Int
+        get() = buckets.sumOf { it.size }
+
+    @SubscribeEvent
+    override fun onEvent(event: GenericEvent) {
+        for (bucket in buckets)
+            bucket.dispatch(event)
+    }
+
+    /**
+     * Suspends until an event of the provided type passes the filter.
+     *
+     * ## Example
+     *
+     * ```kotlin
+     * val pressed = jda.waiters.await(ButtonInteractionEvent::class.java, WaiterIndex.ComponentId, "confirm", 1.minutes) {
+     *     it.user == user
+     * }
+     * ```
+     *
+     * @param[type] The event type
+     * @param[index] The index used to look up this waiter, or null to test every event of this type
+     * @param[key] The key of this waiter in the provided index, ignored without index
+     * @param[timeout] The maximum time to wait, the waiter throws [TimeoutCancellationException][kotlinx.coroutines.TimeoutCancellationException] once it expires
+     * @param[filter] The event filter function
+     *
+     * @return The first event which passed the filter
+     */
+    suspend fun <T : GenericEvent> await(
+        type: Class<T>,
+        index: WaiterIndex<T>? = null,
+        key: Any? = null,
+        timeout: Duration = Duration.INFINITE,
+        filter: (T) -> Boolean = { true }
+    ): T {
+        require(index == null || key != null) { "Key must not be null when using an index" }
+        val bucket = bucket(type, index)
+        val bucketKey = if (index == null) Unit else key!!
+        if (timeout.isPositive() && timeout.isFinite())
+            return withTimeout(timeout) { bucket.await(bucketKey, filter) }
+        return bucket.await(bucketKey, filter)
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <T : GenericEvent> bucket(type: Class<T>, index: WaiterIndex<T>?): Bucket<T> {
+        buckets.find { it.type == type && it.index == index }?.let { return it as Bucket<T> }
+        synchronized(buckets) {
+            buckets.find { it.type == type && it.index == index }?.let { return it as Bucket<T> }
+            return Bucket(type, index).also { buckets.add(it) }
+        }
+    }
+
+    private class Bucket<T : GenericEvent>(val type: Class<T>, val index: WaiterIndex<T>?) {
+        private val waiters = HashMap<Any, MutableList<Waiter<T>>>()
+
+        val size: Int
+            get() = synchronized(this) { waiters.values.sumOf { it.size } }
+
+        suspend fun await(key: Any, filter: (T) -> Boolean) = suspendCancellableCoroutine<T> {
+            val waiter = Waiter(this, key, it, filter)
+            synchronized(this) {
+                waiters.getOrPut(key) { mutableListOf() }.add(waiter)
+            }
+            it.invokeOnCancellation { remove(waiter) }
+        }
+
+        fun remove(waiter: Waiter<T>): Boolean = synchronized(this) {
+            val list = waiters[waiter.key] ?: return false
+            val removed = list.remove(waiter)
+            if (list.isEmpty())
+                waiters.remove(waiter.key)
+            removed
+        }
+
+        fun dispatch(event: GenericEvent) {
+            if (!type.isInstance(event))
+                return
+            val casted = type.cast(event)
+            val key = if (index == null) Unit else index.keyOf(casted) ?: return
+            val candidates = synchronized(this) {
+                waiters[key]?.toList()
+            } ?: return
+            for (waiter in candidates)
+                waiter.offer(casted)
+        }
+    }
+
+    private class Waiter<T : GenericEvent>(
+        val bucket: Bucket<T>,
+        val key: Any,
+        val continuation: CancellableContinuation<T>,
+        val filter: (T) -> Boolean
+    ) {
+        fun offer(event: T) {
+            val matches = try {
+                filter(event)
+            } catch (ex: Throwable) {
+                if (bucket.remove(this))
+                    continuation.resumeWithException(ex)
+                return
+            }
+            // Removal decides which thread resumes the continuation, it can only be resumed once
+            if (matches && bucket.remove(this))
+                continuation.resume(event)
+        }
+    }
+}
@@ -16,7 +16,6 @@
 
 package dev.minn.jda.ktx.events
 
-import kotlinx.coroutines.suspendCancellableCoroutine
 import net.dv8tion.jda.api.JDA
 import net.dv8tion.jda.api.entities.Member
 import net.dv8tion.jda.api.entities.User
@@ -29,6 +28,7 @@ import net.dv8tion.jda.api.events.interaction.component.GenericComponentInteract
 import net.dv8tion.jda.api.events.interaction.component.SelectMenuInteractionEvent
 import net.dv8tion.jda.api.hooks.EventListener
 import net.dv8tion.jda.api.hooks.SubscribeEvent
+import net.dv8tion.jda.api.interactions.components.ComponentRouter
 import net.dv8tion.jda.api.interactions.commands.context.ContextInteraction
 import net.dv8tion.jda.api.interactions.commands.context.UserContextInteraction
 import net.dv8tion.jda.api.sharding.ShardManager
@@ -36,7 +36,7 @@ import net.gloryx.kda.events.CoroutineEventListener
 import net.gloryx.kda.events.CoroutineEventManager
 import net.gloryx.kda.events.EventTimeout
 import net.gloryx.kda.events.toTimeout
-import kotlin.coroutines.resume
+import net.gloryx.kda.events.waiters
 import kotlin.time.Duration
 
 /**
@@ -84,6 +84,9 @@ inline fun <reified T : GenericEvent> ShardManager.listener(timeout: Duration? =
         override val timeout: EventTimeout
             get() = timeout.toTimeout()
 
+        override val eventType: Class<out GenericEvent>
+            get() = T::class.java
+
         override fun cancel() {
             return removeEventListener(this)
         }
@@ -265,6 +268,10 @@ fun ShardManager.onCommandAutocomplete(name: String, option: String? = null, tim
  *
  * Opens an event listener scope for simple hooking. This is a special listener which is used to listen for button presses!
  *
+ * The listener is registered on the [ComponentRouter][net.dv8tion.jda.api.interactions.components.ComponentRouter]
+ * instead of the event manager and runs on the callback pool of the shard.
+ * Use [CoroutineEventListener.cancel] or [JDA.removeEventListener] with the returned listener to remove it.
+ *
  * ## Example
  *
  * ```kotlin
@@ -280,9 +287,40 @@ fun ShardManager.onCommandAutocomplete(name: String, option: String? = null, tim
  *
  * @return[CoroutineEventListener] The created event listener instance (can be used to remove later)
  */
-inline fun <reified T : GenericComponentInteractionCreateEvent> JDA.onComponent(customId: String, timeout: Duration? = null, crossinline consumer: suspend CoroutineEventListener.(T) -> Unit) = listener<T>(timeout=timeout) {
-    if (it.componentId == customId)
-        consumer(it)
+inline fun <reified T : GenericComponentInteractionCreateEvent> JDA.onComponent(customId: String, timeout: Duration? = null, crossinline consumer: suspend CoroutineEventListener.(T) -> Unit): CoroutineEventListener {
+    require(eventManager is CoroutineEventManager) { "Component listeners require the CoroutineEventManager" }
+    return componentListener(customId, timeout, { removeEventListener(it) }, consumer).also { addEventListener(it) }
+}
+
+/**
+ * Creates a [RoutedListener][ComponentRouter.RoutedListener] which dispatches matching interactions
+ * to the [CoroutineEventManager] of the shard that received them.
+ */
+@PublishedApi
+internal inline fun <reified T : GenericComponentInteractionCreateEvent> componentListener(customId: String, timeout: Duration?, crossinline remove: (Any) -> Unit, crossinline consumer: suspend CoroutineEventListener.(T) -> Unit): CoroutineEventListener {
+    // The listener is the handler of its routes, which allows removeEventListener to cancel them
+    return object : CoroutineEventListener, ComponentRouter.RoutedListener {
+        override val timeout: EventTimeout
+            get() = timeout.toTimeout()
+
+        override val eventType: Class<out GenericEvent>
+            get() = T::class.java
+
+        override fun getRoutePrefix() = customId
+
+        override fun cancel() {
+            remove(this)
+        }
+
+        override fun accept(event: GenericComponentInteractionCreateEvent) {
+            (event.jda.eventManager as CoroutineEventManager).dispatch(this, event)
+        }
+
+        override suspend fun onEvent(event: GenericEvent) {
+            if (event is T && event.componentId == customId)
+                consumer(event)
+        }
+    }
 }
 
 /**
@@ -290,6 +328,10 @@ inline fun <reified T : GenericComponentInteractionCreateEvent> JDA.onComponent(
  *
  * Opens an event listener scope for simple hooking. This is a special listener which is used to listen for button presses!
  *
+ * The listener is registered on the [ComponentRouter][net.dv8tion.jda.api.interactions.components.ComponentRouter]
+ * of every shard, including shards which are started later, and runs on the callback pool of the shard.
+ * Use [CoroutineEventListener.cancel] or [ShardManager.removeEventListener] with the returned listener to remove it.
+ *
  * ## Example
  *
  * ```kotlin
@@ -305,9 +347,8 @@ inline fun <reified T : GenericComponentInteractionCreateEvent> JDA.onComponent(
  *
  * @return[CoroutineEventListener] The created event listener instance (can be used to remove later)
  */
-inline fun <reified T : GenericComponentInteractionCreateEvent> ShardManager.onComponent(customId: String, timeout: Duration? = null, crossinline consumer: suspend CoroutineEventListener.(T) -> Unit) = listener<T>(timeout=timeout) {
-    if (it.componentId == customId)
-        consumer(it)
+inline fun <reified T : GenericComponentInteractionCreateEvent> ShardManager.onComponent(customId: String, timeout: Duration? = null, crossinline consumer: suspend CoroutineEventListener.(T) -> Unit): CoroutineEventListener {
+    return componentListener(customId, timeout, { removeEventListener(it) }, consumer).also { addEventListener(it) }
 }
 
 
@@ -429,19 +470,7 @@ fun ShardManager.onSelection(id: String, timeout: Duration? = null, consumer: su
  *
  * @return The filtered event
  */
-suspend inline fun <reified T : GenericEvent> JDA.await(crossinline filter: (T) -> Boolean = { true }) = suspendCancellableCoroutine<T> {
-    val listener = object : EventListener {
-        @SubscribeEvent
-        override fun onEvent(event: GenericEvent) {
-            if (event is T && filter(event)) {
-                removeEventListener(this)
-                it.resume(event)
-            }
-        }
-    }
-    addEventListener(listener)
-    it.invokeOnCancellation { removeEventListener(listener) }
-}
+suspend inline fun <reified T : GenericEvent> JDA.await(crossinline filter: (T) -> Boolean = { true }) = waiters.await(T::class.java) { filter(it) }
 
 /**
  * Requires an EventManager implementation that supports either [EventListener] or [SubscribeEvent].
@@ -468,19 +497,7 @@ suspend inline fun <reified T : GenericEvent> JDA.await(crossinline filter: (T)
  *
  * @return The filtered event
  */
-suspend inline fun <reified T : GenericEvent> ShardManager.await(crossinline filter: (T) -> Boolean = { true }) = suspendCancellableCoroutine<T> {
-    val listener = object : EventListener {
-        @SubscribeEvent
-        override fun onEvent(event: GenericEvent) {
-            if (event is T && filter(event)) {
-                removeEventListener(this)
-                it.resume(event)
-            }
-        }
-    }
-    addEventListener(listener)
-    it.invokeOnCancellation { removeEventListener(listener) }
-}
+suspend inline fun <reified T : GenericEvent> ShardManager.await(crossinline filter: (T) -> Boolean = { true }) = waiters.await(T::class.java) { filter(it) }
 
 /**
  * If this context menu command was used in a [Guild][net.dv8tion.jda.api.entities.Guild],
@@ -16,7 +16,6 @@
 
 package net.gloryx.kda.events
 
-import dev.minn.jda.ktx.events.await
 import net.dv8tion.jda.api.entities.Member
 import net.dv8tion.jda.api.entities.Message
 import net.dv8tion.jda.api.entities.MessageChannel
@@ -55,9 +54,8 @@ import net.dv8tion.jda.api.interactions.components.buttons.Button
 suspend inline fun MessageChannel.awaitMessage(
         author: User? = null, // filter by user
         crossinline filter: (Message) -> Boolean = { true } // filter by filter (lol)
-): Message = jda.await<MessageReceivedEvent> {
-    it.channel == this
-            && (author == null || it.author == author)
+): Message = jda.waiters.await(MessageReceivedEvent::class.java, WaiterIndex.Channel, idLong) {
+    (author == null || it.author == author)
             && filter(it.message)
 }.message
 
@@ -91,9 +89,8 @@ suspend inline fun MessageChannel.awaitButton(
         id: String,
         user: User? = null,
         crossinline filter: (ButtonInteractionEvent) -> Boolean = { true }) =
-        jda.await<ButtonInteractionEvent> {
+        jda.waiters.await(ButtonInteractionEvent::class.java, WaiterIndex.ComponentId, id) {
             it.channel == this
-                    && it.componentId == id
                     && (user == null || it.user == user)
                     && filter(it)
         }
@@ -152,9 +149,8 @@ suspend inline fun MessageChannel.awaitButton(button: Button, user: User? = null
  *
  * @return[ButtonInteractionEvent]
  */
-suspend inline fun User.awaitButton(id: String, crossinline filter: (ButtonInteractionEvent) -> Boolean = { true }) = jda.await<ButtonInteractionEvent> {
+suspend inline fun User.awaitButton(id: String, crossinline filter: (ButtonInteractionEvent) -> Boolean = { true }) = jda.waiters.await(ButtonInteractionEvent::class.java, WaiterIndex.ComponentId, id) {
     it.user == this
-            && it.componentId == id
             && filter(it)
 }
 
@@ -211,9 +207,8 @@ suspend inline fun User.awaitButton(button: Button, crossinline filter: (ButtonI
  *
  * @return[ButtonInteractionEvent]
  */
-suspend inline fun Member.awaitButton(id: String, crossinline filter: (ButtonInteractionEvent) -> Boolean = { true }) = jda.await<ButtonInteractionEvent> {
+suspend inline fun Member.awaitButton(id: String, crossinline filter: (ButtonInteractionEvent) -> Boolean = { true }) = jda.waiters.await(ButtonInteractionEvent::class.java, WaiterIndex.ComponentId, id) {
     it.member == this
-            && it.componentId == id
             && filter(it)
 }
 
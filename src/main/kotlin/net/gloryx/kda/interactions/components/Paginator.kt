@@ -23,17 +23,21 @@ import net.dv8tion.jda.api.entities.MessageChannel
 import net.dv8tion.jda.api.entities.MessageEmbed
 import net.dv8tion.jda.api.events.GenericEvent
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent
+import net.dv8tion.jda.api.events.interaction.component.GenericComponentInteractionCreateEvent
 import net.dv8tion.jda.api.exceptions.ErrorHandler
 import net.dv8tion.jda.api.hooks.EventListener
 import net.dv8tion.jda.api.hooks.SubscribeEvent
 import net.dv8tion.jda.api.interactions.InteractionHook
 import net.dv8tion.jda.api.interactions.callbacks.IReplyCallback
 import net.dv8tion.jda.api.interactions.components.ActionRow
+import net.dv8tion.jda.api.interactions.components.ComponentRouter
 import net.dv8tion.jda.api.interactions.components.buttons.Button
 import net.dv8tion.jda.api.interactions.components.buttons.ButtonInteraction
 import net.dv8tion.jda.api.requests.ErrorResponse
 import java.security.SecureRandom
 import java.util.*
+import java.util.concurrent.TimeUnit
+import java.util.function.Consumer
 import kotlin.time.Duration
 import net.gloryx.kda.*
 
@@ -51,8 +55,18 @@ object PaginatorDefaults {
     var DELETE: Button = Button.danger("delete", Emoji.fromUnicode("\uD83D\uDEAE"))
 }
 
-class Paginator internal constructor(private val nonce: String, private val ttl: Duration): EventListener {
-    private var expiresAt: Long = Math.addExact(System.currentTimeMillis(), ttl.inWholeMilliseconds)
+/**
+ * Message with buttons to switch between pages.
+ *
+ * Paginators sent with [sendPaginator] or [replyPaginator] are handled by the
+ * [ComponentRouter][net.dv8tion.jda.api.interactions.components.ComponentRouter] of the shard,
+ * [JDA.removeEventListener] with the paginator still stops it.
+ * Adding the paginator as an event listener manually is still supported for paginators which are not sent by these functions.
+ */
+class Paginator internal constructor(private val nonce: String, private val ttl: Duration) : EventListener, Consumer<GenericComponentInteractionCreateEvent> {
+    private var route: ComponentRouter.Route? = null
+    // Only used if the paginator was added as an event listener instead
+    private var expiresAt: Long = expiry()
 
     private var index = 0
     private val pageCache = mutableListOf<Message>()
@@ -87,15 +101,37 @@ class Paginator internal constructor(private val nonce: String, private val ttl:
         addPages(*page.map { Message(embed=it) }.toTypedArray())
     }
 
+    internal fun register(jda: JDA) {
+        route?.cancel()
+        // Infinite durations are mapped to routes which never expire
+        val millis = if (ttl.isInfinite()) 0 else ttl.inWholeMilliseconds
+        route = jda.componentRouter.register(nonce, millis, TimeUnit.MILLISECONDS, this)
+    }
+
     @SubscribeEvent
     override fun onEvent(event: GenericEvent) {
+        // Registered paginators are invoked by the component router
+        if (route != null || event !is ButtonInteractionEvent || !event.componentId.startsWith("$nonce:"))
+            return
         if (expiresAt < System.currentTimeMillis())
-            return unregister(event.jda)
-        if (event !is ButtonInteractionEvent) return
-        val buttonId = event.componentId
-        if (!buttonId.startsWith(nonce) || !filter(event)) return
-        expiresAt = Math.addExact(System.currentTimeMillis(), ttl.inWholeMilliseconds)
-        val (_, operation) = buttonId.split(":")
+            return event.jda.removeEventListener(this)
+        onButton(event)
+    }
+
+    override fun accept(event: GenericComponentInteractionCreateEvent) {
+        if (event is ButtonInteractionEvent)
+            onButton(event)
+    }
+
+    private fun expiry() = if (ttl.isInfinite()) Long.MAX_VALUE else System.currentTimeMillis() + ttl.inWholeMilliseconds
+
+    // Routes are invoked on the callback pool, so buttons can be pressed concurrently
+    @Synchronized
+    private fun onButton(event: ButtonInteractionEvent) {
+        if (!filter(event)) return
+        route?.refresh()
+        expiresAt = expiry()
+        val (_, operation) = event.componentId.split(":")
         when (operation) {
             "prev" -> {
                 event.editMessage(prevPage)
@@ -116,6 +152,7 @@ class Paginator internal constructor(private val nonce: String, private val ttl:
     }
 
     private fun unregister(jda: JDA) {
+        route?.cancel()
         jda.removeEventListener(this)
     }
 }
@@ -130,13 +167,13 @@ fun paginator(vararg pages: MessageEmbed, expireAfter: Duration): Paginator
     = paginator(*pages.map { Message(embed=it) }.toTypedArray(), expireAfter=expireAfter)
 
 fun MessageChannel.sendPaginator(paginator: Paginator)
-    = sendMessage(paginator.also { jda.addEventListener(it) }.pages[0]).setActionRows(paginator.controls)
+    = sendMessage(paginator.also { it.register(jda) }.pages[0]).setActionRows(paginator.controls)
 
 fun InteractionHook.sendPaginator(paginator: Paginator)
-    = sendMessage(paginator.also { jda.addEventListener(it) }.pages[0]).addActionRows(paginator.controls)
+    = sendMessage(paginator.also { it.register(jda) }.pages[0]).addActionRows(paginator.controls)
 
 fun IReplyCallback.replyPaginator(paginator: Paginator)
-    = reply(paginator.also { user.jda.addEventListener(it) }.pages[0]).addActionRows(paginator.controls)
+    = reply(paginator.also { it.register(user.jda) }.pages[0]).addActionRows(paginator.controls)
 
 fun MessageChannel.sendPaginator(
     vararg pages: Message,
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.audio.crypto.AudioCipher;
+import net.dv8tion.jda.api.audio.crypto.AudioCipherProvider;
+import net.dv8tion.jda.api.audio.crypto.AudioCiphers;
+import net.dv8tion.jda.internal.utils.Measurement;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the throughput of every available {@link AudioCipherProvider}.
+ * <br>Every iteration seals a packet in place and opens it again, like a packet that is sent and received.
+ * The first iterations of every run are not measured, so the JIT has compiled the cipher.
+ *
+ * <p>Run the main method from the test classpath with {@code [iterations] [payload size]}
+ */
+public class AudioCipherBenchmark
+{
+    private static final int WARMUP = 20000;
+
+    private final AudioCipher cipher;
+    private final byte[] packet;
+    private final byte[] nonce = new byte[AudioCipher.NONCE_LENGTH];
+    private final int payloadSize;
+
+    public AudioCipherBenchmark(AudioCipherProvider provider, int payloadSize)
+    {
+        byte[] key = new byte[AudioCipher.KEY_LENGTH];
+        ThreadLocalRandom.current().nextBytes(key);
+        ThreadLocalRandom.current().nextBytes(nonce);
+        this.cipher = provider.createCipher(key);
+        this.payloadSize = payloadSize;
+        this.packet = new byte[AudioCipher.OVERHEAD_LENGTH + payloadSize];
+        ThreadLocalRandom.current().nextBytes(packet);
+    }
+
+    public Measurement.Sample run(int iterations)
+    {
+        for (int i = 0; i < WARMUP; i++)
+            roundTrip();
+        Measurement measurement = Measurement.start();
+        for (int i = 0; i < iterations; i++)
+            roundTrip();
+        return measurement.stop(iterations);
+    }
+
+    private void roundTrip()
+    {
+        if (cipher.seal(packet, AudioCipher.OVERHEAD_LENGTH, payloadSize, nonce, packet, 0) < 0
+                || cipher.open(packet, 0, packet.length, nonce, packet, AudioCipher.OVERHEAD_LENGTH) < 0)
+            throw new IllegalStateException("Failed to encrypt the packet");
+    }
+
+    public static void main(String[] args)
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        // A 20ms opus frame of music at 128kbps
+        int payloadSize = args.length > 1 ? Integer.parseInt(args[1]) : 320;
+        for (AudioCipherProvider provider : new AudioCipherProvider[] { AudioCiphers.JAVA, AudioCiphers.SODIUM })
+        {
+            if (!provider.isAvailable())
+            {
+                System.out.printf("%s is not available%n", provider.getName());
+                continue;
+            }
+            Measurement.Sample sample = new AudioCipherBenchmark(provider, payloadSize).run(iterations);
+            // Every packet is sealed and opened
+            double megabytes = sample.getOperationsPerSecond() * 2 * payloadSize / 1_000_000;
+            System.out.printf("%s: %s, %.1f MB/s%n", provider.getName(), sample, megabytes);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.audio.crypto.AudioCipher;
+import net.dv8tion.jda.api.audio.crypto.AudioCipherProvider;
+import net.dv8tion.jda.api.audio.crypto.AudioCiphers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class AudioCipherTest
+{
+    // The secretbox test vector of NaCl
+    private static final byte[] KEY = {
+        0x1b, 0x27, 0x55, 0x64, 0x73, (byte) 0xe9, (byte) 0x85, (byte) 0xd4, 0x62, (byte) 0xcd, 0x51, 0x19,
+        0x7a, (byte) 0x9a, 0x46, (byte) 0xc7, 0x60, 0x09, 0x54, (byte) 0x9e, (byte) 0xac, 0x64, 0x74, (byte) 0xf2,
+        0x06, (byte) 0xc4, (byte) 0xee, 0x08, 0x44, (byte) 0xf6, (byte) 0x83, (byte) 0x89
+    };
+    private static final byte[] NONCE = {
+        0x69, 0x69, 0x6e, (byte) 0xe9, 0x55, (byte) 0xb6, 0x2b, 0x73, (byte) 0xcd, 0x62, (byte) 0xbd, (byte) 0xa8,
+        0x75, (byte) 0xfc, 0x73, (byte) 0xd6, (byte) 0x82, 0x19, (byte) 0xe0, 0x03, 0x6b, 0x7a, 0x0b, 0x37
+    };
+    private static final byte[] MESSAGE = {
+        (byte) 0xbe, 0x07, 0x5f, (byte) 0xc5, 0x3c, (byte) 0x81, (byte) 0xf2, (byte) 0xd5, (byte) 0xcf, 0x14, 0x13, 0x16,
+        (byte) 0xeb, (byte) 0xeb, 0x0c, 0x7b, 0x52, 0x28, (byte) 0xc5, 0x2a, 0x4c, 0x62, (byte) 0xcb, (byte) 0xd4,
+        0x4b, 0x66, (byte) 0x84, (byte) 0x9b, 0x64, 0x24, 0x4f, (byte) 0xfc, (byte) 0xe5, (byte) 0xec, (byte) 0xba, (byte) 0xaf,
+        0x33, (byte) 0xbd, 0x75, 0x1a, 0x1a, (byte) 0xc7, 0x28, (byte) 0xd4, 0x5e, 0x6c, 0x61, 0x29,
+        0x6c, (byte) 0xdc, 0x3c, 0x01, 0x23, 0x35, 0x61, (byte) 0xf4, 0x1d, (byte) 0xb6, 0x6c, (byte) 0xce,
+        0x31, 0x4a, (byte) 0xdb, 0x31, 0x0e, 0x3b, (byte) 0xe8, 0x25, 0x0c, 0x46, (byte) 0xf0, 0x6d,
+        (byte) 0xce, (byte) 0xea, 0x3a, 0x7f, (byte) 0xa1, 0x34, (byte) 0x80, 0x57, (byte) 0xe2, (byte) 0xf6, 0x55, 0x6a,
+        (byte) 0xd6, (byte) 0xb1, 0x31, (byte) 0x8a, 0x02, 0x4a, (byte) 0x83, (byte) 0x8f, 0x21, (byte) 0xaf, 0x1f, (byte) 0xde,
+        0x04, (byte) 0x89, 0x77, (byte) 0xeb, 0x48, (byte) 0xf5, (byte) 0x9f, (byte) 0xfd, 0x49, 0x24, (byte) 0xca, 0x1c,
+        0x60, (byte) 0x90, 0x2e, 0x52, (byte) 0xf0, (byte) 0xa0, (byte) 0x89, (byte) 0xbc, 0x76, (byte) 0x89, 0x70, 0x40,
+        (byte) 0xe0, (byte) 0x82, (byte) 0xf9, 0x37, 0x76, 0x38, 0x48, 0x64, 0x5e, 0x07, 0x05
+    };
+    private static final byte[] BOX = {
+        (byte) 0xf3, (byte) 0xff, (byte) 0xc7, 0x70, 0x3f, (byte) 0x94, 0x00, (byte) 0xe5, 0x2a, 0x7d, (byte) 0xfb, 0x4b,
+        0x3d, 0x33, 0x05, (byte) 0xd9, (byte) 0x8e, (byte) 0x99, 0x3b, (byte) 0x9f, 0x48, 0x68, 0x12, 0x73,
+        (byte) 0xc2, (byte) 0x96, 0x50, (byte) 0xba, 0x32, (byte) 0xfc, 0x76, (byte) 0xce, 0x48, 0x33, 0x2e, (byte) 0xa7,
+        0x16, 0x4d, (byte) 0x96, (byte) 0xa4, 0x47, 0x6f, (byte) 0xb8, (byte) 0xc5, 0x31, (byte) 0xa1, 0x18, 0x6a,
+        (byte) 0xc0, (byte) 0xdf, (byte) 0xc1, 0x7c, (byte) 0x98, (byte) 0xdc, (byte) 0xe8, 0x7b, 0x4d, (byte) 0xa7, (byte) 0xf0, 0x11,
+        (byte) 0xec, 0x48, (byte) 0xc9, 0x72, 0x71, (byte) 0xd2, (byte) 0xc2, 0x0f, (byte) 0x9b, (byte) 0x92, (byte) 0x8f, (byte) 0xe2,
+        0x27, 0x0d, 0x6f, (byte) 0xb8, 0x63, (byte) 0xd5, 0x17, 0x38, (byte) 0xb4, (byte) 0x8e, (byte) 0xee, (byte) 0xe3,
+        0x14, (byte) 0xa7, (byte) 0xcc, (byte) 0x8a, (byte) 0xb9, 0x32, 0x16, 0x45, 0x48, (byte) 0xe5, 0x26, (byte) 0xae,
+        (byte) 0x90, 0x22, 0x43, 0x68, 0x51, 0x7a, (byte) 0xcf, (byte) 0xea, (byte) 0xbd, 0x6b, (byte) 0xb3, 0x73,
+        0x2b, (byte) 0xc0, (byte) 0xe9, (byte) 0xda, (byte) 0x99, (byte) 0x83, 0x2b, 0x61, (byte) 0xca, 0x01, (byte) 0xb6, (byte) 0xde,
+        0x56, 0x24, 0x4a, (byte) 0x9e, (byte) 0x88, (byte) 0xd5, (byte) 0xf9, (byte) 0xb3, 0x79, 0x73, (byte) 0xf6, 0x22,
+        (byte) 0xa4, 0x3d, 0x14, (byte) 0xa6, 0x59, (byte) 0x9b, 0x1f, 0x65, 0x4c, (byte) 0xb4, 0x5a, 0x74,
+        (byte) 0xe3, 0x55, (byte) 0xa5
+    };
+
+    @Test
+    public void testJavaVector()
+    {
+        testVector(AudioCiphers.JAVA);
+        testInPlace(AudioCiphers.JAVA);
+    }
+
+    @Test
+    public void testSodiumVector()
+    {
+        Assumptions.assumeTrue(AudioCiphers.SODIUM.isAvailable(), "libsodium is not installed");
+        testVector(AudioCiphers.SODIUM);
+        testInPlace(AudioCiphers.SODIUM);
+
+        // both implementations can open the boxes of the other
+        byte[] key = new byte[AudioCipher.KEY_LENGTH];
+        ThreadLocalRandom.current().nextBytes(key);
+        AudioCipher java = AudioCiphers.JAVA.createCipher(key);
+        AudioCipher sodium = AudioCiphers.SODIUM.createCipher(key);
+        // larger than the initial workspace of the native cipher
+        byte[] message = new byte[4000];
+        ThreadLocalRandom.current().nextBytes(message);
+        byte[] box = new byte[message.length + AudioCipher.OVERHEAD_LENGTH];
+        byte[] opened = new byte[message.length];
+        Assertions.assertEquals(box.length, java.seal(message, 0, message.length, NONCE, box, 0));
+        Assertions.assertEquals(message.length, sodium.open(box, 0, box.length, NONCE, opened, 0));
+        Assertions.assertArrayEquals(message, opened);
+        Assertions.assertEquals(box.length, sodium.seal(message, 0, message.length, NONCE, box, 0));
+        Assertions.assertEquals(message.length, java.open(box, 0, box.length, NONCE, opened, 0));
+        Assertions.assertArrayEquals(message, opened);
+    }
+
+    private static void testVector(AudioCipherProvider provider)
+    {
+        AudioCipher cipher = provider.createCipher(KEY);
+        byte[] box = new byte[BOX.length + 3];
+        Assertions.assertEquals(BOX.length, cipher.seal(MESSAGE, 0, MESSAGE.length, NONCE, box, 3), provider.getName());
+        Assertions.assertArrayEquals(BOX, Arrays.copyOfRange(box, 3, box.length), provider.getName());
+
+        byte[] message = new byte[MESSAGE.length];
+        Assertions.assertEquals(MESSAGE.length, cipher.open(BOX, 0, BOX.length, NONCE, message, 0), provider.getName());
+        Assertions.assertArrayEquals(MESSAGE, message, provider.getName());
+
+        byte[] tampered = BOX.clone();
+        tampered[tampered.length - 1] ^= 1;
+        Assertions.assertEquals(-1, cipher.open(tampered, 0, tampered.length, NONCE, message, 0), provider.getName());
+        Assertions.assertEquals(-1, cipher.open(BOX, 0, AudioCipher.OVERHEAD_LENGTH - 1, NONCE, message, 0), provider.getName());
+        Assertions.assertEquals(-1, cipher.seal(MESSAGE, 0, MESSAGE.length, NONCE, new byte[MESSAGE.length], 0), provider.getName());
+    }
+
+    private static void testInPlace(AudioCipherProvider provider)
+    {
+        AudioCipher cipher = provider.createCipher(KEY);
+        // the layout of an audio packet, the payload is decrypted directly behind the header
+        byte[] packet = new byte[12 + BOX.length];
+        System.arraycopy(MESSAGE, 0, packet, 12 + AudioCipher.OVERHEAD_LENGTH, MESSAGE.length);
+        Assertions.assertEquals(BOX.length, cipher.seal(packet, 12 + AudioCipher.OVERHEAD_LENGTH, MESSAGE.length, NONCE, packet, 12));
+        Assertions.assertArrayEquals(BOX, Arrays.copyOfRange(packet, 12, packet.length), provider.getName());
+        Assertions.assertEquals(MESSAGE.length, cipher.open(packet, 12, BOX.length, NONCE, packet, 12), provider.getName());
+        Assertions.assertArrayEquals(MESSAGE, Arrays.copyOfRange(packet, 12, 12 + MESSAGE.length), provider.getName());
+    }
+}
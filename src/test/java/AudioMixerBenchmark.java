@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.audio.OpusPacket;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.internal.audio.AudioMixer;
+import net.dv8tion.jda.internal.audio.AudioRingBuffer;
+import net.dv8tion.jda.internal.entities.UserImpl;
+import net.dv8tion.jda.internal.utils.Measurement;
+
+import java.nio.ShortBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the time and allocations of the {@link AudioMixer} for a growing amount of speakers.
+ * <br>Every iteration publishes one frame for each speaker and mixes them, only the mix is timed.
+ * The allocations include the published frames. The first iterations of every run are not measured,
+ * so the JIT has compiled the mixer.
+ *
+ * <p>Run the main method from the test classpath with {@code [iterations] [speakers...]}
+ */
+public class AudioMixerBenchmark
+{
+    private static final int[] DEFAULT_SPEAKERS = { 2, 5, 10, 25, 50 };
+    private static final int WARMUP = 10000;
+
+    private final Map<User, AudioRingBuffer> streams = new LinkedHashMap<>();
+    private final short[][] frames;
+    private final int[] timestamps;
+    private final AudioMixer mixer = new AudioMixer();
+
+    public AudioMixerBenchmark(int speakers)
+    {
+        Random random = new Random(speakers);
+        this.frames = new short[speakers][AudioRingBuffer.FRAME_LENGTH];
+        this.timestamps = new int[speakers];
+        for (int i = 0; i < speakers; i++)
+        {
+            streams.put(new UserImpl(i + 1, null), new AudioRingBuffer());
+            for (int j = 0; j < AudioRingBuffer.FRAME_LENGTH; j++)
+                frames[i][j] = (short) random.nextInt();
+            timestamps[i] = random.nextInt();
+        }
+    }
+
+    public Measurement.Sample run(int iterations)
+    {
+        for (int i = 0; i < WARMUP; i++)
+            tick();
+        long nanos = 0;
+        Measurement measurement = Measurement.start();
+        for (int i = 0; i < iterations; i++)
+            nanos += tick();
+        return measurement.stop(iterations, nanos);
+    }
+
+    private long tick()
+    {
+        int speaker = 0;
+        for (AudioRingBuffer ring : streams.values())
+        {
+            ShortBuffer slot = ring.claim();
+            if (slot != null)
+            {
+                slot.put(frames[speaker]);
+                ring.publish(AudioRingBuffer.FRAME_LENGTH, timestamps[speaker], 0);
+            }
+            timestamps[speaker++] += OpusPacket.OPUS_FRAME_SIZE;
+        }
+        long start = System.nanoTime();
+        mixer.mix(streams, 0, true);
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args)
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int[] speakers = DEFAULT_SPEAKERS;
+        if (args.length > 1)
+        {
+            speakers = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++)
+                speakers[i - 1] = Integer.parseInt(args[i]);
+        }
+        for (int count : speakers)
+            System.out.printf("%d speakers: %s%n", count, new AudioMixerBenchmark(count).run(iterations));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.audio.CombinedAudio;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.internal.audio.AudioMixer;
+import net.dv8tion.jda.internal.audio.AudioRingBuffer;
+import net.dv8tion.jda.internal.entities.UserImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ShortBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class AudioMixerTest
+{
+    @Test
+    public void testClamp()
+    {
+        User first = new UserImpl(1, null), second = new UserImpl(2, null);
+        AudioRingBuffer loud = new AudioRingBuffer(), quiet = new AudioRingBuffer();
+        Map<User, AudioRingBuffer> streams = new LinkedHashMap<>();
+        streams.put(first, loud);
+        streams.put(second, quiet);
+        AudioMixer mixer = new AudioMixer();
+
+        short[] values = { -20000, 30000, -30000 };
+        for (int i = 0; i < values.length; i++)
+        {
+            write(loud, i == 2 ? values[i] : 30000, 1000 + i * 960);
+            write(quiet, values[i], 5000 + i * 960);
+        }
+        // aligning delays both streams by one frame
+        Assertions.assertTrue(mixer.mix(streams, 0, true).getUsers().isEmpty());
+
+        CombinedAudio audio = mixer.mix(streams, 0, true);
+        Assertions.assertEquals(2, audio.getUsers().size());
+        Assertions.assertArrayEquals(new byte[] { 0x27, 0x10 }, sample(audio));
+        // the reused audio stays the same instance
+        Assertions.assertSame(audio, mixer.mix(streams, 0, true));
+        Assertions.assertArrayEquals(new byte[] { 0x7F, (byte) 0xFF }, sample(audio));
+        audio = mixer.mix(streams, 0, false);
+        Assertions.assertArrayEquals(new byte[] { (byte) 0x80, 0 }, sample(audio));
+    }
+
+    @Test
+    public void testAlignTimestamps()
+    {
+        User user = new UserImpl(1, null);
+        AudioRingBuffer ring = new AudioRingBuffer();
+        Map<User, AudioRingBuffer> streams = Collections.singletonMap(user, ring);
+        AudioMixer mixer = new AudioMixer();
+
+        write(ring, (short) 1, 0);
+        Assertions.assertTrue(mixer.mix(streams, 0, true).getUsers().isEmpty());
+        Assertions.assertEquals(1, mixer.mix(streams, 0, true).getUsers().size());
+        // the frame of the next tick is late and arrives together with the one after it
+        Assertions.assertTrue(mixer.mix(streams, 0, true).getUsers().isEmpty());
+        write(ring, (short) 2, 960);
+        write(ring, (short) 3, 1920);
+        // its tick has passed, the stream stays on its clock
+        Assertions.assertArrayEquals(new byte[] { 0, 3 }, sample(mixer.mix(streams, 0, true)));
+        Assertions.assertEquals(1, ring.getLateCount());
+
+        // a missing frame leaves a gap instead of shifting the stream
+        write(ring, (short) 5, 3840);
+        Assertions.assertTrue(mixer.mix(streams, 0, true).getUsers().isEmpty());
+        Assertions.assertArrayEquals(new byte[] { 0, 5 }, sample(mixer.mix(streams, 0, true)));
+    }
+
+    private static byte[] sample(CombinedAudio audio)
+    {
+        byte[] data = audio.getAudioData(1.0);
+        return new byte[] { data[0], data[1] };
+    }
+
+    private static void write(AudioRingBuffer ring, short value, int timestamp)
+    {
+        ShortBuffer slot = ring.claim();
+        while (slot.hasRemaining())
+            slot.put(value);
+        ring.publish(AudioRingBuffer.FRAME_LENGTH, timestamp, 100);
+    }
+}
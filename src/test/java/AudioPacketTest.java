@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.iwebpp.crypto.TweetNaclFast;
+import net.dv8tion.jda.api.audio.crypto.AudioCipher;
+import net.dv8tion.jda.api.audio.crypto.AudioCiphers;
+import net.dv8tion.jda.internal.audio.AudioEncryption;
+import net.dv8tion.jda.internal.audio.AudioPacket;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class AudioPacketTest
+{
+    private static final int HEADER = AudioPacket.RTP_HEADER_BYTE_LENGTH;
+    private static final int OVERHEAD = TweetNaclFast.SecretBox.overheadLength;
+
+    private final byte[] key = TweetNaclFast.randombytes(TweetNaclFast.SecretBox.keyLength);
+
+    @Test
+    public void testInPlaceBox()
+    {
+        TweetNaclFast.SecretBox boxer = new TweetNaclFast.SecretBox(key);
+        byte[] nonce = TweetNaclFast.randombytes(TweetNaclFast.SecretBox.nonceLength);
+        for (int length : new int[] { 0, 1, 31, 32, 33, 64, 100, 1000 })
+        {
+            byte[] message = TweetNaclFast.randombytes(length);
+            byte[] expected = boxer.box(message, nonce);
+
+            byte[] out = new byte[length + OVERHEAD + 5];
+            Assertions.assertEquals(length + OVERHEAD, boxer.box(message, 0, length, nonce, out, 5));
+            Assertions.assertArrayEquals(expected, Arrays.copyOfRange(out, 5, 5 + length + OVERHEAD));
+
+            // encrypt and decrypt in place
+            byte[] inPlace = new byte[length + OVERHEAD];
+            System.arraycopy(message, 0, inPlace, OVERHEAD, length);
+            Assertions.assertEquals(length + OVERHEAD, boxer.box(inPlace, OVERHEAD, length, nonce, inPlace, 0));
+            Assertions.assertArrayEquals(expected, inPlace);
+            Assertions.assertEquals(length, boxer.open(inPlace, 0, inPlace.length, nonce, inPlace, OVERHEAD));
+            Assertions.assertArrayEquals(message, Arrays.copyOfRange(inPlace, OVERHEAD, inPlace.length));
+        }
+
+        byte[] box = boxer.box(new byte[10], nonce);
+        box[box.length - 1] ^= 1;
+        Assertions.assertEquals(-1, boxer.open(box, 0, box.length, nonce, new byte[10], 0));
+    }
+
+    @Test
+    public void testEncryptedPacket()
+    {
+        TweetNaclFast.SecretBox boxer = new TweetNaclFast.SecretBox(key);
+        AudioCipher cipher = AudioCiphers.JAVA.createCipher(key);
+        ByteBuffer audio = ByteBuffer.wrap(TweetNaclFast.randombytes(120));
+        byte[] nonce = new byte[TweetNaclFast.SecretBox.nonceLength];
+
+        // the header is the nonce
+        ByteBuffer packet = AudioPacket.writeEncryptedPacket(cipher, null, (char) 5, 960, 42, audio, nonce, 0);
+        byte[] data = Arrays.copyOf(packet.array(), packet.limit());
+        Assertions.assertEquals(HEADER + OVERHEAD + 120, data.length);
+        Assertions.assertEquals(5, ByteBuffer.wrap(data).getChar(AudioPacket.SEQ_INDEX));
+        Assertions.assertEquals(42, ByteBuffer.wrap(data).getInt(AudioPacket.SSRC_INDEX));
+        byte[] headerNonce = Arrays.copyOf(data, TweetNaclFast.SecretBox.nonceLength);
+        Arrays.fill(headerNonce, HEADER, headerNonce.length, (byte) 0);
+        Assertions.assertArrayEquals(audio.array(), boxer.open(Arrays.copyOfRange(data, HEADER, data.length), headerNonce));
+
+        // the nonce is appended
+        ThreadLocalRandom.current().nextBytes(nonce);
+        packet = AudioPacket.writeEncryptedPacket(cipher, packet, (char) 6, 1920, 42, audio, nonce, nonce.length);
+        data = Arrays.copyOf(packet.array(), packet.limit());
+        Assertions.assertArrayEquals(nonce, Arrays.copyOfRange(data, data.length - nonce.length, data.length));
+        Assertions.assertArrayEquals(audio.array(), boxer.open(Arrays.copyOfRange(data, HEADER, data.length - nonce.length), nonce));
+        Assertions.assertEquals(0, audio.position());
+    }
+
+    @Test
+    public void testDecryptInPlace()
+    {
+        AudioCipher sender = AudioCiphers.JAVA.createCipher(key);
+        AudioCipher receiver = AudioCiphers.JAVA.createCipher(key);
+        ByteBuffer audio = ByteBuffer.wrap(TweetNaclFast.randombytes(120));
+        byte[] nonce = new byte[TweetNaclFast.SecretBox.nonceLength];
+        byte[] receiveNonce = new byte[TweetNaclFast.SecretBox.nonceLength];
+        AudioEncryption[] modes = { AudioEncryption.XSALSA20_POLY1305, AudioEncryption.XSALSA20_POLY1305_LITE, AudioEncryption.XSALSA20_POLY1305_SUFFIX };
+        int[] nonceLengths = { 0, 4, nonce.length };
+        for (int i = 0; i < modes.length; i++)
+        {
+            ThreadLocalRandom.current().nextBytes(nonce);
+            if (nonceLengths[i] == 4)
+                Arrays.fill(nonce, 4, nonce.length, (byte) 0);
+            ByteBuffer packet = AudioPacket.writeEncryptedPacket(sender, null, (char) i, i * 960, 42, audio, nonce, nonceLengths[i]);
+            byte[] data = Arrays.copyOf(packet.array(), 1920);
+
+            int length = AudioPacket.decryptAudioPacket(modes[i], receiver, data, packet.limit(), receiveNonce);
+            Assertions.assertEquals(HEADER + 120, length, modes[i].name());
+            Assertions.assertEquals(HEADER, AudioPacket.getPayloadOffset(data, length));
+            Assertions.assertArrayEquals(audio.array(), Arrays.copyOfRange(data, HEADER, length));
+
+            // tampered packets are rejected
+            packet = AudioPacket.writeEncryptedPacket(sender, packet, (char) i, i * 960, 42, audio, nonce, nonceLengths[i]);
+            data = Arrays.copyOf(packet.array(), packet.limit());
+            data[HEADER + OVERHEAD] ^= 1;
+            Assertions.assertEquals(-1, AudioPacket.decryptAudioPacket(modes[i], receiver, data, data.length, receiveNonce));
+        }
+    }
+
+    @Test
+    public void testNoAllocations()
+    {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        AudioCipher cipher = AudioCiphers.JAVA.createCipher(key);
+        ByteBuffer audio = ByteBuffer.wrap(TweetNaclFast.randombytes(160));
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        byte[] nonce = new byte[TweetNaclFast.SecretBox.nonceLength];
+
+        AudioCipher receiver = AudioCiphers.JAVA.createCipher(key);
+        byte[] received = new byte[1920];
+        byte[] receiveNonce = new byte[TweetNaclFast.SecretBox.nonceLength];
+
+        int frames = 20000;
+        for (int i = 0; i < frames; i++)
+            receiveFrame(receiver, sendFrame(cipher, buffer, audio, nonce, i), received, receiveNonce);
+
+        long allocated = bean.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < frames; i++)
+        {
+            buffer = sendFrame(cipher, buffer, audio, nonce, i);
+            receiveFrame(receiver, buffer, received, receiveNonce);
+        }
+        allocated = bean.getThreadAllocatedBytes(thread) - allocated;
+
+        Assertions.assertEquals(0, allocated / frames, "Allocated " + allocated + " bytes for " + frames + " frames");
+    }
+
+    private static void receiveFrame(AudioCipher cipher, ByteBuffer packet, byte[] received, byte[] nonce)
+    {
+        System.arraycopy(packet.array(), 0, received, 0, packet.limit());
+        AudioEncryption mode = AudioEncryption.XSALSA20_POLY1305;
+        if (packet.limit() == HEADER + OVERHEAD + 160 + 4)
+            mode = AudioEncryption.XSALSA20_POLY1305_LITE;
+        else if (packet.limit() > HEADER + OVERHEAD + 160)
+            mode = AudioEncryption.XSALSA20_POLY1305_SUFFIX;
+        if (AudioPacket.decryptAudioPacket(mode, cipher, received, packet.limit(), nonce) < 0)
+            throw new AssertionError("Failed to decrypt " + mode);
+    }
+
+    private static ByteBuffer sendFrame(AudioCipher cipher, ByteBuffer buffer, ByteBuffer audio, byte[] nonce, int frame)
+    {
+        switch (frame % 3)
+        {
+            case 0:
+                return AudioPacket.writeEncryptedPacket(cipher, buffer, (char) frame, frame * 960, 1, audio, nonce, 0);
+            case 1:
+                Arrays.fill(nonce, (byte) 0);
+                nonce[0] = (byte) frame;
+                return AudioPacket.writeEncryptedPacket(cipher, buffer, (char) frame, frame * 960, 1, audio, nonce, 4);
+            default:
+                ThreadLocalRandom.current().nextBytes(nonce);
+                return AudioPacket.writeEncryptedPacket(cipher, buffer, (char) frame, frame * 960, 1, audio, nonce, nonce.length);
+        }
+    }
+}
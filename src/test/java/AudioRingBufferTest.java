@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.internal.audio.AudioRingBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ShortBuffer;
+
+public class AudioRingBufferTest
+{
+    @Test
+    public void testFramesInOrder()
+    {
+        AudioRingBuffer ring = new AudioRingBuffer(4);
+        for (int i = 0; i < 4; i++)
+            write(ring, (short) i, i * 960, 100 + i);
+        // the reader holds no slot, but the ring is full
+        Assertions.assertNull(ring.claim());
+        Assertions.assertEquals(1, ring.getDroppedCount());
+
+        short[] frame = ring.poll(0);
+        Assertions.assertEquals(0, frame[0]);
+        Assertions.assertEquals(AudioRingBuffer.FRAME_LENGTH, ring.length());
+        // the held frame is not released by polling again
+        Assertions.assertSame(frame, ring.poll(0));
+        ring.release();
+
+        Assertions.assertNotNull(ring.claim());
+        write(ring, (short) 4, 4 * 960, 104);
+        Assertions.assertEquals(4, ring.size());
+        Assertions.assertEquals(960, ring.poll(0) == null ? -1 : ring.timestamp());
+    }
+
+    @Test
+    public void testSkipOldFrames()
+    {
+        AudioRingBuffer ring = new AudioRingBuffer(8);
+        for (int i = 0; i < 5; i++)
+            write(ring, (short) i, i * 960, 100 + i * 20);
+
+        short[] frame = ring.poll(150);
+        Assertions.assertEquals(3, frame[0]);
+        Assertions.assertEquals(2, ring.size());
+        ring.release();
+        Assertions.assertNull(ring.poll(200));
+        Assertions.assertEquals(0, ring.size());
+    }
+
+    private static void write(AudioRingBuffer ring, short value, int timestamp, long time)
+    {
+        ShortBuffer slot = ring.claim();
+        Assertions.assertNotNull(slot);
+        while (slot.hasRemaining())
+            slot.put(value);
+        ring.publish(AudioRingBuffer.FRAME_LENGTH, timestamp, time);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.TLongObjectMap;
+import net.dv8tion.jda.api.entities.GuildChannel;
+import net.dv8tion.jda.api.entities.NewsChannel;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.VoiceChannel;
+import net.dv8tion.jda.internal.utils.UnlockHook;
+import net.dv8tion.jda.internal.utils.cache.ChannelCacheViewImpl;
+import net.dv8tion.jda.internal.utils.cache.SnowflakeCacheViewImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+public class ChannelCacheViewTest
+{
+    private final ChannelCacheViewImpl index = new ChannelCacheViewImpl();
+    private final SnowflakeCacheViewImpl<TextChannel> textView = index.createView(TextChannel.class);
+    private final SnowflakeCacheViewImpl<NewsChannel> newsView = index.createSortedView(NewsChannel.class);
+    private final SnowflakeCacheViewImpl<VoiceChannel> voiceView = index.createView(VoiceChannel.class);
+
+    @Test
+    public void testPutAndRemove()
+    {
+        TextChannel text = channel(TextChannel.class, 1);
+        VoiceChannel voice = channel(VoiceChannel.class, 2);
+        write(textView, channels -> channels.put(1, text));
+        write(voiceView, channels -> Assertions.assertNull(channels.putIfAbsent(2, voice)));
+        Assertions.assertSame(text, index.getElementById(1));
+        Assertions.assertSame(voice, index.getElementById(2));
+        Assertions.assertSame(voice, voiceView.getElementById(2));
+        Assertions.assertNull(voiceView.getElementById(1));
+        Assertions.assertEquals(2, index.size());
+        Assertions.assertEquals(1, textView.size());
+
+        // An existing channel is not replaced
+        write(voiceView, channels -> Assertions.assertSame(voice, channels.putIfAbsent(2, channel(VoiceChannel.class, 2))));
+        Assertions.assertSame(voice, index.getElementById(2));
+
+        Assertions.assertSame(text, textView.remove(1));
+        // Only channels of the type of the view are removed
+        Assertions.assertNull(textView.remove(2));
+        Assertions.assertNull(index.getElementById(1));
+        Assertions.assertSame(voice, index.getElementById(2));
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertTrue(textView.isEmpty());
+    }
+
+    @Test
+    public void testConvertTextToNews()
+    {
+        // The new channel is added before the old one is removed
+        TextChannel text = channel(TextChannel.class, 1);
+        NewsChannel news = channel(NewsChannel.class, 1);
+        write(textView, channels -> channels.put(1, text));
+        Assertions.assertEquals(1, textView.asList().size());
+        write(newsView, channels -> channels.put(1, news));
+        write(textView, channels -> Assertions.assertNull(channels.remove(1)));
+        Assertions.assertSame(news, index.getElementById(1));
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertTrue(textView.isEmpty());
+        // The cached list of the replaced type is dropped as well
+        Assertions.assertTrue(textView.asList().isEmpty());
+        Assertions.assertSame(news, newsView.asList().get(0));
+
+        // The old channel is removed before the new one is added
+        TextChannel converted = channel(TextChannel.class, 1);
+        write(newsView, channels -> channels.remove(1));
+        write(textView, channels -> channels.put(1, converted));
+        Assertions.assertSame(converted, index.getElementById(1));
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertEquals(1, textView.size());
+        Assertions.assertTrue(newsView.isEmpty());
+    }
+
+    @Test
+    public void testIteratorRemove()
+    {
+        VoiceChannel voice = channel(VoiceChannel.class, 5);
+        write(voiceView, channels -> channels.put(5, voice));
+        write(textView, channels -> {
+            for (long id = 1; id <= 4; id++)
+                channels.put(id, channel(TextChannel.class, id));
+
+            TLongObjectIterator<TextChannel> entries = channels.iterator();
+            while (entries.hasNext())
+            {
+                entries.advance();
+                if (entries.key() == 1)
+                    entries.remove();
+            }
+            Iterator<TextChannel> values = channels.valueCollection().iterator();
+            while (values.hasNext())
+            {
+                long id = values.next().getIdLong();
+                // The voice channel is not part of the view
+                Assertions.assertTrue(id != 5);
+                if (id == 2)
+                    values.remove();
+            }
+        });
+
+        Assertions.assertNull(index.getElementById(1));
+        Assertions.assertNull(index.getElementById(2));
+        Assertions.assertNotNull(index.getElementById(3));
+        Assertions.assertNotNull(index.getElementById(4));
+        Assertions.assertSame(voice, index.getElementById(5));
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertEquals(2, textView.size());
+    }
+
+    @Test
+    public void testRetainEntries()
+    {
+        NewsChannel news = channel(NewsChannel.class, 5);
+        write(newsView, channels -> channels.put(5, news));
+        write(textView, channels -> {
+            for (long id = 1; id <= 4; id++)
+                channels.put(id, channel(TextChannel.class, id));
+            Assertions.assertTrue(channels.retainEntries((id, channel) -> id % 2 == 0));
+        });
+        Assertions.assertNull(index.getElementById(1));
+        Assertions.assertNotNull(index.getElementById(2));
+        Assertions.assertNull(index.getElementById(3));
+        Assertions.assertNotNull(index.getElementById(4));
+        Assertions.assertSame(news, index.getElementById(5));
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertEquals(2, textView.size());
+        Assertions.assertEquals(1, newsView.size());
+    }
+
+    @Test
+    public void testClear()
+    {
+        TextChannel text = channel(TextChannel.class, 1);
+        NewsChannel news = channel(NewsChannel.class, 2);
+        VoiceChannel voice = channel(VoiceChannel.class, 3);
+        write(textView, channels -> channels.put(1, text));
+        write(newsView, channels -> channels.put(2, news));
+        write(voiceView, channels -> channels.put(3, voice));
+
+        textView.clear();
+        Assertions.assertTrue(textView.isEmpty());
+        Assertions.assertNull(index.getElementById(1));
+        Assertions.assertSame(news, index.getElementById(2));
+        Assertions.assertSame(voice, index.getElementById(3));
+        Assertions.assertEquals(2, index.size());
+
+        // A channel which was converted to another type already stays indexed
+        TextChannel stale = channel(TextChannel.class, 2);
+        write(textView, channels -> channels.put(2, stale));
+        write(newsView, channels -> channels.put(2, news));
+        textView.clear();
+        Assertions.assertSame(news, index.getElementById(2));
+        Assertions.assertEquals(2, index.size());
+        Assertions.assertEquals(1, newsView.size());
+
+        index.clear();
+        Assertions.assertEquals(0, index.size());
+        Assertions.assertTrue(newsView.isEmpty());
+        Assertions.assertTrue(voiceView.isEmpty());
+    }
+
+    @Test
+    public void testWriteLock()
+    {
+        // The views share the lock of the index, which is required to modify them
+        Assertions.assertThrows(IllegalStateException.class, textView::getMap);
+        try (UnlockHook hook = voiceView.writeLock())
+        {
+            textView.getMap().put(1, channel(TextChannel.class, 1));
+        }
+        Assertions.assertEquals(1, textView.size());
+        Assertions.assertThrows(UnsupportedOperationException.class, index::getMap);
+    }
+
+    private static <T extends GuildChannel> void write(SnowflakeCacheViewImpl<T> view, Consumer<TLongObjectMap<T>> action)
+    {
+        try (UnlockHook hook = view.writeLock())
+        {
+            action.accept(view.getMap());
+        }
+    }
+
+    private static <T extends GuildChannel> T channel(Class<T> type, long id)
+    {
+        T channel = Mockito.mock(type);
+        Mockito.when(channel.getIdLong()).thenReturn(id);
+        Mockito.when(channel.getName()).thenReturn("channel-" + id);
+        return channel;
+    }
+}
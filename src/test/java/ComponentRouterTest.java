@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.GenericComponentInteractionCreateEvent;
+import net.dv8tion.jda.api.interactions.components.ComponentRouter;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.interactions.component.ComponentRouterImpl;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.ThreadingConfig;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class ComponentRouterTest
+{
+    @Test
+    public void testPrefixMatching()
+    {
+        ComponentRouterImpl router = new ComponentRouterImpl();
+        List<String> calls = new ArrayList<>();
+        router.register("abc", 0, TimeUnit.SECONDS, (e) -> calls.add("abc"));
+        router.register("abc:next", 0, TimeUnit.SECONDS, (e) -> calls.add("abc:next"));
+
+        Assertions.assertTrue(router.handle(event("abc:next")));
+        Assertions.assertEquals(2, calls.size());
+        Assertions.assertEquals("abc:next", calls.get(0)); // longest prefix first
+        calls.clear();
+
+        Assertions.assertTrue(router.handle(event("abc")));
+        Assertions.assertEquals(1, calls.size());
+        calls.clear();
+
+        // prefixes only match on ':' boundaries
+        Assertions.assertFalse(router.handle(event("abcd")));
+        Assertions.assertFalse(router.handle(event("ab")));
+        Assertions.assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    public void testCancel()
+    {
+        ComponentRouterImpl router = new ComponentRouterImpl();
+        ComponentRouter.Route route = router.register("abc", 1, TimeUnit.MINUTES, (e) -> Assertions.fail("Cancelled route was invoked"));
+        Assertions.assertEquals(1, router.size());
+        route.cancel();
+        Assertions.assertFalse(route.isActive());
+        Assertions.assertEquals(0, router.size());
+        Assertions.assertFalse(router.handle(event("abc:delete")));
+    }
+
+    @Test
+    public void testExecutor()
+    {
+        List<Runnable> tasks = new ArrayList<>();
+        ComponentRouterImpl router = new ComponentRouterImpl(tasks::add);
+        List<String> calls = new ArrayList<>();
+        router.register("abc", 0, TimeUnit.SECONDS, (e) -> calls.add(e.getComponentId()));
+
+        // The lookup happens on the calling thread, the handlers are run by the executor
+        Assertions.assertTrue(router.handle(event("abc:next")));
+        Assertions.assertFalse(router.handle(event("def")));
+        Assertions.assertEquals(1, tasks.size());
+        Assertions.assertTrue(calls.isEmpty());
+        tasks.get(0).run();
+        Assertions.assertEquals("abc:next", calls.get(0));
+    }
+
+    @Test
+    public void testUnregister()
+    {
+        ComponentRouterImpl router = new ComponentRouterImpl();
+        Consumer<GenericComponentInteractionCreateEvent> handler = (e) -> Assertions.fail("Unregistered route was invoked");
+        ComponentRouter.Route first = router.register("abc", 0, TimeUnit.SECONDS, handler);
+        ComponentRouter.Route second = router.register("def", 1, TimeUnit.MINUTES, handler);
+        ComponentRouter.Route other = router.register("abc", 0, TimeUnit.SECONDS, (e) -> {});
+
+        Assertions.assertTrue(router.unregister(handler));
+        Assertions.assertFalse(router.unregister(handler));
+        Assertions.assertFalse(first.isActive());
+        Assertions.assertFalse(second.isActive());
+        Assertions.assertTrue(other.isActive());
+        Assertions.assertEquals(1, router.size());
+        Assertions.assertTrue(router.handle(event("abc")));
+        Assertions.assertFalse(router.handle(event("def")));
+    }
+
+    @Test
+    public void testRemoveEventListener()
+    {
+        JDAImpl api = new JDAImpl(new AuthorizationConfig("token"), null, new ThreadingConfig(), null);
+        Consumer<GenericComponentInteractionCreateEvent> handler = (e) -> {};
+        ComponentRouter.Route route = api.getComponentRouter().register("abc", 0, TimeUnit.SECONDS, handler);
+        // Routes keep the contract of event listeners which were registered for the same purpose
+        api.removeEventListener(handler);
+        Assertions.assertFalse(route.isActive());
+        Assertions.assertEquals(0, api.getComponentRouter().size());
+    }
+
+    @Test
+    public void testRoutedListener()
+    {
+        JDAImpl api = new JDAImpl(new AuthorizationConfig("token"), null, new ThreadingConfig(), null);
+        ComponentRouter.RoutedListener listener = new ComponentRouter.RoutedListener()
+        {
+            @NotNull
+            @Override
+            public String getRoutePrefix()
+            {
+                return "abc";
+            }
+
+            @Override
+            public void accept(GenericComponentInteractionCreateEvent event) {}
+        };
+        // Routed listeners are added to the router instead of the event manager
+        api.addEventListener(listener);
+        Assertions.assertEquals(1, api.getComponentRouter().size());
+        Assertions.assertFalse(api.getRegisteredListeners().contains(listener));
+
+        api.removeEventListener(listener);
+        Assertions.assertEquals(0, api.getComponentRouter().size());
+        Assertions.assertFalse(api.getComponentRouter().unregister(listener));
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException
+    {
+        // mocks are created upfront, the first mock takes a while
+        GenericComponentInteractionCreateEvent abc = event("abc"), def = event("def");
+        ComponentRouterImpl router = new ComponentRouterImpl();
+        ComponentRouter.Route expiring = router.register("abc", 20, TimeUnit.MILLISECONDS, (e) -> Assertions.fail("Expired route was invoked"));
+        ComponentRouter.Route refreshed = router.register("def", 50, TimeUnit.MILLISECONDS, (e) -> {});
+        Thread.sleep(30);
+        refreshed.refresh();
+        Thread.sleep(30);
+        Assertions.assertFalse(expiring.isActive());
+        Assertions.assertTrue(refreshed.isActive());
+        Assertions.assertFalse(router.handle(abc));
+        Assertions.assertTrue(router.handle(def));
+    }
+
+    private static GenericComponentInteractionCreateEvent event(String id)
+    {
+        ButtonInteractionEvent event = Mockito.mock(ButtonInteractionEvent.class);
+        Mockito.when(event.getComponentId()).thenReturn(id);
+        return event;
+    }
+}
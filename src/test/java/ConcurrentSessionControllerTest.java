@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.utils.ConcurrentSessionController;
+import net.dv8tion.jda.api.utils.SessionController;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrentSessionControllerTest
+{
+    private static final long DELAY = 200;
+
+    private final ConcurrentSessionController controller = new ConcurrentSessionController(DELAY, TimeUnit.MILLISECONDS);
+
+    @Test
+    public void testDelayStartsWithIdentify() throws InterruptedException
+    {
+        // The READY takes longer than the delay, waiting from the end of the run would delay the next login to 500ms
+        Node first = new Node(0, 2, 300);
+        Node second = new Node(1, 2, 0);
+        controller.appendSession(first);
+        controller.appendSession(second);
+        second.await();
+
+        long gap = millis(second.identifyNanos - first.identifyNanos);
+        Assertions.assertTrue(gap >= DELAY, "Identified after " + gap + "ms");
+        Assertions.assertTrue(gap < 480, "Identified after " + gap + "ms");
+    }
+
+    @Test
+    public void testConcurrentBuckets() throws InterruptedException
+    {
+        controller.setConcurrency(2);
+        Node first = new Node(0, 2, 0);
+        Node second = new Node(1, 2, 0);
+        controller.appendSession(first);
+        controller.appendSession(second);
+        first.await();
+        second.await();
+
+        long gap = Math.abs(millis(second.identifyNanos - first.identifyNanos));
+        Assertions.assertTrue(gap < DELAY, "Identified after " + gap + "ms");
+    }
+
+    @Test
+    public void testRebucketWhileRunning() throws InterruptedException
+    {
+        Node first = new Node(0, 4, 100);
+        controller.appendSession(first);
+        first.awaitIdentify();
+
+        // Bucket 0 just sent an IDENTIFY, the new bucket 0 must not start before the delay has passed
+        controller.setConcurrency(2);
+        Node second = new Node(2, 4, 0);
+        controller.appendSession(second);
+        second.await();
+
+        long gap = millis(second.identifyNanos - first.identifyNanos);
+        Assertions.assertTrue(gap >= DELAY, "Identified after " + gap + "ms");
+    }
+
+    @Test
+    public void testRebucketOnceIdle() throws InterruptedException
+    {
+        Node first = new Node(0, 4, 0);
+        controller.appendSession(first);
+        first.await();
+        controller.setConcurrency(2);
+
+        // The worker is idle after the delay of the first node, from then on shards 1 and 2 are in different buckets
+        Thread.sleep(DELAY + 100);
+        Node second = new Node(1, 4, 0);
+        Node third = new Node(2, 4, 0);
+        controller.appendSession(second);
+        controller.appendSession(third);
+        second.await();
+        third.await();
+
+        long gap = Math.abs(millis(third.identifyNanos - second.identifyNanos));
+        Assertions.assertTrue(gap < DELAY, "Identified after " + gap + "ms");
+    }
+
+    private static long millis(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static class Node implements SessionController.SessionConnectNode
+    {
+        private final CountDownLatch identified = new CountDownLatch(1);
+        private final CountDownLatch ready = new CountDownLatch(1);
+        private final JDA.ShardInfo shardInfo;
+        private final long readyDelay;
+        private volatile long identifyNanos = Long.MIN_VALUE;
+
+        private Node(int shardId, int shardTotal, long readyDelay)
+        {
+            this.shardInfo = new JDA.ShardInfo(shardId, shardTotal);
+            this.readyDelay = readyDelay;
+        }
+
+        private void awaitIdentify() throws InterruptedException
+        {
+            Assertions.assertTrue(identified.await(5, TimeUnit.SECONDS), "Node was never identified");
+        }
+
+        private void await() throws InterruptedException
+        {
+            Assertions.assertTrue(ready.await(5, TimeUnit.SECONDS), "Node was never run");
+        }
+
+        @Override
+        public boolean isReconnect()
+        {
+            return false;
+        }
+
+        @NotNull
+        @Override
+        public JDA getJDA()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public JDA.ShardInfo getShardInfo()
+        {
+            return shardInfo;
+        }
+
+        @Override
+        public void run(boolean isLast) throws InterruptedException
+        {
+            identifyNanos = System.nanoTime();
+            identified.countDown();
+            // Waiting for the READY
+            if (readyDelay > 0)
+                Thread.sleep(readyDelay);
+            ready.countDown();
+        }
+
+        @Override
+        public long getIdentifyNanos()
+        {
+            return identifyNanos;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.handle.EventCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventCacheTest
+{
+    @Test
+    public void testPlayback()
+    {
+        EventCache cache = new EventCache();
+        List<Long> handled = new ArrayList<>();
+        cache.cache(EventCache.Type.GUILD, 1, 1, DataObject.empty(), (response, json) -> handled.add(response));
+        cache.cache(EventCache.Type.GUILD, 2, 2, DataObject.empty(), (response, json) -> handled.add(response));
+        cache.cache(EventCache.Type.GUILD, 1, 3, DataObject.empty(), (response, json) -> handled.add(response));
+
+        cache.playbackCache(EventCache.Type.ROLE, 1);
+        Assertions.assertTrue(handled.isEmpty());
+        cache.playbackCache(EventCache.Type.GUILD, 1);
+        Assertions.assertEquals(2, handled.size());
+        Assertions.assertEquals(1, handled.get(0));
+        Assertions.assertEquals(3, handled.get(1));
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(2, cache.getReplayedCount());
+    }
+
+    @Test
+    public void testTimeout()
+    {
+        EventCache cache = new EventCache();
+        for (int i = 1; i <= 50; i++)
+            cache.cache(EventCache.Type.values()[i % 3], i, i, DataObject.empty(), (response, json) -> Assertions.fail());
+
+        cache.timeout(2 + EventCache.TIMEOUT_AMOUNT);
+        Assertions.assertEquals(1, cache.getExpiredCount());
+        cache.timeout(140);
+        Assertions.assertEquals(39, cache.getExpiredCount());
+        Assertions.assertEquals(11, cache.size());
+        cache.clear();
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLazyTimeout()
+    {
+        EventCache cache = new EventCache();
+        cache.cache(EventCache.Type.GUILD, 1, 1, DataObject.empty(), (response, json) -> Assertions.fail());
+        cache.cache(EventCache.Type.USER, 1, 2, DataObject.empty(), (response, json) -> Assertions.fail());
+        cache.timeout(100);
+        cache.cache(EventCache.Type.ROLE, 1, 100, DataObject.empty(), (response, json) -> Assertions.fail());
+
+        // Caching an event of a type expires the old events of that type only
+        cache.cache(EventCache.Type.GUILD, 2, 105, DataObject.empty(), (response, json) -> Assertions.fail());
+        Assertions.assertEquals(1, cache.getExpiredCount());
+        Assertions.assertEquals(3, cache.size());
+
+        // The other types are only checked once every few events
+        cache.timeout(100 + EventCache.SWEEP_INTERVAL - 1);
+        Assertions.assertEquals(1, cache.getExpiredCount());
+        cache.timeout(100 + EventCache.SWEEP_INTERVAL);
+        Assertions.assertEquals(2, cache.getExpiredCount());
+        Assertions.assertEquals(2, cache.size());
+
+        // A new session starts its sequence from the beginning
+        cache.timeout(1);
+        cache.timeout(300);
+        Assertions.assertEquals(4, cache.getExpiredCount());
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals(Integer.MAX_VALUE, cache.getLimit());
+    }
+
+    @Test
+    public void testEvictOldest()
+    {
+        EventCache cache = new EventCache(2);
+        List<Long> handled = new ArrayList<>();
+        cache.cache(EventCache.Type.USER, 1, 1, DataObject.empty(), (response, json) -> handled.add(response));
+        cache.cache(EventCache.Type.GUILD, 1, 2, DataObject.empty(), (response, json) -> handled.add(response));
+        cache.cache(EventCache.Type.GUILD, 1, 3, DataObject.empty(), (response, json) -> handled.add(response));
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(1, cache.getEvictedCount());
+        cache.playbackCache(EventCache.Type.USER, 1);
+        Assertions.assertTrue(handled.isEmpty());
+        cache.playbackCache(EventCache.Type.GUILD, 1);
+        Assertions.assertEquals(2, handled.size());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.EventQueuePolicy;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.hooks.BoundedEventQueue;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EventQueueTest
+{
+    @Test
+    public void testDropLowestPriority()
+    {
+        // priority is the response number
+        BoundedEventQueue queue = new BoundedEventQueue(EventQueuePolicy.drop(2, e -> (int) e.getResponseNumber()));
+        Assertions.assertTrue(queue.offer(new TestEvent(1, null)));
+        Assertions.assertTrue(queue.offer(new TestEvent(5, null)));
+        // evicts the event with priority 1, no new task needed
+        Assertions.assertFalse(queue.offer(new TestEvent(3, null)));
+        // lower than everything in the queue, dropped
+        Assertions.assertFalse(queue.offer(new TestEvent(2, null)));
+
+        Assertions.assertEquals(2, queue.getSize());
+        Assertions.assertEquals(2, queue.getDroppedCount());
+        Assertions.assertEquals(5, queue.poll().getResponseNumber());
+        Assertions.assertEquals(3, queue.poll().getResponseNumber());
+        Assertions.assertNull(queue.poll());
+    }
+
+    @Test
+    public void testCoalesce()
+    {
+        BoundedEventQueue queue = new BoundedEventQueue(EventQueuePolicy.coalesce(10, e -> ((TestEvent) e).key));
+        Assertions.assertTrue(queue.offer(new TestEvent(1, "a")));
+        Assertions.assertTrue(queue.offer(new TestEvent(2, "b")));
+        Assertions.assertFalse(queue.offer(new TestEvent(3, "a")));
+        Assertions.assertTrue(queue.offer(new TestEvent(4, null)));
+
+        Assertions.assertEquals(3, queue.getSize());
+        Assertions.assertEquals(1, queue.getCoalescedCount());
+        // the replaced event keeps its position
+        Assertions.assertEquals(3, queue.poll().getResponseNumber());
+        Assertions.assertEquals(2, queue.poll().getResponseNumber());
+        // once dispatched, the key can be queued again
+        Assertions.assertTrue(queue.offer(new TestEvent(5, "a")));
+        Assertions.assertEquals(4, queue.poll().getResponseNumber());
+        Assertions.assertEquals(5, queue.poll().getResponseNumber());
+    }
+
+    @Test
+    public void testBlock() throws InterruptedException
+    {
+        BoundedEventQueue queue = new BoundedEventQueue(EventQueuePolicy.block(1));
+        Assertions.assertTrue(queue.offer(new TestEvent(1, null)));
+
+        Thread producer = new Thread(() -> queue.offer(new TestEvent(2, null)));
+        producer.start();
+        while (queue.getBlockedCount() == 0)
+            Thread.sleep(1);
+        Assertions.assertEquals(1, queue.getSize());
+
+        Assertions.assertEquals(1, queue.poll().getResponseNumber());
+        producer.join(1000);
+        Assertions.assertFalse(producer.isAlive());
+        Assertions.assertEquals(2, queue.poll().getResponseNumber());
+    }
+
+    @Test
+    public void testDispatchingThreadNeverBlocks()
+    {
+        BoundedEventQueue queue = new BoundedEventQueue(EventQueuePolicy.block(1));
+        Assertions.assertTrue(queue.offer(new TestEvent(1, null)));
+        BoundedEventQueue.setDispatching(true);
+        try
+        {
+            Assertions.assertTrue(queue.offer(new TestEvent(2, null)));
+        }
+        finally
+        {
+            BoundedEventQueue.setDispatching(false);
+        }
+        Assertions.assertEquals(2, queue.getSize());
+        Assertions.assertEquals(0, queue.getBlockedCount());
+    }
+
+    private static class TestEvent implements GenericEvent
+    {
+        private final long responseNumber;
+        private final Object key;
+
+        private TestEvent(long responseNumber, Object key)
+        {
+            this.responseNumber = responseNumber;
+            this.key = key;
+        }
+
+        @NotNull
+        @Override
+        public JDA getJDA()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getResponseNumber()
+        {
+            return responseNumber;
+        }
+
+        @Override
+        public DataObject getRawData()
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.requests.GatewaySendMetrics;
+import net.dv8tion.jda.internal.requests.GatewayRateLimiter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class GatewayRateLimiterTest
+{
+    private static final int QUEUED_LIMIT = GatewayRateLimiter.BUDGET - GatewayRateLimiter.RESERVED;
+
+    @Test
+    public void testReservedPermits()
+    {
+        GatewayRateLimiter limiter = new GatewayRateLimiter();
+        for (int i = 0; i < QUEUED_LIMIT; i++)
+            Assertions.assertTrue(limiter.tryAcquire(i, false));
+        Assertions.assertFalse(limiter.tryAcquire(QUEUED_LIMIT, false));
+
+        // heartbeats can still be sent
+        for (int i = 0; i < GatewayRateLimiter.RESERVED; i++)
+            Assertions.assertTrue(limiter.tryAcquire(QUEUED_LIMIT, true));
+        Assertions.assertFalse(limiter.tryAcquire(QUEUED_LIMIT, true));
+        Assertions.assertEquals(2, limiter.getRateLimitedCount());
+    }
+
+    @Test
+    public void testSlidingWindow()
+    {
+        GatewayRateLimiter limiter = new GatewayRateLimiter();
+        for (int i = 0; i < QUEUED_LIMIT; i++)
+            Assertions.assertTrue(limiter.tryAcquire(i * 10L, false));
+
+        long now = QUEUED_LIMIT * 10L;
+        // the first send has to leave the window
+        Assertions.assertEquals(GatewayRateLimiter.WINDOW - now, limiter.getDelay(now, false));
+        Assertions.assertEquals(0, limiter.getDelay(now, true));
+
+        now = GatewayRateLimiter.WINDOW;
+        Assertions.assertEquals(0, limiter.getDelay(now, false));
+        Assertions.assertTrue(limiter.tryAcquire(now, false));
+        // only one send left the window, the next one is 10ns later
+        Assertions.assertFalse(limiter.tryAcquire(now, false));
+        Assertions.assertEquals(10, limiter.getDelay(now, false));
+
+        limiter.reset();
+        Assertions.assertTrue(limiter.tryAcquire(now, false));
+    }
+
+    @Test
+    public void testWindowAccounting()
+    {
+        // One send every 100ms for several windows, the sends within any window never exceed the budget
+        GatewayRateLimiter limiter = new GatewayRateLimiter();
+        long interval = TimeUnit.MILLISECONDS.toNanos(100);
+        List<Long> sent = new ArrayList<>();
+        for (long now = 0; now < GatewayRateLimiter.WINDOW * 4; now += interval)
+        {
+            if (!limiter.tryAcquire(now, false))
+                continue;
+            sent.add(now);
+            long windowStart = now - GatewayRateLimiter.WINDOW;
+            long inWindow = sent.stream().filter(time -> time > windowStart).count();
+            Assertions.assertTrue(inWindow <= QUEUED_LIMIT, "Sent " + inWindow + " messages in one window");
+        }
+
+        // Every permit is reused once its send has left the window
+        Assertions.assertTrue(sent.get(QUEUED_LIMIT) - sent.get(0) >= GatewayRateLimiter.WINDOW);
+        Assertions.assertTrue(sent.get(QUEUED_LIMIT) - sent.get(0) < GatewayRateLimiter.WINDOW + interval);
+        Assertions.assertTrue(GatewayRateLimiter.BUDGET <= GatewayRateLimiter.LIMIT - 10);
+    }
+
+    @Test
+    public void testAvailablePermits()
+    {
+        GatewayRateLimiter limiter = new GatewayRateLimiter();
+        long now = System.nanoTime();
+        Assertions.assertEquals(QUEUED_LIMIT, limiter.getAvailablePermits());
+        limiter.tryAcquire(now, false);
+        limiter.tryAcquire(now, true);
+        Assertions.assertEquals(QUEUED_LIMIT - 2, limiter.getAvailablePermits());
+        for (int i = 0; i < GatewayRateLimiter.BUDGET; i++)
+            limiter.tryAcquire(now, true);
+        Assertions.assertEquals(0, limiter.getAvailablePermits());
+    }
+
+    @Test
+    public void testLatencyMetrics()
+    {
+        GatewayRateLimiter limiter = new GatewayRateLimiter();
+        limiter.recordSent(GatewayRateLimiter.getCategory(3), 100);
+        limiter.recordSent(GatewayRateLimiter.getCategory(3), 50);
+        limiter.recordSent(GatewayRateLimiter.getCategory(8), 10);
+
+        Assertions.assertEquals(2, limiter.getSentCount(GatewaySendMetrics.Category.PRESENCE));
+        Assertions.assertEquals(150, limiter.getTotalLatencyNanos(GatewaySendMetrics.Category.PRESENCE));
+        Assertions.assertEquals(100, limiter.getMaxLatencyNanos(GatewaySendMetrics.Category.PRESENCE));
+        Assertions.assertEquals(1, limiter.getSentCount(GatewaySendMetrics.Category.MEMBER_CHUNK_REQUEST));
+        Assertions.assertEquals(0, limiter.getSentCount(GatewaySendMetrics.Category.VOICE_STATE));
+    }
+}
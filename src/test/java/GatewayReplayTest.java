@@ -0,0 +1,223 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.handle.GuildSetupController;
+import net.dv8tion.jda.internal.handle.GuildSetupNode;
+import net.dv8tion.jda.internal.requests.GatewayRecorder;
+import net.dv8tion.jda.internal.requests.GatewayReplay;
+import net.dv8tion.jda.internal.requests.WebSocketClient;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.ThreadingConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GatewayReplayTest
+{
+    private static final String READY = "{\"op\":0,\"s\":1,\"t\":\"READY\",\"d\":{\"session_id\":\"session\"," +
+            "\"user\":{\"id\":\"10\",\"username\":\"bot\",\"discriminator\":\"0001\",\"verified\":true,\"mfa_enabled\":false,\"bot\":true}," +
+            "\"guilds\":[],\"private_channels\":[]}}";
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void testReplayDispatches() throws IOException
+    {
+        File file = new File(directory, "session.recording");
+        try (GatewayRecorder recorder = GatewayRecorder.open(file, 0, new JDA.ShardInfo(0, 1)))
+        {
+            record(recorder, "{\"op\":10,\"d\":{\"heartbeat_interval\":41250}}");
+            record(recorder, READY);
+            record(recorder, "{\"op\":11}");
+        }
+
+        GatewayReplay replay = GatewayReplay.read(file);
+        Assertions.assertEquals(3, replay.getFrameCount());
+        // HELLO and HEARTBEAT_ACK are not replayed
+        Assertions.assertEquals(1, replay.run().getEvents());
+        Assertions.assertEquals(1, replay.run().getEvents());
+    }
+
+    @Test
+    public void testTruncatedRecording() throws IOException
+    {
+        File file = new File(directory, "truncated.recording");
+        try (GatewayRecorder recorder = GatewayRecorder.open(file, 0, new JDA.ShardInfo(0, 1)))
+        {
+            record(recorder, READY);
+            record(recorder, READY);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.setLength(raf.length() - 10);
+        }
+        Assertions.assertEquals(1, GatewayReplay.read(file).getFrameCount());
+    }
+
+    @Test
+    public void testParallelGuildSetup() throws IOException
+    {
+        File file = new File(directory, "guilds.recording");
+        try (GatewayRecorder recorder = GatewayRecorder.open(file, 0, new JDA.ShardInfo(0, 1)))
+        {
+            record(recorder, READY.replace("\"guilds\":[]", "\"guilds\":[{\"id\":\"1\",\"unavailable\":true},{\"id\":\"2\",\"unavailable\":true}]"));
+            record(recorder, guildCreate(1, 100));
+            record(recorder, guildCreate(2, 100));
+        }
+
+        GatewayReplay replay = GatewayReplay.read(file);
+        // Without a pool, READY is fired by the last GUILD_CREATE of the replay
+        GatewayReplay.Result sequential = replay.run();
+        Assertions.assertTrue(sequential.getReadyNanos() >= 0);
+        Assertions.assertTrue(sequential.getReadyNanos() <= sequential.getNanos());
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        CountDownLatch gate = blockPool(pool);
+        Thread opener = new Thread(() ->
+        {
+            try
+            {
+                Thread.sleep(200);
+            }
+            catch (InterruptedException ignored) {}
+            gate.countDown();
+        });
+        try
+        {
+            opener.start();
+            GatewayReplay.Result result = replay.run(pool);
+            Assertions.assertEquals(3, result.getEvents());
+            // READY is only fired once both guilds have been built and published
+            Assertions.assertTrue(result.getReadyNanos() >= TimeUnit.MILLISECONDS.toNanos(200), "READY after " + result.getReadyNanos() + "ns");
+            Assertions.assertTrue(result.getReadyNanos() > result.getNanos());
+        }
+        finally
+        {
+            gate.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testResetWhileBuilding() throws Exception
+    {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        CountDownLatch gate = blockPool(pool);
+        ThreadingConfig threadingConfig = new ThreadingConfig();
+        threadingConfig.setGuildSetupPool(pool, true);
+        JDAImpl api = new JDAImpl(new AuthorizationConfig("token"), null, threadingConfig, null);
+        api.setChunkingFilter(ChunkingFilter.NONE);
+        CountDownLatch guildReady = new CountDownLatch(1);
+        AtomicInteger readyGuilds = new AtomicInteger();
+        api.addEventListener((EventListener) (event) -> {
+            if (event instanceof GuildReadyEvent)
+            {
+                readyGuilds.incrementAndGet();
+                guildReady.countDown();
+            }
+        });
+        WebSocketClient client = api.initReplay(new JDA.ShardInfo(0, 1), 0);
+        try
+        {
+            dispatch(client, READY.replace("\"guilds\":[]", "\"guilds\":[{\"id\":\"1\",\"unavailable\":true}]"));
+            dispatch(client, guildCreate(1, 10));
+            GuildSetupNode node = api.getGuildSetupController().getSetupNodeById(1);
+            Assertions.assertEquals(GuildSetupController.Status.BUILDING, node.getStatus());
+            Assertions.assertEquals(10, node.getCurrentMemberCount());
+
+            // The guild becomes unavailable while the pool is still building it
+            dispatch(client, "{\"op\":0,\"s\":3,\"t\":\"GUILD_DELETE\",\"d\":{\"id\":\"1\",\"unavailable\":true}}");
+            Assertions.assertEquals(GuildSetupController.Status.UNAVAILABLE, node.getStatus());
+            Assertions.assertEquals(0, node.getCurrentMemberCount());
+            // Reaching 2000 cached events logs the member count
+            for (int i = 0; i < 2000; i++)
+                api.getGuildSetupController().cacheEvent(1, DataObject.fromJson("{\"op\":0,\"t\":\"TEST\",\"d\":{}}"));
+
+            // The discarded build must not publish the guild
+            gate.countDown();
+            pool.submit(() -> {}).get(5, TimeUnit.SECONDS);
+            api.getGatewayPool().submit(() -> {}).get(5, TimeUnit.SECONDS);
+            Assertions.assertNull(api.getGuildById(1));
+            Assertions.assertSame(node, api.getGuildSetupController().getSetupNodeById(1));
+
+            dispatch(client, guildCreate(1, 5));
+            Assertions.assertTrue(guildReady.await(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, readyGuilds.get());
+            Assertions.assertEquals(5, api.getGuildById(1).getMembers().size());
+        }
+        finally
+        {
+            api.shutdownNow();
+        }
+    }
+
+    private static CountDownLatch blockPool(ExecutorService pool)
+    {
+        CountDownLatch gate = new CountDownLatch(1);
+        pool.execute(() ->
+        {
+            try
+            {
+                gate.await();
+            }
+            catch (InterruptedException ignored) {}
+        });
+        return gate;
+    }
+
+    private static void dispatch(WebSocketClient client, String frame)
+    {
+        client.handle(Collections.singletonList(DataObject.fromJson(frame)));
+    }
+
+    private static String guildCreate(long guildId, int memberCount)
+    {
+        StringBuilder members = new StringBuilder();
+        for (int i = 0; i < memberCount; i++)
+        {
+            // the first member is the self user
+            long userId = i == 0 ? 10 : 1000 + i;
+            if (i > 0)
+                members.append(',');
+            members.append("{\"user\":{\"id\":\"").append(userId).append("\",\"username\":\"user\",\"discriminator\":\"0001\"},")
+                   .append("\"roles\":[\"").append(guildId).append("\"],\"joined_at\":\"2020-01-01T00:00:00+00:00\"}");
+        }
+        return "{\"op\":0,\"s\":2,\"t\":\"GUILD_CREATE\",\"d\":{\"id\":\"" + guildId + "\",\"name\":\"guild\",\"owner_id\":\"10\",\"afk_timeout\":60," +
+                "\"member_count\":" + memberCount + ",\"members\":[" + members + "]," +
+                "\"roles\":[{\"id\":\"" + guildId + "\",\"name\":\"@everyone\",\"color\":0,\"position\":0,\"permissions\":\"0\"}]," +
+                "\"channels\":[],\"threads\":[],\"emojis\":[],\"stickers\":[],\"voice_states\":[],\"presences\":[]}}";
+    }
+
+    private static void record(GatewayRecorder recorder, String frame)
+    {
+        recorder.record(frame.getBytes(StandardCharsets.UTF_8), false);
+    }
+}
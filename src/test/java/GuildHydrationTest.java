@@ -0,0 +1,127 @@
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.dv8tion.jda.api.entities.ChannelType;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.emoji.RichCustomEmoji;
+import net.dv8tion.jda.api.utils.cache.SnowflakeCacheView;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.SessionConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class GuildHydrationTest
+{
+    @Test
+    public void testHydrateAndCompact()
+    {
+        JDAImpl api = createApi();
+        GuildImpl guild = createGuild(api);
+
+        // Channels are built with the guild, only emojis and stickers are compact
+        Assertions.assertTrue(guild.isCompact());
+        TextChannel channel = api.getTextChannelById(2);
+        Assertions.assertNotNull(channel);
+        Assertions.assertSame(channel, guild.getSystemChannel());
+        Assertions.assertEquals(1, guild.getMemberCache().size());
+        Assertions.assertTrue(guild.isCompact());
+
+        Assertions.assertEquals("wave", guild.getEmojiCache().getElementById(3).getName());
+        Assertions.assertFalse(guild.isCompact());
+
+        Assertions.assertTrue(guild.compactIfIdle(System.nanoTime() + TimeUnit.SECONDS.toNanos(1), 1));
+        Assertions.assertTrue(guild.isCompact());
+        Assertions.assertEquals(1, guild.getEmojiCache().size());
+    }
+
+    @Test
+    public void testChannelLookupAfterCompaction()
+    {
+        JDAImpl api = createApi();
+        GuildImpl guild = createGuild(api);
+        TextChannel channel = guild.getTextChannelById(2);
+        guild.hydrate();
+        Assertions.assertTrue(guild.compactIfIdle(System.nanoTime() + TimeUnit.SECONDS.toNanos(1), 1));
+
+        // JDA-level lookups find the same instance without hydrating the guild
+        Assertions.assertSame(channel, api.getTextChannelById(2));
+        Assertions.assertSame(channel, api.getGuildChannelById(2));
+        Assertions.assertSame(channel, api.getChannelById(TextChannel.class, 2));
+        Assertions.assertSame(channel, api.getGuildChannelById(ChannelType.TEXT, 2));
+        Assertions.assertSame(channel, guild.getSystemChannel());
+        Assertions.assertTrue(guild.isCompact());
+    }
+
+    @Test
+    public void testGlobalIndexes()
+    {
+        JDAImpl api = createApi();
+        GuildImpl guild = createGuild(api);
+
+        Assertions.assertEquals(guild.getPublicRole(), api.getRoleById(1));
+        Assertions.assertTrue(guild.isCompact());
+        // Looking up an emoji of a compact guild hydrates the guild
+        Assertions.assertEquals("wave", api.getEmojiById(3).getName());
+        Assertions.assertFalse(guild.isCompact());
+
+        Assertions.assertTrue(guild.compactIfIdle(System.nanoTime() + TimeUnit.SECONDS.toNanos(1), 1));
+        Assertions.assertEquals(1, api.getRoleCache().size());
+        Assertions.assertEquals(0, api.getEmojisView().size());
+        // Dormant emojis are counted without hydrating their guild
+        Assertions.assertEquals(1, api.getEmojiCache().size());
+        Assertions.assertFalse(api.getEmojiCache().isEmpty());
+        Assertions.assertNull(api.getEmojiById(4));
+        Assertions.assertNull(api.getEmojiCache().getElementById(4));
+        Assertions.assertTrue(guild.isCompact());
+    }
+
+    @Test
+    public void testEmojiCacheView()
+    {
+        JDAImpl api = createApi();
+        GuildImpl guild = createGuild(api);
+        SnowflakeCacheView<RichCustomEmoji> emojis = api.getEmojiCache();
+
+        // Looking up an emoji by id only hydrates its guild
+        Assertions.assertTrue(guild.isCompact());
+        Assertions.assertEquals("wave", emojis.getElementById(3).getName());
+        Assertions.assertFalse(guild.isCompact());
+
+        // Iterating the cache hydrates every guild with dormant emojis
+        Assertions.assertTrue(guild.compactIfIdle(System.nanoTime() + TimeUnit.SECONDS.toNanos(1), 1));
+        Assertions.assertEquals(0, api.getEmojisView().size());
+        Assertions.assertEquals(1, emojis.size());
+        Assertions.assertTrue(guild.isCompact());
+        Assertions.assertEquals("wave", emojis.asList().get(0).getName());
+        Assertions.assertFalse(guild.isCompact());
+        Assertions.assertEquals(1, emojis.size());
+        Assertions.assertEquals(1, api.getEmojisView().size());
+    }
+
+    private static JDAImpl createApi()
+    {
+        SessionConfig sessionConfig = SessionConfig.getDefault();
+        sessionConfig.setGuildHydrationIdleTime(1);
+        JDAImpl api = new JDAImpl(new AuthorizationConfig("token"), sessionConfig, null, null);
+        api.getEntityBuilder().createSelfUser(DataObject.fromJson("{\"id\":\"10\",\"username\":\"bot\",\"discriminator\":\"0001\",\"verified\":true,\"mfa_enabled\":false,\"bot\":true}"));
+        return api;
+    }
+
+    private static GuildImpl createGuild(JDAImpl api)
+    {
+        DataObject json = DataObject.fromJson("{\"id\":\"1\",\"name\":\"guild\",\"owner_id\":\"10\",\"afk_timeout\":60,\"member_count\":1," +
+            "\"system_channel_id\":\"2\"," +
+            "\"members\":[{\"user\":{\"id\":\"10\",\"username\":\"bot\",\"discriminator\":\"0001\"},\"roles\":[],\"joined_at\":\"2020-01-01T00:00:00+00:00\"}]," +
+            "\"roles\":[{\"id\":\"1\",\"name\":\"@everyone\",\"color\":0,\"position\":0,\"permissions\":\"0\"}]," +
+            "\"channels\":[{\"id\":\"2\",\"type\":0,\"name\":\"general\",\"position\":0,\"permission_overwrites\":[{\"id\":\"1\",\"type\":0,\"allow\":\"1024\",\"deny\":\"0\"}]}]," +
+            "\"threads\":[],\"emojis\":[{\"id\":\"3\",\"name\":\"wave\",\"roles\":[],\"animated\":false,\"managed\":false}]," +
+            "\"stickers\":[],\"voice_states\":[],\"presences\":[]}");
+        TLongObjectMap<DataObject> members = new TLongObjectHashMap<>();
+        members.put(10, json.getArray("members").getObject(0));
+        return api.getEntityBuilder().createGuild(1, json, members, 1);
+    }
+}
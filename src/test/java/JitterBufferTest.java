@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.internal.audio.JitterBuffer;
+import net.dv8tion.jda.internal.audio.JitterBuffer.Playout;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class JitterBufferTest
+{
+    @Test
+    public void testReorder()
+    {
+        JitterBuffer buffer = new JitterBuffer(1, 100);
+        add(buffer, 11, 0);
+        add(buffer, 10, 5);
+        add(buffer, 12, 10);
+        // the first packet is delayed by one frame without jitter
+        Assertions.assertEquals(Playout.IDLE, buffer.poll(10));
+        assertFrame(buffer, 10, buffer.poll(20));
+        assertFrame(buffer, 11, buffer.poll(40));
+        assertFrame(buffer, 12, buffer.poll(60));
+    }
+
+    @Test
+    public void testLoss()
+    {
+        JitterBuffer buffer = new JitterBuffer(1, 100);
+        add(buffer, 1, 0);
+        add(buffer, 3, 40);
+        assertFrame(buffer, 1, buffer.poll(20));
+        // packet 2 is lost, but 3 carries its forward error correction
+        assertFrame(buffer, 3, buffer.poll(40));
+        Assertions.assertEquals(1, buffer.getRecoveredCount());
+        assertFrame(buffer, 3, buffer.poll(60));
+        // packets 4 and 5 are lost without recovery
+        Assertions.assertEquals(Playout.CONCEAL, buffer.poll(80));
+        Assertions.assertEquals(Playout.CONCEAL, buffer.poll(100));
+        // packet 4 arrives too late
+        Assertions.assertFalse(buffer.add((char) 4, 4 * 960, new byte[] { 4 }, 0, 1, 110));
+        Assertions.assertEquals(1, buffer.getLateCount());
+        Assertions.assertEquals(3, buffer.getLostCount());
+    }
+
+    @Test
+    public void testEndOfTalkSpurt()
+    {
+        JitterBuffer buffer = new JitterBuffer(1, 100);
+        add(buffer, 1, 0);
+        assertFrame(buffer, 1, buffer.poll(20));
+        for (int i = 0; i < JitterBuffer.MAX_CONCEALED; i++)
+            Assertions.assertEquals(Playout.CONCEAL, buffer.poll(40 + i * 20));
+        Assertions.assertEquals(Playout.IDLE, buffer.poll(200));
+
+        // the next talk spurt starts with its own delay
+        add(buffer, 2, 1000);
+        Assertions.assertEquals(Playout.IDLE, buffer.poll(1000));
+        assertFrame(buffer, 2, buffer.poll(1000 + buffer.getDelay()));
+    }
+
+    @Test
+    public void testAdaptiveDelay()
+    {
+        JitterBuffer buffer = new JitterBuffer(1, 100);
+        JitterBuffer limited = new JitterBuffer(1, 30);
+        // packets arrive in bursts of two every 40 ms
+        for (int i = 0; i < 50; i++)
+        {
+            add(buffer, i, (i / 2) * 40);
+            add(limited, i, (i / 2) * 40);
+        }
+        Assertions.assertEquals(20, buffer.getDelay());
+        Assertions.assertEquals(20, buffer.getJitter(), 1);
+        drain(buffer, 2000);
+        drain(limited, 2000);
+
+        // the delay of a talk spurt is picked when it starts
+        add(buffer, 50, 5000);
+        add(limited, 50, 5000);
+        // about one frame plus three times the jitter of 20 ms
+        Assertions.assertTrue(buffer.getDelay() > 70 && buffer.getDelay() <= 80, "Delay " + buffer.getDelay());
+        Assertions.assertEquals(30, limited.getDelay());
+    }
+
+    private static void drain(JitterBuffer buffer, long now)
+    {
+        for (int i = 0; i < 50; i++)
+            Assertions.assertNotEquals(Playout.IDLE, buffer.poll(now + i * 20));
+        for (int i = 0; i < JitterBuffer.MAX_CONCEALED; i++)
+            Assertions.assertEquals(Playout.CONCEAL, buffer.poll(now + (50 + i) * 20));
+        Assertions.assertEquals(Playout.IDLE, buffer.poll(now + 60 * 20));
+    }
+
+    private static void add(JitterBuffer buffer, int seq, long now)
+    {
+        Assertions.assertTrue(buffer.add((char) seq, seq * 960, new byte[] { (byte) seq }, 0, 1, now));
+    }
+
+    private static void assertFrame(JitterBuffer buffer, int seq, Playout playout)
+    {
+        Assertions.assertNotEquals(Playout.IDLE, playout);
+        Assertions.assertNotEquals(Playout.CONCEAL, playout);
+        Assertions.assertEquals(1, buffer.getFrameLength());
+        Assertions.assertEquals((byte) seq, buffer.getFrame()[0]);
+    }
+}
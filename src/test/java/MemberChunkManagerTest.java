@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.requests.MemberChunkManager;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.ThreadingConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class MemberChunkManagerTest
+{
+    private static final String MEMBER = "{\"user\":{\"id\":\"10\",\"username\":\"bot\",\"discriminator\":\"0001\"},\"roles\":[],\"joined_at\":\"2020-01-01T00:00:00+00:00\"";
+
+    private ExecutorService pool;
+    private JDAImpl api;
+
+    @AfterEach
+    public void shutdown()
+    {
+        api.shutdownNow();
+        if (pool != null)
+            pool.shutdownNow();
+    }
+
+    @Test
+    public void testConversionOrder()
+    {
+        // Several threads, the chunks of a guild are still converted one after another
+        GuildImpl guild = setup(Executors.newFixedThreadPool(4));
+        MemberChunkManager chunkManager = api.getClient().getChunkManager();
+        for (int i = 0; i < 50; i++)
+            chunkManager.handleUnrequestedChunk(guild, chunk("nick" + i));
+        chunkManager.awaitConversions(guild.getIdLong());
+        Assertions.assertEquals("nick49", guild.getMemberById(10).getNickname());
+    }
+
+    @Test
+    public void testConversionWithoutPool()
+    {
+        // Without a guild setup pool, chunks are converted on the reading thread
+        GuildImpl guild = setup(null);
+        MemberChunkManager chunkManager = api.getClient().getChunkManager();
+        chunkManager.handleUnrequestedChunk(guild, chunk("converted"));
+        Assertions.assertEquals("converted", guild.getMemberById(10).getNickname());
+    }
+
+    @Test
+    public void testAwaitConversions() throws InterruptedException
+    {
+        GuildImpl guild = setup(Executors.newSingleThreadExecutor());
+        MemberChunkManager chunkManager = api.getClient().getChunkManager();
+        CountDownLatch blocked = new CountDownLatch(1);
+        pool.execute(() ->
+        {
+            try
+            {
+                blocked.await();
+            }
+            catch (InterruptedException ignored) {}
+        });
+        chunkManager.handleUnrequestedChunk(guild, chunk("converted"));
+
+        Thread waiting = new Thread(() -> chunkManager.awaitConversions(guild.getIdLong()));
+        waiting.start();
+        waiting.join(200);
+        Assertions.assertTrue(waiting.isAlive());
+        Assertions.assertNull(guild.getMemberById(10).getNickname());
+
+        blocked.countDown();
+        waiting.join(5000);
+        Assertions.assertFalse(waiting.isAlive());
+        Assertions.assertEquals("converted", guild.getMemberById(10).getNickname());
+        // Nothing is pending anymore
+        chunkManager.awaitConversions(guild.getIdLong());
+    }
+
+    private GuildImpl setup(ExecutorService guildSetupPool)
+    {
+        pool = guildSetupPool;
+        ThreadingConfig threadingConfig = new ThreadingConfig();
+        threadingConfig.setGuildSetupPool(pool, false);
+        api = new JDAImpl(new AuthorizationConfig("token"), null, threadingConfig, null);
+        api.initReplay(new JDA.ShardInfo(0, 1), 0);
+        api.getEntityBuilder().createSelfUser(DataObject.fromJson("{\"id\":\"10\",\"username\":\"bot\",\"discriminator\":\"0001\",\"verified\":true,\"mfa_enabled\":false,\"bot\":true}"));
+        DataObject json = DataObject.fromJson("{\"id\":\"1\",\"name\":\"guild\",\"owner_id\":\"10\",\"afk_timeout\":60,\"member_count\":1," +
+            "\"members\":[" + MEMBER + "}]," +
+            "\"roles\":[{\"id\":\"1\",\"name\":\"@everyone\",\"color\":0,\"position\":0,\"permissions\":\"0\"}]," +
+            "\"channels\":[],\"threads\":[],\"emojis\":[],\"stickers\":[],\"voice_states\":[],\"presences\":[]}");
+        TLongObjectMap<DataObject> members = new TLongObjectHashMap<>();
+        members.put(10, json.getArray("members").getObject(0));
+        return api.getEntityBuilder().createGuild(1, json, members, 1);
+    }
+
+    private static DataObject chunk(String nickname)
+    {
+        return DataObject.fromJson("{\"guild_id\":\"1\",\"chunk_index\":0,\"chunk_count\":1,\"members\":[" + MEMBER + ",\"nick\":\"" + nickname + "\"}]}");
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.internal.requests.MemberChunkWindow;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MemberChunkWindowTest
+{
+    @Test
+    public void testWindowGrowsWithAnsweredRequests()
+    {
+        MemberChunkWindow window = new MemberChunkWindow();
+        for (int i = 0; i < MemberChunkWindow.MIN_SIZE; i++)
+            window.onSent(i, 0);
+        Assertions.assertTrue(window.isFull(0));
+
+        // partial chunks keep the request pending
+        window.onChunk(0, false, 1);
+        Assertions.assertTrue(window.isFull(1));
+
+        window.onChunk(0, true, 2);
+        Assertions.assertEquals(MemberChunkWindow.MIN_SIZE + 1, window.getSize());
+        Assertions.assertFalse(window.isFull(2));
+        // chunks of requests we don't track are ignored
+        window.onChunk(100, true, 2);
+        Assertions.assertEquals(MemberChunkWindow.MIN_SIZE + 1, window.getSize());
+    }
+
+    @Test
+    public void testStalledRequestsFreeTheWindow()
+    {
+        MemberChunkWindow window = new MemberChunkWindow();
+        for (int i = 0; i < 10; i++)
+        {
+            window.onSent(i, 0);
+            window.onChunk(i, true, 0);
+        }
+        Assertions.assertEquals(MemberChunkWindow.MIN_SIZE + 10, window.getSize());
+
+        for (int i = 0; i < MemberChunkWindow.MIN_SIZE + 10; i++)
+            window.onSent(i, 0);
+        window.onChunk(0, false, MemberChunkWindow.STALL_TIMEOUT);
+        Assertions.assertTrue(window.isFull(MemberChunkWindow.STALL_TIMEOUT));
+
+        // everything except the request with recent activity stalled
+        Assertions.assertFalse(window.isFull(MemberChunkWindow.STALL_TIMEOUT + 1));
+        Assertions.assertEquals(1, window.getPendingCount());
+        Assertions.assertEquals((MemberChunkWindow.MIN_SIZE + 10) / 2, window.getSize());
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.requests.GatewayTransport;
+import net.dv8tion.jda.api.requests.NioGatewayTransport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class NioGatewayTransportTest
+{
+    private ServerSocket server;
+    private NioGatewayTransport transport;
+
+    @BeforeEach
+    public void setup() throws IOException
+    {
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread(this::accept, "Gateway stub");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        transport = new NioGatewayTransport(1);
+    }
+
+    @AfterEach
+    public void teardown() throws IOException
+    {
+        transport.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void testEcho() throws Exception
+    {
+        RecordingListener listener = new RecordingListener();
+        GatewayTransport.Connection connection = transport.connect(uri(), listener);
+        Assertions.assertSame(connection, listener.opened);
+
+        Assertions.assertTrue(connection.sendText("{\"op\":1}"));
+        Assertions.assertEquals("text:{\"op\":1}", listener.next());
+
+        // Uses the 64 bit length and spans many reads
+        byte[] large = new byte[100000];
+        for (int i = 0; i < large.length; i++)
+            large[i] = (byte) i;
+        Assertions.assertTrue(connection.sendBinary(large));
+        Assertions.assertEquals("binary:" + large.length + ":" + hash(large), listener.next());
+
+        // The stub answers with a ping and a message split into two frames
+        connection.sendText("fragment");
+        Assertions.assertEquals("text:fragmented message", listener.next());
+
+        connection.close(4000, "done");
+        Assertions.assertEquals("close:4000:done:false", listener.next());
+        Assertions.assertFalse(connection.sendText("closed"));
+        Assertions.assertEquals(0, transport.getConnectionCount());
+    }
+
+    @Test
+    public void testServerClose() throws Exception
+    {
+        RecordingListener listener = new RecordingListener();
+        GatewayTransport.Connection connection = transport.connect(uri(), listener);
+        connection.sendText("close");
+        Assertions.assertEquals("close:4004:Authentication failed.:true", listener.next());
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception
+    {
+        RecordingListener listener = new RecordingListener();
+        GatewayTransport.Connection connection = transport.connect(uri(), listener);
+        connection.setReadTimeout(100);
+        Assertions.assertTrue(listener.next().startsWith("error:java.net.SocketTimeoutException"));
+        Assertions.assertEquals("close:1006:null:false", listener.next());
+    }
+
+    @Test
+    public void testSharedThread() throws Exception
+    {
+        List<RecordingListener> listeners = new ArrayList<>();
+        List<GatewayTransport.Connection> connections = new ArrayList<>();
+        for (int i = 0; i < 32; i++)
+        {
+            RecordingListener listener = new RecordingListener();
+            listeners.add(listener);
+            connections.add(transport.connect(uri(), listener));
+        }
+        Assertions.assertEquals(32, transport.getConnectionCount());
+        for (int i = 0; i < connections.size(); i++)
+            connections.get(i).sendText("shard " + i);
+        for (int i = 0; i < listeners.size(); i++)
+            Assertions.assertEquals("text:shard " + i, listeners.get(i).next());
+    }
+
+    @Test
+    public void testRetainedMessages() throws Exception
+    {
+        // The transport must not reuse the buffers of messages which are not released yet
+        RecordingListener listener = new RecordingListener(true);
+        GatewayTransport.Connection connection = transport.connect(uri(), listener);
+        for (int i = 0; i < 8; i++)
+        {
+            connection.sendText("message " + i);
+            Assertions.assertEquals("retained", listener.next());
+        }
+        // Another connection of the same thread reads into the pooled buffers
+        RecordingListener other = new RecordingListener();
+        GatewayTransport.Connection otherConnection = transport.connect(uri(), other);
+        otherConnection.sendText("other message");
+        Assertions.assertEquals("text:other message", other.next());
+
+        for (int i = 0; i < 8; i++)
+        {
+            GatewayTransport.Message message = listener.retained.get(i);
+            Assertions.assertEquals("text:message " + i, describe(message));
+            message.release();
+            message.release(); // Releasing twice is ignored
+        }
+        connection.sendText("after release");
+        Assertions.assertEquals("retained", listener.next());
+        Assertions.assertEquals("text:after release", describe(listener.retained.get(8)));
+    }
+
+    private URI uri()
+    {
+        return URI.create("ws://127.0.0.1:" + server.getLocalPort() + "/?v=10&encoding=json");
+    }
+
+    private static String hash(byte[] data)
+    {
+        int hash = 1;
+        for (byte b : data)
+            hash = 31 * hash + b;
+        return Integer.toHexString(hash);
+    }
+
+    private static String describe(GatewayTransport.Message message)
+    {
+        ByteBuffer data = message.getData().duplicate();
+        byte[] array = new byte[data.remaining()];
+        data.get(array);
+        return message.isBinary() ? "binary:" + array.length + ":" + hash(array) : "text:" + new String(array, StandardCharsets.UTF_8);
+    }
+
+    private static class RecordingListener implements GatewayTransport.Listener
+    {
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        private final List<GatewayTransport.Message> retained;
+        private volatile GatewayTransport.Connection opened;
+
+        private RecordingListener()
+        {
+            this(false);
+        }
+
+        private RecordingListener(boolean retain)
+        {
+            this.retained = retain ? Collections.synchronizedList(new ArrayList<>()) : null;
+        }
+
+        private String next() throws InterruptedException
+        {
+            String event = events.poll(10, TimeUnit.SECONDS);
+            Assertions.assertNotNull(event, "Timed out waiting for an event");
+            return event;
+        }
+
+        @Override
+        public void onOpen(GatewayTransport.Connection connection)
+        {
+            opened = connection;
+        }
+
+        @Override
+        public void onMessage(GatewayTransport.Message message)
+        {
+            if (retained != null)
+            {
+                retained.add(message);
+                events.add("retained");
+                return;
+            }
+            events.add(describe(message));
+            message.release();
+        }
+
+        @Override
+        public void onError(Throwable error)
+        {
+            events.add("error:" + error);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote)
+        {
+            events.add("close:" + code + ":" + reason + ":" + remote);
+        }
+    }
+
+    /*
+        ### Gateway stub, one blocking thread per connection ###
+     */
+
+    private void accept()
+    {
+        try
+        {
+            while (true)
+            {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> serve(socket), "Gateway stub connection");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+        catch (IOException ignored) {} // server closed
+    }
+
+    private static void serve(Socket socket)
+    {
+        try (Socket ignored = socket)
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = socket.getOutputStream();
+            String key = null;
+            String line = readLine(in);
+            if (!line.startsWith("GET /?v=10&encoding=json "))
+                return;
+            while (!(line = readLine(in)).isEmpty())
+            {
+                if (line.toLowerCase().startsWith("sec-websocket-key:"))
+                    key = line.substring(18).trim();
+            }
+            String accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                .digest((key + "258EAFA5-E914-47DA-95CA-C5AB0DC85B11").getBytes(StandardCharsets.ISO_8859_1)));
+            out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n" +
+                       "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+
+            while (true)
+            {
+                int b0 = in.readUnsignedByte();
+                int b1 = in.readUnsignedByte();
+                if ((b1 & 0x80) == 0)
+                    return; // clients have to mask
+                long length = b1 & 0x7F;
+                if (length == 126)
+                    length = in.readUnsignedShort();
+                else if (length == 127)
+                    length = in.readLong();
+                byte[] mask = new byte[4];
+                in.readFully(mask);
+                byte[] payload = new byte[(int) length];
+                in.readFully(payload);
+                for (int i = 0; i < payload.length; i++)
+                    payload[i] ^= mask[i & 3];
+
+                int opcode = b0 & 0x0F;
+                String text = new String(payload, StandardCharsets.UTF_8);
+                if (opcode == 0x8)
+                {
+                    writeFrame(out, 0x88, payload);
+                    return;
+                }
+                else if (opcode == 0x1 && text.equals("close"))
+                {
+                    byte[] reason = "Authentication failed.".getBytes(StandardCharsets.UTF_8);
+                    ByteBuffer close = ByteBuffer.allocate(2 + reason.length).putShort((short) 4004).put(reason);
+                    writeFrame(out, 0x88, close.array());
+                }
+                else if (opcode == 0x1 && text.equals("fragment"))
+                {
+                    writeFrame(out, 0x01, "fragmented ".getBytes(StandardCharsets.UTF_8));
+                    writeFrame(out, 0x89, new byte[] { 1, 2, 3 });
+                    writeFrame(out, 0x80, "message".getBytes(StandardCharsets.UTF_8));
+                }
+                else if (opcode != 0xA)
+                {
+                    writeFrame(out, 0x80 | opcode, payload);
+                }
+            }
+        }
+        catch (Exception ignored) {} // connection closed
+    }
+
+    private static String readLine(DataInputStream in) throws IOException
+    {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n')
+        {
+            if (c == -1)
+                throw new EOFException();
+            if (c != '\r')
+                line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    private static void writeFrame(OutputStream out, int b0, byte[] payload) throws IOException
+    {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(b0);
+        if (payload.length <= 125)
+        {
+            frame.write(payload.length);
+        }
+        else if (payload.length <= 0xFFFF)
+        {
+            frame.write(126);
+            frame.write(payload.length >> 8);
+            frame.write(payload.length);
+        }
+        else
+        {
+            frame.write(127);
+            frame.write(ByteBuffer.allocate(8).putLong(payload.length).array());
+        }
+        frame.write(payload);
+        out.write(frame.toByteArray());
+        out.flush();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.audio.AudioNatives;
+import net.dv8tion.jda.api.audio.OpusClip;
+import net.dv8tion.jda.api.audio.OpusClipCache;
+import net.dv8tion.jda.api.audio.OpusClipSendHandler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+public class OpusClipTest
+{
+    @Test
+    public void testSendHandler()
+    {
+        OpusClip clip = OpusClip.fromFrames(Arrays.asList(new byte[] { 1, 2 }, new byte[] { 3 }, new byte[] { 4, 5, 6 }));
+        Assertions.assertEquals(3, clip.getFrameCount());
+        Assertions.assertEquals(60, clip.getDuration());
+
+        OpusClipSendHandler first = new OpusClipSendHandler(clip);
+        OpusClipSendHandler second = new OpusClipSendHandler(clip);
+        Assertions.assertTrue(first.isOpus());
+        assertFrame(new byte[] { 1, 2 }, first.provide20MsAudio());
+        assertFrame(new byte[] { 1, 2 }, second.provide20MsAudio());
+        ByteBuffer frame = first.provide20MsAudio();
+        assertFrame(new byte[] { 3 }, frame);
+        // the same view is moved to the next frame
+        Assertions.assertSame(frame, first.provide20MsAudio());
+        Assertions.assertFalse(first.canProvide());
+        Assertions.assertNull(first.provide20MsAudio());
+        Assertions.assertNull(first.getClip());
+
+        second.setLoop(true);
+        second.provide20MsAudio();
+        second.provide20MsAudio();
+        Assertions.assertTrue(second.canProvide());
+        assertFrame(new byte[] { 1, 2 }, second.provide20MsAudio());
+        second.stop();
+        Assertions.assertFalse(second.canProvide());
+    }
+
+    @Test
+    public void testCacheLimit()
+    {
+        OpusClip clip = OpusClip.fromFrames(Arrays.asList(new byte[92], new byte[92]));
+        Assertions.assertEquals(196, clip.getSize());
+        OpusClipCache cache = new OpusClipCache(500);
+        cache.put("a", clip);
+        cache.put("b", clip);
+        Assertions.assertSame(clip, cache.get("a"));
+        // b is the least recently used clip
+        cache.put("c", clip);
+        Assertions.assertNull(cache.get("b"));
+        Assertions.assertEquals(2, cache.getClipCount());
+        Assertions.assertEquals(392, cache.getSize());
+        Assertions.assertEquals(1, cache.getEvictionCount());
+
+        cache.put("large", OpusClip.fromFrames(Arrays.asList(new byte[600])));
+        Assertions.assertNull(cache.get("large"));
+        Assertions.assertEquals(2, cache.getClipCount());
+    }
+
+    @Test
+    public void testEncodeOnce()
+    {
+        Assumptions.assumeTrue(AudioNatives.ensureOpus());
+        OpusClipCache cache = new OpusClipCache(1 << 20);
+        AtomicInteger loads = new AtomicInteger();
+        // 50 ms of silence
+        byte[] pcm = new byte[OpusClip.PCM_FRAME_SIZE * 5 / 2];
+        OpusClip clip = cache.getOrEncode("silence", () -> {
+            loads.incrementAndGet();
+            return pcm;
+        });
+        Assertions.assertEquals(3, clip.getFrameCount());
+        Assertions.assertSame(clip, cache.getOrEncode("silence", () -> {
+            loads.incrementAndGet();
+            return pcm;
+        }));
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testEncodeError() throws InterruptedException
+    {
+        OpusClipCache cache = new OpusClipCache(1 << 20);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        Supplier<byte[]> pcm = () -> {
+            started.countDown();
+            try
+            {
+                fail.await();
+            }
+            catch (InterruptedException ignored) {}
+            throw new LinkageError("No natives");
+        };
+        AtomicReference<Throwable> encoderError = new AtomicReference<>();
+        AtomicReference<Throwable> waiterError = new AtomicReference<>();
+        Thread encoder = new Thread(() -> encoderError.set(Assertions.assertThrows(LinkageError.class, () -> cache.getOrEncode("clip", pcm))));
+        encoder.start();
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        // The waiting thread joins the encoding of the first thread
+        Thread waiter = new Thread(() -> waiterError.set(Assertions.assertThrows(LinkageError.class, () -> cache.getOrEncode("clip", pcm))));
+        waiter.start();
+        Thread.sleep(100);
+        fail.countDown();
+
+        encoder.join(5000);
+        waiter.join(5000);
+        Assertions.assertFalse(waiter.isAlive(), "Waiting thread did not return");
+        Assertions.assertNotNull(encoderError.get());
+        Assertions.assertNotNull(waiterError.get());
+        Assertions.assertNull(cache.get("clip"));
+    }
+
+    private static void assertFrame(byte[] expected, ByteBuffer frame)
+    {
+        Assertions.assertNotNull(frame);
+        Assertions.assertTrue(frame.hasArray());
+        byte[] actual = new byte[frame.remaining()];
+        frame.duplicate().get(actual);
+        Assertions.assertArrayEquals(expected, actual);
+    }
+}
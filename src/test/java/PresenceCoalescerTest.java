@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.entities.MemberPresenceImpl;
+import net.dv8tion.jda.internal.handle.PresenceCoalescer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class PresenceCoalescerTest
+{
+    private final List<DataObject> handled = new ArrayList<>();
+
+    @Test
+    public void testCoalescing() throws InterruptedException
+    {
+        PresenceCoalescer coalescer = new PresenceCoalescer(50, TimeUnit.MILLISECONDS, (responseTotal, raw) -> handled.add(raw));
+        Assertions.assertTrue(coalescer.offer(1, presence(1, 10, "online")));
+        Assertions.assertTrue(coalescer.offer(2, presence(1, 10, "idle")));
+        Assertions.assertTrue(coalescer.offer(3, presence(1, 11, "dnd")));
+        Assertions.assertTrue(coalescer.offer(4, presence(2, 10, "online")));
+        Assertions.assertEquals(3, coalescer.size());
+        Assertions.assertEquals(1, coalescer.getCoalescedCount());
+
+        // Nothing is due before the window has passed
+        coalescer.flushDue();
+        Assertions.assertTrue(handled.isEmpty());
+
+        Thread.sleep(100);
+        coalescer.flushDue();
+        Assertions.assertEquals(0, coalescer.size());
+        Assertions.assertEquals(3, handled.size());
+        // Only the latest payload per member is handled, in the order of the first payload
+        Assertions.assertEquals("idle", handled.get(0).getObject("d").getString("status"));
+        Assertions.assertEquals("dnd", handled.get(1).getObject("d").getString("status"));
+        Assertions.assertEquals("online", handled.get(2).getObject("d").getString("status"));
+    }
+
+    @Test
+    public void testFlushAllAndDiscard()
+    {
+        PresenceCoalescer coalescer = new PresenceCoalescer(1, TimeUnit.HOURS, (responseTotal, raw) -> handled.add(raw));
+        coalescer.offer(1, presence(1, 10, "online"));
+        coalescer.offer(2, presence(1, 11, "online"));
+        coalescer.offer(3, presence(2, 10, "online"));
+        coalescer.offer(4, presence(3, 10, "online"));
+        // Payloads without a guild are handled immediately
+        Assertions.assertFalse(coalescer.offer(5, DataObject.fromJson("{\"op\":0,\"t\":\"PRESENCE_UPDATE\",\"d\":{\"user\":{\"id\":\"10\"}}}")));
+
+        coalescer.discard(1, 11);
+        coalescer.discard(2);
+        Assertions.assertEquals(2, coalescer.size());
+
+        coalescer.flushDue();
+        Assertions.assertTrue(handled.isEmpty());
+        coalescer.flushAll();
+        Assertions.assertEquals(2, handled.size());
+        Assertions.assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    public void testSubMillisecondWindow() throws InterruptedException
+    {
+        // The window is not truncated to whole milliseconds
+        PresenceCoalescer coalescer = new PresenceCoalescer(500, TimeUnit.MICROSECONDS, (responseTotal, raw) -> handled.add(raw));
+        coalescer.offer(1, presence(1, 10, "online"));
+        Thread.sleep(5);
+        coalescer.flushDue();
+        Assertions.assertEquals(1, handled.size());
+    }
+
+    @Test
+    public void testFlushMember()
+    {
+        // Another event of the member handles its buffered presence first, other members stay buffered
+        PresenceCoalescer coalescer = new PresenceCoalescer(1, TimeUnit.HOURS, (responseTotal, raw) -> handled.add(raw));
+        coalescer.offer(1, presence(1, 10, "online"));
+        coalescer.offer(2, presence(1, 11, "online"));
+        coalescer.flush(1, 10);
+        coalescer.flush(1, 12);
+        Assertions.assertEquals(1, handled.size());
+        Assertions.assertEquals("10", handled.get(0).getObject("d").getObject("user").getString("id"));
+        Assertions.assertEquals(1, coalescer.size());
+    }
+
+    @Test
+    public void testActivitiesHashCollision()
+    {
+        // "Aa" and "BB" have the same hash code
+        byte[] first = "Aa".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "BB".getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(Arrays.hashCode(first), Arrays.hashCode(second));
+
+        MemberPresenceImpl presence = new MemberPresenceImpl();
+        Assertions.assertFalse(presence.isSameActivities(first, Arrays.hashCode(first)));
+        presence.setActivities(Collections.emptyList(), first, Arrays.hashCode(first));
+        Assertions.assertTrue(presence.isSameActivities("Aa".getBytes(StandardCharsets.UTF_8), Arrays.hashCode(first)));
+        Assertions.assertFalse(presence.isSameActivities(second, Arrays.hashCode(second)));
+    }
+
+    private static DataObject presence(long guildId, long userId, String status)
+    {
+        return DataObject.fromJson("{\"op\":0,\"t\":\"PRESENCE_UPDATE\",\"d\":{\"guild_id\":\"" + guildId + "\",\"user\":{\"id\":\"" + userId + "\"},\"status\":\"" + status + "\"}}");
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.utils.CoordinatedSessionController;
+import net.dv8tion.jda.api.utils.SessionController;
+import net.dv8tion.jda.api.utils.SessionCoordinator;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SessionCoordinatorTest
+{
+    private SessionCoordinator coordinator;
+    private CoordinatedSessionController first, second;
+
+    @BeforeEach
+    public void setup() throws IOException
+    {
+        coordinator = new SessionCoordinator(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 300, TimeUnit.MILLISECONDS).start();
+        first = new CoordinatedSessionController(coordinator.getPort());
+        second = new CoordinatedSessionController(coordinator.getPort());
+    }
+
+    @AfterEach
+    public void teardown() throws IOException
+    {
+        first.shutdown();
+        second.shutdown();
+        coordinator.close();
+    }
+
+    @Test
+    public void testIdentifyTicketsAcrossControllers() throws InterruptedException
+    {
+        // shard 0 and 2 share bucket 0 with a concurrency of 2
+        first.setConcurrency(2);
+        second.setConcurrency(2);
+        TestNode a = new TestNode(0);
+        TestNode b = new TestNode(2);
+
+        first.appendSession(a);
+        second.appendSession(b);
+        Assertions.assertTrue(a.started.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(b.started.await(5, TimeUnit.SECONDS));
+        long gap = Math.abs(a.startTime - b.startTime);
+        Assertions.assertTrue(gap >= TimeUnit.MILLISECONDS.toNanos(250), "Shards of the same bucket started " + gap + "ns apart");
+    }
+
+    @Test
+    public void testDelayStartsWithIdentify() throws InterruptedException
+    {
+        first.setConcurrency(2);
+        second.setConcurrency(2);
+        // The first shard needs a while before it sends its IDENTIFY
+        TestNode a = new TestNode(0, 400);
+        TestNode b = new TestNode(2, 0);
+
+        first.appendSession(a);
+        Assertions.assertTrue(a.started.await(5, TimeUnit.SECONDS));
+        second.appendSession(b);
+        Assertions.assertTrue(b.started.await(5, TimeUnit.SECONDS));
+        long gap = b.startTime - a.identifyNanos;
+        Assertions.assertTrue(gap >= TimeUnit.MILLISECONDS.toNanos(250), "Shard started " + gap + "ns after the previous IDENTIFY");
+    }
+
+    @Test
+    public void testLeaseExpiry() throws InterruptedException
+    {
+        coordinator.setLeaseTimeout(500, TimeUnit.MILLISECONDS);
+        first.setConcurrency(2);
+        second.setConcurrency(2);
+        // The first shard never releases its lease
+        TestNode a = new TestNode(0, 10000);
+        TestNode b = new TestNode(2, 0);
+
+        first.appendSession(a);
+        Assertions.assertTrue(a.started.await(5, TimeUnit.SECONDS));
+        second.appendSession(b);
+        Assertions.assertTrue(b.started.await(5, TimeUnit.SECONDS));
+        long gap = b.startTime - a.startTime;
+        Assertions.assertTrue(gap >= TimeUnit.MILLISECONDS.toNanos(750), "Shard started " + gap + "ns after the expired lease was granted");
+        a.interrupt();
+    }
+
+    @Test
+    public void testTicketTimeout() throws InterruptedException
+    {
+        second.setTicketTimeout(200, TimeUnit.MILLISECONDS);
+        first.setConcurrency(2);
+        second.setConcurrency(2);
+        TestNode a = new TestNode(0, 10000);
+        TestNode b = new TestNode(2, 0);
+
+        first.appendSession(a);
+        Assertions.assertTrue(a.started.await(5, TimeUnit.SECONDS));
+        // The lease of the first shard is held for 30 seconds, the second shard starts without coordination
+        second.appendSession(b);
+        Assertions.assertTrue(b.started.await(5, TimeUnit.SECONDS));
+        a.interrupt();
+    }
+
+    @Test
+    public void testGlobalRatelimit() throws InterruptedException
+    {
+        long until = System.currentTimeMillis() + 10000;
+        first.setGlobalRatelimit(until);
+        Assertions.assertEquals(until, first.getGlobalRatelimit());
+
+        // the second controller only connects on its first request
+        second.setGlobalRatelimit(Long.MIN_VALUE);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (second.getGlobalRatelimit() != until && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        Assertions.assertEquals(until, second.getGlobalRatelimit());
+    }
+
+    private static class TestNode implements SessionController.SessionConnectNode
+    {
+        private final JDA api = Mockito.mock(JDA.class);
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final int shardId;
+        private final long identifyDelay;
+        private volatile Thread thread;
+        private volatile long startTime;
+        private volatile long identifyNanos = Long.MIN_VALUE;
+
+        private TestNode(int shardId)
+        {
+            this(shardId, 0);
+        }
+
+        private TestNode(int shardId, long identifyDelay)
+        {
+            this.shardId = shardId;
+            this.identifyDelay = identifyDelay;
+        }
+
+        private void interrupt()
+        {
+            if (thread != null)
+                thread.interrupt();
+        }
+
+        @Override
+        public boolean isReconnect()
+        {
+            return false;
+        }
+
+        @NotNull
+        @Override
+        public JDA getJDA()
+        {
+            return api;
+        }
+
+        @NotNull
+        @Override
+        public JDA.ShardInfo getShardInfo()
+        {
+            return new JDA.ShardInfo(shardId, 4);
+        }
+
+        @Override
+        public void run(boolean isLast) throws InterruptedException
+        {
+            thread = Thread.currentThread();
+            startTime = System.nanoTime();
+            started.countDown();
+            if (identifyDelay > 0)
+                Thread.sleep(identifyDelay);
+            identifyNanos = System.nanoTime();
+        }
+
+        @Override
+        public long getIdentifyNanos()
+        {
+            return identifyNanos;
+        }
+    }
+}
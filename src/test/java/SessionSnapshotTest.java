@@ -0,0 +1,253 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.dv8tion.jda.api.OnlineStatus;
+import net.dv8tion.jda.api.entities.ClientType;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.ICategorizableChannel;
+import net.dv8tion.jda.api.entities.IPermissionContainer;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.RichPresence;
+import net.dv8tion.jda.api.entities.ThreadChannel;
+import net.dv8tion.jda.api.entities.sticker.GuildSticker;
+import net.dv8tion.jda.api.entities.sticker.Sticker;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.requests.SessionSnapshot;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.SessionConfig;
+import net.dv8tion.jda.internal.utils.config.ThreadingConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class SessionSnapshotTest
+{
+    private static final String SELF_USER = "{\"id\":\"10\",\"username\":\"bot\",\"discriminator\":\"0001\",\"verified\":true,\"mfa_enabled\":false,\"bot\":true}";
+    private static final String GUILD = "{\"id\":\"1\",\"name\":\"guild\",\"owner_id\":\"11\",\"afk_timeout\":60,\"member_count\":2," +
+        "\"system_channel_id\":\"2\"," +
+        "\"members\":[" +
+            "{\"user\":{\"id\":\"10\",\"username\":\"bot\",\"discriminator\":\"0001\",\"bot\":true},\"roles\":[],\"joined_at\":\"2020-01-01T00:00:00+00:00\"}," +
+            "{\"user\":{\"id\":\"11\",\"username\":\"owner\",\"discriminator\":\"0002\"},\"nick\":\"boss\",\"roles\":[\"20\"],\"joined_at\":\"2019-01-01T00:00:00+00:00\"}]," +
+        "\"roles\":[" +
+            "{\"id\":\"1\",\"name\":\"@everyone\",\"color\":0,\"position\":0,\"permissions\":\"1024\"}," +
+            "{\"id\":\"20\",\"name\":\"admin\",\"color\":16711680,\"position\":1,\"permissions\":\"8\",\"hoist\":true}]," +
+        "\"channels\":[" +
+            "{\"id\":\"7\",\"type\":4,\"name\":\"category\",\"position\":0,\"permission_overwrites\":[]}," +
+            "{\"id\":\"2\",\"type\":0,\"name\":\"general\",\"position\":0,\"parent_id\":\"7\",\"topic\":\"hello\",\"permission_overwrites\":[" +
+                "{\"id\":\"1\",\"type\":0,\"allow\":\"0\",\"deny\":\"2048\"},{\"id\":\"11\",\"type\":1,\"allow\":\"2048\",\"deny\":\"0\"}]}," +
+            "{\"id\":\"8\",\"type\":2,\"name\":\"voice\",\"position\":1,\"parent_id\":\"7\",\"bitrate\":64000,\"user_limit\":5,\"permission_overwrites\":[]}]," +
+        "\"threads\":[{\"id\":\"5\",\"type\":11,\"name\":\"thread\",\"parent_id\":\"2\",\"owner_id\":\"10\",\"member_count\":1,\"message_count\":3," +
+            "\"thread_metadata\":{\"locked\":false,\"archived\":false,\"archive_timestamp\":\"2020-01-02T00:00:00+00:00\",\"auto_archive_duration\":60}," +
+            "\"member\":{\"join_timestamp\":\"2020-01-02T00:00:00+00:00\",\"flags\":0}}]," +
+        "\"emojis\":[{\"id\":\"4\",\"name\":\"wave\",\"roles\":[],\"animated\":false,\"managed\":false}]," +
+        "\"stickers\":[{\"id\":\"6\",\"name\":\"sticker\",\"format_type\":1,\"type\":2,\"description\":\"a sticker\",\"tags\":\"smile, wave\",\"available\":true,\"guild_id\":\"1\"}]," +
+        "\"voice_states\":[{\"user_id\":\"11\",\"channel_id\":\"8\",\"session_id\":\"voice\",\"self_mute\":true,\"self_deaf\":false,\"mute\":false,\"deaf\":false,\"suppress\":false,\"self_stream\":false}]," +
+        "\"presences\":[{\"user\":{\"id\":\"11\"},\"status\":\"idle\",\"client_status\":{\"desktop\":\"idle\"}," +
+            "\"activities\":[{\"name\":\"game\",\"type\":0,\"timestamps\":{\"start\":1000}},{\"name\":\"song\",\"type\":2,\"details\":\"title\",\"state\":\"artist\",\"application_id\":\"3\"," +
+            "\"assets\":{\"large_image\":\"cover\",\"large_text\":\"album\"},\"party\":{\"id\":\"party\",\"size\":[1,4]}}]}]}";
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        File file = new File(directory, "shard-0.snapshot");
+        new SessionSnapshot(createData()).write(file);
+
+        SessionSnapshot snapshot = SessionSnapshot.read(file);
+        Assertions.assertNotNull(snapshot);
+        Assertions.assertEquals("abc", snapshot.getSessionId());
+        Assertions.assertEquals(42, snapshot.getSequence());
+        Assertions.assertEquals(1, snapshot.toData().getArray("guilds").length());
+        Assertions.assertFalse(new File(directory, "shard-0.snapshot.tmp").exists());
+    }
+
+    @Test
+    public void testChecksumMismatch() throws IOException
+    {
+        File file = new File(directory, "shard-0.snapshot");
+        new SessionSnapshot(createData()).write(file);
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file.toPath(), bytes);
+        Assertions.assertNull(SessionSnapshot.read(file));
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException
+    {
+        File file = new File(directory, "shard-0.snapshot");
+        Assertions.assertNull(SessionSnapshot.read(file));
+
+        Files.write(file.toPath(), new byte[] {1, 2, 3});
+        Assertions.assertNull(SessionSnapshot.read(file));
+    }
+
+    @Test
+    public void testRestore() throws IOException
+    {
+        JDAImpl api = createApi();
+        Guild expected = createGuild(api);
+
+        File file = new File(directory, "shard-0.snapshot");
+        SessionSnapshot.capture(api, "abc", 0).write(file);
+        SessionSnapshot snapshot = SessionSnapshot.read(file);
+        Assertions.assertNotNull(snapshot);
+        JDAImpl restored = createApi();
+        Assertions.assertTrue(snapshot.isCompatible(restored, 0));
+        snapshot.restore(restored);
+
+        Assertions.assertEquals(10, restored.getSelfUser().getIdLong());
+        Guild actual = restored.getGuildById(1);
+        Assertions.assertNotNull(actual);
+        Assertions.assertEquals(expected.getName(), actual.getName());
+        Assertions.assertEquals(expected.getOwnerIdLong(), actual.getOwnerIdLong());
+        Assertions.assertEquals(expected.getMemberCount(), actual.getMemberCount());
+        Assertions.assertEquals(expected.getSystemChannel(), actual.getSystemChannel());
+
+        Assertions.assertEquals(describeRoles(expected), describeRoles(actual));
+        Assertions.assertEquals(describeChannels(expected), describeChannels(actual));
+        Assertions.assertEquals(describeMembers(expected), describeMembers(actual));
+        Assertions.assertEquals(expected.getEmojis().size(), actual.getEmojis().size());
+        Assertions.assertEquals(expected.getEmojiById(4).getName(), actual.getEmojiById(4).getName());
+
+        // Threads are not sent again on RESUME
+        ThreadChannel thread = actual.getThreadChannelById(5);
+        Assertions.assertNotNull(thread);
+        Assertions.assertEquals("thread", thread.getName());
+        Assertions.assertEquals(actual.getTextChannelById(2), thread.getParentChannel());
+        Assertions.assertEquals(10, thread.getOwnerIdLong());
+        Assertions.assertEquals(3, thread.getMessageCount());
+        Assertions.assertEquals(ThreadChannel.AutoArchiveDuration.TIME_1_HOUR, thread.getAutoArchiveDuration());
+        Assertions.assertEquals(expected.getThreadChannelById(5).getTimeArchiveInfoLastModified(), thread.getTimeArchiveInfoLastModified());
+        Assertions.assertTrue(thread.isJoined());
+        Assertions.assertEquals(thread, restored.getThreadChannelById(5));
+
+        GuildSticker sticker = actual.getStickerById(6);
+        Assertions.assertNotNull(sticker);
+        Assertions.assertEquals("sticker", sticker.getName());
+        Assertions.assertEquals(expected.getStickerById(6).getTags(), sticker.getTags());
+        Assertions.assertEquals(Sticker.StickerFormat.PNG, sticker.getFormatType());
+
+        // Voice states and presences are not sent again on RESUME either
+        Member owner = actual.getMemberById(11);
+        Assertions.assertNotNull(owner);
+        Assertions.assertEquals(actual.getVoiceChannelById(8), owner.getVoiceState().getChannel());
+        Assertions.assertTrue(owner.getVoiceState().isSelfMuted());
+        Assertions.assertEquals("voice", owner.getVoiceState().getSessionId());
+        Assertions.assertEquals(OnlineStatus.IDLE, owner.getOnlineStatus());
+        Assertions.assertEquals(OnlineStatus.IDLE, owner.getOnlineStatus(ClientType.DESKTOP));
+        Assertions.assertEquals(expected.getMemberById(11).getActivities(), owner.getActivities());
+        RichPresence song = owner.getActivities().get(1).asRichPresence();
+        Assertions.assertNotNull(song);
+        Assertions.assertEquals("artist", song.getState());
+        Assertions.assertEquals("cover", song.getLargeImage().getKey());
+        Assertions.assertEquals(4, song.getParty().getMax());
+        Assertions.assertEquals(OnlineStatus.OFFLINE, actual.getMemberById(10).getOnlineStatus());
+    }
+
+    @Test
+    public void testCompactGuild()
+    {
+        SessionConfig sessionConfig = SessionConfig.getDefault();
+        sessionConfig.setGuildHydrationIdleTime(1);
+        JDAImpl api = new JDAImpl(new AuthorizationConfig("token"), sessionConfig, new ThreadingConfig(), null);
+        GuildImpl guild = (GuildImpl) createGuild(api);
+        Assertions.assertTrue(guild.isCompact());
+
+        // The emojis and stickers are copied from the compact payload without hydrating the guild
+        SessionSnapshot snapshot = SessionSnapshot.capture(api, "abc", 0);
+        Assertions.assertTrue(guild.isCompact());
+
+        JDAImpl restored = createApi();
+        snapshot.restore(restored);
+        Guild actual = restored.getGuildById(1);
+        Assertions.assertNotNull(actual);
+        Assertions.assertEquals("wave", actual.getEmojiById(4).getName());
+        Assertions.assertEquals("sticker", actual.getStickerById(6).getName());
+    }
+
+    private static JDAImpl createApi()
+    {
+        return new JDAImpl(new AuthorizationConfig("token"), null, new ThreadingConfig(), null);
+    }
+
+    private static Guild createGuild(JDAImpl api)
+    {
+        api.getEntityBuilder().createSelfUser(DataObject.fromJson(SELF_USER));
+        TLongObjectMap<DataObject> memberMap = new TLongObjectHashMap<>();
+        DataObject guildJson = DataObject.fromJson(GUILD);
+        DataArray memberArray = guildJson.getArray("members");
+        for (int i = 0; i < memberArray.length(); i++)
+            memberMap.put(memberArray.getObject(i).getObject("user").getUnsignedLong("id"), memberArray.getObject(i));
+        return api.getEntityBuilder().createGuild(1, guildJson, memberMap, 2);
+    }
+
+    private static List<String> describeRoles(Guild guild)
+    {
+        return guild.getRoles().stream()
+            .map(role -> role.getId() + ":" + role.getName() + ":" + role.getPositionRaw() + ":" + role.getPermissionsRaw() + ":" + role.getColorRaw())
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> describeChannels(Guild guild)
+    {
+        return guild.getChannels().stream()
+            .map(channel -> {
+                String description = channel.getId() + ":" + channel.getType() + ":" + channel.getName();
+                if (channel instanceof ICategorizableChannel)
+                    description += ":" + ((ICategorizableChannel) channel).getParentCategoryIdLong();
+                if (channel instanceof IPermissionContainer)
+                {
+                    description += ((IPermissionContainer) channel).getPermissionOverrides().stream()
+                        .map(override -> override.getId() + "=" + override.getAllowedRaw() + "/" + override.getDeniedRaw())
+                        .sorted()
+                        .collect(Collectors.joining(",", "[", "]"));
+                }
+                return description;
+            })
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> describeMembers(Guild guild)
+    {
+        return guild.getMembers().stream()
+            .map(member -> member.getId() + ":" + member.getUser().getAsTag() + ":" + member.getNickname() + ":" + member.getRoles() + ":" + member.getTimeJoined())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    private static DataObject createData()
+    {
+        return DataObject.empty()
+            .put("session_id", "abc")
+            .put("seq", 42)
+            .put("guilds", DataArray.empty().add(DataObject.empty().put("id", 1L).put("name", "test")));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.audio.factory.IAudioSendSystem;
+import net.dv8tion.jda.api.audio.factory.IPacketProvider;
+import net.dv8tion.jda.api.audio.factory.SharedSendFactory;
+import net.dv8tion.jda.api.audio.factory.SharedSendSystem;
+import net.dv8tion.jda.api.audio.hooks.ConnectionStatus;
+import net.dv8tion.jda.api.entities.AudioChannel;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+public class SharedSendFactoryTest
+{
+    private SharedSendFactory factory;
+    private DatagramSocket receiver;
+
+    @BeforeEach
+    public void setup() throws IOException
+    {
+        factory = new SharedSendFactory(1);
+        receiver = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        receiver.setSoTimeout(5000);
+    }
+
+    @AfterEach
+    public void teardown()
+    {
+        factory.shutdown();
+        receiver.close();
+    }
+
+    @Test
+    public void testSendFrames() throws IOException
+    {
+        DatagramSocket socket = new DatagramSocket();
+        try
+        {
+            IAudioSendSystem first = factory.createSendSystem(new Provider("first", socket, (byte) 1));
+            IAudioSendSystem second = factory.createSendSystem(new Provider("second", socket, (byte) 2));
+            first.start();
+            second.start();
+
+            boolean[] received = new boolean[3];
+            DatagramPacket packet = new DatagramPacket(new byte[16], 16);
+            for (int i = 0; i < 10; i++)
+            {
+                receiver.receive(packet);
+                Assertions.assertEquals(4, packet.getLength());
+                received[packet.getData()[0]] = true;
+            }
+            Assertions.assertTrue(received[1] && received[2]);
+            Assertions.assertEquals(2, factory.getSendSystems().size());
+            for (SharedSendSystem system : factory.getSendSystems())
+                Assertions.assertTrue(system.getSentPacketCount() > 0);
+
+            first.shutdown();
+            second.shutdown();
+            drain(packet);
+            Assertions.assertTrue(factory.getSendSystems().isEmpty());
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    private void drain(DatagramPacket packet) throws IOException
+    {
+        receiver.setSoTimeout(200);
+        try
+        {
+            while (true)
+                receiver.receive(packet);
+        }
+        catch (SocketTimeoutException ignored) {}
+    }
+
+    private class Provider implements IPacketProvider
+    {
+        private final String identifier;
+        private final DatagramSocket socket;
+        private final ByteBuffer buffer;
+
+        private Provider(String identifier, DatagramSocket socket, byte marker)
+        {
+            this.identifier = identifier;
+            this.socket = socket;
+            this.buffer = ByteBuffer.wrap(new byte[] { marker, 0, 0, 0 });
+        }
+
+        @NotNull
+        @Override
+        public String getIdentifier()
+        {
+            return identifier;
+        }
+
+        @Override
+        public AudioChannel getConnectedChannel()
+        {
+            return null;
+        }
+
+        @NotNull
+        @Override
+        public DatagramSocket getUdpSocket()
+        {
+            return socket;
+        }
+
+        @Override
+        public InetSocketAddress getSocketAddress()
+        {
+            return (InetSocketAddress) receiver.getLocalSocketAddress();
+        }
+
+        @Override
+        public ByteBuffer getNextPacketRaw(boolean changeTalking)
+        {
+            buffer.rewind();
+            return buffer;
+        }
+
+        @Override
+        public DatagramPacket getNextPacket(boolean changeTalking)
+        {
+            return null;
+        }
+
+        @Override
+        public void onConnectionError(@NotNull ConnectionStatus status) {}
+
+        @Override
+        public void onConnectionLost() {}
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.dv8tion.jda.api.GatewayEncoding;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.requests.GatewayTransport;
+import net.dv8tion.jda.api.utils.Compression;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.requests.WebSocketClient;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import net.dv8tion.jda.internal.utils.config.SessionConfig;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TransportListenerTest
+{
+    private static final int CONNECTIONS = 64;
+
+    private final FakeTransport transport = new FakeTransport();
+    private JDAImpl api;
+
+    @BeforeEach
+    public void setup()
+    {
+        SessionConfig sessionConfig = SessionConfig.getDefault();
+        sessionConfig.setGatewayTransport(transport);
+        api = new JDAImpl(new AuthorizationConfig("token"), sessionConfig, null, null);
+        api.initReplay(new JDA.ShardInfo(0, 1), 0);
+    }
+
+    @AfterEach
+    public void teardown()
+    {
+        api.shutdownNow();
+    }
+
+    @Test
+    public void testSharedThreads() throws InterruptedException
+    {
+        // The first connections start the threads of the shared pool
+        connect(Runtime.getRuntime().availableProcessors() + 1);
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        connect(CONNECTIONS);
+        int added = ManagementFactory.getThreadMXBean().getThreadCount() - threads;
+        Assertions.assertTrue(added < CONNECTIONS / 8, "Started " + added + " threads for " + CONNECTIONS + " connections");
+    }
+
+    @Test
+    public void testMessagesReleased() throws InterruptedException
+    {
+        connect(CONNECTIONS);
+        Assertions.assertEquals(transport.sent.get(), transport.released.get());
+    }
+
+    private void connect(int amount) throws InterruptedException
+    {
+        List<TransportClient> clients = new ArrayList<>();
+        for (int i = 0; i < amount; i++)
+        {
+            TransportClient client = new TransportClient(api);
+            client.open();
+            clients.add(client);
+        }
+        // Every connection receives a heartbeat ack, the message is released once it was handled
+        for (GatewayTransport.Listener listener : transport.listeners)
+            listener.onMessage(transport.new FakeMessage("{\"op\":11}"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transport.released.get() < transport.sent.get() && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+        Assertions.assertEquals(transport.sent.get(), transport.released.get());
+        for (TransportClient client : clients)
+            Assertions.assertTrue(client.isConnected());
+    }
+
+    private static class TransportClient extends WebSocketClient
+    {
+        private TransportClient(JDAImpl api)
+        {
+            super(api, Compression.NONE, 0, GatewayEncoding.JSON, false);
+        }
+
+        private void open()
+        {
+            connect();
+        }
+    }
+
+    private static class FakeTransport implements GatewayTransport
+    {
+        private final List<Listener> listeners = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger sent = new AtomicInteger();
+        private final AtomicInteger released = new AtomicInteger();
+
+        @NotNull
+        @Override
+        public Connection connect(@NotNull URI uri, @NotNull Listener listener)
+        {
+            Connection connection = new Connection()
+            {
+                @Override
+                public boolean sendText(@NotNull String text)
+                {
+                    return true;
+                }
+
+                @Override
+                public boolean sendBinary(@NotNull byte[] data)
+                {
+                    return true;
+                }
+
+                @Override
+                public void setReadTimeout(int millis) {}
+
+                @Override
+                public void close(int code, String reason) {}
+            };
+            listener.onOpen(connection);
+            listeners.add(listener);
+            return connection;
+        }
+
+        private class FakeMessage implements Message
+        {
+            private final ByteBuffer data;
+
+            private FakeMessage(String text)
+            {
+                this.data = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+                sent.incrementAndGet();
+            }
+
+            @NotNull
+            @Override
+            public ByteBuffer getData()
+            {
+                return data;
+            }
+
+            @Override
+            public boolean isBinary()
+            {
+                return false;
+            }
+
+            @Override
+            public void release()
+            {
+                released.incrementAndGet();
+            }
+        }
+    }
+}
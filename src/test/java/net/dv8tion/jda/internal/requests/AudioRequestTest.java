@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dv8tion.jda.internal.requests;
+
+import net.dv8tion.jda.api.audio.AudioSendHandler;
+import net.dv8tion.jda.api.entities.AudioChannel;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.managers.AudioManager;
+import net.dv8tion.jda.internal.audio.ConnectionRequest;
+import net.dv8tion.jda.internal.audio.ConnectionStage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class AudioRequestTest
+{
+    private final Guild guild = Mockito.mock(Guild.class);
+    private final AudioChannel channel = Mockito.mock(AudioChannel.class);
+    private final AudioManager sending = Mockito.mock(AudioManager.class);
+    private final AudioManager idle = Mockito.mock(AudioManager.class);
+
+    public AudioRequestTest()
+    {
+        Mockito.when(guild.getIdLong()).thenReturn(1L);
+        Mockito.when(channel.getIdLong()).thenReturn(2L);
+        Mockito.when(channel.getGuild()).thenReturn(guild);
+        Mockito.when(sending.getSendingHandler()).thenReturn(Mockito.mock(AudioSendHandler.class));
+    }
+
+    @Test
+    public void testRequestOrder()
+    {
+        ConnectionRequest connect = new ConnectionRequest(channel, ConnectionStage.CONNECT);
+        ConnectionRequest reconnect = new ConnectionRequest(channel, ConnectionStage.RECONNECT);
+        ConnectionRequest disconnect = new ConnectionRequest(guild);
+
+        List<String> requests = new ArrayList<>();
+        requests.add("idle disconnect");
+        requests.add("idle reconnect");
+        requests.add("sending reconnect");
+        requests.add("idle connect");
+        requests.add("sending disconnect");
+        requests.add("sending connect");
+        requests.sort(Comparator.comparingInt(name ->
+        {
+            AudioManager manager = name.startsWith("sending") ? sending : idle;
+            ConnectionRequest request = name.endsWith("disconnect") ? disconnect : name.endsWith("reconnect") ? reconnect : connect;
+            return WebSocketClient.getAudioRequestOrder(manager, request);
+        }));
+
+        // Sessions which send audio first, disconnects last regardless of the handler
+        Assertions.assertEquals("sending connect", requests.get(0));
+        Assertions.assertEquals("sending reconnect", requests.get(1));
+        Assertions.assertEquals("idle connect", requests.get(2));
+        Assertions.assertEquals("idle reconnect", requests.get(3));
+        Assertions.assertEquals(WebSocketClient.getAudioRequestOrder(sending, disconnect), WebSocketClient.getAudioRequestOrder(idle, disconnect));
+        Assertions.assertTrue(requests.get(4).endsWith("disconnect"));
+        Assertions.assertTrue(requests.get(5).endsWith("disconnect"));
+    }
+
+    @Test
+    public void testReconnectWithoutChannel()
+    {
+        // The old session is gone, so only the connect is sent
+        ConnectionRequest request = new ConnectionRequest(channel, ConnectionStage.RECONNECT);
+        Assertions.assertEquals(ConnectionStage.CONNECT, request.resolveStage(null));
+        Assertions.assertEquals(ConnectionStage.CONNECT, request.getStage());
+        Assertions.assertEquals(2L, request.getChannelId());
+    }
+
+    @Test
+    public void testReconnectWithChannel()
+    {
+        // We are still in a channel, so the old session is closed first
+        ConnectionRequest request = new ConnectionRequest(channel, ConnectionStage.RECONNECT);
+        Assertions.assertEquals(ConnectionStage.RECONNECT, request.resolveStage(channel));
+        Assertions.assertEquals(ConnectionStage.RECONNECT, request.getStage());
+    }
+
+    @Test
+    public void testOtherStagesUnchanged()
+    {
+        Assertions.assertEquals(ConnectionStage.CONNECT, new ConnectionRequest(channel, ConnectionStage.CONNECT).resolveStage(null));
+        Assertions.assertEquals(ConnectionStage.DISCONNECT, new ConnectionRequest(guild).resolveStage(null));
+        Assertions.assertEquals(ConnectionStage.DISCONNECT, new ConnectionRequest(guild).resolveStage(channel));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.BufferOverflow
+import net.dv8tion.jda.api.JDA
+import net.dv8tion.jda.api.events.Event
+import net.dv8tion.jda.internal.JDAImpl
+import net.dv8tion.jda.internal.utils.Measurement
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig
+import net.dv8tion.jda.internal.utils.config.ThreadingConfig
+import net.gloryx.kda.events.ChannelEventManager
+import net.gloryx.kda.events.CoroutineEventManager
+import net.gloryx.kda.events.getDefaultScope
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares the throughput of [CoroutineEventManager] and [ChannelEventManager].
+ *
+ * Every listener handles one of two event types, events of both types are fired alternately.
+ * A run ends when every listener has handled all of its events. The allocations are the ones of the firing thread,
+ * which is the gateway thread in a real bot.
+ *
+ * Run the main function from the test classpath with `[events] [listeners...]`
+ */
+private class FirstEvent(api: JDA) : Event(api)
+private class SecondEvent(api: JDA) : Event(api)
+
+private const val WARMUP = 3
+
+private fun run(api: JDA, channels: Boolean, listeners: Int, events: Int): Measurement.Sample {
+    val job = SupervisorJob()
+    val scope = getDefaultScope(job = job)
+    val manager = if (channels)
+        ChannelEventManager(scope, capacity = 4096, onBufferOverflow = BufferOverflow.SUSPEND)
+    else
+        CoroutineEventManager(scope)
+    // Half of the listeners handle each type
+    val latch = CountDownLatch(listeners * (events / 2))
+    repeat(listeners) { i ->
+        if (i % 2 == 0)
+            manager.listener<FirstEvent> { latch.countDown() }
+        else
+            manager.listener<SecondEvent> { latch.countDown() }
+    }
+    val first = FirstEvent(api)
+    val second = SecondEvent(api)
+
+    val measurement = Measurement.start()
+    for (i in 0 until events)
+        manager.handle(if (i % 2 == 0) first else second)
+    check(latch.await(1, TimeUnit.MINUTES)) { "Listeners did not handle all events" }
+    val sample = measurement.stop(events.toLong())
+    job.cancel()
+    return sample
+}
+
+fun main(args: Array<String>) {
+    val events = args.getOrNull(0)?.toInt() ?: 200_000
+    val listeners = if (args.size > 1) args.drop(1).map(String::toInt) else listOf(1, 10, 50)
+    val api = JDAImpl(AuthorizationConfig("benchmark"), null, ThreadingConfig(), null)
+    for (count in listeners) {
+        for (channels in listOf(false, true)) {
+            repeat(WARMUP) { run(api, channels, count, events) }
+            val name = if (channels) "ChannelEventManager" else "CoroutineEventManager"
+            println("$name, $count listeners: ${run(api, channels, count, events)}")
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import net.dv8tion.jda.api.JDA
+import net.dv8tion.jda.api.events.Event
+import net.dv8tion.jda.api.events.GenericEvent
+import net.dv8tion.jda.api.hooks.EventListener
+import net.dv8tion.jda.internal.JDAImpl
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig
+import net.dv8tion.jda.internal.utils.config.ThreadingConfig
+import net.gloryx.kda.events.ChannelEventManager
+import net.gloryx.kda.events.CoroutineEventListener
+import net.gloryx.kda.events.getDefaultScope
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ChannelEventManagerTest {
+    private val api = JDAImpl(AuthorizationConfig("token"), null, ThreadingConfig(), null)
+    private val job = SupervisorJob()
+
+    private class TestEvent(api: JDA, val value: Int) : Event(api)
+    private class OtherEvent(api: JDA) : Event(api)
+
+    /** Handles [TestEvent] and blocks every call until [gate] is completed */
+    private class BlockingListener(override val concurrency: Int = 0) : CoroutineEventListener {
+        val gate = CompletableDeferred<Unit>()
+        val started = CountDownLatch(1)
+        val received: MutableList<Int> = Collections.synchronizedList(mutableListOf())
+
+        override val eventType: Class<out GenericEvent> get() = TestEvent::class.java
+
+        override suspend fun onEvent(event: GenericEvent) {
+            received.add((event as TestEvent).value)
+            started.countDown()
+            gate.await()
+        }
+    }
+
+    private fun manager(capacity: Int = 16, onBufferOverflow: BufferOverflow = BufferOverflow.DROP_OLDEST) =
+        ChannelEventManager(getDefaultScope(job = job), capacity = capacity, onBufferOverflow = onBufferOverflow)
+
+    @AfterEach
+    fun cancel() {
+        job.cancel()
+    }
+
+    @Test
+    fun `events are routed by event type`() {
+        val manager = manager()
+        val typed = CountDownLatch(1)
+        val all = CountDownLatch(2)
+        val wrongType = mutableListOf<GenericEvent>()
+        manager.register(object : CoroutineEventListener {
+            override val eventType: Class<out GenericEvent> get() = TestEvent::class.java
+
+            override suspend fun onEvent(event: GenericEvent) {
+                if (event !is TestEvent)
+                    wrongType.add(event)
+                typed.countDown()
+            }
+        })
+        manager.register(EventListener { all.countDown() })
+
+        manager.handle(OtherEvent(api))
+        manager.handle(TestEvent(api, 1))
+        assertTrue(typed.await(5, TimeUnit.SECONDS))
+        assertTrue(all.await(5, TimeUnit.SECONDS))
+        assertEquals(emptyList<GenericEvent>(), wrongType)
+    }
+
+    @Test
+    fun `full channel drops the oldest event`() {
+        val manager = manager(capacity = 2)
+        val listener = BlockingListener()
+        manager.register(listener)
+
+        manager.handle(TestEvent(api, 1))
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS))
+        for (i in 2..4)
+            manager.handle(TestEvent(api, i))
+        listener.gate.complete(Unit)
+
+        awaitSize(listener, 3)
+        assertEquals(listOf(1, 3, 4), listener.received)
+    }
+
+    @Test
+    fun `full channel drops the latest event`() {
+        val manager = manager(capacity = 2, onBufferOverflow = BufferOverflow.DROP_LATEST)
+        val listener = BlockingListener()
+        manager.register(listener)
+
+        manager.handle(TestEvent(api, 1))
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS))
+        for (i in 2..4)
+            manager.handle(TestEvent(api, i))
+        listener.gate.complete(Unit)
+
+        awaitSize(listener, 3)
+        assertEquals(listOf(1, 2, 3), listener.received)
+    }
+
+    @Test
+    fun `full channel blocks the firing thread when suspending`() {
+        val manager = manager(capacity = 2, onBufferOverflow = BufferOverflow.SUSPEND)
+        val listener = BlockingListener()
+        manager.register(listener)
+
+        manager.handle(TestEvent(api, 1))
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS))
+        manager.handle(TestEvent(api, 2))
+        manager.handle(TestEvent(api, 3))
+        val sender = Thread { manager.handle(TestEvent(api, 4)) }
+        sender.start()
+        sender.join(200)
+        assertTrue(sender.isAlive)
+
+        listener.gate.complete(Unit)
+        sender.join(5000)
+        assertFalse(sender.isAlive)
+        awaitSize(listener, 4)
+        assertEquals(listOf(1, 2, 3, 4), listener.received)
+    }
+
+    @Test
+    fun `unregister closes the channel of the listener`() = runBlocking {
+        val manager = manager()
+        val listener = BlockingListener()
+        manager.register(listener)
+
+        manager.handle(TestEvent(api, 1))
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS))
+        manager.handle(TestEvent(api, 2))
+        manager.unregister(listener)
+        assertFalse(listener in manager.registeredListeners)
+
+        // The pending event is dropped, the worker stops once the running event is done
+        listener.gate.complete(Unit)
+        withTimeout(5000) {
+            job.children.forEach { it.join() }
+        }
+        manager.handle(TestEvent(api, 3))
+        assertEquals(listOf(1), listener.received)
+    }
+
+    @Test
+    fun `listener concurrency limits the running events`() {
+        val manager = manager()
+        val parallel = BlockingListener(concurrency = 3)
+        val sequential = BlockingListener()
+        manager.register(parallel)
+        manager.register(sequential)
+
+        for (i in 1..4)
+            manager.handle(TestEvent(api, i))
+        awaitSize(parallel, 3)
+        assertTrue(sequential.started.await(5, TimeUnit.SECONDS))
+        Thread.sleep(100)
+        assertEquals(3, parallel.received.size)
+        assertEquals(listOf(1), sequential.received)
+
+        parallel.gate.complete(Unit)
+        sequential.gate.complete(Unit)
+        awaitSize(parallel, 4)
+        awaitSize(sequential, 4)
+        assertEquals(listOf(1, 2, 3, 4), sequential.received)
+    }
+
+    private fun awaitSize(listener: BlockingListener, size: Int) {
+        val deadline = System.currentTimeMillis() + 5000
+        while (listener.received.size < size && System.currentTimeMillis() < deadline)
+            Thread.sleep(5)
+        assertEquals(size, listener.received.size)
+    }
+}
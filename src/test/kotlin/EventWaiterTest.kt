@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Austin Keener, Michael Ritter, Florian Spieß, and the JDA contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.async
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.runBlocking
+import net.dv8tion.jda.api.JDA
+import net.dv8tion.jda.api.events.Event
+import net.dv8tion.jda.api.hooks.InterfacedEventManager
+import net.dv8tion.jda.internal.JDAImpl
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig
+import net.dv8tion.jda.internal.utils.config.ThreadingConfig
+import net.gloryx.kda.events.CoroutineEventManager
+import net.gloryx.kda.events.WaiterIndex
+import net.gloryx.kda.events.waiters
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import kotlin.time.Duration.Companion.milliseconds
+
+class EventWaiterTest {
+    private val api = JDAImpl(AuthorizationConfig("token"), null, ThreadingConfig(), null)
+    private val byValue = WaiterIndex<TestEvent> { it.value % 2 }
+
+    private class TestEvent(api: JDA, val value: Int) : Event(api)
+
+    @Test
+    fun `await resumes with the first matching event`() = runBlocking {
+        val waiters = api.waiters
+        val result = async(start = CoroutineStart.UNDISPATCHED) {
+            waiters.await(TestEvent::class.java) { it.value > 1 }
+        }
+        assertEquals(1, waiters.size)
+
+        api.eventManager.handle(TestEvent(api, 1))
+        api.eventManager.handle(TestEvent(api, 2))
+        api.eventManager.handle(TestEvent(api, 3))
+        assertEquals(2, result.await().value)
+        assertEquals(0, waiters.size)
+    }
+
+    @Test
+    fun `await only tests events with the same key`() = runBlocking {
+        val waiters = api.waiters
+        var tested = 0
+        val result = async(start = CoroutineStart.UNDISPATCHED) {
+            waiters.await(TestEvent::class.java, byValue, 0) { tested++; true }
+        }
+
+        api.eventManager.handle(TestEvent(api, 1))
+        api.eventManager.handle(TestEvent(api, 4))
+        assertEquals(4, result.await().value)
+        assertEquals(1, tested)
+    }
+
+    @Test
+    fun `await times out`() = runBlocking {
+        val waiters = api.waiters
+        assertThrows<TimeoutCancellationException> {
+            runBlocking { waiters.await(TestEvent::class.java, timeout = 50.milliseconds) }
+        }
+        assertEquals(0, waiters.size)
+    }
+
+    @Test
+    fun `cancelled await is removed`() = runBlocking {
+        val waiters = api.waiters
+        val result = async(start = CoroutineStart.UNDISPATCHED) {
+            waiters.await(TestEvent::class.java)
+        }
+        assertEquals(1, waiters.size)
+
+        result.cancel()
+        assertEquals(0, waiters.size)
+        api.eventManager.handle(TestEvent(api, 1))
+        assertTrue(result.isCancelled)
+    }
+
+    @Test
+    fun `waiter is registered again after replacing the event manager`() = runBlocking {
+        val waiters = api.waiters
+        api.setEventManager(InterfacedEventManager())
+        assertFalse(waiters in api.registeredListeners)
+
+        assertSame(waiters, api.waiters)
+        assertTrue(waiters in api.registeredListeners)
+        val result = async(start = CoroutineStart.UNDISPATCHED) {
+            api.waiters.await(TestEvent::class.java)
+        }
+        api.eventManager.handle(TestEvent(api, 1))
+        assertEquals(1, result.await().value)
+        assertEquals(1, api.registeredListeners.count { it === waiters })
+    }
+
+    @Test
+    fun `waiter is registered once on a coroutine event manager`() = runBlocking {
+        val manager = CoroutineEventManager()
+        api.setEventManager(manager)
+        val waiters = api.waiters
+        repeat(10) { i ->
+            val result = async(start = CoroutineStart.UNDISPATCHED) {
+                api.waiters.await(TestEvent::class.java)
+            }
+            manager.handle(TestEvent(api, i))
+            assertEquals(i, result.await().value)
+        }
+        assertEquals(1, manager.registeredListeners.count { it === waiters })
+        manager.cancel()
+    }
+}